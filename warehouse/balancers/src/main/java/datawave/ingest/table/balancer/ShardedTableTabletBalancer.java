@@ -2,8 +2,11 @@ package datawave.ingest.table.balancer;
 
 import com.google.common.base.Function;
 import com.google.common.collect.Iterables;
+import org.apache.accumulo.core.conf.AccumuloConfiguration;
 import org.apache.accumulo.core.data.impl.KeyExtent;
+import org.apache.accumulo.core.master.thrift.TableInfo;
 import org.apache.accumulo.core.master.thrift.TabletServerStatus;
+import org.apache.accumulo.core.tabletserver.thrift.TabletStats;
 import org.apache.accumulo.core.util.Pair;
 import org.apache.accumulo.server.master.balancer.GroupBalancer;
 import org.apache.accumulo.server.master.state.TServerInstance;
@@ -11,10 +14,14 @@ import org.apache.accumulo.server.master.state.TabletMigration;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.WritableComparator;
 import org.apache.log4j.Logger;
+import org.apache.thrift.TException;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -33,14 +40,43 @@ import java.util.TreeMap;
  * Therefore, a legal balance could have successive days on the same tablet servers. For example, if a day were partitioned into 100 pieces and the cluster had
  * 500 tablet servers, a legal balance of 20 days of data could have days 1-5 all on the first 100 tablet servers, days 6-10 on the second 100 tablet servers,
  * and so on. This is not ideal, since the real goal is to spread data out across the cluster as much as possible.
+ * <p>
+ * When the table property {@value #LOAD_AWARE_PROPERTY} is true, the balancer also weighs the recent query and ingest load of each tablet, from the tablet
+ * stats of the tablet servers that the {@link TabletServerStatus} shows hold the table. The busiest days, which are normally the most recent ones, are put
+ * together in a group of their own so that their tablets are spread across as many tablet servers as possible rather than landing on the same servers as each
+ * other. The remaining days are grouped as before. In this mode the tablet locations are also kept between balancer passes and updated with the assignments and
+ * migrations made by the balancer, and the metadata table is only scanned again when the tablet counts reported by the tablet servers no longer match, the
+ * tablet servers change, or {@value #LOCATION_REFRESH_PROPERTY} milliseconds have passed.
  */
 public class ShardedTableTabletBalancer extends GroupBalancer {
     private static final Logger log = Logger.getLogger(ShardedTableTabletBalancer.class);
+    
+    public static final String LOAD_AWARE_PROPERTY = "table.custom.sharded.balancer.load.aware";
+    public static final String LOCATION_REFRESH_PROPERTY = "table.custom.sharded.balancer.location.refresh.ms";
+    public static final String LOAD_REFRESH_PROPERTY = "table.custom.sharded.balancer.load.refresh.ms";
+    public static final String HOT_LOAD_FRACTION_PROPERTY = "table.custom.sharded.balancer.hot.load.fraction";
+    protected static final long DEFAULT_LOCATION_REFRESH_MS = 15 * 60 * 1000L;
+    protected static final long DEFAULT_LOAD_REFRESH_MS = 60 * 1000L;
+    protected static final double DEFAULT_HOT_LOAD_FRACTION = 0.8;
+    
+    // the weight of the latest load in the smoothed load of each day
+    private static final double LOAD_SMOOTHING = 0.3;
+    
+    private final String tableId;
     private Collection<Pair<KeyExtent,Location>> tabletLocationCache;
     private Function<KeyExtent,String> partitioner;
     
+    // the tablet locations kept between passes in load aware mode
+    private TreeMap<KeyExtent,TServerInstance> cachedLocations;
+    private Set<TServerInstance> cachedTservers;
+    private long lastLocationRefresh;
+    private long lastLoadRefresh;
+    // the smoothed load of each day
+    private Map<String,Double> dayLoads = new HashMap<>();
+    
     public ShardedTableTabletBalancer(String tableId) {
         super(tableId);
+        this.tableId = tableId;
     }
     
     // synchronized to ensure exclusivity between getAssignments and balance calls
@@ -51,11 +87,20 @@ public class ShardedTableTabletBalancer extends GroupBalancer {
         partitioner = new ShardDayPartitioner();
         
         super.getAssignments(current, unassigned, assignments);
+        
+        if (cachedLocations != null) {
+            cachedLocations.putAll(assignments);
+        }
     }
     
     // synchronized to ensure exclusivity between getAssignments and balance calls
     @Override
     public synchronized long balance(SortedMap<TServerInstance,TabletServerStatus> current, Set<KeyExtent> migrations, List<TabletMigration> migrationsOut) {
+        if (isLoadAware()) {
+            return balanceByLoad(current, migrations, migrationsOut);
+        }
+        cachedLocations = null;
+        
         // Clear the location cache so we're sure to rebuild for this balancer pass
         tabletLocationCache = null;
         
@@ -67,6 +112,185 @@ public class ShardedTableTabletBalancer extends GroupBalancer {
         return super.balance(current, migrations, migrationsOut);
     }
     
+    private long balanceByLoad(SortedMap<TServerInstance,TabletServerStatus> current, Set<KeyExtent> migrations, List<TabletMigration> migrationsOut) {
+        // While our migrations are outstanding the tablet servers report the old locations, and the parent will not balance anyway
+        for (KeyExtent extent : migrations) {
+            if (extent.getTableId().equals(tableId)) {
+                return super.balance(current, migrations, migrationsOut);
+            }
+        }
+        
+        refreshLocations(current);
+        updateDayLoads(current);
+        
+        final int numTservers = current.size();
+        partitioner = new LoadAwarePartitioner(numTservers, getLocationProvider(), getHotDays(numTservers));
+        
+        int numMigrations = migrationsOut.size();
+        long waitTime = super.balance(current, migrations, migrationsOut);
+        
+        // The migrations will be made by the master, so the cached locations are kept in step with them
+        for (TabletMigration migration : migrationsOut.subList(numMigrations, migrationsOut.size())) {
+            cachedLocations.put(migration.tablet, migration.newServer);
+        }
+        return waitTime;
+    }
+    
+    /**
+     * Scan the tablet locations again if the cached locations are missing, old, or no longer match the tablet servers.
+     */
+    private void refreshLocations(SortedMap<TServerInstance,TabletServerStatus> current) {
+        long now = System.currentTimeMillis();
+        if (cachedLocations != null && now - lastLocationRefresh < getLocationRefreshMillis() && current.keySet().equals(cachedTservers)
+                        && countsMatch(current)) {
+            return;
+        }
+        
+        TreeMap<KeyExtent,TServerInstance> locations = new TreeMap<>();
+        boolean assigned = true;
+        for (Pair<KeyExtent,Location> pair : getRawLocationProvider()) {
+            TServerInstance tserver = pair.getSecond().getTserverInstance();
+            locations.put(pair.getFirst(), tserver);
+            assigned &= (tserver != null);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Refreshed " + locations.size() + " tablet locations for table " + tableId);
+        }
+        cachedLocations = locations;
+        cachedTservers = new HashSet<>(current.keySet());
+        // Tablets that are being assigned will have a location soon, so don't keep the view past this pass
+        lastLocationRefresh = (assigned ? now : 0);
+    }
+    
+    /**
+     * Checks the number of tablets of the table on each tablet server against the cached locations, where the tablet server reports its tablets.
+     */
+    private boolean countsMatch(SortedMap<TServerInstance,TabletServerStatus> current) {
+        Map<TServerInstance,Integer> counts = new HashMap<>();
+        for (TServerInstance tserver : cachedLocations.values()) {
+            Integer count = counts.get(tserver);
+            counts.put(tserver, count == null ? 1 : count + 1);
+        }
+        for (Entry<TServerInstance,TabletServerStatus> entry : current.entrySet()) {
+            Map<String,TableInfo> tableMap = entry.getValue().getTableMap();
+            if (tableMap == null) {
+                continue;
+            }
+            TableInfo tableInfo = tableMap.get(tableId);
+            int reported = (tableInfo == null ? 0 : tableInfo.getOnlineTablets());
+            Integer count = counts.get(entry.getKey());
+            if (reported != (count == null ? 0 : count)) {
+                if (log.isDebugEnabled()) {
+                    log.debug(entry.getKey() + " reports " + reported + " tablets for table " + tableId + " but " + count + " are cached");
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Folds the recent load of the tablets of each day into the smoothed load of the day, at most once per {@value #LOAD_REFRESH_PROPERTY} milliseconds.
+     */
+    private void updateDayLoads(SortedMap<TServerInstance,TabletServerStatus> current) {
+        long now = System.currentTimeMillis();
+        if (now - lastLoadRefresh < getLoadRefreshMillis()) {
+            return;
+        }
+        lastLoadRefresh = now;
+        
+        Map<String,Double> loads = new HashMap<>();
+        Function<KeyExtent,String> dayPartitioner = new ShardDayPartitioner();
+        for (KeyExtent extent : cachedLocations.keySet()) {
+            loads.put(dayPartitioner.apply(extent), 0.0d);
+        }
+        for (Entry<KeyExtent,Double> entry : getTabletLoads(current).entrySet()) {
+            String day = dayPartitioner.apply(entry.getKey());
+            Double load = loads.get(day);
+            if (load != null) {
+                loads.put(day, load + entry.getValue());
+            }
+        }
+        
+        // Days that no longer exist are dropped
+        Map<String,Double> smoothed = new HashMap<>();
+        for (Entry<String,Double> entry : loads.entrySet()) {
+            Double previous = dayLoads.get(entry.getKey());
+            smoothed.put(entry.getKey(), previous == null ? entry.getValue() : LOAD_SMOOTHING * entry.getValue() + (1 - LOAD_SMOOTHING) * previous);
+        }
+        dayLoads = smoothed;
+    }
+    
+    /**
+     * Gets the recent query and ingest rate of each tablet of the table. The status of each tablet server only holds the rates of the whole table, which
+     * cannot tell the days on a server apart, so the tablet stats are requested from the servers that hold tablets of the table.
+     *
+     * @param current
+     *            the status of the tablet servers
+     * @return the load of each tablet
+     */
+    protected Map<KeyExtent,Double> getTabletLoads(SortedMap<TServerInstance,TabletServerStatus> current) {
+        Map<KeyExtent,Double> loads = new HashMap<>();
+        for (Entry<TServerInstance,TabletServerStatus> entry : current.entrySet()) {
+            Map<String,TableInfo> tableMap = entry.getValue().getTableMap();
+            if (tableMap != null && !tableMap.containsKey(tableId)) {
+                continue;
+            }
+            try {
+                for (TabletStats stats : getOnlineTabletsForTable(entry.getKey(), tableId)) {
+                    loads.put(new KeyExtent(stats.getExtent()), stats.getQueryRate() + stats.getIngestRate());
+                }
+            } catch (TException e) {
+                log.warn("Unable to get the tablet stats of table " + tableId + " from " + entry.getKey(), e);
+            }
+        }
+        return loads;
+    }
+    
+    /**
+     * Gets the busiest days, which together carry the hot load fraction of the load of the table, with no more tablets than will fit in a group unless a single
+     * day has more.
+     */
+    private Set<String> getHotDays(int numTservers) {
+        Map<String,Integer> dayTablets = new HashMap<>();
+        Function<KeyExtent,String> dayPartitioner = new ShardDayPartitioner();
+        for (KeyExtent extent : cachedLocations.keySet()) {
+            String day = dayPartitioner.apply(extent);
+            Integer count = dayTablets.get(day);
+            dayTablets.put(day, count == null ? 1 : count + 1);
+        }
+        
+        double total = 0;
+        for (double load : dayLoads.values()) {
+            total += load;
+        }
+        Set<String> hotDays = new HashSet<>();
+        if (total <= 0) {
+            return hotDays;
+        }
+        
+        List<Entry<String,Double>> days = new ArrayList<>(dayLoads.entrySet());
+        // busiest first, and the most recent first for the same load
+        days.sort((a, b) -> a.getValue().equals(b.getValue()) ? b.getKey().compareTo(a.getKey()) : Double.compare(b.getValue(), a.getValue()));
+        double hotLoad = getHotLoadFraction() * total;
+        int groupSize = Math.round(numTservers * 0.95f);
+        double load = 0;
+        int tablets = 0;
+        for (Entry<String,Double> day : days) {
+            int count = dayTablets.get(day.getKey());
+            if (load >= hotLoad || day.getValue() <= 0 || (!hotDays.isEmpty() && tablets + count > groupSize)) {
+                break;
+            }
+            hotDays.add(day.getKey());
+            load += day.getValue();
+            tablets += count;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Hot days for table " + tableId + ": " + hotDays);
+        }
+        return hotDays;
+    }
+    
     @Override
     protected Function<KeyExtent,String> getPartitioner() {
         return partitioner;
@@ -74,6 +298,11 @@ public class ShardedTableTabletBalancer extends GroupBalancer {
     
     @Override
     protected Iterable<Pair<KeyExtent,Location>> getLocationProvider() {
+        if (cachedLocations != null) {
+            return Iterables.transform(cachedLocations.entrySet(),
+                            entry -> new Pair<>(entry.getKey(), entry.getValue() == null ? Location.NONE : new Location(entry.getValue())));
+        }
+        
         // Cache metadata locations so we only scan the metadata table once per balancer pass
         if (tabletLocationCache == null) {
             tabletLocationCache = new LinkedList<>();
@@ -88,6 +317,46 @@ public class ShardedTableTabletBalancer extends GroupBalancer {
         return 10000;
     }
     
+    /**
+     * @return whether to weigh the load of the tablet servers, from the {@value #LOAD_AWARE_PROPERTY} table property
+     */
+    protected boolean isLoadAware() {
+        String value = getTableProperty(LOAD_AWARE_PROPERTY);
+        return value != null && Boolean.parseBoolean(value);
+    }
+    
+    /**
+     * @return the longest time the tablet locations are kept in load aware mode, from the {@value #LOCATION_REFRESH_PROPERTY} table property
+     */
+    protected long getLocationRefreshMillis() {
+        String value = getTableProperty(LOCATION_REFRESH_PROPERTY);
+        return value == null ? DEFAULT_LOCATION_REFRESH_MS : Long.parseLong(value);
+    }
+    
+    /**
+     * @return the shortest time between requests for the tablet loads in load aware mode, from the {@value #LOAD_REFRESH_PROPERTY} table property
+     */
+    protected long getLoadRefreshMillis() {
+        String value = getTableProperty(LOAD_REFRESH_PROPERTY);
+        return value == null ? DEFAULT_LOAD_REFRESH_MS : Long.parseLong(value);
+    }
+    
+    /**
+     * @return the fraction of the load carried by the hot days, from the {@value #HOT_LOAD_FRACTION_PROPERTY} table property
+     */
+    protected double getHotLoadFraction() {
+        String value = getTableProperty(HOT_LOAD_FRACTION_PROPERTY);
+        return value == null ? DEFAULT_HOT_LOAD_FRACTION : Double.parseDouble(value);
+    }
+    
+    private String getTableProperty(String property) {
+        if (configuration == null) {
+            return null;
+        }
+        AccumuloConfiguration tableConfig = configuration.getTableConfiguration(tableId);
+        return tableConfig == null ? null : tableConfig.get(property);
+    }
+    
     /**
      * Gets the raw location provider. By default this just delegates to the parent class' {@link #getLocationProvider()} which scans the metadata table.
      * However, test cases might override in order to replace the parent metadata location provider whilst still allowing the caching mechanism in use here.
@@ -117,6 +386,39 @@ public class ShardedTableTabletBalancer extends GroupBalancer {
         }
     }
     
+    /**
+     * Partitions the hot days into a group of their own, and the remaining days as the {@link ShardGroupPartitioner} does.
+     */
+    protected static class LoadAwarePartitioner implements Function<KeyExtent,String> {
+        private static final String HOT_GROUP = "hot";
+        
+        private final Function<KeyExtent,String> dayPartitioner = new ShardDayPartitioner();
+        private final Set<String> hotDays;
+        private final Function<KeyExtent,String> coldPartitioner;
+        
+        /**
+         * @param numTservers
+         *            the number of active tablet servers
+         * @param tabletLocations
+         *            the sorted list of tablet and current/previous location pairs
+         * @param hotDays
+         *            the days, as partitioned by the {@link ShardDayPartitioner}, to group together
+         */
+        public LoadAwarePartitioner(int numTservers, Iterable<Pair<KeyExtent,Location>> tabletLocations, Set<String> hotDays) {
+            this.hotDays = hotDays;
+            Iterable<Pair<KeyExtent,Location>> cold = Iterables.filter(tabletLocations, pair -> !hotDays.contains(dayPartitioner.apply(pair.getFirst())));
+            this.coldPartitioner = (cold.iterator().hasNext() ? new ShardGroupPartitioner(numTservers, cold) : null);
+        }
+        
+        @Override
+        public String apply(KeyExtent input) {
+            if (coldPartitioner == null || hotDays.contains(dayPartitioner.apply(input))) {
+                return HOT_GROUP;
+            }
+            return coldPartitioner.apply(input);
+        }
+    }
+    
     /**
      * Partitions extents for this table into groups as follows:
      * <ul>
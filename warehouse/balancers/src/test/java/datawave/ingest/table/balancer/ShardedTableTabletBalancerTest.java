@@ -9,6 +9,7 @@ import com.google.common.collect.Multiset;
 import com.google.common.collect.Sets;
 import datawave.common.test.integration.IntegrationTest;
 import org.apache.accumulo.core.data.impl.KeyExtent;
+import org.apache.accumulo.core.master.thrift.TableInfo;
 import org.apache.accumulo.core.master.thrift.TabletServerStatus;
 import org.apache.accumulo.core.util.MapCounter;
 import org.apache.accumulo.core.util.Pair;
@@ -520,6 +521,61 @@ public class ShardedTableTabletBalancerTest {
         runAndCheckBalance(1);
     }
     
+    @Test
+    public void testLoadAwareSpreadsHotDays() {
+        testBalancer.loadAware = true;
+        TServerInstance server1 = testTServers.addTServer("127.0.0.1");
+        testTServers.addTServers("127.0.0.1", "127.0.0.1", "127.0.0.1", "127.0.0.1", "127.0.0.1", "127.0.0.1", "127.0.0.1", "127.0.0.1", "127.0.0.1");
+        
+        // 20 days of 4 shards, all on one server
+        String prev = null;
+        for (int day = 1; day <= 20; day++) {
+            for (int shard = 1; shard <= 4; shard++) {
+                String end = String.format("201001%02d_%d", day, shard);
+                testTServers.addTablet(makeExtent(TNAME, end, prev), server1);
+                prev = end;
+            }
+        }
+        
+        // nearly all of the queries land on two days, which are in different groups by date
+        Map<String,Double> dayRates = testBalancer.dayRates;
+        dayRates.put("20100112", 100.0);
+        dayRates.put("20100120", 100.0);
+        
+        ArrayList<TabletMigration> migrationsOut = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            migrationsOut.clear();
+            testBalancer.balance(testTServers.getCurrentWithTablets(), new HashSet<>(), migrationsOut);
+            ensureUniqueMigrations(migrationsOut);
+            testTServers.applyMigrations(migrationsOut);
+            if (migrationsOut.isEmpty())
+                break;
+        }
+        assertEquals(0, migrationsOut.size());
+        testTServers.checkBalance(testBalancer.getPartitioner());
+        
+        // the tablets of both hot days are on different servers
+        Set<TServerInstance> hotServers = new HashSet<>();
+        for (Entry<KeyExtent,TServerInstance> entry : testTServers.tabletLocs.entrySet()) {
+            String day = entry.getKey().getEndRow().toString().substring(0, 8);
+            if (dayRates.containsKey(day)) {
+                assertTrue("Hot tablets share " + entry.getValue(), hotServers.add(entry.getValue()));
+            }
+        }
+        assertEquals(8, hotServers.size());
+        
+        // the locations were only scanned once, as the tablet counts of the servers match the migrations
+        assertEquals(1, testBalancer.rawLocationScans);
+        
+        // a split is noticed from the tablet counts
+        testTServers.addTablet(makeExtent(TNAME, "20100121_1", prev), server1);
+        migrationsOut.clear();
+        testBalancer.balance(testTServers.getCurrentWithTablets(), new HashSet<>(), migrationsOut);
+        assertEquals(2, testBalancer.rawLocationScans);
+        testTServers.applyMigrations(migrationsOut);
+        testTServers.checkBalance(testBalancer.getPartitioner());
+    }
+    
     private void runAndCheckBalance(int numPasses) {
         
         // Balance the number of times we're told to
@@ -816,6 +872,22 @@ public class ShardedTableTabletBalancerTest {
             return current;
         }
         
+        /**
+         * Reports the number of tablets of the table on each server
+         */
+        public SortedMap<TServerInstance,TabletServerStatus> getCurrentWithTablets() {
+            SortedMap<TServerInstance,TabletServerStatus> current = getCurrent();
+            for (TabletServerStatus status : current.values()) {
+                status.setTableMap(new HashMap<>());
+            }
+            for (Entry<KeyExtent,TServerInstance> entry : tabletLocs.entrySet()) {
+                Map<String,TableInfo> tableMap = current.get(entry.getValue()).getTableMap();
+                TableInfo info = tableMap.computeIfAbsent(TNAME, k -> new TableInfo());
+                info.setOnlineTablets(info.getOnlineTablets() + 1);
+            }
+            return current;
+        }
+        
         public Iterable<Pair<KeyExtent,Location>> getLocationProvider() {
             return Iterables.transform(tabletLocs.entrySet(), input -> new Pair<>(input.getKey(), new Location(input.getValue())));
         }
@@ -823,6 +895,10 @@ public class ShardedTableTabletBalancerTest {
     
     private class TestShardedTableTabletBalancer extends ShardedTableTabletBalancer {
         private TestTServers testTServers;
+        private boolean loadAware = false;
+        private int rawLocationScans = 0;
+        // the query rate of each tablet of a day, or 1
+        private Map<String,Double> dayRates = new HashMap<>();
         
         public TestShardedTableTabletBalancer(TestTServers testTServers) {
             super(TNAME);
@@ -831,9 +907,29 @@ public class ShardedTableTabletBalancerTest {
         
         @Override
         protected Iterable<Pair<KeyExtent,Location>> getRawLocationProvider() {
+            rawLocationScans++;
             return testTServers.getLocationProvider();
         }
         
+        @Override
+        protected boolean isLoadAware() {
+            return loadAware;
+        }
+        
+        @Override
+        protected long getLoadRefreshMillis() {
+            return 0;
+        }
+        
+        @Override
+        protected Map<KeyExtent,Double> getTabletLoads(SortedMap<TServerInstance,TabletServerStatus> current) {
+            Map<KeyExtent,Double> loads = new HashMap<>();
+            for (KeyExtent extent : testTServers.tabletLocs.keySet()) {
+                loads.put(extent, dayRates.getOrDefault(extent.getEndRow().toString().substring(0, 8), 1.0));
+            }
+            return loads;
+        }
+        
         // Overridden to make it public
         @Override
         public Function<KeyExtent,String> getPartitioner() {
@@ -0,0 +1,24 @@
+package datawave.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the benchmarks with the JMH command line, writing the results as JSON to a file named for the release unless another result format was requested, so
+ * that the results of different releases can be compared.
+ */
+public class BenchmarkMain {
+    
+    public static void main(String[] args) throws Exception {
+        List<String> options = new ArrayList<>(Arrays.asList(args));
+        if (!options.contains("-rf") && !options.contains("-h") && !options.contains("-l") && !options.contains("-lp")) {
+            String version = BenchmarkMain.class.getPackage().getImplementationVersion();
+            options.add(0, "-rf");
+            options.add(1, "json");
+            options.add(2, "-rff");
+            options.add(3, "datawave-benchmarks-" + (version == null ? "SNAPSHOT" : version) + ".json");
+        }
+        org.openjdk.jmh.Main.main(options.toArray(new String[0]));
+    }
+}
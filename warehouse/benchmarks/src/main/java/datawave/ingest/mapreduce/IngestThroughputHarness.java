@@ -0,0 +1,288 @@
+package datawave.ingest.mapreduce;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import datawave.ingest.data.RawRecordContainer;
+import datawave.ingest.data.TypeRegistry;
+import datawave.ingest.data.config.DataTypeHelper;
+import datawave.ingest.mapreduce.job.BulkIngestKey;
+import datawave.ingest.mapreduce.job.writer.BulkContextWriter;
+import datawave.ingest.mapreduce.job.writer.ContextWriter;
+import datawave.ingest.mapreduce.job.writer.TimingContextWriter;
+import datawave.ingest.test.StandaloneStatusReporter;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.lib.map.WrappedMapper;
+import org.apache.hadoop.mapreduce.task.MapContextImpl;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+
+import org.apache.accumulo.core.data.Value;
+
+/**
+ * Runs local files through a record reader and the {@link EventMapper} of a data type without a cluster, and reports the records per second and the
+ * allocation rate of the reader, each data type handler, each ingest helper, each normalizer and the context writer. The output of the mapper is counted in
+ * memory by table rather than written, so the report covers only the cost of turning records into keys and values.
+ * <p>
+ * The data type is configured with the same ingest configuration files used by the ingest jobs, for example the mycsv, myjson, wikipedia or nyctlc
+ * configuration, so handler, tokenizer and edge settings can be tuned by editing a copy of those files and running the harness against recorded samples.
+ * 
+ * <pre>
+ * IngestThroughputHarness -conf all-config.xml,mycsv-ingest-config.xml [-type mycsv] [-reader csv] [-records N] [-passes N] [-normalizers] file...
+ * </pre>
+ */
+public class IngestThroughputHarness {
+    
+    /**
+     * The record readers of the example data types, by a short name
+     */
+    private static final Map<String,String> READERS = new TreeMap<>();
+    
+    static {
+        READERS.put("csv", "datawave.ingest.csv.mr.input.CSVRecordReader");
+        READERS.put("json", "datawave.ingest.json.mr.input.JsonRecordReader");
+        READERS.put("wikipedia", "datawave.ingest.wikipedia.WikipediaRecordReader");
+        READERS.put("nyctlc", "datawave.ingest.nyctlc.NYCTLCReader");
+    }
+    
+    private final Configuration conf;
+    private final Class<? extends RecordReader<LongWritable,RawRecordContainer>> readerClass;
+    private final boolean probeNormalizers;
+    private final IngestTimings timings = IngestTimings.getInstance();
+    private final CountingRecordWriter output = new CountingRecordWriter();
+    private long records = 0;
+    
+    /**
+     * @param conf
+     *            the ingest configuration, with data.name set to the data type to ingest
+     * @param readerClass
+     *            the record reader for the data type
+     * @param probeNormalizers
+     *            whether to measure each normalizer separately, see {@link ProfilingEventMapper}
+     */
+    public IngestThroughputHarness(Configuration conf, Class<? extends RecordReader<LongWritable,RawRecordContainer>> readerClass, boolean probeNormalizers) {
+        this.conf = new Configuration(conf);
+        this.readerClass = readerClass;
+        this.probeNormalizers = probeNormalizers;
+        
+        // put the timing context writer in front of the configured one
+        Class<?> contextWriterClass = this.conf.getClass(EventMapper.CONTEXT_WRITER_CLASS, BulkContextWriter.class, ContextWriter.class);
+        this.conf.setClass(TimingContextWriter.CONTEXT_WRITER_CLASS, contextWriterClass, ContextWriter.class);
+        this.conf.setClass(EventMapper.CONTEXT_WRITER_CLASS, TimingContextWriter.class, ContextWriter.class);
+    }
+    
+    /**
+     * Ingest a file as a single split
+     *
+     * @param file
+     *            the file
+     * @param maxRecords
+     *            the maximum number of records to read from the file, or a negative number for all
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void ingest(File file, long maxRecords) throws IOException, InterruptedException {
+        FileSplit split = new FileSplit(new Path(file.toURI()), 0, file.length(), null);
+        TaskAttemptID taskId = new TaskAttemptID();
+        RecordReader<LongWritable,RawRecordContainer> reader;
+        try {
+            reader = readerClass.newInstance();
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new IOException("Unable to create " + readerClass, e);
+        }
+        TaskAttemptContext readerContext = new TaskAttemptContextImpl(conf, taskId);
+        reader.initialize(split, readerContext);
+        
+        MapContextImpl mapContext = new MapContextImpl(conf, taskId, reader, output, null, new StandaloneStatusReporter(), split);
+        Mapper.Context context = new WrappedMapper().getMapContext(mapContext);
+        ProfilingEventMapper<LongWritable,RawRecordContainer,BulkIngestKey,Value> mapper = new ProfilingEventMapper<>(probeNormalizers);
+        
+        long nanos = timings.nanos();
+        long allocated = timings.allocated();
+        mapper.setup(context);
+        timings.record("mapper.setup", nanos, allocated);
+        try {
+            String readerSection = "reader:" + readerClass.getName();
+            long count = 0;
+            while (maxRecords < 0 || count < maxRecords) {
+                nanos = timings.nanos();
+                allocated = timings.allocated();
+                boolean more = reader.nextKeyValue();
+                LongWritable key = more ? reader.getCurrentKey() : null;
+                RawRecordContainer value = more ? reader.getCurrentValue() : null;
+                timings.record(readerSection, nanos, allocated);
+                if (!more) {
+                    break;
+                }
+                
+                nanos = timings.nanos();
+                allocated = timings.allocated();
+                mapper.map(key, value, context);
+                timings.record("mapper.map", nanos, allocated);
+                count++;
+            }
+            records += count;
+        } finally {
+            nanos = timings.nanos();
+            allocated = timings.allocated();
+            mapper.cleanup(context);
+            timings.record("mapper.cleanup", nanos, allocated);
+            reader.close();
+        }
+    }
+    
+    public long getRecords() {
+        return records;
+    }
+    
+    /**
+     * @return the number of keys written to each table
+     */
+    public Map<String,Long> getTableCounts() {
+        return output.keys;
+    }
+    
+    /**
+     * Forget the records and timings so far, for example after a warm up pass
+     */
+    public void reset() {
+        records = 0;
+        output.keys.clear();
+        output.bytes.clear();
+        timings.reset();
+    }
+    
+    public void report(PrintStream out) {
+        // the normalizer probes are extra work done inside the mapper, so they are not counted in the overall rate
+        long nanos = timings.getNanos("reader:") + timings.getNanos("mapper.map") - timings.getNanos("normalizer:");
+        out.println(String.format("%d records in %.1f ms: %.1f records/sec%s", records, nanos / 1e6, nanos > 0 ? records / (nanos / 1e9) : 0.0,
+                        timings.isAllocationTracked() ? "" : " (allocations are not tracked by this JVM)"));
+        out.println();
+        timings.report(out, records);
+        out.println();
+        out.println(String.format("%-72s %12s %14s", "table", "keys", "bytes"));
+        for (Map.Entry<String,Long> entry : output.keys.entrySet()) {
+            out.println(String.format("%-72s %12d %14d", entry.getKey(), entry.getValue(), output.bytes.get(entry.getKey())));
+        }
+    }
+    
+    /**
+     * Counts the keys and values written by the mapper by table, in place of an output format
+     */
+    private static class CountingRecordWriter extends RecordWriter<Object,Object> {
+        private final Map<String,Long> keys = new TreeMap<>();
+        private final Map<String,Long> bytes = new TreeMap<>();
+        
+        @Override
+        public void write(Object key, Object value) {
+            String table;
+            long size;
+            if (key instanceof BulkIngestKey) {
+                BulkIngestKey bulkKey = (BulkIngestKey) key;
+                table = bulkKey.getTableName().toString();
+                size = bulkKey.getKey().getSize() + (value instanceof Value ? ((Value) value).getSize() : 0);
+            } else {
+                table = String.valueOf(key);
+                size = 0;
+            }
+            keys.merge(table, 1L, Long::sum);
+            bytes.merge(table, size, Long::sum);
+        }
+        
+        @Override
+        public void close(TaskAttemptContext context) {
+            // nothing to close
+        }
+    }
+    
+    private static void usage() {
+        System.err.println("usage: " + IngestThroughputHarness.class.getSimpleName()
+                        + " -conf <file or resource>[,...] [-type <data type>] [-reader <" + String.join("|", READERS.keySet())
+                        + "|class>] [-records <max per file>] [-passes <n>] [-normalizers] <file>...");
+        System.err.println("  the first of several passes warms up the JVM and is not reported");
+        System.exit(1);
+    }
+    
+    @SuppressWarnings("unchecked")
+    public static void main(String[] args) throws Exception {
+        Configuration conf = new Configuration();
+        String type = null;
+        String reader = null;
+        long maxRecords = -1;
+        int passes = 1;
+        boolean probeNormalizers = false;
+        List<File> files = new ArrayList<>();
+        
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-conf") && i + 1 < args.length) {
+                for (String resource : args[++i].split(",")) {
+                    if (new File(resource).isFile()) {
+                        conf.addResource(new Path(new File(resource).toURI()));
+                    } else {
+                        conf.addResource(resource);
+                    }
+                }
+            } else if (args[i].equals("-type") && i + 1 < args.length) {
+                type = args[++i];
+            } else if (args[i].equals("-reader") && i + 1 < args.length) {
+                reader = args[++i];
+            } else if (args[i].equals("-records") && i + 1 < args.length) {
+                maxRecords = Long.parseLong(args[++i]);
+            } else if (args[i].equals("-passes") && i + 1 < args.length) {
+                passes = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-normalizers")) {
+                probeNormalizers = true;
+            } else if (args[i].startsWith("-")) {
+                usage();
+            } else {
+                files.add(new File(args[i]));
+            }
+        }
+        
+        if (type == null) {
+            type = conf.get(DataTypeHelper.Properties.DATA_NAME);
+        }
+        if (type == null || files.isEmpty()) {
+            usage();
+        }
+        conf.set(DataTypeHelper.Properties.DATA_NAME, type);
+        if (conf.get(TypeRegistry.INGEST_DATA_TYPES) == null) {
+            conf.set(TypeRegistry.INGEST_DATA_TYPES, type);
+        }
+        if (reader == null) {
+            reader = conf.get(type + TypeRegistry.RAW_READER);
+            if (reader == null) {
+                System.err.println("No reader given and none configured in " + type + TypeRegistry.RAW_READER);
+                usage();
+            }
+        }
+        Class<? extends RecordReader<LongWritable,RawRecordContainer>> readerClass = (Class<? extends RecordReader<LongWritable,RawRecordContainer>>) Class
+                        .forName(READERS.containsKey(reader) ? READERS.get(reader) : reader);
+        
+        IngestThroughputHarness harness = new IngestThroughputHarness(conf, readerClass, probeNormalizers);
+        for (int pass = 1; pass <= passes; pass++) {
+            if (pass == passes) {
+                // only the last pass is reported
+                harness.reset();
+            }
+            for (File file : files) {
+                harness.ingest(file, maxRecords);
+            }
+        }
+        harness.report(System.out);
+    }
+}
@@ -0,0 +1,117 @@
+package datawave.ingest.mapreduce;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The elapsed time and the bytes allocated by the current thread in each named section of the ingest path, for the {@link IngestThroughputHarness}. A section
+ * is measured by taking {@link #nanos()} and {@link #allocated()} on entry and passing them to {@link #record(String, long, long)} on exit, so that measuring
+ * does not allocate. Sections may nest, in which case the time of the inner section is also counted in the outer one.
+ */
+public class IngestTimings {
+    
+    private static final IngestTimings INSTANCE = new IngestTimings();
+    
+    private final com.sun.management.ThreadMXBean threads;
+    private final Map<String,Section> sections = new TreeMap<>();
+    
+    public static IngestTimings getInstance() {
+        return INSTANCE;
+    }
+    
+    private IngestTimings() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            this.threads = (com.sun.management.ThreadMXBean) bean;
+            this.threads.setThreadAllocatedMemoryEnabled(true);
+        } else {
+            this.threads = null;
+        }
+    }
+    
+    public long nanos() {
+        return System.nanoTime();
+    }
+    
+    /**
+     * @return the bytes allocated so far by the current thread, or 0 if the JVM does not track allocations
+     */
+    public long allocated() {
+        return threads == null ? 0 : threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    
+    public boolean isAllocationTracked() {
+        return threads != null;
+    }
+    
+    /**
+     * Record one call of a section
+     *
+     * @param name
+     *            the section
+     * @param startNanos
+     *            the {@link #nanos()} when the section was entered
+     * @param startAllocated
+     *            the {@link #allocated()} when the section was entered
+     */
+    public synchronized void record(String name, long startNanos, long startAllocated) {
+        long elapsed = nanos() - startNanos;
+        long bytes = allocated() - startAllocated;
+        Section section = sections.get(name);
+        if (section == null) {
+            section = new Section();
+            sections.put(name, section);
+        }
+        section.calls++;
+        section.nanos += elapsed;
+        section.bytes += bytes;
+    }
+    
+    public synchronized void reset() {
+        sections.clear();
+    }
+    
+    /**
+     * @param prefix
+     *            a section name or the start of several
+     * @return the total nanoseconds recorded for the sections starting with the prefix
+     */
+    public synchronized long getNanos(String prefix) {
+        long nanos = 0;
+        for (Map.Entry<String,Section> entry : sections.entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                nanos += entry.getValue().nanos;
+            }
+        }
+        return nanos;
+    }
+    
+    /**
+     * Print a line per section with its calls, time, records per second and allocation per record
+     *
+     * @param out
+     *            the stream to print to
+     * @param records
+     *            the number of records processed, to compute rates
+     */
+    public synchronized void report(PrintStream out, long records) {
+        out.println(String.format("%-72s %12s %12s %12s %14s %14s %12s", "section", "calls", "total ms", "us/call", "records/sec", "alloc MB/sec",
+                        "bytes/record"));
+        for (Map.Entry<String,Section> entry : sections.entrySet()) {
+            Section section = entry.getValue();
+            double seconds = section.nanos / 1e9;
+            out.println(String.format("%-72s %12d %12.1f %12.2f %14.1f %14.1f %12d", entry.getKey(), section.calls, section.nanos / 1e6,
+                            section.nanos / 1e3 / Math.max(1, section.calls), seconds > 0 ? records / seconds : 0.0, seconds > 0 ? section.bytes / 1e6
+                                            / seconds : 0.0, section.bytes / Math.max(1, records)));
+        }
+    }
+    
+    private static class Section {
+        private long calls;
+        private long nanos;
+        private long bytes;
+    }
+}
@@ -0,0 +1,81 @@
+package datawave.ingest.mapreduce;
+
+import java.util.Map;
+
+import datawave.data.type.Type;
+import datawave.ingest.data.RawRecordContainer;
+import datawave.ingest.data.config.NormalizedContentInterface;
+import datawave.ingest.data.config.ingest.IngestHelperInterface;
+import datawave.ingest.mapreduce.handler.DataTypeHandler;
+
+import com.google.common.collect.Multimap;
+
+/**
+ * An {@link EventMapper} that records the time and allocations of each data type handler and of parsing the fields of each ingest helper in the
+ * {@link IngestTimings}.
+ * <p>
+ * The normalizers run inside the ingest helpers, so they cannot be measured separately in place. When normalizer probing is enabled, each field value parsed
+ * is normalized again by every type configured for the field, outside of the other sections, to attribute a cost to each normalizer.
+ */
+public class ProfilingEventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends EventMapper<K1,V1,K2,V2> {
+    
+    private final IngestTimings timings = IngestTimings.getInstance();
+    private final boolean probeNormalizers;
+    
+    public ProfilingEventMapper(boolean probeNormalizers) {
+        this.probeNormalizers = probeNormalizers;
+    }
+    
+    @Override
+    public Multimap<String,NormalizedContentInterface> getFields(RawRecordContainer value, DataTypeHandler<K1> handler) throws Exception {
+        IngestHelperInterface helper = handler.getHelper(value.getDataType());
+        // the section names are built before measuring, so that they are not counted as allocations of the section
+        String section = "fields:" + helper.getClass().getName();
+        long nanos = timings.nanos();
+        long allocated = timings.allocated();
+        Multimap<String,NormalizedContentInterface> fields;
+        try {
+            fields = super.getFields(value, handler);
+        } finally {
+            timings.record(section, nanos, allocated);
+        }
+        if (probeNormalizers) {
+            probeNormalizers(helper, fields);
+        }
+        return fields;
+    }
+    
+    private void probeNormalizers(IngestHelperInterface helper, Multimap<String,NormalizedContentInterface> fields) {
+        for (Map.Entry<String,NormalizedContentInterface> field : fields.entries()) {
+            String fieldValue = field.getValue().getEventFieldValue();
+            if (fieldValue == null) {
+                continue;
+            }
+            for (Type<?> type : helper.getDataTypes(field.getKey())) {
+                String section = "normalizer:" + type.getClass().getName();
+                long nanos = timings.nanos();
+                long allocated = timings.allocated();
+                try {
+                    type.normalize(fieldValue);
+                } catch (Exception e) {
+                    // the values have already been normalized once, so a failure only means the normalizer does not accept its own output
+                } finally {
+                    timings.record(section, nanos, allocated);
+                }
+            }
+        }
+    }
+    
+    @Override
+    public void executeHandler(K1 key, RawRecordContainer event, Multimap<String,NormalizedContentInterface> fields, DataTypeHandler<K1> handler,
+                    Context context) throws Exception {
+        String section = "handler:" + handler.getClass().getName();
+        long nanos = timings.nanos();
+        long allocated = timings.allocated();
+        try {
+            super.executeHandler(key, event, fields, handler, context);
+        } finally {
+            timings.record(section, nanos, allocated);
+        }
+    }
+}
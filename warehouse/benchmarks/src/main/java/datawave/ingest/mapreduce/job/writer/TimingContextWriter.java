@@ -0,0 +1,85 @@
+package datawave.ingest.mapreduce.job.writer;
+
+import java.io.IOException;
+
+import datawave.ingest.mapreduce.IngestTimings;
+import datawave.ingest.mapreduce.job.BulkIngestKey;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+
+import org.apache.accumulo.core.data.Value;
+
+import com.google.common.collect.Multimap;
+
+/**
+ * A context writer that records the time and allocations of the context writer chained after it in the {@link IngestTimings}, under sections named for that
+ * writer's class. Writes made by handlers through the context writer are also counted in the time of the handler.
+ */
+public class TimingContextWriter<OK,OV> extends AbstractChainedContextWriter<OK,OV> {
+    
+    public static final String CONTEXT_WRITER_CLASS = "ingest.timing.context.writer.class";
+    
+    private final IngestTimings timings = IngestTimings.getInstance();
+    private String writeSection;
+    private String commitSection;
+    private String cleanupSection;
+    
+    @Override
+    protected String getChainedContextWriterOption() {
+        return CONTEXT_WRITER_CLASS;
+    }
+    
+    @Override
+    public void setup(Configuration conf, boolean outputTableCounters) throws IOException, InterruptedException {
+        super.setup(conf, outputTableCounters);
+        String name = "contextWriter:" + contextWriter.getClass().getSimpleName();
+        writeSection = name + ".write";
+        commitSection = name + ".commit";
+        cleanupSection = name + ".cleanup";
+    }
+    
+    @Override
+    public void write(BulkIngestKey key, Value value, TaskInputOutputContext<?,?,OK,OV> context) throws IOException, InterruptedException {
+        long nanos = timings.nanos();
+        long allocated = timings.allocated();
+        try {
+            super.write(key, value, context);
+        } finally {
+            timings.record(writeSection, nanos, allocated);
+        }
+    }
+    
+    @Override
+    public void write(Multimap<BulkIngestKey,Value> entries, TaskInputOutputContext<?,?,OK,OV> context) throws IOException, InterruptedException {
+        long nanos = timings.nanos();
+        long allocated = timings.allocated();
+        try {
+            super.write(entries, context);
+        } finally {
+            timings.record(writeSection, nanos, allocated);
+        }
+    }
+    
+    @Override
+    public void commit(TaskInputOutputContext<?,?,OK,OV> context) throws IOException, InterruptedException {
+        long nanos = timings.nanos();
+        long allocated = timings.allocated();
+        try {
+            super.commit(context);
+        } finally {
+            timings.record(commitSection, nanos, allocated);
+        }
+    }
+    
+    @Override
+    public void cleanup(TaskInputOutputContext<?,?,OK,OV> context) throws IOException, InterruptedException {
+        long nanos = timings.nanos();
+        long allocated = timings.allocated();
+        try {
+            super.cleanup(context);
+        } finally {
+            timings.record(cleanupSection, nanos, allocated);
+        }
+    }
+}
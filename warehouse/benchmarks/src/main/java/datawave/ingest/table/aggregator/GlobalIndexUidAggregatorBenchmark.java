@@ -0,0 +1,163 @@
+package datawave.ingest.table.aggregator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import datawave.ingest.protobuf.Uid;
+
+/**
+ * Compares the {@link GlobalIndexUidAggregator} with the HashSet based implementation it replaced, combining the values for a batch of global index keys as a
+ * compaction would. The number of distinct UIDs per key is varied around {@link GlobalIndexUidAggregator#MAX}, below which the UIDs are kept and above which
+ * only the count is.
+ * <p>
+ * Run with {@code java -jar warehouse/benchmarks/target/benchmarks.jar GlobalIndexUidAggregatorBenchmark -prof gc} to include the allocation rates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GlobalIndexUidAggregatorBenchmark {
+    
+    private static final int KEYS = 100;
+    
+    /**
+     * the number of distinct UIDs for each key
+     */
+    @Param({"1", "10", "19", "20", "21", "50", "500"})
+    public int cardinality;
+    
+    /**
+     * the number of values combined for each key, i.e. the number of files being compacted
+     */
+    @Param({"2", "10"})
+    public int valuesPerKey;
+    
+    /**
+     * the percentage of values that remove UIDs rather than add them
+     */
+    @Param({"0", "10"})
+    public int removalPercent;
+    
+    private final Key key = new Key("value", "FIELD", "20190101_0\u0000datatype");
+    private List<List<Value>> values;
+    private PropogatingCombiner sortedSlices;
+    private PropogatingCombiner hashSets;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(cardinality * 31 + valuesPerKey);
+        values = new ArrayList<>(KEYS);
+        for (int k = 0; k < KEYS; k++) {
+            String[] uids = new String[cardinality];
+            for (int i = 0; i < cardinality; i++) {
+                uids[i] = UUID.nameUUIDFromBytes(new byte[] {(byte) k, (byte) (i >> 8), (byte) i}).toString();
+            }
+            
+            List<Value> keyValues = new ArrayList<>(valuesPerKey);
+            for (int v = 0; v < valuesPerKey; v++) {
+                Uid.List.Builder builder = Uid.List.newBuilder();
+                boolean removal = random.nextInt(100) < removalPercent;
+                // spread the UIDs over the values, with each value also repeating a few UIDs from the others
+                List<String> valueUids = new ArrayList<>();
+                for (int i = v; i < cardinality; i += valuesPerKey) {
+                    valueUids.add(uids[i]);
+                }
+                if (cardinality > 0) {
+                    valueUids.add(uids[random.nextInt(cardinality)]);
+                }
+                if (removal) {
+                    builder.setCOUNT(-valueUids.size());
+                    builder.setIGNORE(false);
+                    builder.addAllREMOVEDUID(valueUids);
+                } else if (valueUids.size() <= GlobalIndexUidAggregator.MAX) {
+                    builder.setCOUNT(valueUids.size());
+                    builder.setIGNORE(false);
+                    builder.addAllUID(valueUids);
+                } else {
+                    builder.setCOUNT(valueUids.size());
+                    builder.setIGNORE(true);
+                }
+                keyValues.add(new Value(builder.build().toByteArray()));
+            }
+            values.add(keyValues);
+        }
+        
+        sortedSlices = new GlobalIndexUidAggregator();
+        hashSets = new HashSetGlobalIndexUidAggregator();
+        if (!resultsAgree()) {
+            throw new IllegalStateException("The aggregators disagree for cardinality " + cardinality + " with " + valuesPerKey + " values per key");
+        }
+    }
+    
+    private void combine(PropogatingCombiner combiner, Blackhole blackhole) {
+        for (List<Value> keyValues : values) {
+            combiner.reset();
+            combiner.setPropogate(true);
+            blackhole.consume(combiner.reduce(key, keyValues.iterator()));
+            blackhole.consume(combiner.propogateKey());
+        }
+    }
+    
+    @Benchmark
+    public void sortedSlices(Blackhole blackhole) {
+        combine(sortedSlices, blackhole);
+    }
+    
+    @Benchmark
+    public void hashSets(Blackhole blackhole) {
+        combine(hashSets, blackhole);
+    }
+    
+    /**
+     * Check that both implementations produce the same Uid.List for every key. The HashSet implementation writes its UIDs in hash order, so they are sorted
+     * before comparing.
+     *
+     * @return true if the results agree
+     */
+    private boolean resultsAgree() {
+        for (List<Value> keyValues : values) {
+            Uid.List[] results = new Uid.List[2];
+            PropogatingCombiner[] combiners = {sortedSlices, hashSets};
+            for (int i = 0; i < combiners.length; i++) {
+                combiners[i].reset();
+                combiners[i].setPropogate(true);
+                try {
+                    results[i] = Uid.List.parseFrom(combiners[i].reduce(key, keyValues.iterator()).get());
+                } catch (InvalidProtocolBufferException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            String[] sorted = results[1].getUIDList().toArray(new String[0]);
+            Arrays.sort(sorted);
+            if (results[0].getCOUNT() != results[1].getCOUNT() || results[0].getIGNORE() != results[1].getIGNORE()
+                            || !results[0].getUIDList().equals(Arrays.asList(sorted))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,119 @@
+package datawave.query.function;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import datawave.data.type.LcNoDiacriticsType;
+import datawave.query.attributes.Content;
+import datawave.query.attributes.Document;
+import datawave.query.attributes.TypeAttribute;
+import datawave.query.jexl.DatawaveJexlContext;
+import datawave.query.jexl.DefaultArithmetic;
+import datawave.query.jexl.HitListArithmetic;
+import datawave.query.util.Tuple3;
+
+import org.apache.accumulo.core.data.Key;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Evaluates representative queries against a batch of synthetic documents, as the QueryIterator does for every candidate document. The {@code evaluate}
+ * benchmark measures the script alone against contexts built in advance, and {@code populateAndEvaluate} also loads each document into a new context first.
+ * About one document in ten matches each query.
+ * <p>
+ * Run with {@code java -jar warehouse/benchmarks/target/benchmarks.jar JexlEvaluationBenchmark -p arithmetic=hitList} to measure one arithmetic only.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JexlEvaluationBenchmark {
+    
+    private static final int DOCUMENTS = 100;
+    private static final int FIELDS = 20;
+    
+    private static final Map<String,String> QUERIES = new HashMap<>();
+    static {
+        QUERIES.put("equality", "FIELD_0 == 'value 0 3'");
+        QUERIES.put("disjunction", "FIELD_0 == 'none' || FIELD_4 == 'value 4 3' || FIELD_8 == 'value 8 7'");
+        QUERIES.put("regex", "FIELD_0 =~ 'value 0 [37]' && FIELD_12 =~ 'value.*'");
+        QUERIES.put("negation", "(FIELD_0 == 'value 0 3' || FIELD_4 == 'value 4 3') && !(FIELD_8 == 'value 8 7')");
+        QUERIES.put("filterFunction", "FIELD_4 == 'value 4 3' && filter:includeRegex(FIELD_2, '.*document 3.*')");
+    }
+    
+    @Param({"equality", "disjunction", "regex", "negation", "filterFunction"})
+    public String query;
+    
+    @Param({"default", "hitList"})
+    public String arithmetic;
+    
+    private List<Document> documents;
+    private List<Tuple3<Key,Document,DatawaveJexlContext>> tuples;
+    private JexlEvaluation evaluation;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        documents = new ArrayList<>(DOCUMENTS);
+        tuples = new ArrayList<>(DOCUMENTS);
+        for (int d = 0; d < DOCUMENTS; d++) {
+            Key key = new Key("20190101_0", "datatype\u0000" + d + ".uid");
+            Document document = new Document(key, true);
+            for (int f = 0; f < FIELDS; f++) {
+                if (f % 4 == 2) {
+                    document.put("FIELD_" + f, new Content("content of field " + f + " in document " + d, key, true));
+                } else {
+                    document.put("FIELD_" + f, new TypeAttribute<>(new LcNoDiacriticsType("value " + f + " " + (d % 10)), key, true));
+                }
+            }
+            documents.add(document);
+            tuples.add(new Tuple3<>(key, document, populate(document)));
+        }
+        evaluation = new JexlEvaluation(QUERIES.get(query), "hitList".equals(arithmetic) ? new HitListArithmetic() : new DefaultArithmetic());
+    }
+    
+    private DatawaveJexlContext populate(Document document) {
+        DatawaveJexlContext context = new DatawaveJexlContext();
+        document.visit(Collections.emptySet(), context);
+        return context;
+    }
+    
+    private boolean apply(Tuple3<Key,Document,DatawaveJexlContext> tuple) {
+        boolean matched = evaluation.apply(tuple);
+        if (matched) {
+            // the hit list arithmetic adds the hits to the document, which would otherwise grow with every invocation
+            tuple.second().remove("HIT_TERM");
+        }
+        return matched;
+    }
+    
+    @Benchmark
+    public void evaluate(Blackhole blackhole) {
+        for (Tuple3<Key,Document,DatawaveJexlContext> tuple : tuples) {
+            blackhole.consume(apply(tuple));
+        }
+    }
+    
+    @Benchmark
+    public void populateAndEvaluate(Blackhole blackhole) {
+        for (Tuple3<Key,Document,DatawaveJexlContext> tuple : tuples) {
+            blackhole.consume(apply(new Tuple3<>(tuple.first(), tuple.second(), populate(tuple.second()))));
+        }
+    }
+}
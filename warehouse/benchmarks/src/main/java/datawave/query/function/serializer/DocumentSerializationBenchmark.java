@@ -0,0 +1,116 @@
+package datawave.query.function.serializer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import datawave.data.type.LcNoDiacriticsType;
+import datawave.data.type.NumberType;
+import datawave.query.DocumentSerialization;
+import datawave.query.attributes.Attribute;
+import datawave.query.attributes.Attributes;
+import datawave.query.attributes.Content;
+import datawave.query.attributes.Document;
+import datawave.query.attributes.Numeric;
+import datawave.query.attributes.TypeAttribute;
+import datawave.query.function.deserializer.DocumentDeserializer;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Serializes a batch of synthetic documents with each {@link DocumentSerialization.ReturnType}, as the QueryIterator does for every result it returns, and
+ * round trips them through the matching deserializer, as the web service does. The documents have a mix of typed, content, numeric and multi-valued
+ * attributes, with the same field names in every document.
+ * <p>
+ * Run with {@code java -jar warehouse/benchmarks/target/benchmarks.jar DocumentSerializationBenchmark -prof gc} to include the allocation rates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DocumentSerializationBenchmark {
+    
+    private static final int DOCUMENTS = 100;
+    
+    @Param({"kryo", "writable", "compact"})
+    public String returnType;
+    
+    /**
+     * the number of fields in each document
+     */
+    @Param({"10", "100"})
+    public int fields;
+    
+    private List<Map.Entry<Key,Document>> documents;
+    private DocumentSerializer serializer;
+    private DocumentDeserializer deserializer;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        documents = new ArrayList<>(DOCUMENTS);
+        for (int d = 0; d < DOCUMENTS; d++) {
+            Key key = new Key("20190101_" + (d % 10), "datatype\u0000" + d + ".uid", "", "A&B", 1234L + d);
+            documents.add(Maps.immutableEntry(key, buildDocument(key, d)));
+        }
+        DocumentSerialization.ReturnType type = DocumentSerialization.ReturnType.valueOf(returnType);
+        serializer = DocumentSerialization.getDocumentSerializer(type);
+        deserializer = DocumentSerialization.getDocumentDeserializer(type);
+    }
+    
+    private Document buildDocument(Key key, int d) {
+        Document document = new Document(key, true);
+        for (int f = 0; f < fields; f++) {
+            String field = "FIELD_" + f;
+            switch (f % 4) {
+                case 0:
+                    document.put(field, new TypeAttribute<>(new LcNoDiacriticsType("value " + d + " " + f), key, true));
+                    break;
+                case 1:
+                    document.put(field, new TypeAttribute<>(new NumberType(Integer.toString(d * 1000 + f)), key, true));
+                    break;
+                case 2:
+                    document.put(field, new Content("content of field " + f + " in document " + d, key, true));
+                    break;
+                default:
+                    document.put(field, new Attributes(Arrays.<Attribute<? extends Comparable<?>>> asList(new Numeric(d, key, true), new Numeric(f, key,
+                                    true)), true));
+            }
+        }
+        return document;
+    }
+    
+    @Benchmark
+    public void serialize(Blackhole blackhole) {
+        for (Map.Entry<Key,Document> document : documents) {
+            blackhole.consume(serializer.apply(document));
+        }
+    }
+    
+    @Benchmark
+    public void roundTrip(Blackhole blackhole) {
+        for (Map.Entry<Key,Document> document : documents) {
+            Map.Entry<Key,Value> serialized = serializer.apply(document);
+            blackhole.consume(deserializer.apply(serialized));
+        }
+    }
+}
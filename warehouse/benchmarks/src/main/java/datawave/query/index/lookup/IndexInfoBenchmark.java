@@ -0,0 +1,80 @@
+package datawave.query.index.lookup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import datawave.query.jexl.JexlNodeFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link IndexInfo#intersect(IndexInfo)} and {@link IndexInfo#union(IndexInfo)}, which combine the global index results of each term of a query for
+ * every shard or day range. The infos either hold document uids, for terms below the uid threshold of the global index, or only a count for shard-only
+ * results.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IndexInfoBenchmark {
+    
+    /**
+     * The number of uids in each info, where 0 means the infos only hold a count
+     */
+    @Param({"0", "20", "1000"})
+    public int uids;
+    
+    /**
+     * The percentage of uids shared by the two infos
+     */
+    @Param({"10", "90"})
+    public int overlap;
+    
+    private IndexInfo left;
+    private IndexInfo right;
+    
+    @Setup
+    public void setup() {
+        int shared = uids * overlap / 100;
+        left = create("FIELD_A", "a", 0);
+        right = create("FIELD_B", "b", uids - shared);
+    }
+    
+    private IndexInfo create(String field, String value, int firstUid) {
+        if (uids == 0) {
+            IndexInfo info = new IndexInfo(-1);
+            info.applyNode(JexlNodeFactory.buildEQNode(field, value));
+            return info;
+        }
+        List<IndexMatch> matches = new ArrayList<>(uids);
+        for (int i = firstUid; i < firstUid + uids; i++) {
+            matches.add(new IndexMatch(String.format("datatype\u0000%08x.%08x.%08x", i * 31, i * 17, i), JexlNodeFactory.buildEQNode(field, value)));
+        }
+        IndexInfo info = new IndexInfo(matches);
+        info.applyNode(JexlNodeFactory.buildEQNode(field, value));
+        return info;
+    }
+    
+    @Benchmark
+    public IndexInfo intersect() {
+        return left.intersect(right);
+    }
+    
+    @Benchmark
+    public IndexInfo union() {
+        return left.union(right);
+    }
+}
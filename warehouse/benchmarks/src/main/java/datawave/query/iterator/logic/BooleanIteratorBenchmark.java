@@ -0,0 +1,208 @@
+package datawave.query.iterator.logic;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import datawave.query.attributes.Document;
+import datawave.query.iterator.NestedIterator;
+import datawave.query.iterator.SeekableIterator;
+
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Iterates the {@link AndIterator} and {@link OrIterator} over field index terms held in in-memory {@link SortedKeyValueIterator}s, as the QueryIterator does
+ * for each shard. Each term matches every n-th document of the shard, so an intersection of a sparse term with dense terms seeks the dense terms for every
+ * match, and a negated term is applied through the {@link NegationFilter}.
+ * <ul>
+ * <li>{@code sparseAnd}: one term matching every 997th document and the rest matching every 2nd, 3rd, ...</li>
+ * <li>{@code denseAnd}: terms matching every 2nd, 3rd, ... document</li>
+ * <li>{@code andNot}: a term matching every 2nd document, excluding the other terms</li>
+ * <li>{@code or}: the union of terms matching every 5th, 6th, ... document</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BooleanIteratorBenchmark {
+    
+    private static final int DOCUMENTS = 100000;
+    private static final int SPARSE = 997;
+    
+    /**
+     * the number of terms in each expression
+     */
+    @Param({"2", "5"})
+    public int terms;
+    
+    // the field index entries of a term for the documents that are multiples of n, by n
+    private final TreeMap<Integer,SortedMap<Key,Value>> termData = new TreeMap<>();
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        termData.put(SPARSE, buildTerm(SPARSE));
+        for (int n = 2; n < 5 + terms; n++) {
+            termData.put(n, buildTerm(n));
+        }
+    }
+    
+    private static SortedMap<Key,Value> buildTerm(int n) {
+        SortedMap<Key,Value> data = new TreeMap<>();
+        Value empty = new Value(new byte[0]);
+        for (int d = 0; d < DOCUMENTS; d += n) {
+            data.put(new Key("20190101_0", String.format("datatype\u0000%08d", d), "FIELD_" + n + "\u0000value"), empty);
+        }
+        return data;
+    }
+    
+    private List<NestedIterator<Key>> leaves(int... multiples) {
+        List<NestedIterator<Key>> leaves = new ArrayList<>(multiples.length);
+        for (int n : multiples) {
+            leaves.add(new SortedMapLeaf(termData.get(n)));
+        }
+        return leaves;
+    }
+    
+    private int[] multiples(int first, int count) {
+        int[] multiples = new int[count];
+        for (int i = 0; i < count; i++) {
+            multiples[i] = first + i;
+        }
+        return multiples;
+    }
+    
+    private static void consume(NestedIterator<Key> iterator, Blackhole blackhole) {
+        iterator.initialize();
+        while (iterator.hasNext()) {
+            blackhole.consume(iterator.next());
+        }
+    }
+    
+    @Benchmark
+    public void sparseAnd(Blackhole blackhole) {
+        List<NestedIterator<Key>> includes = leaves(SPARSE);
+        includes.addAll(leaves(multiples(2, terms - 1)));
+        consume(new AndIterator<>(includes), blackhole);
+    }
+    
+    @Benchmark
+    public void denseAnd(Blackhole blackhole) {
+        consume(new AndIterator<>(leaves(multiples(2, terms))), blackhole);
+    }
+    
+    @Benchmark
+    public void andNot(Blackhole blackhole) {
+        consume(new AndIterator<>(leaves(2), leaves(multiples(3, terms - 1))), blackhole);
+    }
+    
+    @Benchmark
+    public void or(Blackhole blackhole) {
+        consume(new OrIterator<>(leaves(multiples(5, terms)), true), blackhole);
+    }
+    
+    /**
+     * A field index term over an in-memory {@link SortedKeyValueIterator}, returning the row and column family of each entry. Moving the term seeks the
+     * underlying iterator, as moving an index iterator does.
+     */
+    private static class SortedMapLeaf implements NestedIterator<Key>, SeekableIterator {
+        private final SortedKeyValueIterator<Key,Value> source;
+        private final Document document = new Document();
+        private Range range = null;
+        private Key next = null;
+        
+        SortedMapLeaf(SortedMap<Key,Value> data) {
+            this.source = new SortedMapIterator(data);
+        }
+        
+        @Override
+        public void seek(Range range, Collection<ByteSequence> columnFamilies, boolean inclusive) throws IOException {
+            this.range = range;
+            source.seek(range, columnFamilies, inclusive);
+            next = top();
+        }
+        
+        private Key top() {
+            return source.hasTop() ? new Key(source.getTopKey().getRow(), source.getTopKey().getColumnFamily()) : null;
+        }
+        
+        @Override
+        public void initialize() {
+            if (range == null) {
+                try {
+                    seek(new Range(), Collections.emptyList(), false);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+        
+        @Override
+        public Key next() {
+            Key current = next;
+            try {
+                source.next();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            next = top();
+            return current;
+        }
+        
+        @Override
+        public Key move(Key minimum) {
+            try {
+                source.seek(new Range(minimum, true, range.getEndKey(), range.isEndKeyInclusive()), Collections.emptyList(), false);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            next = top();
+            return next == null ? null : next();
+        }
+        
+        @Override
+        public Collection<NestedIterator<Key>> leaves() {
+            return Collections.singletonList(this);
+        }
+        
+        @Override
+        public Collection<NestedIterator<Key>> children() {
+            return Collections.emptyList();
+        }
+        
+        @Override
+        public Document document() {
+            return document;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package datawave.query.util.sortedset;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.accumulo.core.data.Key;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Persists a sorted set to a local file and loads it back, as an ivarator does when its buffer fills and when it merges its files. The entries are the field
+ * index values of the ivarator ({@code bytes}), field index key values ({@code keyValue}), or strings, each of which has its own block codec, and any other
+ * type would fall back to java serialization. The {@code contains} benchmark looks up random entries of a persisted set through the block index.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FileSortedSetBenchmark {
+    
+    private static final int LOOKUPS = 1000;
+    
+    @Param({"bytes", "keyValue", "string"})
+    public String entries;
+    
+    /**
+     * the number of entries in the set
+     */
+    @Param({"10000", "100000"})
+    public int size;
+    
+    private TreeSet<Serializable> set;
+    private List<Serializable> lookups;
+    private FileSortedSet<Serializable> persisted;
+    
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Random random = new Random(size);
+        set = ("bytes".equals(entries) ? new TreeSet<>((a, b) -> new ByteArrayComparator().compare((byte[]) a, (byte[]) b)) : new TreeSet<>());
+        while (set.size() < size) {
+            set.add(entry(random));
+        }
+        List<Serializable> all = new ArrayList<>(set);
+        lookups = new ArrayList<>(LOOKUPS);
+        for (int i = 0; i < LOOKUPS; i++) {
+            lookups.add(all.get(random.nextInt(all.size())));
+        }
+        persisted = new FileSortedSet<>(set, new SortedSetTempFileHandler(), true);
+    }
+    
+    private Serializable entry(Random random) {
+        String value = "value" + random.nextInt(Integer.MAX_VALUE) + "\u0000datatype\u0000" + Long.toHexString(random.nextLong());
+        switch (entries) {
+            case "bytes":
+                return value.getBytes(StandardCharsets.UTF_8);
+            case "keyValue":
+                return new KeyValueSerializable(new Key("20190101_0", "fi\u0000FIELD", value), new byte[0]);
+            default:
+                return value;
+        }
+    }
+    
+    @TearDown(Level.Trial)
+    public void teardown() {
+        persisted.close();
+        persisted.handler.deleteFile();
+    }
+    
+    @Benchmark
+    public void persist(Blackhole blackhole) throws IOException {
+        SortedSetTempFileHandler handler = new SortedSetTempFileHandler();
+        FileSortedSet<Serializable> copy = new FileSortedSet<>(set, handler, true);
+        blackhole.consume(copy);
+        copy.close();
+        handler.deleteFile();
+    }
+    
+    @Benchmark
+    public void load(Unloaded unloaded, Blackhole blackhole) throws IOException, ClassNotFoundException {
+        unloaded.set.load();
+        blackhole.consume(unloaded.set.size());
+    }
+    
+    @Benchmark
+    public void contains(Blackhole blackhole) {
+        for (Serializable lookup : lookups) {
+            blackhole.consume(persisted.contains(lookup));
+        }
+    }
+    
+    /**
+     * A newly persisted copy of the set for each invocation, as loading a set deletes its file
+     */
+    @State(Scope.Thread)
+    public static class Unloaded {
+        private FileSortedSet<Serializable> set;
+        
+        @Setup(Level.Invocation)
+        public void setup(FileSortedSetBenchmark benchmark) throws IOException {
+            set = new FileSortedSet<>(benchmark.set, new SortedSetTempFileHandler(), true);
+        }
+        
+        @TearDown(Level.Invocation)
+        public void teardown() {
+            set.close();
+            set.handler.deleteFile();
+        }
+    }
+}
@@ -0,0 +1,500 @@
+package datawave.iterators.filter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.regex.Pattern;
+
+import datawave.iterators.filter.ageoff.AppliedRule;
+import datawave.iterators.filter.ageoff.FilterRule;
+
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * The age off rules of a rule file, compiled so that the column family, column qualifier and column visibility regex rules are evaluated with one pass over
+ * each key component rather than one regex per rule. Consecutive rules of those types are compiled together: the rules whose pattern is a plain literal are
+ * matched with a single byte automaton per key component, and the remaining patterns of a component are only tried when a combined pattern of all of them
+ * matches. Any other rule is evaluated in its place in the rule order, as before, and the first rule that applies to a key still decides whether it is kept.
+ * <p>
+ * A matcher is immutable and is shared by all of the iterators using the same loaded rules. The per iterator copies of the rules, which hold the age off
+ * period of the scan, are bound with {@link #bind(Collection)}.
+ */
+class AgeOffRuleMatcher {
+    
+    private static final int NO_MATCH = Integer.MAX_VALUE;
+    
+    private static final int COLUMN_FAMILY = 0;
+    private static final int COLUMN_QUALIFIER = 1;
+    private static final int COLUMN_VISIBILITY = 2;
+    private static final int NUM_COMPONENTS = 3;
+    
+    // the characters that make a pattern more than a literal
+    private static final String REGEX_CHARACTERS = "\\^$.|?*+()[]{}";
+    
+    // the matchers of the rules loaded from each rule file, until the rules are reloaded
+    private static final LoadingCache<Collection<FilterRule>,AgeOffRuleMatcher> matchers = CacheBuilder.newBuilder().weakKeys()
+                    .build(new CacheLoader<Collection<FilterRule>,AgeOffRuleMatcher>() {
+                        @Override
+                        public AgeOffRuleMatcher load(Collection<FilterRule> rules) {
+                            return compile(rules);
+                        }
+                    });
+    
+    private final Class<?>[] ruleClasses;
+    private final Stage[] stages;
+    
+    private AgeOffRuleMatcher(Class<?>[] ruleClasses, Stage[] stages) {
+        this.ruleClasses = ruleClasses;
+        this.stages = stages;
+    }
+    
+    /**
+     * Get the matcher of a set of loaded rules, compiling the rules the first time they are seen
+     *
+     * @param rules
+     *            the rules loaded from a rule file
+     * @return the matcher of the rules
+     */
+    static AgeOffRuleMatcher get(Collection<FilterRule> rules) {
+        return matchers.getUnchecked(rules);
+    }
+    
+    /**
+     * Compile a list of rules
+     *
+     * @param rules
+     *            the rules, in the order they are applied
+     * @return the matcher of the rules
+     */
+    static AgeOffRuleMatcher compile(Collection<? extends FilterRule> rules) {
+        Class<?>[] ruleClasses = new Class<?>[rules.size()];
+        List<Stage> stages = new ArrayList<>();
+        List<String>[] patterns = newPatternLists();
+        int first = 0;
+        int index = 0;
+        for (FilterRule rule : rules) {
+            ruleClasses[index] = rule.getClass();
+            int component = getComponent(rule);
+            if (component < 0) {
+                if (index > first) {
+                    stages.add(new CompiledStage(first, patterns));
+                    patterns = newPatternLists();
+                }
+                stages.add(new DelegateStage(index));
+                first = index + 1;
+            } else {
+                for (int c = 0; c < NUM_COMPONENTS; c++) {
+                    patterns[c].add(c == component ? ((RegexFilterBase) rule).getPatternString() : null);
+                }
+            }
+            index++;
+        }
+        if (index > first) {
+            stages.add(new CompiledStage(first, patterns));
+        }
+        return new AgeOffRuleMatcher(ruleClasses, stages.toArray(new Stage[stages.size()]));
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static List<String>[] newPatternLists() {
+        List<String>[] patterns = new List[NUM_COMPONENTS];
+        for (int c = 0; c < NUM_COMPONENTS; c++) {
+            patterns[c] = new ArrayList<>();
+        }
+        return patterns;
+    }
+    
+    /**
+     * The key component matched by a rule, if the rule is one that can be compiled. Subclasses may match differently, so only the exact classes are compiled.
+     */
+    private static int getComponent(FilterRule rule) {
+        Class<?> ruleClass = rule.getClass();
+        if (ruleClass == ColumnFamilyRegexFilter.class) {
+            return COLUMN_FAMILY;
+        } else if (ruleClass == ColumnQualifierRegexFilter.class) {
+            return COLUMN_QUALIFIER;
+        } else if (ruleClass == ColumnVisibilityRegexFilter.class) {
+            return COLUMN_VISIBILITY;
+        } else {
+            return -1;
+        }
+    }
+    
+    /**
+     * Bind the copies of the rules made for an iterator
+     *
+     * @param copies
+     *            the copies of the rules this matcher was compiled from
+     * @return the rules of the iterator, or null if the copies are not of the compiled rules
+     */
+    Rules bind(Collection<AppliedRule> copies) {
+        if (copies.size() != ruleClasses.length) {
+            return null;
+        }
+        AppliedRule[] rules = copies.toArray(new AppliedRule[copies.size()]);
+        long[] cutOffs = new long[rules.length];
+        for (int i = 0; i < rules.length; i++) {
+            if (rules[i] == null || rules[i].getClass() != ruleClasses[i]) {
+                return null;
+            }
+            if (rules[i] instanceof RegexFilterBase) {
+                cutOffs[i] = ((RegexFilterBase) rules[i]).getCutOffMilliseconds();
+            }
+        }
+        return new Rules(this, copies, rules, cutOffs);
+    }
+    
+    /**
+     * The rules of an iterator, applied with a shared matcher
+     */
+    static class Rules {
+        private final AgeOffRuleMatcher matcher;
+        private final Collection<AppliedRule> copies;
+        private final AppliedRule[] rules;
+        private final long[] cutOffs;
+        
+        private Rules(AgeOffRuleMatcher matcher, Collection<AppliedRule> copies, AppliedRule[] rules, long[] cutOffs) {
+            this.matcher = matcher;
+            this.copies = copies;
+            this.rules = rules;
+            this.cutOffs = cutOffs;
+        }
+        
+        /**
+         * @param filterList
+         *            a list of rules
+         * @return whether these are the rules in the list
+         */
+        boolean isBoundTo(Collection<AppliedRule> filterList) {
+            if (filterList == null || filterList.size() != rules.length) {
+                return false;
+            }
+            if (filterList == copies) {
+                return true;
+            }
+            Iterator<AppliedRule> it = filterList.iterator();
+            for (AppliedRule rule : rules) {
+                if (it.next() != rule) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        Rules rebind(Collection<AppliedRule> filterList) {
+            return new Rules(matcher, filterList, rules, cutOffs);
+        }
+        
+        /**
+         * Apply the first rule that matches the key
+         *
+         * @param k
+         *            the key
+         * @param v
+         *            the value
+         * @param defaultCutOff
+         *            the cut off used when no rule applies to the key
+         * @return whether the key is kept
+         */
+        boolean accept(Key k, Value v, long defaultCutOff) {
+            KeyFields fields = null;
+            for (Stage stage : matcher.stages) {
+                if (stage instanceof DelegateStage) {
+                    AppliedRule rule = rules[((DelegateStage) stage).index];
+                    boolean acceptFlag = rule.accept(k, v);
+                    if (rule.isFilterRuleApplied()) {
+                        return acceptFlag;
+                    }
+                } else {
+                    if (fields == null) {
+                        fields = new KeyFields(k);
+                    }
+                    int index = ((CompiledStage) stage).match(fields);
+                    if (index != NO_MATCH) {
+                        return k.getTimestamp() > cutOffs[index];
+                    }
+                }
+            }
+            return k.getTimestamp() > defaultCutOff;
+        }
+    }
+    
+    /**
+     * The key components of a key, as matched by the compiled rules. The strings are only decoded if a regex needs them.
+     */
+    private static class KeyFields {
+        private final Key key;
+        private final String[] strings = new String[NUM_COMPONENTS];
+        
+        KeyFields(Key key) {
+            this.key = key;
+        }
+        
+        byte[] getBytes(int component, int[] bounds) {
+            ByteSequence bytes;
+            switch (component) {
+                case COLUMN_FAMILY:
+                    bytes = key.getColumnFamilyData();
+                    break;
+                case COLUMN_QUALIFIER:
+                    bytes = key.getColumnQualifierData();
+                    break;
+                default:
+                    // ColumnVisibilityRegexFilter matches the whole backing array
+                    byte[] backing = key.getColumnVisibilityData().getBackingArray();
+                    bounds[0] = 0;
+                    bounds[1] = backing.length;
+                    return backing;
+            }
+            bounds[0] = bytes.offset();
+            bounds[1] = bytes.offset() + bytes.length();
+            return bytes.getBackingArray();
+        }
+        
+        String getString(int component) {
+            if (strings[component] == null) {
+                // the same strings as the getKeyField of each rule
+                switch (component) {
+                    case COLUMN_FAMILY:
+                        strings[component] = key.getColumnFamily().toString();
+                        break;
+                    case COLUMN_QUALIFIER:
+                        strings[component] = key.getColumnQualifier().toString();
+                        break;
+                    default:
+                        strings[component] = new String(key.getColumnVisibilityData().getBackingArray());
+                }
+            }
+            return strings[component];
+        }
+    }
+    
+    private interface Stage {}
+    
+    /**
+     * A rule that is not compiled, applied by its copy
+     */
+    private static class DelegateStage implements Stage {
+        private final int index;
+        
+        DelegateStage(int index) {
+            this.index = index;
+        }
+    }
+    
+    /**
+     * A run of consecutive regex rules, which matches the first of the rules to match a key
+     */
+    private static class CompiledStage implements Stage {
+        private final ComponentMatcher[] components;
+        
+        CompiledStage(int first, List<String>[] patterns) {
+            List<ComponentMatcher> matchers = new ArrayList<>();
+            for (int c = 0; c < NUM_COMPONENTS; c++) {
+                ComponentMatcher matcher = ComponentMatcher.create(c, first, patterns[c]);
+                if (matcher != null) {
+                    matchers.add(matcher);
+                }
+            }
+            this.components = matchers.toArray(new ComponentMatcher[matchers.size()]);
+        }
+        
+        int match(KeyFields fields) {
+            int best = NO_MATCH;
+            int[] bounds = new int[2];
+            // the literals first, as they may rule out the regexes
+            for (ComponentMatcher component : components) {
+                best = Math.min(best, component.matchLiterals(fields, bounds, best));
+            }
+            for (ComponentMatcher component : components) {
+                best = Math.min(best, component.matchRegexes(fields, best));
+            }
+            return best;
+        }
+    }
+    
+    /**
+     * The patterns of the rules of a stage for one key component
+     */
+    private static class ComponentMatcher {
+        private final int component;
+        
+        // an Aho-Corasick automaton of the literal patterns, with the first rule matched by each state
+        private final int[] transitions;
+        private final int[] output;
+        private final int firstLiteral;
+        
+        // the regex patterns, by rule index
+        private final int[] regexIndexes;
+        private final Pattern[] regexes;
+        private final Pattern combined;
+        
+        private ComponentMatcher(int component, int[] transitions, int[] output, int firstLiteral, int[] regexIndexes, Pattern[] regexes, Pattern combined) {
+            this.component = component;
+            this.transitions = transitions;
+            this.output = output;
+            this.firstLiteral = firstLiteral;
+            this.regexIndexes = regexIndexes;
+            this.regexes = regexes;
+            this.combined = combined;
+        }
+        
+        static ComponentMatcher create(int component, int first, List<String> patterns) {
+            List<byte[]> literals = new ArrayList<>();
+            List<Integer> literalIndexes = new ArrayList<>();
+            List<Integer> regexIndexes = new ArrayList<>();
+            List<Pattern> regexes = new ArrayList<>();
+            StringBuilder combined = new StringBuilder();
+            boolean combinable = true;
+            for (int i = 0; i < patterns.size(); i++) {
+                String pattern = patterns.get(i);
+                if (pattern == null) {
+                    continue;
+                }
+                if (isLiteral(pattern)) {
+                    literals.add(pattern.getBytes(StandardCharsets.US_ASCII));
+                    literalIndexes.add(first + i);
+                } else {
+                    regexIndexes.add(first + i);
+                    regexes.add(Pattern.compile(pattern));
+                    combined.append(combined.length() == 0 ? "" : "|").append("(?:").append(pattern).append(')');
+                    // group numbers would change in the combined pattern
+                    combinable &= !pattern.matches("(?s).*\\\\([0-9]|k<).*");
+                }
+            }
+            if (literals.isEmpty() && regexes.isEmpty()) {
+                return null;
+            }
+            
+            int[] transitions = null;
+            int[] output = null;
+            if (!literals.isEmpty()) {
+                int states = 1;
+                for (byte[] literal : literals) {
+                    states += literal.length;
+                }
+                transitions = new int[states * 256];
+                output = new int[states];
+                buildAutomaton(literals, literalIndexes, transitions, output);
+            }
+            
+            return new ComponentMatcher(component, transitions, output, literalIndexes.isEmpty() ? NO_MATCH : literalIndexes.get(0), toArray(regexIndexes),
+                            regexes.toArray(new Pattern[regexes.size()]), combinable && regexes.size() > 1 ? Pattern.compile(combined.toString()) : null);
+        }
+        
+        private static boolean isLiteral(String pattern) {
+            if (pattern.isEmpty()) {
+                return false;
+            }
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                // only printable ascii, which decodes to the same characters as its bytes
+                if (c < 0x20 || c > 0x7e || REGEX_CHARACTERS.indexOf(c) >= 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private static void buildAutomaton(List<byte[]> literals, List<Integer> indexes, int[] transitions, int[] output) {
+            Arrays.fill(transitions, -1);
+            Arrays.fill(output, NO_MATCH);
+            
+            // the trie of the literals
+            int states = 1;
+            for (int l = 0; l < literals.size(); l++) {
+                int state = 0;
+                for (byte b : literals.get(l)) {
+                    int t = state * 256 + (b & 0xff);
+                    if (transitions[t] < 0) {
+                        transitions[t] = states++;
+                    }
+                    state = transitions[t];
+                }
+                output[state] = Math.min(output[state], indexes.get(l));
+            }
+            
+            // breadth first, complete the transitions with those of the failure state and merge its output
+            int[] failure = new int[states];
+            Queue<Integer> queue = new ArrayDeque<>();
+            for (int b = 0; b < 256; b++) {
+                int next = transitions[b];
+                if (next < 0) {
+                    transitions[b] = 0;
+                } else {
+                    failure[next] = 0;
+                    queue.add(next);
+                }
+            }
+            while (!queue.isEmpty()) {
+                int state = queue.remove();
+                output[state] = Math.min(output[state], output[failure[state]]);
+                for (int b = 0; b < 256; b++) {
+                    int t = state * 256 + b;
+                    int next = transitions[t];
+                    int fallback = transitions[failure[state] * 256 + b];
+                    if (next < 0) {
+                        transitions[t] = fallback;
+                    } else {
+                        failure[next] = fallback;
+                        queue.add(next);
+                    }
+                }
+            }
+        }
+        
+        private static int[] toArray(List<Integer> values) {
+            int[] array = new int[values.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = values.get(i);
+            }
+            return array;
+        }
+        
+        int matchLiterals(KeyFields fields, int[] bounds, int best) {
+            if (transitions == null || firstLiteral >= best) {
+                return NO_MATCH;
+            }
+            byte[] bytes = fields.getBytes(component, bounds);
+            int found = NO_MATCH;
+            int state = 0;
+            for (int i = bounds[0]; i < bounds[1]; i++) {
+                state = transitions[state * 256 + (bytes[i] & 0xff)];
+                if (output[state] < found) {
+                    found = output[state];
+                    if (found == firstLiteral) {
+                        break;
+                    }
+                }
+            }
+            return found;
+        }
+        
+        int matchRegexes(KeyFields fields, int best) {
+            if (regexes.length == 0 || regexIndexes[0] >= best) {
+                return NO_MATCH;
+            }
+            String field = fields.getString(component);
+            if (combined != null && !combined.matcher(field).find()) {
+                return NO_MATCH;
+            }
+            for (int i = 0; i < regexes.length && regexIndexes[i] < best; i++) {
+                if (regexes[i].matcher(field).find()) {
+                    return regexIndexes[i];
+                }
+            }
+            return NO_MATCH;
+        }
+    }
+}
@@ -28,7 +28,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -119,6 +118,9 @@ public class ConfigurableAgeOffFilter extends Filter implements OptionDescriber
     
     protected Collection<AppliedRule> filterList;
     
+    // the filter list applied with the compiled rules of the rule file
+    private AgeOffRuleMatcher.Rules compiledRules;
+    
     protected long cutOffDateMillis;
     protected long scanStart;
     
@@ -168,22 +170,13 @@ public class ConfigurableAgeOffFilter extends Filter implements OptionDescriber
         if (timeStamp > this.shortCircuitDateMillis)
             return true;
         
-        boolean acceptFlag = false;
-        boolean filterRuleApplied = false;
-        
-        Iterator<AppliedRule> iter = this.filterList.iterator();
-        
-        while ((!filterRuleApplied) && iter.hasNext()) {
-            AppliedRule filter = iter.next();
-            acceptFlag = filter.accept(k, v);
-            filterRuleApplied = filter.isFilterRuleApplied();
+        // the filter list may have been set directly, rather than copied from the rule file
+        if (this.compiledRules == null || !this.compiledRules.isBoundTo(this.filterList)) {
+            this.compiledRules = AgeOffRuleMatcher.compile(this.filterList).bind(this.filterList);
         }
         
-        // We went through all of the defined filter rules
-        // and none were used, let's apply the default TTL
-        if (!filterRuleApplied) {
-            acceptFlag = timeStamp > this.cutOffDateMillis;
-        }
+        // the first rule that matches decides, and if none match, let's apply the default TTL
+        boolean acceptFlag = this.compiledRules.accept(k, v, this.cutOffDateMillis);
         if (log.isTraceEnabled()) {
             log.trace("acceptFlag = " + acceptFlag);
         }
@@ -207,6 +200,10 @@ public class ConfigurableAgeOffFilter extends Filter implements OptionDescriber
         
         this.filterList = Lists.newArrayList(other.filterList);
         
+        if (other.compiledRules != null && other.compiledRules.isBoundTo(other.filterList)) {
+            this.compiledRules = other.compiledRules.rebind(this.filterList);
+        }
+        
         this.scanStart = other.scanStart;
         
         this.cutOffDateMillis = other.cutOffDateMillis;
@@ -416,6 +413,8 @@ public class ConfigurableAgeOffFilter extends Filter implements OptionDescriber
                     // This is used to calculate the AgeOffPeriod for all of the rules
                     filterList.add((AppliedRule) rule.deepCopy(this.scanStart));
                 }
+                // the rules are compiled once per load of the rule file, and shared by all of the iterators
+                compiledRules = AgeOffRuleMatcher.get(rules).bind(filterList);
             }
             
         } catch (ExecutionException e) {
@@ -128,6 +128,20 @@ public abstract class RegexFilterBase extends AppliedRule {
         ruleApplied = false;
     }
     
+    /**
+     * @return the regex of this rule
+     */
+    String getPatternString() {
+        return patternStr;
+    }
+    
+    /**
+     * @return the cut off of this rule for the current scan
+     */
+    long getCutOffMilliseconds() {
+        return getPeriod().getCutOffMilliseconds();
+    }
+    
     @Override
     public boolean isFilterRuleApplied() {
         return ruleApplied;
@@ -0,0 +1,137 @@
+package datawave.iterators.filter;
+
+import datawave.iterators.filter.ageoff.AppliedRule;
+import datawave.iterators.filter.ageoff.FilterOptions;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class AgeOffRuleMatcherTest {
+    
+    private static final long MILLIS_IN_DAY = 1000L * 60 * 60 * 24L;
+    private static final Value VALUE = new Value();
+    
+    private final long scanStart = System.currentTimeMillis();
+    
+    @Test
+    public void testFirstMatchingRuleApplied() {
+        List<AppliedRule> rules = new ArrayList<>();
+        rules.add(rule(new ColumnQualifierRegexFilter(), "baz", 10));
+        rules.add(rule(new ColumnFamilyRegexFilter(), "^edge", 20));
+        rules.add(rule(new ColumnFamilyRegexFilter(), "edge", 5));
+        rules.add(rule(new ColumnVisibilityRegexFilter(), "PRIVATE", 50));
+        AgeOffRuleMatcher.Rules compiled = AgeOffRuleMatcher.compile(rules).bind(rules);
+        long defaultCutOff = daysAgo(30);
+        
+        // the qualifier rule comes before the family rules
+        assertEquals(true, compiled.accept(key("edge", "foobaz", "", daysAgo(9)), VALUE, defaultCutOff));
+        assertEquals(false, compiled.accept(key("edge", "foobaz", "", daysAgo(11)), VALUE, defaultCutOff));
+        // the anchored regex only applies at the start, leaving the literal
+        assertEquals(true, compiled.accept(key("edgeA", "q", "", daysAgo(19)), VALUE, defaultCutOff));
+        assertEquals(false, compiled.accept(key("Aedge", "q", "", daysAgo(6)), VALUE, defaultCutOff));
+        assertEquals(true, compiled.accept(key("Aedge", "q", "", daysAgo(4)), VALUE, defaultCutOff));
+        // the visibility rule
+        assertEquals(true, compiled.accept(key("a", "q", "PRIVATE", daysAgo(40)), VALUE, defaultCutOff));
+        assertEquals(false, compiled.accept(key("a", "q", "PRIVATE", daysAgo(51)), VALUE, defaultCutOff));
+        // no rule, so the default
+        assertEquals(true, compiled.accept(key("a", "q", "PUBLIC", daysAgo(29)), VALUE, defaultCutOff));
+        assertEquals(false, compiled.accept(key("a", "q", "PUBLIC", daysAgo(31)), VALUE, defaultCutOff));
+    }
+    
+    @Test
+    public void testMatchesSequentialRules() {
+        List<AppliedRule> rules = new ArrayList<>();
+        rules.add(rule(new ColumnFamilyRegexFilter(), "ab", 3));
+        rules.add(rule(new ColumnQualifierRegexFilter(), "b.c", 5));
+        rules.add(rule(new ColumnFamilyRegexFilter(), "bca", 7));
+        rules.add(rule(new ConfigurableAgeOffFilterTest.TestRowFilter(), "cc", 9));
+        rules.add(rule(new ColumnFamilyRegexFilter(), "(a)\\1", 11));
+        rules.add(rule(new ColumnQualifierRegexFilter(), "^c", 13));
+        rules.add(rule(new ColumnQualifierRegexFilter(), "c$", 15));
+        rules.add(rule(new ColumnFamilyRegexFilter(), "b", 17));
+        rules.add(rule(new ColumnVisibilityRegexFilter(), "A&B", 19));
+        rules.add(rule(new ColumnVisibilityRegexFilter(), "C|D", 21));
+        rules.add(rule(new ColumnQualifierRegexFilter(), "a", 23));
+        AgeOffRuleMatcher.Rules compiled = AgeOffRuleMatcher.compile(rules).bind(rules);
+        long defaultCutOff = daysAgo(25);
+        
+        Random random = new Random(7);
+        String[] visibilities = {"", "A", "A&B", "C", "D", "B&A", "A&B|C"};
+        for (int i = 0; i < 20000; i++) {
+            Key k = key(randomString(random), randomString(random), randomString(random), visibilities[random.nextInt(visibilities.length)],
+                            daysAgo(random.nextInt(28)) + 1000);
+            assertEquals(k.toString(), sequential(rules, k, defaultCutOff), compiled.accept(k, VALUE, defaultCutOff));
+        }
+    }
+    
+    @Test
+    public void testBind() {
+        List<AppliedRule> rules = new ArrayList<>();
+        rules.add(rule(new ColumnFamilyRegexFilter(), "ab", 3));
+        rules.add(rule(new ColumnQualifierRegexFilter(), "b.c", 5));
+        AgeOffRuleMatcher matcher = AgeOffRuleMatcher.compile(rules);
+        AgeOffRuleMatcher.Rules compiled = matcher.bind(rules);
+        assertNotNull(compiled);
+        
+        List<AppliedRule> copy = new ArrayList<>(rules);
+        assertEquals(true, compiled.isBoundTo(copy));
+        copy.set(1, rule(new ColumnQualifierRegexFilter(), "b.c", 5));
+        assertEquals(false, compiled.isBoundTo(copy));
+        
+        // the rules must be copies of the compiled rules
+        List<AppliedRule> others = new ArrayList<>();
+        others.add(rule(new ColumnQualifierRegexFilter(), "ab", 3));
+        others.add(rule(new ColumnQualifierRegexFilter(), "b.c", 5));
+        assertNull(matcher.bind(others));
+        assertNull(matcher.bind(rules.subList(0, 1)));
+    }
+    
+    private static boolean sequential(Collection<AppliedRule> rules, Key k, long defaultCutOff) {
+        for (AppliedRule rule : rules) {
+            boolean acceptFlag = rule.accept(k, VALUE);
+            if (rule.isFilterRuleApplied()) {
+                return acceptFlag;
+            }
+        }
+        return k.getTimestamp() > defaultCutOff;
+    }
+    
+    private static String randomString(Random random) {
+        StringBuilder builder = new StringBuilder();
+        int length = random.nextInt(6);
+        for (int i = 0; i < length; i++) {
+            builder.append((char) ('a' + random.nextInt(3)));
+        }
+        return builder.toString();
+    }
+    
+    private AppliedRule rule(AppliedRule inner, String pattern, int ttlDays) {
+        FilterOptions filterOpts = new FilterOptions();
+        filterOpts.setOption(AgeOffConfigParams.MATCHPATTERN, pattern);
+        filterOpts.setTTL(ttlDays);
+        filterOpts.setTTLUnits(AgeOffTtlUnits.DAYS);
+        inner.init(filterOpts);
+        return (AppliedRule) inner.deepCopy(scanStart);
+    }
+    
+    private long daysAgo(int n) {
+        return scanStart - (MILLIS_IN_DAY * n);
+    }
+    
+    private static Key key(String cf, String cq, String cv, long ts) {
+        return key("row", cf, cq, cv, ts);
+    }
+    
+    private static Key key(String row, String cf, String cq, String cv, long ts) {
+        return new Key(row, cf, cq, cv, ts);
+    }
+}
@@ -84,6 +84,14 @@ public class TokenizationHelper {
     public static final String TOKENIZER_TIME_THRESHOLD_NAMES = ".tokenizer.time.threshold.names";
     private String[] tokenizerTimeThresholdNames = new String[0];
     
+    // the number of threads used to tokenize the fields of an event in parallel, or 0 to tokenize them on the calling thread
+    public static final String TOKENIZER_THREADS = ".tokenizer.threads";
+    private int tokenizerThreads = 0;
+    
+    // the minimum length of a field for it to be handed to a tokenizer thread, shorter fields are tokenized on the calling thread
+    public static final String TOKENIZER_THREADS_MIN_LENGTH = ".tokenizer.threads.min.length";
+    private int tokenizerThreadsMinLength = 4096;
+    
     public static final String STOP_WORD_LIST = ".stopword.list.file";
     private String stopWordList = "stopwords.txt";
     
@@ -159,6 +167,8 @@ public class TokenizationHelper {
         tokenizerTimeWarnThresholdMsec = conf.getLong(helper.getType().typeName() + TOKENIZER_TIME_WARN_MSEC, tokenizerTimeWarnThresholdMsec);
         tokenizerTimeErrorThresholdMsec = conf.getLong(helper.getType().typeName() + TOKENIZER_TIME_ERROR_MSEC, tokenizerTimeErrorThresholdMsec);
         interFieldPositionIncrement = conf.getInt(helper.getType().typeName() + INTERFIELD_POSITION_INCREMENT, interFieldPositionIncrement);
+        tokenizerThreads = conf.getInt(helper.getType().typeName() + TOKENIZER_THREADS, tokenizerThreads);
+        tokenizerThreadsMinLength = conf.getInt(helper.getType().typeName() + TOKENIZER_THREADS_MIN_LENGTH, tokenizerThreadsMinLength);
         
         final String nameProp = helper.getType().typeName() + TOKENIZER_TIME_THRESHOLD_NAMES;
         final String threshProp = helper.getType().typeName() + TOKENIZER_TIME_THRESHOLDS_MSEC;
@@ -215,6 +225,14 @@ public class TokenizationHelper {
         return tokenizerTimeThresholdNames;
     }
     
+    public int getTokenizerThreads() {
+        return tokenizerThreads;
+    }
+    
+    public int getTokenizerThreadsMinLength() {
+        return tokenizerThreadsMinLength;
+    }
+    
     public String getStopWordList() {
         return stopWordList;
     }
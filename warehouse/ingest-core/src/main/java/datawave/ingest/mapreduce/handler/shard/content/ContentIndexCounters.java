@@ -188,4 +188,38 @@ public class ContentIndexCounters {
             }
         }
     }
+    
+    /**
+     * Adds the counts of another set of counters to these counters and resets them, such as when gathering the counts of a tokenizer thread.
+     * 
+     * @param other
+     *            the counters to add
+     * @param reporter
+     *            the reporter to flush any counters that exceed the buffer size to
+     */
+    public void add(ContentIndexCounters other, StatusReporter reporter) {
+        for (Entry<String,Map<String,AtomicInteger>> countEntry : other.counts.entrySet()) {
+            String groupName = countEntry.getKey();
+            for (Entry<String,AtomicInteger> groupEntry : countEntry.getValue().entrySet()) {
+                int value = groupEntry.getValue().getAndSet(0);
+                if (value > 0) {
+                    Map<String,AtomicInteger> group = counts.get(groupName);
+                    if (group == null) {
+                        group = new HashMap<>();
+                        counts.put(groupName, group);
+                    }
+                    
+                    AtomicInteger val = group.get(groupEntry.getKey());
+                    if (val == null) {
+                        group.put(groupEntry.getKey(), new AtomicInteger(value));
+                    } else {
+                        if (val.get() > bufferSize && reporter != null) {
+                            reporter.getCounter(groupName, groupEntry.getKey()).increment(val.getAndSet(0));
+                        }
+                        val.addAndGet(value);
+                    }
+                }
+            }
+        }
+    }
 }
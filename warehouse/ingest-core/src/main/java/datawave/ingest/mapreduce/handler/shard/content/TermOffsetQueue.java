@@ -0,0 +1,319 @@
+package datawave.ingest.mapreduce.handler.shard.content;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+import datawave.ingest.mapreduce.handler.shard.content.BoundedOffsetQueue.OffsetList;
+import datawave.ingest.protobuf.TermWeight;
+
+import com.google.protobuf.CodedOutputStream;
+
+/**
+ * A bounded offset queue of int offsets. Each term is given an id the first time it is seen, and the offsets of the term are kept in a growable int array
+ * rather than a list of boxed integers. The terms are kept in buckets by their number of offsets, so the term with the fewest offsets is found without a
+ * priority queue, which would need to remove and re-add the term on every offset.
+ * <p>
+ * The offset lists returned by {@link #addOffset(TermAndZone, Integer)} and {@link #offsets()} are views of the int arrays, which
+ * {@link #toTermWeightInfo(List)} writes directly as a {@link TermWeight.Info}. The views of {@link #offsets()} are only valid until the queue is next
+ * modified.
+ */
+public class TermOffsetQueue implements OffsetQueue<Integer> {
+    
+    private static final int INITIAL_OFFSETS = 4;
+    
+    // the largest offset array kept for reuse when the queue is cleared
+    private static final int MAX_REUSED_OFFSETS = 64;
+    
+    private static final int NONE = -1;
+    
+    // the max size
+    private final int maxNumOffsets;
+    
+    // the current size in terms of offsets (i.e. not in terms of terms)
+    private int numOffsets = 0;
+    
+    // the id of each term
+    private final Map<TermAndZone,Integer> ids;
+    
+    // the term, offsets and number of offsets by id, where a term without offsets has been removed
+    private TermAndZone[] terms;
+    private int[][] offsets;
+    private int[] sizes;
+    private int numIds = 0;
+    
+    // the ids of removed terms, available for reuse
+    private int[] freeIds;
+    private int numFreeIds = 0;
+    
+    // the terms with each number of offsets, as doubly linked lists of ids
+    private int[] buckets;
+    private int[] next;
+    private int[] prev;
+    
+    // no bucket smaller than this holds a term
+    private int minSize = 1;
+    
+    public TermOffsetQueue(int maxNumOffsets) {
+        this.maxNumOffsets = maxNumOffsets;
+        int capacity = Math.max(16, maxNumOffsets / 10);
+        this.ids = new HashMap<>(capacity);
+        this.terms = new TermAndZone[capacity];
+        this.offsets = new int[capacity][];
+        this.sizes = new int[capacity];
+        this.freeIds = new int[capacity];
+        this.next = new int[capacity];
+        this.prev = new int[capacity];
+        this.buckets = new int[16];
+        Arrays.fill(this.buckets, NONE);
+    }
+    
+    @Override
+    public int size() {
+        return numOffsets;
+    }
+    
+    public int getCapacity() {
+        return maxNumOffsets;
+    }
+    
+    @Override
+    public OffsetList<Integer> addOffset(TermAndZone termAndZone, Integer offset) {
+        return addOffset(termAndZone, offset.intValue());
+    }
+    
+    /**
+     * Add an offset. If this addition pushes the queue past its limit, then the term with the fewest offsets is removed and returned.
+     *
+     * @param termAndZone
+     * @param offset
+     * @return The removed overflow entry. Null if the queue is not full yet.
+     */
+    public OffsetList<Integer> addOffset(TermAndZone termAndZone, int offset) {
+        Integer existing = ids.get(termAndZone);
+        int id;
+        if (existing == null) {
+            id = newId(termAndZone);
+            minSize = 1;
+        } else {
+            id = existing;
+            unlink(id);
+        }
+        
+        int size = sizes[id];
+        int[] termOffsets = offsets[id];
+        if (size == termOffsets.length) {
+            termOffsets = Arrays.copyOf(termOffsets, size * 2);
+            offsets[id] = termOffsets;
+        }
+        termOffsets[size] = offset;
+        sizes[id] = size + 1;
+        link(id);
+        
+        numOffsets++;
+        if (numOffsets > maxNumOffsets) {
+            while (buckets[minSize] == NONE) {
+                minSize++;
+            }
+            int smallest = buckets[minSize];
+            OffsetList<Integer> list = new OffsetList<>();
+            list.termAndZone = terms[smallest];
+            list.offsets = new Offsets(offsets[smallest], sizes[smallest]);
+            numOffsets -= sizes[smallest];
+            // the evicted array belongs to the returned list
+            offsets[smallest] = null;
+            remove(smallest);
+            return list;
+        } else {
+            return null;
+        }
+    }
+    
+    private int newId(TermAndZone termAndZone) {
+        int id;
+        if (numFreeIds > 0) {
+            id = freeIds[--numFreeIds];
+        } else {
+            if (numIds == terms.length) {
+                int capacity = numIds * 2;
+                terms = Arrays.copyOf(terms, capacity);
+                offsets = Arrays.copyOf(offsets, capacity);
+                sizes = Arrays.copyOf(sizes, capacity);
+                freeIds = Arrays.copyOf(freeIds, capacity);
+                next = Arrays.copyOf(next, capacity);
+                prev = Arrays.copyOf(prev, capacity);
+            }
+            id = numIds++;
+        }
+        terms[id] = termAndZone;
+        sizes[id] = 0;
+        if (offsets[id] == null) {
+            offsets[id] = new int[INITIAL_OFFSETS];
+        }
+        ids.put(termAndZone, id);
+        return id;
+    }
+    
+    private void remove(int id) {
+        unlink(id);
+        ids.remove(terms[id]);
+        terms[id] = null;
+        sizes[id] = 0;
+        freeIds[numFreeIds++] = id;
+    }
+    
+    private void link(int id) {
+        int size = sizes[id];
+        if (size >= buckets.length) {
+            int length = buckets.length;
+            buckets = Arrays.copyOf(buckets, Math.max(size + 1, length * 2));
+            Arrays.fill(buckets, length, buckets.length, NONE);
+        }
+        int head = buckets[size];
+        next[id] = head;
+        prev[id] = NONE;
+        if (head != NONE) {
+            prev[head] = id;
+        }
+        buckets[size] = id;
+    }
+    
+    private void unlink(int id) {
+        if (prev[id] == NONE) {
+            buckets[sizes[id]] = next[id];
+        } else {
+            next[prev[id]] = next[id];
+        }
+        if (next[id] != NONE) {
+            prev[next[id]] = prev[id];
+        }
+    }
+    
+    @Override
+    public void clear() {
+        ids.clear();
+        for (int id = 0; id < numIds; id++) {
+            terms[id] = null;
+            sizes[id] = 0;
+            // keep the small arrays for the next document
+            if (offsets[id] != null && offsets[id].length > MAX_REUSED_OFFSETS) {
+                offsets[id] = null;
+            }
+            freeIds[id] = numIds - 1 - id;
+        }
+        numFreeIds = numIds;
+        Arrays.fill(buckets, NONE);
+        minSize = 1;
+        numOffsets = 0;
+    }
+    
+    @Override
+    public List<Integer> getOffsets(TermAndZone termAndZone) {
+        Integer id = ids.get(termAndZone);
+        return (id == null ? null : new Offsets(offsets[id], sizes[id]));
+    }
+    
+    @Override
+    public boolean containsKey(TermAndZone termAndZone) {
+        return ids.containsKey(termAndZone);
+    }
+    
+    @Override
+    public Iterable<OffsetList<Integer>> offsets() {
+        return () -> new Iterator<OffsetList<Integer>>() {
+            private final OffsetList<Integer> list = new OffsetList<>();
+            private int id = advance(0);
+            
+            private int advance(int from) {
+                while (from < numIds && terms[from] == null) {
+                    from++;
+                }
+                return from;
+            }
+            
+            @Override
+            public boolean hasNext() {
+                return id < numIds;
+            }
+            
+            @Override
+            public OffsetList<Integer> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                list.termAndZone = terms[id];
+                list.offsets = new Offsets(offsets[id], sizes[id]);
+                id = advance(id + 1);
+                return list;
+            }
+        };
+    }
+    
+    /**
+     * Serializes term offsets as a {@link TermWeight.Info}. The offsets of this queue are written directly from their int arrays.
+     *
+     * @param offsets
+     *            the term offsets
+     * @return the serialized info
+     */
+    public static byte[] toTermWeightInfo(List<Integer> offsets) {
+        if (!(offsets instanceof Offsets)) {
+            TermWeight.Info.Builder builder = TermWeight.Info.newBuilder();
+            for (Integer offset : offsets) {
+                builder.addTermOffset(offset);
+            }
+            return builder.build().toByteArray();
+        }
+        
+        Offsets termOffsets = (Offsets) offsets;
+        int tagSize = CodedOutputStream.computeTagSize(TermWeight.Info.TERMOFFSET_FIELD_NUMBER);
+        int length = 0;
+        for (int i = 0; i < termOffsets.size; i++) {
+            length += tagSize + CodedOutputStream.computeUInt32SizeNoTag(termOffsets.offsets[i]);
+        }
+        
+        byte[] bytes = new byte[length];
+        CodedOutputStream output = CodedOutputStream.newInstance(bytes);
+        try {
+            for (int i = 0; i < termOffsets.size; i++) {
+                output.writeUInt32(TermWeight.Info.TERMOFFSET_FIELD_NUMBER, termOffsets.offsets[i]);
+            }
+            output.checkNoSpaceLeft();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to serialize term offsets", e);
+        }
+        return bytes;
+    }
+    
+    /**
+     * A read only view of the offsets of a term
+     */
+    private static class Offsets extends AbstractList<Integer> implements RandomAccess {
+        private final int[] offsets;
+        private final int size;
+        
+        Offsets(int[] offsets, int size) {
+            this.offsets = offsets;
+            this.size = size;
+        }
+        
+        @Override
+        public Integer get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return offsets[index];
+        }
+        
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
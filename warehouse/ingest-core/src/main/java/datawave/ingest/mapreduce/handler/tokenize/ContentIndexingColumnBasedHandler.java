@@ -2,11 +2,20 @@ package datawave.ingest.mapreduce.handler.tokenize;
 
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import datawave.ingest.data.RawRecordContainer;
 import datawave.ingest.data.config.NormalizedContentInterface;
@@ -22,13 +31,12 @@ import datawave.ingest.data.tokenize.TruncateAttribute;
 import datawave.ingest.mapreduce.handler.ExtendedDataTypeHandler;
 import datawave.ingest.mapreduce.handler.shard.AbstractColumnBasedHandler;
 import datawave.ingest.mapreduce.handler.shard.ShardedDataTypeHandler;
-import datawave.ingest.mapreduce.handler.shard.content.BoundedOffsetQueue;
 import datawave.ingest.mapreduce.handler.shard.content.BoundedOffsetQueue.OffsetList;
 import datawave.ingest.mapreduce.handler.shard.content.ContentIndexCounters;
 import datawave.ingest.mapreduce.handler.shard.content.OffsetQueue;
 import datawave.ingest.mapreduce.handler.shard.content.TermAndZone;
+import datawave.ingest.mapreduce.handler.shard.content.TermOffsetQueue;
 import datawave.ingest.mapreduce.job.BulkIngestKey;
-import datawave.ingest.protobuf.TermWeight;
 import datawave.ingest.util.BloomFilterUtil;
 import datawave.ingest.util.BloomFilterWrapper;
 import datawave.ingest.util.Identity;
@@ -51,8 +59,10 @@ import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
 import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
 
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * Content indexing column based handler. will provide content tokenization, which will include storing offsets, and the TERM_COUNT for that event.
@@ -107,6 +117,21 @@ public abstract class ContentIndexingColumnBasedHandler<KEYIN> extends AbstractC
     
     private int termPosition = 0;
     
+    // tokenizes the fields of an event in parallel, or null to tokenize them on the mapper thread
+    private ExecutorService tokenizerPool = null;
+    
+    // the analyzers of the tokenizer threads, kept for the life of the handler so that each thread reuses its token streams
+    private final List<Analyzer> tokenizerAnalyzers = Collections.synchronizedList(new ArrayList<Analyzer>());
+    
+    private final ThreadLocal<Analyzer> tokenizerAnalyzer = new ThreadLocal<Analyzer>() {
+        @Override
+        protected Analyzer initialValue() {
+            Analyzer analyzer = tokenHelper.getAnalyzer();
+            tokenizerAnalyzers.add(analyzer);
+            return analyzer;
+        }
+    };
+    
     @Override
     public void setup(TaskAttemptContext context) {
         super.setup(context);
@@ -133,12 +158,34 @@ public abstract class ContentIndexingColumnBasedHandler<KEYIN> extends AbstractC
         searchUtilReverse = TokenSearch.Factory.newInstance(DefaultTokenSearch.class.getCanonicalName(), tokenHelper.getStopWords(), true);
         tokenHelper.configureSearchUtil(searchUtilReverse);
         
-        tokenOffsetCache = new BoundedOffsetQueue<>(tokenHelper.getTokenOffsetCacheMaxSize());
+        tokenOffsetCache = new TermOffsetQueue(tokenHelper.getTokenOffsetCacheMaxSize());
         
         // Conditionally create an NGrams factory
         if (this.getBloomFiltersEnabled()) {
             this.bloomFilterUtil = newBloomFilterUtil(this.conf);
         }
+        
+        if (tokenHelper.getTokenizerThreads() > 0 && tokenizerPool == null) {
+            log.info("Tokenizing fields of at least " + tokenHelper.getTokenizerThreadsMinLength() + " characters with " + tokenHelper.getTokenizerThreads()
+                            + " threads");
+            tokenizerPool = Executors.newFixedThreadPool(tokenHelper.getTokenizerThreads(),
+                            new ThreadFactoryBuilder().setNameFormat("content-tokenizer-%d").setDaemon(true).build());
+        }
+    }
+    
+    @Override
+    public void close(TaskAttemptContext context) {
+        super.close(context);
+        if (tokenizerPool != null) {
+            tokenizerPool.shutdownNow();
+            tokenizerPool = null;
+        }
+        synchronized (tokenizerAnalyzers) {
+            for (Analyzer analyzer : tokenizerAnalyzers) {
+                analyzer.close();
+            }
+            tokenizerAnalyzers.clear();
+        }
     }
     
     @Override
@@ -247,6 +294,9 @@ public abstract class ContentIndexingColumnBasedHandler<KEYIN> extends AbstractC
         
         Analyzer analyzer = tokenHelper.getAnalyzer();
         
+        // the fields being tokenized by the tokenizer threads, in field order
+        List<TokenizedField> tokenizedFields = new ArrayList<>();
+        
         try {
             String lastFieldName = "";
             
@@ -294,7 +344,11 @@ public abstract class ContentIndexingColumnBasedHandler<KEYIN> extends AbstractC
                 
                 if (indexField || reverseIndexField) {
                     try {
-                        tokenizeField(analyzer, nci, indexField, reverseIndexField, reporter);
+                        if (tokenizerPool == null) {
+                            tokenizeField(analyzer, nci, indexField, reverseIndexField, reporter);
+                        } else {
+                            tokenizedFields.add(submitTokenizeField(analyzer, nci, indexField, reverseIndexField, reporter));
+                        }
                     } catch (Exception ex) {
                         throw new RuntimeException(ex);
                     }
@@ -307,7 +361,20 @@ public abstract class ContentIndexingColumnBasedHandler<KEYIN> extends AbstractC
                     indexListEntries(nci, indexListField, reverseIndexListField, reporter);
                 }
             }
+            
+            // add the tokens in field order so that the term offsets are the same as when tokenizing on this thread
+            for (TokenizedField tokens : tokenizedFields) {
+                try {
+                    awaitTokenizeField(tokens, reporter);
+                } catch (Exception ex) {
+                    throw new RuntimeException(ex);
+                }
+                addTokenizedField(tokens, reporter);
+            }
         } finally {
+            for (TokenizedField tokens : tokenizedFields) {
+                tokens.cancel();
+            }
             analyzer.close();
         }
         
@@ -331,8 +398,101 @@ public abstract class ContentIndexingColumnBasedHandler<KEYIN> extends AbstractC
             return;
         }
         
+        TokenizedField tokens = new TokenizedField(nci, indexField, reverseIndexField, termPosition, counters, reporter);
+        tokenizeField(a, tokens);
+        addTokenizedField(tokens, reporter);
+    }
+    
+    /**
+     * Tokenize a field on a tokenizer thread, or on this thread using the analyzer provided if the field is too short to be worth handing off.
+     * 
+     */
+    protected TokenizedField submitTokenizeField(final Analyzer a, final NormalizedContentInterface nci, boolean indexField, boolean reverseIndexField,
+                    StatusReporter reporter) throws IOException, InterruptedException {
+        
+        String content = nci.getIndexedFieldValue();
+        if (content == null || content.length() < tokenHelper.getTokenizerThreadsMinLength()) {
+            TokenizedField tokens = new TokenizedField(nci, indexField, reverseIndexField, termPosition, counters, reporter);
+            tokenizeField(a, tokens);
+            return tokens;
+        }
+        
+        final TokenizedField tokens = new TokenizedField(nci, indexField, reverseIndexField, termPosition, new ContentIndexCounters(), null);
+        tokens.future = tokenizerPool.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                tokenizeField(tokenizerAnalyzer.get(), tokens);
+                return null;
+            }
+        });
+        return tokens;
+    }
+    
+    /**
+     * Wait for a tokenizer thread to finish tokenizing a field, reporting progress while waiting.
+     * 
+     */
+    protected void awaitTokenizeField(TokenizedField tokens, StatusReporter reporter) throws IOException, InterruptedException {
+        if (tokens.future == null) {
+            return;
+        }
+        while (true) {
+            try {
+                tokens.future.get(HeartBeatThread.INTERVAL, TimeUnit.MILLISECONDS);
+                return;
+            } catch (TimeoutException e) {
+                if (reporter != null)
+                    reporter.progress();
+            } catch (ExecutionException e) {
+                Throwables.propagateIfPossible(e.getCause(), IOException.class, InterruptedException.class);
+                throw new IOException(e.getCause());
+            }
+        }
+    }
+    
+    /**
+     * Add the tokens of a field to the index, the event fields, the reverse index and the token offset cache.
+     * 
+     */
+    protected void addTokenizedField(TokenizedField tokens, StatusReporter reporter) {
+        for (NormalizedContentInterface newField : tokens.indexTokens) {
+            index.put(tokens.fieldName, newField);
+            fields.put(tokens.fieldName, newField);
+        }
+        
+        for (NormalizedContentInterface newField : tokens.reverseTokens) {
+            reverse.put(tokens.fieldName, newField);
+        }
+        
+        if (tokenOffsetCache != null) {
+            for (int i = 0; i < tokens.offsetTerms.size(); i++) {
+                tokenOffsetCache.addOffset(tokens.offsetTerms.get(i), tokens.offsetPositions[i]);
+            }
+        }
+        
+        if (tokens.counters != counters) {
+            counters.add(tokens.counters, reporter);
+        }
+        
+        termPosition = tokens.termPosition;
+        tokenizerTimeWarned = tokens.tokenizerTimeWarned;
+    }
+    
+    /**
+     * Tokenize a field into its tokens using the analyzer provided, without modifying the state of the handler. This may be called by a tokenizer thread,
+     * in which case the analyzer belongs to that thread.
+     * 
+     */
+    protected void tokenizeField(final Analyzer a, final TokenizedField tokens) throws IOException, InterruptedException {
+        
+        final NormalizedContentInterface nci = tokens.nci;
+        final boolean indexField = tokens.indexField;
+        final boolean reverseIndexField = tokens.reverseIndexField;
+        final ContentIndexCounters counters = tokens.counters;
+        final StatusReporter reporter = tokens.reporter;
+        
         String indexedFieldName = nci.getIndexedFieldName();
-        String modifiedFieldName = indexedFieldName + tokenFieldNameSuffix;
+        String modifiedFieldName = tokens.fieldName;
         String content = nci.getIndexedFieldValue();
         
         TokenStream tokenizer = a.tokenStream(indexedFieldName, new StringReader(content));
@@ -351,7 +511,7 @@ public abstract class ContentIndexingColumnBasedHandler<KEYIN> extends AbstractC
             int tokenizerBeats = 0;
             long start = System.currentTimeMillis();
             
-            tokenizerTimeWarned = false;
+            tokens.tokenizerTimeWarned = false;
             
             while (true) {
                 if (heartBeatCount != HeartBeatThread.counter) {
@@ -360,12 +520,12 @@ public abstract class ContentIndexingColumnBasedHandler<KEYIN> extends AbstractC
                     
                     // warn once on exceeding the warn threshold
                     long elapsedEstimateMsec = tokenizerBeats * HeartBeatThread.INTERVAL;
-                    if (elapsedEstimateMsec > tokenHelper.getTokenizerTimeWarnThresholdMsec() && !tokenizerTimeWarned) {
+                    if (elapsedEstimateMsec > tokenHelper.getTokenizerTimeWarnThresholdMsec() && !tokens.tokenizerTimeWarned) {
                         long realDelta = System.currentTimeMillis() - start;
                         counters.incrementValue(ContentIndexCounters.TOKENIZER_TIME_WARNINGS, 1, reporter);
                         log.warn("Tokenization of field " + modifiedFieldName + " has exceeded warning threshold "
                                         + tokenHelper.getTokenizerTimeWarnThresholdMsec() + "ms (" + realDelta + "ms)");
-                        tokenizerTimeWarned = true;
+                        tokens.tokenizerTimeWarned = true;
                     }
                     
                     // error when we exceed the error threshold
@@ -377,6 +537,10 @@ public abstract class ContentIndexingColumnBasedHandler<KEYIN> extends AbstractC
                     }
                 }
                 
+                if (tokens.cancelled) {
+                    throw new InterruptedException("Tokenization of field " + modifiedFieldName + " was cancelled");
+                }
+                
                 // getting the next token can take a long time depending on the compexity of the data...
                 // so lets report progress to hadoop on each round
                 if (reporter != null)
@@ -391,7 +555,7 @@ public abstract class ContentIndexingColumnBasedHandler<KEYIN> extends AbstractC
                 String type = typeAtt.type();
                 
                 // term positions aren't reset between fields of the same name, see getShardNamesAndValues.
-                termPosition += posIncrAtt.getPositionIncrement();
+                tokens.termPosition += posIncrAtt.getPositionIncrement();
                 
                 if (type.startsWith("<") && type.endsWith(">")) {
                     type = type.substring(1, type.length() - 1); // <FOO> => FOO without regex
@@ -465,17 +629,16 @@ public abstract class ContentIndexingColumnBasedHandler<KEYIN> extends AbstractC
                         // don't put tokens in the event.
                         newField.setEventFieldValue(null);
                         newField.setIndexedFieldValue(s);
-                        index.put(modifiedFieldName, newField);
                         
-                        // add this token to the event fields so a
-                        // local fi\x00 key gets created
+                        // add this token to the index and to the event
+                        // fields so a local fi\x00 key gets created
                         // NOTE: we already assigned it to the
                         // 'indexOnly' list so it won't show up in
                         // the event
-                        fields.put(modifiedFieldName, newField);
+                        tokens.indexTokens.add(newField);
                         
                         if (tokenOffsetCache != null) {
-                            tokenOffsetCache.addOffset(new TermAndZone(s, modifiedFieldName), termPosition);
+                            tokens.addOffset(new TermAndZone(s, modifiedFieldName));
                         }
                     }
                     
@@ -502,7 +665,7 @@ public abstract class ContentIndexingColumnBasedHandler<KEYIN> extends AbstractC
                         newField.setFieldName(modifiedFieldName);
                         newField.setEventFieldValue(s);
                         newField.setIndexedFieldValue(s);
-                        reverse.put(modifiedFieldName, newField);
+                        tokens.reverseTokens.add(newField);
                         
                         // NOTE: We don't want fi\x00 keys for reverse
                         // tokens
@@ -539,6 +702,58 @@ public abstract class ContentIndexingColumnBasedHandler<KEYIN> extends AbstractC
         }
     }
     
+    /**
+     * The tokens of a field, gathered without modifying the state of the handler so that fields may be tokenized in parallel, and then added to the handler
+     * in field order by {@link #addTokenizedField(TokenizedField, StatusReporter)}.
+     */
+    protected class TokenizedField {
+        protected final NormalizedContentInterface nci;
+        protected final boolean indexField;
+        protected final boolean reverseIndexField;
+        protected final String fieldName;
+        protected final ContentIndexCounters counters;
+        protected final StatusReporter reporter;
+        protected int termPosition;
+        protected boolean tokenizerTimeWarned = false;
+        
+        protected final List<NormalizedContentInterface> indexTokens = new ArrayList<>();
+        protected final List<NormalizedContentInterface> reverseTokens = new ArrayList<>();
+        
+        // the terms added to the token offset cache and their positions
+        protected final List<TermAndZone> offsetTerms = new ArrayList<>();
+        protected int[] offsetPositions = new int[16];
+        
+        private Future<Void> future = null;
+        private volatile boolean cancelled = false;
+        
+        protected TokenizedField(NormalizedContentInterface nci, boolean indexField, boolean reverseIndexField, int termPosition,
+                        ContentIndexCounters counters, StatusReporter reporter) {
+            this.nci = nci;
+            this.indexField = indexField;
+            this.reverseIndexField = reverseIndexField;
+            this.fieldName = nci.getIndexedFieldName() + tokenFieldNameSuffix;
+            this.termPosition = termPosition;
+            this.counters = counters;
+            this.reporter = reporter;
+        }
+        
+        protected void addOffset(TermAndZone term) {
+            int size = offsetTerms.size();
+            if (size == offsetPositions.length) {
+                offsetPositions = Arrays.copyOf(offsetPositions, size * 2);
+            }
+            offsetPositions[size] = termPosition;
+            offsetTerms.add(term);
+        }
+        
+        protected void cancel() {
+            cancelled = true;
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+    }
+    
     /**
      * Creates a Term Frequency index key in the "tf" column family.
      * 
@@ -554,11 +769,7 @@ public abstract class ContentIndexingColumnBasedHandler<KEYIN> extends AbstractC
     protected void createTermFrequencyIndex(RawRecordContainer event, Multimap<BulkIngestKey,Value> values, byte[] shardId, NormalizedFieldAndValue nfv,
                     List<Integer> offsets, byte[] visibility) throws IOException, InterruptedException {
         
-        TermWeight.Info.Builder builder = TermWeight.Info.newBuilder();
-        for (Integer offset : offsets) {
-            builder.addTermOffset(offset);
-        }
-        Value value = new Value(builder.build().toByteArray());
+        Value value = new Value(TermOffsetQueue.toTermWeightInfo(offsets));
         
         StringBuilder colq = new StringBuilder(this.eventDataTypeName.length() + this.eventUid.length() + nfv.getIndexedFieldName().length()
                         + nfv.getIndexedFieldValue().length() + 3);
@@ -15,11 +15,13 @@ import org.apache.accumulo.core.client.admin.TableOperations;
 import org.apache.accumulo.core.client.impl.ClientContext;
 import org.apache.accumulo.core.client.impl.Credentials;
 import org.apache.accumulo.core.client.impl.MasterClient;
+import org.apache.accumulo.core.client.impl.Tables;
 import org.apache.accumulo.core.client.security.tokens.PasswordToken;
 import org.apache.accumulo.core.conf.AccumuloConfiguration;
 import org.apache.accumulo.core.master.thrift.MasterClientService.Iface;
 import org.apache.accumulo.core.master.thrift.MasterMonitorInfo;
 import org.apache.accumulo.core.master.thrift.TableInfo;
+import org.apache.accumulo.core.master.thrift.TabletServerStatus;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileChecksum;
 import org.apache.hadoop.fs.FileStatus;
@@ -50,22 +52,28 @@ import java.net.SocketAddress;
 import java.net.SocketTimeoutException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A processor whose job is to watch for completed Bulk Ingest jobs and bring the map files produced by them online in accumulo. This class attempts to bring
  * multiple map files online at once if many jobs have completed, and also attempts to throttle itself to prevent queuing up too many major compactions on the
- * various tablet servers.
+ * various tablet servers. The next job directories are copied while the current ones are loaded, and imports into a table can be limited in number and held
+ * back while the table has too many compactions queued on any one tablet server.
  */
 public final class BulkIngestMapFileLoader implements Runnable {
     private static Logger log = Logger.getLogger(BulkIngestMapFileLoader.class);
@@ -75,6 +83,12 @@ public final class BulkIngestMapFileLoader implements Runnable {
     private static int MAJC_CHECK_INTERVAL = 1;
     private static int MAJC_THRESHOLD = 3000;
     private static int MAJC_WAIT_TIMEOUT = 0;// 2 * 60 * 1000;
+    private static int TABLE_MAJC_THRESHOLD = 0;
+    private static int MAJC_STATS_INTERVAL = 10 * 1000;
+    private static int COPY_AHEAD = 1;
+    // independent of MAJC_CHECK_INTERVAL, as loads keep running across the checks
+    private static int MAX_CONCURRENT_LOADS = 1;
+    private static int MAX_TABLE_IMPORTS = 1;
     private static int SHUTDOWN_PORT = 24111;
     private static boolean FIFO = true;
     private static boolean INGEST_METRICS = true;
@@ -100,6 +114,20 @@ public final class BulkIngestMapFileLoader implements Runnable {
     private StandaloneStatusReporter reporter = new StandaloneStatusReporter();
     private volatile boolean running;
     private ExecutorService executor;
+    // copies job directories ahead of the one being loaded
+    private ExecutorService copyExecutor;
+    // loads job directories once they have been copied
+    private ExecutorService loadExecutor;
+    // limits the concurrent imports into each table
+    private final Map<String,Semaphore> tableImportPermits = new ConcurrentHashMap<>();
+    private CompactionStats compactionStats = null;
+    private long compactionStatsTime = 0;
+    private final AtomicInteger fsAccessFailures = new AtomicInteger();
+    private Path[] jobDirectories = new Path[0];
+    private int nextJobIndex = 0;
+    // when map files were last brought online, and when waiting for the load to decrease was last logged
+    private long lastOnlineTime = 0;
+    private long lastLoadMessageTime = 0;
     
     public static void main(String[] args) throws AccumuloSecurityException, IOException {
         
@@ -113,6 +141,7 @@ public final class BulkIngestMapFileLoader implements Runnable {
         if (args.length < 6) {
             log.error("usage: BulkIngestMapFileLoader hdfsWorkDir jobDirPattern instanceName zooKeepers username password "
                             + "[-sleepTime sleepTime] [-majcThreshold threshold] [-majcCheckInterval count] [-majcDelay majcDelay] "
+                            + "[-tableMajcThreshold threshold] [-copyAhead count] [-maxConcurrentLoads count] [-maxTableImports count] "
                             + " [-seqFileHdfs seqFileSystemUri] [-srcHdfs srcFileSystemURI] [-destHdfs destFileSystemURI] [-jt jobTracker] "
                             + "[-ingestMetricsDisabled] [-shutdownPort portNum] confFile [{confFile}]");
             System.exit(-1);
@@ -169,6 +198,50 @@ public final class BulkIngestMapFileLoader implements Runnable {
                                         e);
                         System.exit(-2);
                     }
+                } else if ("-tableMajcThreshold".equalsIgnoreCase(args[i])) {
+                    if (i + 2 > args.length) {
+                        log.error("-tableMajcThreshold must be followed by the maximum number of major compactions of a table on a tablet server");
+                        System.exit(-2);
+                    }
+                    try {
+                        TABLE_MAJC_THRESHOLD = Integer.parseInt(args[++i]);
+                    } catch (NumberFormatException e) {
+                        log.error("-tableMajcThreshold must be followed by the maximum number of major compactions of a table on a tablet server", e);
+                        System.exit(-2);
+                    }
+                } else if ("-copyAhead".equalsIgnoreCase(args[i])) {
+                    if (i + 2 > args.length) {
+                        log.error("-copyAhead must be followed by the number of job directories to copy ahead of the one being loaded");
+                        System.exit(-2);
+                    }
+                    try {
+                        COPY_AHEAD = Integer.parseInt(args[++i]);
+                    } catch (NumberFormatException e) {
+                        log.error("-copyAhead must be followed by the number of job directories to copy ahead of the one being loaded", e);
+                        System.exit(-2);
+                    }
+                } else if ("-maxConcurrentLoads".equalsIgnoreCase(args[i])) {
+                    if (i + 2 > args.length) {
+                        log.error("-maxConcurrentLoads must be followed by the number of job directories to load concurrently");
+                        System.exit(-2);
+                    }
+                    try {
+                        MAX_CONCURRENT_LOADS = Integer.parseInt(args[++i]);
+                    } catch (NumberFormatException e) {
+                        log.error("-maxConcurrentLoads must be followed by the number of job directories to load concurrently", e);
+                        System.exit(-2);
+                    }
+                } else if ("-maxTableImports".equalsIgnoreCase(args[i])) {
+                    if (i + 2 > args.length) {
+                        log.error("-maxTableImports must be followed by the number of concurrent imports allowed into a table");
+                        System.exit(-2);
+                    }
+                    try {
+                        MAX_TABLE_IMPORTS = Integer.parseInt(args[++i]);
+                    } catch (NumberFormatException e) {
+                        log.error("-maxTableImports must be followed by the number of concurrent imports allowed into a table", e);
+                        System.exit(-2);
+                    }
                 } else if ("-maxDirectories".equalsIgnoreCase(args[i])) {
                     if (i + 2 > args.length) {
                         log.error("-maxDirectories must be followed a number of directories");
@@ -299,6 +372,12 @@ public final class BulkIngestMapFileLoader implements Runnable {
         log.info("Will wait to bring map files online if there are more than " + MAJC_THRESHOLD + " running or queued major compactions.");
         log.info("Will not bring map files online unless at least " + MAJC_WAIT_TIMEOUT + "ms have passed since last time.");
         log.info("Will check the majcThreshold and majcDelay every " + MAJC_CHECK_INTERVAL + " bulk loads.");
+        if (TABLE_MAJC_THRESHOLD > 0) {
+            log.info("Will wait to import into a table if it has " + TABLE_MAJC_THRESHOLD + " or more running or queued major compactions on a tablet server.");
+        }
+        log.info("Copying " + COPY_AHEAD + " directories ahead of the ones being loaded");
+        log.info("Loading a max of " + MAX_CONCURRENT_LOADS + " directories concurrently");
+        log.info("Importing a max of " + MAX_TABLE_IMPORTS + " directories into a table concurrently");
         log.info("Processing a max of " + MAX_DIRECTORIES + " directories");
         log.info("Using " + numBulkThreads + " bulk load threads");
         log.info("Using " + numHdfsThreads + " HDFS operation threads");
@@ -366,6 +445,8 @@ public final class BulkIngestMapFileLoader implements Runnable {
         this.jobtracker = jobtracker;
         this.running = true;
         this.executor = Executors.newFixedThreadPool(numHdfsThreads > 0 ? numHdfsThreads : 1);
+        this.copyExecutor = Executors.newFixedThreadPool(Math.max(1, COPY_AHEAD));
+        this.loadExecutor = Executors.newFixedThreadPool(Math.max(1, MAX_CONCURRENT_LOADS));
         try {
             if (shutdownPort > 0) {
                 final ServerSocket serverSocket = new ServerSocket(shutdownPort);
@@ -383,19 +464,25 @@ public final class BulkIngestMapFileLoader implements Runnable {
     @Override
     public void run() {
         log.info("Starting process to monitor map files.");
-        long lastOnlineTime = 0;
-        long lastLoadMessageTime = 0;
-        int fsAccessFailures = 0;
-        Path[] jobDirectories = new Path[0];
-        int nextJobIndex = 0;
+        lastOnlineTime = 0;
+        lastLoadMessageTime = 0;
+        // job directories that we own and are being copied, in the order they will be loaded
+        Deque<JobLoad> pipeline = new ArrayDeque<>();
+        // job directories being loaded, in the order they were started
+        Deque<JobLoad> loading = new ArrayDeque<>();
+        boolean idle = true;
         try {
             while (true) {
                 try {
                     if (!running)
                         break;
-                    sleep();
+                    // only wait between cycles if there was nothing to do, otherwise go straight on to the next directories
+                    if (idle)
+                        sleep();
+                    idle = true;
                     if (!running)
                         break;
+                    finishLoads(loading, 0);
                     long loadMessageDelta = System.currentTimeMillis() - lastLoadMessageTime;
                     boolean logMessages = (loadMessageDelta > (5 * 60 * 1000));
                     if (logMessages) {
@@ -405,90 +492,181 @@ public final class BulkIngestMapFileLoader implements Runnable {
                         if (logMessages) {
                             log.info("Waiting for load to decrease before bringing more map files online.");
                         }
+                        // keep copying ahead while we wait
+                        fillPipeline(pipeline);
                         continue;
                     }
-                    List<Path> processedDirectories = new ArrayList<>();
-                    if (nextJobIndex >= jobDirectories.length) {
-                        jobDirectories = getJobDirectories();
-                        nextJobIndex = 0;
-                    }
-                    if (jobDirectories.length > 0) {
-                        while (processedDirectories.size() < MAJC_CHECK_INTERVAL && jobDirectories.length > 0) {
-                            Path srcJobDirectory = jobDirectories[nextJobIndex++];
-                            if (!running)
-                                break;
-                            // take ownership of the job directory if we can
-                            if (takeOwnershipJobDirectory(srcJobDirectory)) {
-                                processedDirectories.add(srcJobDirectory);
-                                Path mapFilesDir = new Path(srcJobDirectory, "mapFiles");
-                                reporter.getCounter("MapFileLoader.StartTimes", srcJobDirectory.getName()).increment(System.currentTimeMillis());
-                                Path dstJobDirectory = srcJobDirectory;
-                                URI workingHdfs = srcHdfs;
-                                
-                                try {
-                                    log.info("Started processing " + mapFilesDir);
-                                    long start = System.currentTimeMillis();
-                                    
-                                    // copy the data if needed
-                                    dstJobDirectory = distCpDirectory(srcJobDirectory);
-                                    workingHdfs = destHdfs;
-                                    
-                                    // recreate the map files directory reference in case it moved filesystems
-                                    mapFilesDir = new Path(dstJobDirectory, "mapFiles");
-                                    
-                                    // now if we have a destination work directory, then move then move the files
-                                    bringMapFilesOnline(mapFilesDir);
-                                    
-                                    // ensure everything got loaded
-                                    verifyNothingLeftBehind(mapFilesDir);
-                                    
-                                    cleanUpJobDirectory(mapFilesDir);
-                                    long end = System.currentTimeMillis();
-                                    log.info("Finished processing " + mapFilesDir + ", duration (sec): " + ((end - start) / 1000));
-                                    
-                                    // now that we actually processed something, reset the last load message time to force a message on the next round
-                                    lastLoadMessageTime = 0;
-                                } catch (Exception e) {
-                                    log.error("Failed to process " + mapFilesDir, e);
-                                    boolean marked = markJobDirectoryFailed(workingHdfs, dstJobDirectory);
-                                    if (!marked) {
-                                        ++fsAccessFailures;
-                                        if (fsAccessFailures >= 3) {
-                                            log.error("Too many failures updating marker files.  Exiting...");
-                                            shutdown();
-                                        } else {
-                                            log.warn("Failed to mark " + dstJobDirectory + " as failed. Sleeping in case this was a transient failure.");
-                                            try {
-                                                Thread.sleep(FAILURE_SLEEP_TIME);
-                                            } catch (InterruptedException ie) {
-                                                log.warn("Interrupted while sleeping.", ie);
-                                            }
-                                        }
-                                    }
-                                }
-                            }
-                            if (nextJobIndex >= jobDirectories.length) {
-                                jobDirectories = getJobDirectories();
-                                nextJobIndex = 0;
-                            }
-                            
-                        }
-                        if (!processedDirectories.isEmpty()) {
-                            writeStats(processedDirectories.toArray(new Path[processedDirectories.size()]));
-                            lastOnlineTime = System.currentTimeMillis();
+                    
+                    // start loading up to the check interval of directories, copying the next ones while the current ones are imported. Loads are kept
+                    // running across checks, so at most MAX_CONCURRENT_LOADS directories are loading whatever the check interval.
+                    int started = 0;
+                    while (started < MAJC_CHECK_INTERVAL && running) {
+                        fillPipeline(pipeline);
+                        if (pipeline.isEmpty())
+                            break;
+                        if (loading.size() >= Math.max(1, MAX_CONCURRENT_LOADS)) {
+                            // wait for the oldest load to finish before starting another
+                            finishLoads(loading, 1);
+                            continue;
                         }
+                        final JobLoad jobLoad = pipeline.poll();
+                        jobLoad.load = loadExecutor.submit(() -> load(jobLoad));
+                        loading.add(jobLoad);
+                        started++;
+                    }
+                    fillPipeline(pipeline);
+                    
+                    if (started > 0) {
+                        idle = false;
+                    } else if (!loading.isEmpty()) {
+                        // nothing left to start, so wait for the directories being loaded
+                        finishLoads(loading, loading.size());
+                        idle = pipeline.isEmpty() && nextJobIndex >= jobDirectories.length;
                     }
                 } catch (Exception e) {
                     log.error("Error: " + e.getMessage(), e);
                 }
             }
+            
+            // we own the directories in the pipeline, and those already copied are no longer in the source file system, so finish loading them
+            try {
+                finishLoads(loading, loading.size());
+            } catch (Exception e) {
+                log.error("Error: " + e.getMessage(), e);
+            }
+            if (!pipeline.isEmpty()) {
+                log.info("Loading " + pipeline.size() + " directories already taken before shutting down");
+                for (JobLoad jobLoad : pipeline) {
+                    load(jobLoad);
+                }
+            }
         } finally {
             log.info("Shutting down executor service");
             executor.shutdown();
+            copyExecutor.shutdown();
+            loadExecutor.shutdown();
         }
         log.info("Bulk map file loader shutting down.");
     }
     
+    /**
+     * Takes ownership of completed job directories and starts copying them until there are {@code COPY_AHEAD} directories beyond the next one to be loaded.
+     */
+    private void fillPipeline(Deque<JobLoad> pipeline) throws IOException {
+        boolean refreshed = false;
+        while (running && pipeline.size() <= COPY_AHEAD) {
+            if (nextJobIndex >= jobDirectories.length) {
+                // only look for new directories once per call, in case all of them were taken by another process
+                if (refreshed)
+                    break;
+                jobDirectories = getJobDirectories();
+                nextJobIndex = 0;
+                refreshed = true;
+                if (jobDirectories.length == 0)
+                    break;
+            }
+            final Path srcJobDirectory = jobDirectories[nextJobIndex++];
+            // take ownership of the job directory if we can
+            if (takeOwnershipJobDirectory(srcJobDirectory)) {
+                reporter.getCounter("MapFileLoader.StartTimes", srcJobDirectory.getName()).increment(System.currentTimeMillis());
+                // copy the data if needed
+                pipeline.add(new JobLoad(srcJobDirectory, copyExecutor.submit(() -> distCpDirectory(srcJobDirectory))));
+            }
+        }
+    }
+    
+    /**
+     * Collects the loads that have finished, waiting for the oldest ones if needed, and writes the stats of their job directories.
+     *
+     * @param loading
+     *            the job directories being loaded, oldest first
+     * @param wait
+     *            the number of the oldest loads to wait for
+     */
+    private void finishLoads(Deque<JobLoad> loading, int wait) throws IOException, InterruptedException, ExecutionException {
+        List<Path> processedDirectories = new ArrayList<>();
+        while (!loading.isEmpty() && (processedDirectories.size() < wait || loading.peek().load.isDone())) {
+            JobLoad jobLoad = loading.poll();
+            processedDirectories.add(jobLoad.srcJobDirectory);
+            if (jobLoad.load.get()) {
+                // now that we actually processed something, reset the last load message time to force a message on the next round
+                lastLoadMessageTime = 0;
+            }
+        }
+        if (!processedDirectories.isEmpty()) {
+            writeStats(processedDirectories.toArray(new Path[processedDirectories.size()]));
+            lastOnlineTime = System.currentTimeMillis();
+        }
+    }
+    
+    /**
+     * Brings the map files of a job directory online once it has been copied, marking the directory failed if that does not succeed.
+     *
+     * @return true if the map files were brought online
+     */
+    private boolean load(JobLoad jobLoad) {
+        Path mapFilesDir = new Path(jobLoad.srcJobDirectory, "mapFiles");
+        Path dstJobDirectory = jobLoad.srcJobDirectory;
+        URI workingHdfs = srcHdfs;
+        
+        try {
+            log.info("Started processing " + mapFilesDir);
+            long start = System.currentTimeMillis();
+            
+            try {
+                dstJobDirectory = jobLoad.copy.get();
+            } catch (ExecutionException e) {
+                throw (e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+            }
+            workingHdfs = destHdfs;
+            
+            // recreate the map files directory reference in case it moved filesystems
+            mapFilesDir = new Path(dstJobDirectory, "mapFiles");
+            
+            // now if we have a destination work directory, then move then move the files
+            bringMapFilesOnline(mapFilesDir);
+            
+            // ensure everything got loaded
+            verifyNothingLeftBehind(mapFilesDir);
+            
+            cleanUpJobDirectory(mapFilesDir);
+            long end = System.currentTimeMillis();
+            log.info("Finished processing " + mapFilesDir + ", duration (sec): " + ((end - start) / 1000));
+            return true;
+        } catch (Exception e) {
+            log.error("Failed to process " + mapFilesDir, e);
+            boolean marked = markJobDirectoryFailed(workingHdfs, dstJobDirectory);
+            if (!marked) {
+                if (fsAccessFailures.incrementAndGet() >= 3) {
+                    log.error("Too many failures updating marker files.  Exiting...");
+                    shutdown();
+                } else {
+                    log.warn("Failed to mark " + dstJobDirectory + " as failed. Sleeping in case this was a transient failure.");
+                    try {
+                        Thread.sleep(FAILURE_SLEEP_TIME);
+                    } catch (InterruptedException ie) {
+                        log.warn("Interrupted while sleeping.", ie);
+                    }
+                }
+            }
+            return false;
+        }
+    }
+    
+    /**
+     * A job directory that we own, the copy of it to the destination file system, and its load once started
+     */
+    private static class JobLoad {
+        private final Path srcJobDirectory;
+        private final Future<Path> copy;
+        private Future<Boolean> load = null;
+        
+        private JobLoad(Path srcJobDirectory, Future<Path> copy) {
+            this.srcJobDirectory = srcJobDirectory;
+            this.copy = copy;
+        }
+    }
+    
     protected void shutdown() {
         running = false;
     }
@@ -608,20 +786,29 @@ public final class BulkIngestMapFileLoader implements Runnable {
     }
     
     private int getMajorCompactionCount() {
-        int majC = 0;
-        
+        return getCompactionStats(true).getTotal();
+    }
+    
+    /**
+     * Gets the major compaction stats, fetching them from the master if they are older than {@code MAJC_STATS_INTERVAL} or if required.
+     */
+    private synchronized CompactionStats getCompactionStats(boolean refresh) {
+        long now = System.currentTimeMillis();
+        if (compactionStats == null || refresh || now - compactionStatsTime >= MAJC_STATS_INTERVAL) {
+            compactionStats = fetchCompactionStats();
+            compactionStatsTime = now;
+        }
+        return compactionStats;
+    }
+    
+    private CompactionStats fetchCompactionStats() {
         ZooKeeperInstance instance = new ZooKeeperInstance(ClientConfiguration.loadDefault().withInstance(instanceName).withZkHosts(zooKeepers));
         
         Iface client = null;
         try {
             client = MasterClient.getConnection(new ClientContext(instance, credentials, AccumuloConfiguration.getDefaultConfiguration()));
             MasterMonitorInfo mmi = client.getMasterStats(null, credentials.toThrift(instance));
-            Map<String,TableInfo> tableStats = mmi.getTableMap();
-            
-            for (java.util.Map.Entry<String,TableInfo> e : tableStats.entrySet()) {
-                majC += e.getValue().getMajors().getQueued();
-                majC += e.getValue().getMajors().getRunning();
-            }
+            return new CompactionStats(mmi, Tables.getIdToNameMap(instance));
         } catch (Exception e) {
             // Accumulo API changed, catch exception for now until we redeploy
             // accumulo on lightning.
@@ -632,7 +819,82 @@ public final class BulkIngestMapFileLoader implements Runnable {
             }
         }
         
-        return majC;
+        return new CompactionStats(new MasterMonitorInfo(), new HashMap<>());
+    }
+    
+    /**
+     * Waits until the table has fewer than {@code TABLE_MAJC_THRESHOLD} major compactions running or queued on each tablet server, so that imports back off
+     * from the tablets that are behind rather than waiting on the compactions of the whole cluster.
+     */
+    private void waitForTableCompactions(String tableName) throws InterruptedException {
+        if (TABLE_MAJC_THRESHOLD <= 0) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        int depth;
+        while (running && (depth = getCompactionStats(false).getMaxServerCount(tableName)) >= TABLE_MAJC_THRESHOLD) {
+            log.info("Waiting to import into " + tableName + " with " + depth + " compactions running or queued on a tablet server");
+            Thread.sleep(MAJC_STATS_INTERVAL);
+        }
+        long waited = System.currentTimeMillis() - start;
+        if (waited >= MAJC_STATS_INTERVAL) {
+            log.info("Waited " + (waited / 1000) + "s for compactions before importing into " + tableName);
+        }
+    }
+    
+    private Semaphore getTableImportPermits(String tableName) {
+        Semaphore permits = tableImportPermits.get(tableName);
+        if (permits == null) {
+            tableImportPermits.putIfAbsent(tableName, new Semaphore(Math.max(1, MAX_TABLE_IMPORTS), true));
+            permits = tableImportPermits.get(tableName);
+        }
+        return permits;
+    }
+    
+    /**
+     * The running and queued major compactions of the cluster, and of each table on its busiest tablet server
+     */
+    static class CompactionStats {
+        private int total = 0;
+        private final Map<String,Integer> maxServerCounts = new HashMap<>();
+        
+        CompactionStats(MasterMonitorInfo mmi, Map<String,String> tableNames) {
+            if (mmi.getTableMap() != null) {
+                for (Map.Entry<String,TableInfo> e : mmi.getTableMap().entrySet()) {
+                    total += getCount(e.getValue());
+                }
+            }
+            if (mmi.getTServerInfo() != null) {
+                for (TabletServerStatus server : mmi.getTServerInfo()) {
+                    if (server.getTableMap() == null) {
+                        continue;
+                    }
+                    for (Map.Entry<String,TableInfo> e : server.getTableMap().entrySet()) {
+                        String name = getName(tableNames, e.getKey());
+                        Integer max = maxServerCounts.get(name);
+                        maxServerCounts.put(name, Math.max(max == null ? 0 : max, getCount(e.getValue())));
+                    }
+                }
+            }
+        }
+        
+        private static String getName(Map<String,String> tableNames, String tableId) {
+            String name = tableNames.get(tableId);
+            return (name == null ? tableId : name);
+        }
+        
+        private static int getCount(TableInfo info) {
+            return (info.getMajors() == null ? 0 : info.getMajors().getQueued() + info.getMajors().getRunning());
+        }
+        
+        int getTotal() {
+            return total;
+        }
+        
+        int getMaxServerCount(String tableName) {
+            Integer count = maxServerCounts.get(tableName);
+            return (count == null ? 0 : count);
+        }
     }
     
     /**
@@ -827,10 +1089,17 @@ public final class BulkIngestMapFileLoader implements Runnable {
                 }
                 fileSystem.mkdirs(failuresPath);
                 
-                // import the directory
-                log.info("Bringing Map Files online for " + tableName);
-                tops.importDirectory(tableName, tableDir.toString(), failuresDir, false);
-                log.info("Completed bringing map files online for " + tableName);
+                // import the directory, once the table is not importing too many others and its compactions have caught up
+                Semaphore permits = getTableImportPermits(tableName);
+                permits.acquire();
+                try {
+                    waitForTableCompactions(tableName);
+                    log.info("Bringing Map Files online for " + tableName);
+                    tops.importDirectory(tableName, tableDir.toString(), failuresDir, false);
+                    log.info("Completed bringing map files online for " + tableName);
+                } finally {
+                    permits.release();
+                }
                 validateComplete();
             } catch (Exception e) {
                 log.error("Error importing files into table " + tableName + " from directory " + mapFilesDir, e);
@@ -1,13 +1,20 @@
 package datawave.ingest.mapreduce.job.writer;
 
+import com.google.common.base.Supplier;
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.Multimaps;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import datawave.ingest.mapreduce.job.BulkIngestKey;
 import datawave.ingest.mapreduce.job.reduce.BulkIngestKeyDedupeCombiner;
 import org.apache.accumulo.core.data.Mutation;
@@ -15,15 +22,23 @@ import org.apache.accumulo.core.data.Value;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+import org.apache.log4j.Logger;
 
 /**
  * This is a caching context writer that will cache the entries for a table and will only actually flush entries once that cache is full. The cache will be
- * aggregated as the entries are received. This cache will cache values across calls to commit, which means that entries are aggregated across events (see
- * EventMapper contextWriter commit calls).
- * 
+ * aggregated as the entries are received: whenever a key repeats, its values are reduced with the combiners configured for the table. This cache will cache
+ * values across calls to commit, which means that entries are aggregated across events (see EventMapper contextWriter commit calls). Global index and metadata
+ * keys repeat heavily within a split, so combining them here greatly reduces the map output.
+ * <p>
+ * The cache of each table is kept sorted and is written out in key order. The tables cached are those configured with a maximum number of entries using the
+ * {@code <tablename>.table.context.writer.cache} property, and by default also every table with configured combiners that is not deduplicated by timestamp.
+ * All of the caches together are limited to an estimated 32MB, or the number of bytes set with the {@value #MAX_CACHE_BYTES} property, beyond which the
+ * largest caches are flushed.
  */
 public class TableCachingContextWriter extends AbstractContextWriter<BulkIngestKey,Value> implements ChainedContextWriter<BulkIngestKey,Value> {
     
+    private static final Logger log = Logger.getLogger(TableCachingContextWriter.class);
+    
     // THe property used for to configure the next writer in the chain
     public static final String CONTEXT_WRITER_CLASS = "ingest.table.caching.context.writer.class";
     
@@ -33,25 +48,34 @@ public class TableCachingContextWriter extends AbstractContextWriter<BulkIngestK
     // a counter to keep track of how often the buffer for a table gets fluhed
     public static final String FLUSHED_BUFFER_COUNTER = "TABLE_CACHE_FLUSHES";
     public static final String FLUSHED_BUFFER_TOTAL = "TABLE_CACHE_FLUSHED_ENTRIES";
-    
-    // This is the cache configuration
-    private static final Map<Text,Integer> tableCacheConf = new HashMap<>();
+    // a counter to keep track of how many values were combined into entries already in the cache
+    public static final String COMBINED_VALUE_COUNTER = "TABLE_CACHE_COMBINED_VALUES";
     
     // the tables to cache will be configured by setting a <tablename>.table.context.writer.cache property where the value is the max size of the cache in
     // entries
     public static final String TABLES_TO_CACHE_SUFFIX = ".table.context.writer.cache";
     
-    // This is the cache
-    private final Map<Text,Multimap<BulkIngestKey,Value>> aggregatedCache = new HashMap<>();
+    // whether to also cache every table that has combiners configured
+    public static final String CACHE_COMBINED_TABLES = "ingest.table.caching.context.writer.combined.tables";
+    
+    // the maximum estimated size in bytes of all of the caches together
+    public static final String MAX_CACHE_BYTES = "ingest.table.caching.context.writer.max.bytes";
+    public static final long DEFAULT_MAX_CACHE_BYTES = 32L * 1024 * 1024;
+    
+    // the estimated overhead of a cache entry beyond the key and value bytes
+    private static final int ENTRY_OVERHEAD = 128;
+    
+    // This is the cache configuration
+    private final Map<Text,Integer> tableCacheConf = new HashMap<>();
+    private long maxCacheBytes = DEFAULT_MAX_CACHE_BYTES;
+    
+    // This is the cache, sorted by key within each table
+    private final Map<Text,TableCache> aggregatedCache = new HashMap<>();
+    private long cacheBytes = 0;
     
     // This is the combiner used to aggregate values
     private CachingContextWriter combinerCache = new CachingContextWriter();
-    private BulkIngestKeyDedupeCombiner<BulkIngestKey,Value> combiner = new BulkIngestKeyDedupeCombiner<BulkIngestKey,Value>() {
-        @Override
-        protected void setupContextWriter(Configuration conf) throws IOException {
-            setContextWriter(combinerCache);
-        }
-    };
+    private CachingCombiner combiner = new CachingCombiner(combinerCache);
     
     // The chained context writer
     private ContextWriter<BulkIngestKey,Value> contextWriter;
@@ -65,8 +89,12 @@ public class TableCachingContextWriter extends AbstractContextWriter<BulkIngestK
     public void setup(Configuration conf, boolean outputTableCounters) throws IOException, InterruptedException {
         super.setup(conf, false);
         
-        // Configure the combiner
-        combiner.setup(conf);
+        // Configure the combiner. It expects to be told that a combiner is in use, which only affects the tables deduplicated by timestamp, and those are
+        // only cached below if the reducer knows about the combiner as well.
+        boolean usingCombiner = conf.getBoolean(BulkIngestKeyDedupeCombiner.USING_COMBINER, false);
+        Configuration combinerConf = new Configuration(conf);
+        combinerConf.setBoolean(BulkIngestKeyDedupeCombiner.USING_COMBINER, true);
+        combiner.setup(combinerConf);
         
         // get the tables to cache configuration
         for (Map.Entry<String,String> prop : conf) {
@@ -76,6 +104,28 @@ public class TableCachingContextWriter extends AbstractContextWriter<BulkIngestK
                 tableCacheConf.put(new Text(tableName), maxCacheSize);
             }
         }
+        if (conf.getBoolean(CACHE_COMBINED_TABLES, true)) {
+            for (Text table : combiner.getCombinedTables()) {
+                if (!tableCacheConf.containsKey(table) && !combiner.isTimestampDeduped(table)) {
+                    tableCacheConf.put(table, Integer.MAX_VALUE);
+                }
+            }
+        }
+        if (!usingCombiner) {
+            // the reducer would not restore the timestamps that the combiner rewrites for these tables
+            for (Iterator<Text> tables = tableCacheConf.keySet().iterator(); tables.hasNext();) {
+                Text table = tables.next();
+                if (combiner.isTimestampDeduped(table)) {
+                    log.warn("Not caching " + table + " as it is deduplicated by timestamp and " + BulkIngestKeyDedupeCombiner.USING_COMBINER
+                                    + " is not set");
+                    tables.remove();
+                }
+            }
+        }
+        maxCacheBytes = conf.getLong(MAX_CACHE_BYTES, DEFAULT_MAX_CACHE_BYTES);
+        if (log.isDebugEnabled()) {
+            log.debug("Caching tables " + tableCacheConf + " in up to " + maxCacheBytes + " bytes");
+        }
         
         // create and setup the chained context writer
         Class<ContextWriter<BulkIngestKey,Value>> contextWriterClass = null;
@@ -114,6 +164,16 @@ public class TableCachingContextWriter extends AbstractContextWriter<BulkIngestK
         if (!residual.isEmpty()) {
             contextWriter.write(residual, context);
         }
+        // flush the largest caches until we are back under the memory limit
+        while (cacheBytes > maxCacheBytes && !aggregatedCache.isEmpty()) {
+            TableCache largest = null;
+            for (TableCache tableCache : aggregatedCache.values()) {
+                if (largest == null || tableCache.bytes > largest.bytes) {
+                    largest = tableCache;
+                }
+            }
+            flush(largest, context);
+        }
     }
     
     @Override
@@ -126,19 +186,30 @@ public class TableCachingContextWriter extends AbstractContextWriter<BulkIngestK
     public void cleanup(TaskInputOutputContext<?,?,BulkIngestKey,Value> context) throws IOException, InterruptedException {
         super.cleanup(context);
         flushAll(context);
+        getCounter(context, COMBINED_VALUE_COUNTER, "TOTAL").increment(combiner.getCombined());
         contextWriter.cleanup(context);
     }
     
     private void flushAll(TaskInputOutputContext<?,?,BulkIngestKey,Value> context) throws IOException, InterruptedException {
         // pass all of the data through the delegate and clear the cache
-        for (Map.Entry<Text,Multimap<BulkIngestKey,Value>> entries : aggregatedCache.entrySet()) {
-            if (!entries.getValue().isEmpty()) {
-                getCounter(context, FLUSHED_BUFFER_TOTAL, entries.getKey().toString()).increment(entries.getValue().size());
-                getCounter(context, FLUSHED_BUFFER_COUNTER, entries.getKey().toString()).increment(1);
-                contextWriter.write(entries.getValue(), context);
-            }
+        for (TableCache tableCache : new ArrayList<>(aggregatedCache.values())) {
+            flush(tableCache, context);
         }
         aggregatedCache.clear();
+        cacheBytes = 0;
+    }
+    
+    /**
+     * Write out the cache of a table, in key order, and remove it
+     */
+    private void flush(TableCache tableCache, TaskInputOutputContext<?,?,BulkIngestKey,Value> context) throws IOException, InterruptedException {
+        if (!tableCache.entries.isEmpty()) {
+            getCounter(context, FLUSHED_BUFFER_TOTAL, tableCache.table.toString()).increment(tableCache.entries.size());
+            getCounter(context, FLUSHED_BUFFER_COUNTER, tableCache.table.toString()).increment(1);
+            contextWriter.write(tableCache.entries, context);
+        }
+        aggregatedCache.remove(tableCache.table);
+        cacheBytes -= tableCache.bytes;
     }
     
     private void cache(BulkIngestKey key, Collection<Value> values, TaskInputOutputContext<?,?,BulkIngestKey,Value> context) throws IOException,
@@ -146,29 +217,52 @@ public class TableCachingContextWriter extends AbstractContextWriter<BulkIngestK
         List<Value> valueList = new ArrayList<>();
         valueList.addAll(values);
         
-        Multimap<BulkIngestKey,Value> entries = aggregatedCache.get(key.getTableName());
-        if (entries != null) {
-            valueList.addAll(entries.removeAll(key));
+        TableCache tableCache = aggregatedCache.get(key.getTableName());
+        if (tableCache != null) {
+            Collection<Value> cached = tableCache.entries.removeAll(key);
+            if (!cached.isEmpty()) {
+                long removed = size(key, cached);
+                tableCache.bytes -= removed;
+                cacheBytes -= removed;
+                valueList.addAll(cached);
+            }
         } else {
-            entries = HashMultimap.create();
-            aggregatedCache.put(key.getTableName(), entries);
+            tableCache = new TableCache(key.getTableName());
+            aggregatedCache.put(key.getTableName(), tableCache);
         }
         
         // reduce the entries as needed
         if (valueList.size() > 1) {
-            entries.putAll(key, reduceValues(key, valueList, context));
+            // the reduced key may differ from the original, if the timestamp was deduplicated
+            Multimap<BulkIngestKey,Value> reduced = reduceValues(key, valueList, context);
+            for (BulkIngestKey reducedKey : reduced.keySet()) {
+                add(tableCache, reducedKey, reduced.get(reducedKey));
+            }
+            combiner.combined(valueList.size() - reduced.size());
         } else {
-            entries.putAll(key, valueList);
+            add(tableCache, key, valueList);
         }
         
         // now flush this tables cache if needed
-        if (entries.size() >= tableCacheConf.get(key.getTableName())) {
+        if (tableCache.entries.size() >= tableCacheConf.get(key.getTableName())) {
             // register that we overran the cache for this table
-            getCounter(context, FLUSHED_BUFFER_TOTAL, key.getTableName().toString()).increment(entries.size());
-            getCounter(context, FLUSHED_BUFFER_COUNTER, key.getTableName().toString()).increment(1);
-            contextWriter.write(entries, context);
-            aggregatedCache.remove(key.getTableName());
+            flush(tableCache, context);
+        }
+    }
+    
+    private void add(TableCache tableCache, BulkIngestKey key, Collection<Value> values) {
+        tableCache.entries.putAll(key, values);
+        long added = size(key, values);
+        tableCache.bytes += added;
+        cacheBytes += added;
+    }
+    
+    private static long size(BulkIngestKey key, Collection<Value> values) {
+        long size = ENTRY_OVERHEAD + key.getKey().getSize();
+        for (Value value : values) {
+            size += ENTRY_OVERHEAD + value.getSize();
         }
+        return size;
     }
     
     /**
@@ -177,20 +271,81 @@ public class TableCachingContextWriter extends AbstractContextWriter<BulkIngestK
      * @param key
      * @param values
      * @param context
-     * @return the reduced collection of values
+     * @return the reduced keys and values
      * @throws IOException
      * @throws InterruptedException
      */
-    private Collection<Value> reduceValues(BulkIngestKey key, Collection<Value> values, TaskInputOutputContext<?,?,BulkIngestKey,Value> context)
+    private Multimap<BulkIngestKey,Value> reduceValues(BulkIngestKey key, Collection<Value> values, TaskInputOutputContext<?,?,BulkIngestKey,Value> context)
                     throws IOException, InterruptedException {
         combiner.doReduce(key, values, context);
         try {
-            return combinerCache.getValues(key);
+            return combinerCache.getEntries();
         } finally {
             combinerCache.clear();
         }
     }
     
+    /**
+     * The sorted cache of a table
+     */
+    private static class TableCache {
+        private final Text table;
+        private final ListMultimap<BulkIngestKey,Value> entries = Multimaps.newListMultimap(new TreeMap<BulkIngestKey,Collection<Value>>(),
+                        new Supplier<List<Value>>() {
+                            @Override
+                            public List<Value> get() {
+                                return new ArrayList<>(1);
+                            }
+                        });
+        private long bytes = 0;
+        
+        TableCache(Text table) {
+            this.table = table;
+        }
+    }
+    
+    /**
+     * The combiner used to reduce the values of a cached key, which reduces into a {@link CachingContextWriter}
+     */
+    private static class CachingCombiner extends BulkIngestKeyDedupeCombiner<BulkIngestKey,Value> {
+        private final CachingContextWriter cache;
+        private long combined = 0;
+        
+        CachingCombiner(CachingContextWriter cache) {
+            this.cache = cache;
+        }
+        
+        @Override
+        protected void setupContextWriter(Configuration conf) throws IOException {
+            setContextWriter(cache);
+        }
+        
+        /**
+         * @return the tables with combiners configured, for which aggregation has not been turned off
+         */
+        Set<Text> getCombinedTables() {
+            Set<Text> tables = new HashSet<>();
+            for (Text table : combiners.keySet()) {
+                if (useAggregators(table)) {
+                    tables.add(table);
+                }
+            }
+            return tables;
+        }
+        
+        boolean isTimestampDeduped(Text table) {
+            return TSDedupTables.contains(table) && !noTSDedupTables.contains(table);
+        }
+        
+        void combined(long count) {
+            combined += count;
+        }
+        
+        long getCombined() {
+            return combined;
+        }
+    }
+    
     /**
      * This is a context writer that simply puts the keys into a cache, retrievable by the getKeys() and getValues() call
      */
@@ -206,6 +361,10 @@ public class TableCachingContextWriter extends AbstractContextWriter<BulkIngestK
             return reduced.get(key);
         }
         
+        public Multimap<BulkIngestKey,Value> getEntries() {
+            return reduced;
+        }
+        
         public void clear() {
             reduced = HashMultimap.create();
         }
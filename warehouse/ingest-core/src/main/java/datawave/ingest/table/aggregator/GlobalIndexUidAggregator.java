@@ -1,5 +1,6 @@
 package datawave.ingest.table.aggregator;
 
+import java.io.IOException;
 import java.util.HashSet;
 import java.util.Iterator;
 
@@ -7,26 +8,36 @@ import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Value;
 import org.apache.log4j.Logger;
 
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
 import com.google.protobuf.InvalidProtocolBufferException;
 
-import datawave.ingest.protobuf.Uid;
-
 /**
  * Implementation of an Aggregator that aggregates objects of the type Uid.List. This is an optimization for the shardIndex and shardReverseIndex, where the
  * list of UIDs for events will be maintained in the global index for low cardinality terms.
  * 
- * 
+ * Since this runs for every key in the index tables during compactions, the Uid.List values are read and written directly with the protobuf streams rather
+ * than through Uid.List objects, and the UIDs are kept as sorted byte slices in reusable {@link SortedUidSet}s. The resulting Uid.List holds its UIDs in
+ * sorted order.
  * 
  */
 public class GlobalIndexUidAggregator extends PropogatingCombiner {
     private static final Logger log = Logger.getLogger(GlobalIndexUidAggregator.class);
-    private Uid.List.Builder builder = Uid.List.newBuilder();
+    
+    /**
+     * Field numbers of the Uid.List message
+     */
+    private static final int IGNORE_FIELD = 1;
+    private static final int COUNT_FIELD = 2;
+    private static final int UID_FIELD = 3;
+    private static final int REMOVEDUID_FIELD = 4;
+    private static final int QUARANTINEUID_FIELD = 5;
     
     /**
      * Using a set instead of a list so that duplicate UIDs are filtered out of the list. This might happen in the case of rows with masked fields that share a
      * UID.
      */
-    private HashSet<String> uids = new HashSet<>();
+    private SortedUidSet uids = new SortedUidSet();
     
     public GlobalIndexUidAggregator(int max) {
         this.maxUids = max;
@@ -39,17 +50,22 @@ public class GlobalIndexUidAggregator extends PropogatingCombiner {
     /**
      * List of UIDs to remove.
      */
-    private HashSet<String> uidsToRemove = new HashSet<>();
+    private SortedUidSet uidsToRemove = new SortedUidSet();
     
     /**
      * List of UIDs to remove.
      */
-    private HashSet<String> quarantinedIds = new HashSet<>();
+    private SortedUidSet quarantinedIds = new SortedUidSet();
     
     /**
      * List of UIDs to remove.
      */
-    private HashSet<String> releasedUids = new HashSet<>();
+    private SortedUidSet releasedUids = new SortedUidSet();
+    
+    /**
+     * the value being collected, decoded in place
+     */
+    private UidListSlices value = new UidListSlices();
     
     /**
      * flag for whether or not we have seen ignore
@@ -80,16 +96,14 @@ public class GlobalIndexUidAggregator extends PropogatingCombiner {
         
         // as a backup, we remove the intersection of the UID sets
         
-        builder.setCOUNT(count);
-        
+        boolean ignore;
         if (seenIgnore || count > maxUids) {
-            builder.setIGNORE(true);
-            builder.clearUID();
+            ignore = true;
             // if we catch seenIgnore, then there is
             // no need to propogate removals.
             propogate = false;
         } else {
-            builder.setIGNORE(false);
+            ignore = false;
             
             uidsToRemove.removeAll(quarantinedIds);
             uidsToRemove.removeAll(releasedUids);
@@ -103,24 +117,40 @@ public class GlobalIndexUidAggregator extends PropogatingCombiner {
                     log.debug("Adding released UIDS");
                 uids.addAll(releasedUids);
             }
-            
-            builder.addAllUID(uids);
         }
         
         if (log.isDebugEnabled())
             log.debug("Propogating: " + propogate);
         
-        // clear all removals
-        builder.clearREMOVEDUID();
-        
+        int size = CodedOutputStream.computeBoolSize(IGNORE_FIELD, ignore) + CodedOutputStream.computeUInt64Size(COUNT_FIELD, count);
+        if (!ignore) {
+            size += uids.getSerializedSize(UID_FIELD);
+        }
         if (propogate) {
-            
-            builder.addAllREMOVEDUID(uidsToRemove);
-            builder.addAllQUARANTINEUID(quarantinedIds);
+            size += uidsToRemove.getSerializedSize(REMOVEDUID_FIELD) + quarantinedIds.getSerializedSize(QUARANTINEUID_FIELD);
+        }
+        
+        byte[] bytes = new byte[size];
+        CodedOutputStream output = CodedOutputStream.newInstance(bytes);
+        try {
+            // fields are written in field number order, as the generated Uid.List would write them
+            output.writeBool(IGNORE_FIELD, ignore);
+            output.writeUInt64(COUNT_FIELD, count);
+            if (!ignore) {
+                uids.writeTo(output, UID_FIELD);
+            }
+            if (propogate) {
+                uidsToRemove.writeTo(output, REMOVEDUID_FIELD);
+                quarantinedIds.writeTo(output, QUARANTINEUID_FIELD);
+            }
+            output.checkNoSpaceLeft();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to serialize Uid.List", e);
         }
+        
         if (log.isDebugEnabled())
-            log.debug("Building aggregate. Count is " + count + ", uids.size() is " + uids.size() + ". builder size is " + builder.getUIDList().size());
-        return new Value(builder.build().toByteArray());
+            log.debug("Building aggregate. Count is " + count + ", uids.size() is " + uids.size() + ". ignore is " + ignore);
+        return new Value(bytes, false);
         
     }
     
@@ -141,19 +171,21 @@ public class GlobalIndexUidAggregator extends PropogatingCombiner {
             log.trace("has next ? " + iter.hasNext());
         while (iter.hasNext()) {
             
-            Value value = iter.next();
+            Value next = iter.next();
             
             // Collect the values, which are serialized Uid.List objects
             try {
-                Uid.List v = Uid.List.parseFrom(value.get());
+                UidListSlices v = value;
+                v.parse(next.get(), next.getSize());
+                byte[] bytes = v.bytes;
                 
-                long delta = v.getCOUNT();
+                long delta = v.count;
                 
                 count += delta;
                 /**
                  * Fail fast approach.
                  */
-                if (v.getIGNORE()) {
+                if (v.ignore) {
                     seenIgnore = true;
                     if (log.isDebugEnabled())
                         log.debug("SeenIgnore is true. Skipping collections");
@@ -163,21 +195,25 @@ public class GlobalIndexUidAggregator extends PropogatingCombiner {
                 // in the protobuf into our object's uid list.
                 if (delta > 0) {
                     
-                    for (String uid : v.getQUARANTINEUIDList()) {
+                    for (int i = 0; i < v.quarantined.size; i++) {
+                        int offset = v.quarantined.offsets[i];
+                        int length = v.quarantined.lengths[i];
                         
-                        quarantinedIds.remove(uid);
-                        releasedUids.add(uid);
+                        quarantinedIds.remove(bytes, offset, length);
+                        releasedUids.add(bytes, offset, length);
                     }
                     
-                    for (String uid : v.getUIDList()) {
+                    for (int i = 0; i < v.uids.size; i++) {
+                        int offset = v.uids.offsets[i];
+                        int length = v.uids.lengths[i];
                         
                         // check that a removal has not occurred
                         // if it has, we decrement the count, from above.
-                        if (!uidsToRemove.contains(uid) && !quarantinedIds.contains(uid)) {
+                        if (!uidsToRemove.contains(bytes, offset, length) && !quarantinedIds.contains(bytes, offset, length)) {
                             
                             // add the UID iff we are under our MAX
                             if (uids.size() < maxUids)
-                                uids.add(uid);
+                                uids.add(bytes, offset, length);
                             
                         }
                         
@@ -190,30 +226,30 @@ public class GlobalIndexUidAggregator extends PropogatingCombiner {
                 } else if (delta < 0 && !seenIgnore) {
                     
                     // so that we can perform the decrement
-                    for (String uid : v.getREMOVEDUIDList()) {
-                        
-                        uidsToRemove.add(uid);
-                        
-                        if (uids.contains(uid)) {
-                            
-                            uids.remove(uid);
-                        }
+                    for (int i = 0; i < v.removed.size; i++) {
+                        int offset = v.removed.offsets[i];
+                        int length = v.removed.lengths[i];
                         
+                        uidsToRemove.add(bytes, offset, length);
+                        uids.remove(bytes, offset, length);
                     }
                     
-                    quarantinedIds.addAll(v.getQUARANTINEUIDList());
+                    for (int i = 0; i < v.quarantined.size; i++) {
+                        quarantinedIds.add(bytes, v.quarantined.offsets[i], v.quarantined.lengths[i]);
+                    }
                     
                     /**
                      * This is added for backwards compatability. The removal list was added to ensure that removals are propogated across compactions. In the
                      * case where compactions did not occur, and the indices are converted into the newer protobuff, we must use the UID list to maintain
                      * removals for deltas less than 0
                      */
-                    for (String uid : v.getUIDList()) {
+                    for (int i = 0; i < v.uids.size; i++) {
+                        int offset = v.uids.offsets[i];
+                        int length = v.uids.lengths[i];
+                        
                         // add to uidsToRemove, and decrement count if the uid is in UIDS
-                        uidsToRemove.add(uid);
-                        if (uids.contains(uid)) {
-                            uids.remove(uid);
-                        }
+                        uidsToRemove.add(bytes, offset, length);
+                        uids.remove(bytes, offset, length);
                     }
                 }
                 
@@ -233,7 +269,6 @@ public class GlobalIndexUidAggregator extends PropogatingCombiner {
             log.debug("Resetting GlobalIndexUidAggregator");
         count = 0;
         seenIgnore = false;
-        builder = Uid.List.newBuilder();
         uids.clear();
         uidsToRemove.clear();
         releasedUids.clear();
@@ -254,18 +289,110 @@ public class GlobalIndexUidAggregator extends PropogatingCombiner {
         if ((seenIgnore && count > maxUids) || !quarantinedIds.isEmpty())
             return true;
         
-        HashSet<String> uidsCopy = new HashSet<>(uids);
-        uidsCopy.removeAll(uidsToRemove);
+        boolean uidsRemain = uids.hasUidNotIn(uidsToRemove);
         
         if (log.isDebugEnabled()) {
-            log.debug(count + " " + uids.size() + " " + uidsToRemove.size() + " " + uidsCopy.size() + " removing " + (count == 0 && uidsCopy.isEmpty()));
+            log.debug(count + " " + uids.size() + " " + uidsToRemove.size() + " removing " + (count == 0 && !uidsRemain));
         }
         
         // if <= 0 and uids is empty, we can safely remove
-        if (count <= 0 && uidsCopy.isEmpty())
+        if (count <= 0 && !uidsRemain)
             return false;
         else
             return true;
     }
     
+    /**
+     * The offsets and lengths of a repeated string field within a serialized Uid.List
+     */
+    private static class Slices {
+        private int[] offsets = new int[32];
+        private int[] lengths = new int[32];
+        private int size = 0;
+        
+        void add(int offset, int length) {
+            if (size == offsets.length) {
+                int[] newOffsets = new int[size * 2];
+                int[] newLengths = new int[size * 2];
+                System.arraycopy(offsets, 0, newOffsets, 0, size);
+                System.arraycopy(lengths, 0, newLengths, 0, size);
+                offsets = newOffsets;
+                lengths = newLengths;
+            }
+            offsets[size] = offset;
+            lengths[size] = length;
+            size++;
+        }
+    }
+    
+    /**
+     * A serialized Uid.List decoded in place: the UID strings are left as slices of the serialized bytes.
+     */
+    private static class UidListSlices {
+        private byte[] bytes;
+        private boolean ignore;
+        private long count;
+        private final Slices uids = new Slices();
+        private final Slices removed = new Slices();
+        private final Slices quarantined = new Slices();
+        
+        void parse(byte[] bytes, int length) throws InvalidProtocolBufferException {
+            this.bytes = bytes;
+            uids.size = 0;
+            removed.size = 0;
+            quarantined.size = 0;
+            boolean hasIgnore = false;
+            boolean hasCount = false;
+            
+            CodedInputStream input = CodedInputStream.newInstance(bytes, 0, length);
+            try {
+                boolean done = false;
+                while (!done) {
+                    int tag = input.readTag();
+                    switch (tag) {
+                        case 0:
+                            done = true;
+                            break;
+                        case (IGNORE_FIELD << 3):
+                            ignore = input.readBool();
+                            hasIgnore = true;
+                            break;
+                        case (COUNT_FIELD << 3):
+                            count = input.readUInt64();
+                            hasCount = true;
+                            break;
+                        case (UID_FIELD << 3) | 2:
+                            readSlice(input, uids);
+                            break;
+                        case (REMOVEDUID_FIELD << 3) | 2:
+                            readSlice(input, removed);
+                            break;
+                        case (QUARANTINEUID_FIELD << 3) | 2:
+                            readSlice(input, quarantined);
+                            break;
+                        default:
+                            if (!input.skipField(tag)) {
+                                done = true;
+                            }
+                            break;
+                    }
+                }
+            } catch (InvalidProtocolBufferException e) {
+                throw e;
+            } catch (IOException e) {
+                throw new InvalidProtocolBufferException(e.getMessage());
+            }
+            
+            if (!hasIgnore || !hasCount) {
+                throw new InvalidProtocolBufferException("Message missing required fields: " + (hasIgnore ? "" : "IGNORE ") + (hasCount ? "" : "COUNT"));
+            }
+        }
+        
+        private static void readSlice(CodedInputStream input, Slices slices) throws IOException {
+            int length = input.readRawVarint32();
+            int offset = input.getTotalBytesRead();
+            input.skipRawBytes(length);
+            slices.add(offset, length);
+        }
+    }
 }
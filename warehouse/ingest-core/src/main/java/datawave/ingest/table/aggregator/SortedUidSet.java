@@ -0,0 +1,261 @@
+package datawave.ingest.table.aggregator;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+
+/**
+ * A set of UIDs held as sorted slices of a single reusable byte array, for the {@link GlobalIndexUidAggregator}. The UIDs are kept in their serialized UTF-8
+ * form, ordered by unsigned byte comparison, so that they can be copied straight from and to a Uid.List without creating a String for each one, and so that
+ * whole sets can be combined with a linear merge. Clearing the set keeps its arrays for the next key.
+ */
+class SortedUidSet {
+    
+    private byte[] bytes = new byte[512];
+    private int bytesLength = 0;
+    
+    private int[] offsets = new int[32];
+    private int[] lengths = new int[32];
+    private int size = 0;
+    
+    // reused when merging another set into this one
+    private int[] mergedOffsets = new int[32];
+    private int[] mergedLengths = new int[32];
+    
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    public void clear() {
+        size = 0;
+        bytesLength = 0;
+    }
+    
+    private static int compare(byte[] a, int aOffset, int aLength, byte[] b, int bOffset, int bLength) {
+        int end = Math.min(aLength, bLength);
+        for (int i = 0; i < end; i++) {
+            int comparison = (a[aOffset + i] & 0xff) - (b[bOffset + i] & 0xff);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return aLength - bLength;
+    }
+    
+    private int compare(int index, SortedUidSet other, int otherIndex) {
+        return compare(bytes, offsets[index], lengths[index], other.bytes, other.offsets[otherIndex], other.lengths[otherIndex]);
+    }
+    
+    /**
+     * @return the index of the uid, or (-(insertion point) - 1) if it is not in the set
+     */
+    private int find(byte[] uid, int offset, int length) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int comparison = compare(bytes, offsets[mid], lengths[mid], uid, offset, length);
+            if (comparison < 0) {
+                low = mid + 1;
+            } else if (comparison > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+    
+    public boolean contains(byte[] uid, int offset, int length) {
+        return find(uid, offset, length) >= 0;
+    }
+    
+    public boolean contains(String uid) {
+        byte[] utf8 = uid.getBytes(StandardCharsets.UTF_8);
+        return contains(utf8, 0, utf8.length);
+    }
+    
+    public boolean add(byte[] uid, int offset, int length) {
+        int index = find(uid, offset, length);
+        if (index >= 0) {
+            return false;
+        }
+        index = -index - 1;
+        ensureSlices(size + 1);
+        System.arraycopy(offsets, index, offsets, index + 1, size - index);
+        System.arraycopy(lengths, index, lengths, index + 1, size - index);
+        offsets[index] = append(uid, offset, length);
+        lengths[index] = length;
+        size++;
+        return true;
+    }
+    
+    public boolean add(String uid) {
+        byte[] utf8 = uid.getBytes(StandardCharsets.UTF_8);
+        return add(utf8, 0, utf8.length);
+    }
+    
+    public boolean remove(byte[] uid, int offset, int length) {
+        int index = find(uid, offset, length);
+        if (index < 0) {
+            return false;
+        }
+        System.arraycopy(offsets, index + 1, offsets, index, size - index - 1);
+        System.arraycopy(lengths, index + 1, lengths, index, size - index - 1);
+        size--;
+        return true;
+    }
+    
+    /**
+     * Remove every uid in another set, as a single merge of the two sorted sets
+     *
+     * @param other
+     */
+    public void removeAll(SortedUidSet other) {
+        int kept = 0;
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            int comparison = 1;
+            while (j < other.size && (comparison = other.compare(j, this, i)) < 0) {
+                j++;
+            }
+            if (j < other.size && comparison == 0) {
+                j++;
+            } else {
+                offsets[kept] = offsets[i];
+                lengths[kept] = lengths[i];
+                kept++;
+            }
+        }
+        size = kept;
+    }
+    
+    /**
+     * Add every uid in another set, as a single merge of the two sorted sets
+     *
+     * @param other
+     */
+    public void addAll(SortedUidSet other) {
+        if (other.size == 0) {
+            return;
+        }
+        int capacity = size + other.size;
+        if (mergedOffsets.length < capacity) {
+            mergedOffsets = new int[Math.max(capacity, mergedOffsets.length * 2)];
+            mergedLengths = new int[mergedOffsets.length];
+        }
+        int merged = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            int comparison = (i == size ? 1 : (j == other.size ? -1 : compare(i, other, j)));
+            if (comparison <= 0) {
+                mergedOffsets[merged] = offsets[i];
+                mergedLengths[merged] = lengths[i];
+                i++;
+                if (comparison == 0) {
+                    j++;
+                }
+            } else {
+                mergedOffsets[merged] = append(other.bytes, other.offsets[j], other.lengths[j]);
+                mergedLengths[merged] = other.lengths[j];
+                j++;
+            }
+            merged++;
+        }
+        
+        int[] swap = offsets;
+        offsets = mergedOffsets;
+        mergedOffsets = swap;
+        swap = lengths;
+        lengths = mergedLengths;
+        mergedLengths = swap;
+        size = merged;
+    }
+    
+    /**
+     * @return true if this set has a uid that is not in the other set
+     */
+    public boolean hasUidNotIn(SortedUidSet other) {
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            int comparison = 1;
+            while (j < other.size && (comparison = other.compare(j, this, i)) < 0) {
+                j++;
+            }
+            if (j == other.size || comparison != 0) {
+                return true;
+            }
+            j++;
+        }
+        return false;
+    }
+    
+    /**
+     * @return the uids as Strings, in order
+     */
+    public String[] toArray() {
+        String[] uids = new String[size];
+        for (int i = 0; i < size; i++) {
+            uids[i] = new String(bytes, offsets[i], lengths[i], StandardCharsets.UTF_8);
+        }
+        return uids;
+    }
+    
+    /**
+     * @return the serialized size of the uids as a repeated string field
+     */
+    public int getSerializedSize(int fieldNumber) {
+        int serializedSize = size * CodedOutputStream.computeTagSize(fieldNumber);
+        for (int i = 0; i < size; i++) {
+            serializedSize += CodedOutputStream.computeRawVarint32Size(lengths[i]) + lengths[i];
+        }
+        return serializedSize;
+    }
+    
+    /**
+     * Write the uids as a repeated string field
+     */
+    public void writeTo(CodedOutputStream output, int fieldNumber) throws IOException {
+        for (int i = 0; i < size; i++) {
+            output.writeTag(fieldNumber, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            output.writeRawVarint32(lengths[i]);
+            output.writeRawBytes(bytes, offsets[i], lengths[i]);
+        }
+    }
+    
+    private void ensureSlices(int capacity) {
+        if (offsets.length < capacity) {
+            int newLength = Math.max(capacity, offsets.length * 2);
+            int[] newOffsets = new int[newLength];
+            int[] newLengths = new int[newLength];
+            System.arraycopy(offsets, 0, newOffsets, 0, size);
+            System.arraycopy(lengths, 0, newLengths, 0, size);
+            offsets = newOffsets;
+            lengths = newLengths;
+        }
+    }
+    
+    /**
+     * Copy a uid into the byte array
+     *
+     * @return the offset of the copy
+     */
+    private int append(byte[] uid, int offset, int length) {
+        if (bytesLength + length > bytes.length) {
+            byte[] newBytes = new byte[Math.max(bytesLength + length, bytes.length * 2)];
+            System.arraycopy(bytes, 0, newBytes, 0, bytesLength);
+            bytes = newBytes;
+        }
+        System.arraycopy(uid, offset, bytes, bytesLength, length);
+        int start = bytesLength;
+        bytesLength += length;
+        return start;
+    }
+}
@@ -41,8 +41,10 @@ import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.text.DecimalFormat;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Observable;
 import java.util.Observer;
 import java.util.concurrent.ConcurrentHashMap;
@@ -77,6 +79,8 @@ public class FlagMaker implements Runnable, Observer, SizeValidator {
     private final Cache<Path,Path> directoryCache;
     // Executor will be used for directory lookups
     private ExecutorService executor;
+    // input files found in previous cycles, so that only changed directories are listed
+    private final InputFileIndex inputIndex;
     private final FlagMakerConfig fmc;
     final FlagDistributor fd;
     private volatile boolean running = true;
@@ -104,6 +108,11 @@ public class FlagMaker implements Runnable, Observer, SizeValidator {
                 .concurrencyLevel(fmc.getMaxHdfsThreads())
                 .build();
         // @formatter:on
+        try {
+            this.inputIndex = new InputFileIndex(fmc.getFilePattern(), fmc.getDiscoverySettleMilliSecs(), executor);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid file pattern " + fmc.getFilePattern(), e);
+        }
     }
     
     public static void main(String... args) throws Exception {
@@ -238,13 +247,18 @@ public class FlagMaker implements Runnable, Observer, SizeValidator {
     protected void processFlags() throws IOException {
         FileSystem fs = getHadoopFS();
         log.trace("Querying for files on {}", fs.getUri().toString());
+        Map<String,Map<String,List<FileStatus>>> inputs = inputIndex.refresh(fs, fmc.getFlagConfigs());
+        if (inputIndex.getNewFiles() > 0) {
+            log.info("Found {} new input files in {} ms, max arrival latency {} ms", inputIndex.getNewFiles(), inputIndex.getDiscoveryMillis(),
+                            inputIndex.getMaxArrivalLatencyMillis());
+        }
         for (FlagDataTypeConfig fc : fmc.getFlagConfigs()) {
             long startTime = System.currentTimeMillis();
             String dataName = fc.getDataName();
             fd.setup(fc);
             log.trace("Checking for files for {}", dataName);
             
-            loadFilesForDistributor(fc, fs);
+            addFilesToDistributor(fc, inputs.get(dataName));
             
             while (fd.hasNext(shouldOnlyCreateFullFlags(fc)) && running) {
                 Collection<InputFile> inFiles = fd.next(this);
@@ -268,13 +282,23 @@ public class FlagMaker implements Runnable, Observer, SizeValidator {
      *             error condition finding files in hadoop
      */
     void loadFilesForDistributor(FlagDataTypeConfig fc, FileSystem fs) throws IOException {
-        for (String folder : fc.getFolder()) {
-            String folderPattern = folder + "/" + fmc.getFilePattern();
-            log.trace("searching for " + fc.getDataName() + " files in " + folderPattern);
-            FileStatus[] files = fs.globStatus(new Path(folderPattern));
-            if (files == null || files.length == 0) {
-                continue;
-            }
+        addFilesToDistributor(fc, inputIndex.refresh(fs, Collections.singletonList(fc)).get(fc.getDataName()));
+    }
+    
+    /**
+     * Adds the input files found for the data type to the {@link FlagDistributor}.
+     * 
+     * @param fc
+     *            flag datatype configuration data
+     * @param files
+     *            the input files by folder
+     */
+    private void addFilesToDistributor(FlagDataTypeConfig fc, Map<String,List<FileStatus>> files) {
+        if (files == null) {
+            return;
+        }
+        for (Map.Entry<String,List<FileStatus>> entry : files.entrySet()) {
+            String folder = entry.getKey();
             
             // remove the base directory from the folder
             if (folder.startsWith(this.fmc.getBaseHDFSDir())) {
@@ -285,7 +309,7 @@ public class FlagMaker implements Runnable, Observer, SizeValidator {
             }
             
             // add the files
-            for (FileStatus status : files) {
+            for (FileStatus status : entry.getValue()) {
                 if (status.isDirectory()) {
                     log.warn("Skipping subdirectory " + status.getPath());
                 } else {
@@ -405,6 +429,8 @@ public class FlagMaker implements Runnable, Observer, SizeValidator {
         final FileSystem fs = getHadoopFS();
         long now = System.currentTimeMillis();
         final FlagMetrics metrics = new FlagMetrics(fs, fc.isCollectMetrics());
+        metrics.updateCounter(InputFileIndex.class.getSimpleName(), "DiscoveryMillis", inputIndex.getDiscoveryMillis());
+        metrics.updateCounter(InputFileIndex.class.getSimpleName(), "MaxArrivalLatencyMillis", inputIndex.getMaxArrivalLatencyMillis());
         List<Future<InputFile>> futures = Lists.newArrayList();
         
         try {
@@ -0,0 +1,386 @@
+package datawave.util.flag;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.google.common.util.concurrent.Futures;
+import datawave.util.flag.config.FlagDataTypeConfig;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.GlobFilter;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Index of the input files found in the folders of each data type, kept between FlagMaker cycles. The file pattern is split into a pattern for the
+ * directories holding the input files and a pattern for the file names. Each cycle only the directories are globbed, which is a small listing, and a directory
+ * is only listed again when its modification time has changed, which happens whenever a file is added to, renamed into or moved out of it. The globs, and
+ * then the listings, of all of the data types and folders run in parallel.
+ * <p>
+ * A directory modified within the settle time of its last listing is always listed again, as files may arrive within the resolution of the modification time,
+ * and the modification time is set by the clock of the file system rather than the local clock.
+ * <p>
+ * Writing to a file does not change the modification time of its directory, so the status of a file that may still be open is taken again whenever the
+ * listing of its directory is reused. A file that has not been modified for the settle time is treated as closed. A more recent file is open until the
+ * NameNode reports it closed on HDFS, and until the settle time has passed elsewhere, so the NameNode is only asked about recently modified files.
+ */
+public class InputFileIndex {
+    
+    private static final Logger log = LoggerFactory.getLogger(InputFileIndex.class);
+    
+    private final ExecutorService executor;
+    private final long settleMillis;
+    // the pattern of the directories under each folder, or null if the file pattern cannot be split
+    private final String directoryPattern;
+    private final PathFilter fileFilter;
+    private final String filePattern;
+    
+    // data type -> folder -> directory -> listing
+    private final Map<String,Map<String,Map<Path,Listing>>> index = new ConcurrentHashMap<>();
+    
+    // statistics for the last refresh
+    private volatile long discoveryMillis = 0;
+    private volatile int directoriesListed = 0;
+    private volatile int directoriesReused = 0;
+    private volatile int newFiles = 0;
+    private volatile long maxArrivalLatencyMillis = 0;
+    
+    /**
+     * @param filePattern
+     *            the glob pattern of the input files, relative to each folder
+     * @param settleMillis
+     *            the time after a listing during which a directory listing is not reused
+     * @param executor
+     *            the executor used to glob and list directories
+     * @throws IOException
+     *             if the pattern of the file names is invalid
+     */
+    public InputFileIndex(String filePattern, long settleMillis, ExecutorService executor) throws IOException {
+        this.executor = executor;
+        this.settleMillis = settleMillis;
+        this.filePattern = filePattern;
+        
+        int slash = filePattern.lastIndexOf('/');
+        String dirs = (slash < 0 ? "" : filePattern.substring(0, slash));
+        String files = filePattern.substring(slash + 1);
+        if (isBalanced(dirs) && !files.isEmpty()) {
+            this.directoryPattern = dirs;
+            this.fileFilter = new GlobFilter(files);
+        } else {
+            // an alternation spanning directories, so glob the whole pattern each time
+            log.warn("Unable to split file pattern {}, input files will not be indexed", filePattern);
+            this.directoryPattern = null;
+            this.fileFilter = null;
+        }
+    }
+    
+    private static boolean isBalanced(String pattern) {
+        int depth = 0;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '{') {
+                depth++;
+            } else if (c == '}') {
+                depth--;
+            }
+        }
+        return depth == 0;
+    }
+    
+    /**
+     * Find the input files in the folders of the data types, listing only the directories that have changed since the last refresh.
+     *
+     * @param fs
+     *            hadoop filesystem
+     * @param configs
+     *            the data types to refresh
+     * @return the input files of each data type by folder
+     * @throws IOException
+     *             error condition finding files in hadoop
+     */
+    public Map<String,Map<String,List<FileStatus>>> refresh(final FileSystem fs, Collection<FlagDataTypeConfig> configs) throws IOException {
+        long start = System.currentTimeMillis();
+        
+        // glob the directories of each folder
+        Map<String,Map<String,Future<FileStatus[]>>> globs = new LinkedHashMap<>();
+        for (FlagDataTypeConfig fc : configs) {
+            Map<String,Future<FileStatus[]>> folders = new LinkedHashMap<>();
+            for (final String folder : fc.getFolder()) {
+                final String pattern = (directoryPattern == null ? folder + "/" + filePattern : (directoryPattern.isEmpty() ? folder : folder + "/"
+                                + directoryPattern));
+                log.trace("searching for {} files in {}", fc.getDataName(), pattern);
+                folders.put(folder, executor.submit(new Callable<FileStatus[]>() {
+                    @Override
+                    public FileStatus[] call() throws IOException {
+                        return fs.globStatus(new Path(pattern));
+                    }
+                }));
+            }
+            globs.put(fc.getDataName(), folders);
+        }
+        
+        // list the directories that have changed
+        Map<String,Map<String,Map<Path,Future<Listing>>>> listings = new LinkedHashMap<>();
+        int listed = 0;
+        int reused = 0;
+        for (Map.Entry<String,Map<String,Future<FileStatus[]>>> dataType : globs.entrySet()) {
+            Map<String,Map<Path,Listing>> previous = index.get(dataType.getKey());
+            Map<String,Map<Path,Future<Listing>>> folders = new LinkedHashMap<>();
+            for (Map.Entry<String,Future<FileStatus[]>> folder : dataType.getValue().entrySet()) {
+                FileStatus[] statuses = get(folder.getValue());
+                Map<Path,Listing> last = (previous == null ? null : previous.get(folder.getKey()));
+                Map<Path,Future<Listing>> directories = new LinkedHashMap<>();
+                if (statuses != null && directoryPattern == null) {
+                    directories.put(new Path(folder.getKey()), new Listing(-1, start, statuses, Collections.<Path> emptySet()).done());
+                } else if (statuses != null) {
+                    for (final FileStatus status : statuses) {
+                        if (!status.isDirectory()) {
+                            continue;
+                        }
+                        Listing listing = (last == null ? null : last.get(status.getPath()));
+                        if (listing != null && listing.isCurrent(status.getModificationTime())) {
+                            if (listing.open.isEmpty()) {
+                                directories.put(status.getPath(), listing.done());
+                            } else {
+                                final Listing reusing = listing;
+                                directories.put(status.getPath(), executor.submit(new Callable<Listing>() {
+                                    @Override
+                                    public Listing call() throws IOException {
+                                        return refreshOpenFiles(fs, reusing);
+                                    }
+                                }));
+                            }
+                            reused++;
+                        } else {
+                            directories.put(status.getPath(), executor.submit(new Callable<Listing>() {
+                                @Override
+                                public Listing call() throws IOException {
+                                    return list(fs, status);
+                                }
+                            }));
+                            listed++;
+                        }
+                    }
+                }
+                folders.put(folder.getKey(), directories);
+            }
+            listings.put(dataType.getKey(), folders);
+        }
+        
+        // gather the listings, replacing the index of each data type
+        Map<String,Map<String,List<FileStatus>>> results = new HashMap<>();
+        int found = 0;
+        int arrived = 0;
+        long maxLatency = 0;
+        for (Map.Entry<String,Map<String,Map<Path,Future<Listing>>>> dataType : listings.entrySet()) {
+            Map<String,Map<Path,Listing>> previous = index.get(dataType.getKey());
+            Map<String,Map<Path,Listing>> current = new HashMap<>();
+            Map<String,List<FileStatus>> files = new LinkedHashMap<>();
+            for (Map.Entry<String,Map<Path,Future<Listing>>> folder : dataType.getValue().entrySet()) {
+                Map<Path,Listing> last = (previous == null ? null : previous.get(folder.getKey()));
+                Map<Path,Listing> directories = new HashMap<>();
+                List<FileStatus> folderFiles = new ArrayList<>();
+                for (Map.Entry<Path,Future<Listing>> directory : folder.getValue().entrySet()) {
+                    Listing listing = get(directory.getValue());
+                    if (listing.modificationTime >= 0) {
+                        directories.put(directory.getKey(), listing);
+                    }
+                    Listing before = (last == null ? null : last.get(directory.getKey()));
+                    if (listing != before && listing.modificationTime >= 0) {
+                        Set<Path> seen = (before == null ? Collections.<Path> emptySet() : before.getPaths());
+                        for (FileStatus status : listing.files) {
+                            if (!seen.contains(status.getPath())) {
+                                arrived++;
+                                maxLatency = Math.max(maxLatency, listing.listedAt - status.getModificationTime());
+                            }
+                        }
+                    }
+                    folderFiles.addAll(Arrays.asList(listing.files));
+                }
+                found += folderFiles.size();
+                current.put(folder.getKey(), directories);
+                files.put(folder.getKey(), folderFiles);
+            }
+            index.put(dataType.getKey(), current);
+            results.put(dataType.getKey(), files);
+        }
+        
+        this.discoveryMillis = System.currentTimeMillis() - start;
+        this.directoriesListed = listed;
+        this.directoriesReused = reused;
+        this.newFiles = arrived;
+        this.maxArrivalLatencyMillis = maxLatency;
+        log.debug("Found {} input files ({} new) for {} data types in {} ms, listed {} and reused {} directories, max arrival latency {} ms", found, arrived,
+                        listings.size(), discoveryMillis, listed, reused, maxLatency);
+        return results;
+    }
+    
+    private Listing list(FileSystem fs, FileStatus directory) throws IOException {
+        long listedAt = System.currentTimeMillis();
+        FileStatus[] files;
+        try {
+            files = fs.listStatus(directory.getPath(), fileFilter);
+        } catch (FileNotFoundException e) {
+            // removed since the glob, so there is nothing to index
+            return new Listing(-1, listedAt, new FileStatus[0], Collections.<Path> emptySet());
+        }
+        Set<Path> open = new HashSet<>();
+        for (FileStatus file : files) {
+            if (isOpen(fs, file, listedAt)) {
+                open.add(file.getPath());
+            }
+        }
+        return new Listing(directory.getModificationTime(), listedAt, files, open);
+    }
+    
+    /**
+     * Take the status of the files of a reused listing that may still be open again, as their length may have changed since they were listed
+     */
+    private Listing refreshOpenFiles(FileSystem fs, Listing listing) throws IOException {
+        long now = System.currentTimeMillis();
+        List<FileStatus> files = new ArrayList<>(listing.files.length);
+        Set<Path> open = new HashSet<>();
+        for (FileStatus file : listing.files) {
+            if (listing.open.contains(file.getPath())) {
+                try {
+                    file = fs.getFileStatus(file.getPath());
+                } catch (FileNotFoundException e) {
+                    // moved out, which the next glob will see from the modification time of the directory
+                    continue;
+                }
+                if (isOpen(fs, file, now)) {
+                    open.add(file.getPath());
+                }
+            }
+            files.add(file);
+        }
+        return new Listing(listing.modificationTime, listing.listedAt, files.toArray(new FileStatus[files.size()]), open);
+    }
+    
+    private boolean isOpen(FileSystem fs, FileStatus file, long now) throws IOException {
+        if (file.isDirectory() || file.getModificationTime() + settleMillis <= now) {
+            return false;
+        }
+        if (fs instanceof DistributedFileSystem) {
+            try {
+                return !((DistributedFileSystem) fs).isFileClosed(file.getPath());
+            } catch (FileNotFoundException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static <T> T get(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while finding input files", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failure finding input files", e.getCause());
+        }
+    }
+    
+    /**
+     * Forget the directory listings of a data type, so that all of its directories are listed again on the next refresh
+     *
+     * @param dataName
+     *            the data type
+     */
+    public void invalidate(String dataName) {
+        index.remove(dataName);
+    }
+    
+    /**
+     * @return the time taken by the last refresh
+     */
+    public long getDiscoveryMillis() {
+        return discoveryMillis;
+    }
+    
+    /**
+     * @return the number of directories listed by the last refresh
+     */
+    public int getDirectoriesListed() {
+        return directoriesListed;
+    }
+    
+    /**
+     * @return the number of directory listings reused by the last refresh
+     */
+    public int getDirectoriesReused() {
+        return directoriesReused;
+    }
+    
+    /**
+     * @return the number of files found by the last refresh that had not been found before
+     */
+    public int getNewFiles() {
+        return newFiles;
+    }
+    
+    /**
+     * @return the longest time between the modification and the discovery of the new files of the last refresh
+     */
+    public long getMaxArrivalLatencyMillis() {
+        return maxArrivalLatencyMillis;
+    }
+    
+    /**
+     * The files of a directory, as of the directory modification time, and those of them that may still be open
+     */
+    private class Listing {
+        private final long modificationTime;
+        private final long listedAt;
+        private final FileStatus[] files;
+        private final Set<Path> open;
+        
+        Listing(long modificationTime, long listedAt, FileStatus[] files, Set<Path> open) {
+            this.modificationTime = modificationTime;
+            this.listedAt = listedAt;
+            this.files = (files == null ? new FileStatus[0] : files);
+            this.open = open;
+        }
+        
+        boolean isCurrent(long directoryModificationTime) {
+            return modificationTime == directoryModificationTime && modificationTime + settleMillis <= listedAt;
+        }
+        
+        Set<Path> getPaths() {
+            Set<Path> paths = new HashSet<>();
+            for (FileStatus status : files) {
+                paths.add(status.getPath());
+            }
+            return paths;
+        }
+        
+        Future<Listing> done() {
+            return Futures.immediateFuture(this);
+        }
+    }
+}
@@ -60,6 +60,8 @@ public class FlagMakerConfig {
     protected int directoryCacheSize = 2000;
     // directory cache timeout. Default is 2 Hours
     protected long directoryCacheTimeout = (2 * 60 * 60 * 1000);
+    // time after listing an input directory during which the listing is not reused. Default is 1 minute
+    protected long discoverySettleMilliSecs = DateUtils.A_MINUTE;
     // implementation of flagmaker to run
     private String flagMakerClass = FlagMaker.class.getName();
     
@@ -167,6 +169,14 @@ public class FlagMakerConfig {
         this.directoryCacheTimeout = directoryCacheTimeout;
     }
     
+    public long getDiscoverySettleMilliSecs() {
+        return discoverySettleMilliSecs;
+    }
+    
+    public void setDiscoverySettleMilliSecs(long discoverySettleMilliSecs) {
+        this.discoverySettleMilliSecs = discoverySettleMilliSecs;
+    }
+    
     public int getMaxFileLength() {
         return maxFileLength;
     }
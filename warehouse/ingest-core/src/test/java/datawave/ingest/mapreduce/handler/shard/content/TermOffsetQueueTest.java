@@ -0,0 +1,120 @@
+package datawave.ingest.mapreduce.handler.shard.content;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import datawave.ingest.mapreduce.handler.shard.content.BoundedOffsetQueue.OffsetList;
+import datawave.ingest.protobuf.TermWeight;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TermOffsetQueueTest {
+    
+    @Test
+    public void testAddOffset() {
+        TermOffsetQueue uut = new TermOffsetQueue(20);
+        
+        for (int offset = 0; offset < uut.getCapacity(); offset++) {
+            TermAndZone taz = new TermAndZone("term-" + offset, "zone-" + offset);
+            Assert.assertNull("AddOffset unexpectedly returned an offset list", uut.addOffset(taz, offset));
+        }
+        
+        TermAndZone taz = new TermAndZone("term-0", "zone-0");
+        int count = uut.getCapacity() - 1;
+        for (int offset = 0; offset < count; offset++) {
+            OffsetList<Integer> ol = uut.addOffset(taz, offset + uut.getCapacity());
+            Assert.assertNotNull("AddOffset failed to return an offset list", ol);
+            // the term with the most offsets is never evicted while there are smaller ones
+            Assert.assertNotEquals(taz, ol.termAndZone);
+            Assert.assertEquals(1, ol.size());
+        }
+        
+        OffsetList<Integer> ol = uut.addOffset(taz, 2 * uut.getCapacity());
+        Assert.assertNotNull("AddOffset failed to return an offset list", ol);
+        Assert.assertEquals(taz, ol.termAndZone);
+        Assert.assertEquals("AddOffset returned a OffsetList with an unexpected number of offsets.", 21, ol.offsets.size());
+        Assert.assertEquals(Integer.valueOf(0), ol.offsets.get(0));
+        Assert.assertEquals(Integer.valueOf(40), ol.offsets.get(20));
+        Assert.assertEquals("AddOffset failed to correctly update the number of elements in the Queue", 0, uut.size());
+        Assert.assertFalse(uut.containsKey(taz));
+    }
+    
+    @Test
+    public void testSmallestEvicted() {
+        TermOffsetQueue uut = new TermOffsetQueue(10);
+        TermAndZone a = new TermAndZone("a", "Z");
+        TermAndZone b = new TermAndZone("b", "Z");
+        TermAndZone c = new TermAndZone("c", "Z");
+        for (int i = 0; i < 5; i++) {
+            uut.addOffset(a, i);
+        }
+        for (int i = 0; i < 3; i++) {
+            uut.addOffset(b, i);
+        }
+        uut.addOffset(c, 0);
+        uut.addOffset(c, 1);
+        Assert.assertEquals(10, uut.size());
+        
+        // b and c now both have three offsets and a has five
+        OffsetList<Integer> ol = uut.addOffset(c, 2);
+        Assert.assertEquals(3, ol.size());
+        Assert.assertTrue(ol.termAndZone.equals(b) || ol.termAndZone.equals(c));
+        Assert.assertEquals(8, uut.size());
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 4), uut.getOffsets(a));
+    }
+    
+    @Test
+    public void testMatchesBoundedOffsetQueue() {
+        // with a capacity large enough to never evict, both queues hold the same offsets
+        Random random = new Random(42);
+        TermOffsetQueue uut = new TermOffsetQueue(100000);
+        BoundedOffsetQueue<Integer> expected = new BoundedOffsetQueue<>(100000);
+        for (int event = 0; event < 3; event++) {
+            for (int offset = 0; offset < 5000; offset++) {
+                TermAndZone taz = new TermAndZone("term" + random.nextInt(500), "ZONE" + random.nextInt(3));
+                uut.addOffset(taz, offset);
+                expected.addOffset(taz, offset);
+            }
+            Assert.assertEquals(expected.size(), uut.size());
+            
+            Map<TermAndZone,List<Integer>> actual = new HashMap<>();
+            for (OffsetList<Integer> offsets : uut.offsets()) {
+                actual.put(offsets.termAndZone, offsets.offsets);
+                Assert.assertArrayEquals(toInfo(offsets.offsets), TermOffsetQueue.toTermWeightInfo(offsets.offsets));
+            }
+            int terms = 0;
+            for (OffsetList<Integer> offsets : expected.offsets()) {
+                Assert.assertEquals(offsets.offsets, actual.get(offsets.termAndZone));
+                terms++;
+            }
+            Assert.assertEquals(terms, actual.size());
+            
+            uut.clear();
+            expected.clear();
+            Assert.assertEquals(0, uut.size());
+            Assert.assertFalse(uut.offsets().iterator().hasNext());
+        }
+    }
+    
+    @Test
+    public void testTermWeightInfo() throws Exception {
+        List<Integer> offsets = Arrays.asList(0, 1, 127, 128, 300000, Integer.MAX_VALUE);
+        TermOffsetQueue uut = new TermOffsetQueue(100);
+        TermAndZone taz = new TermAndZone("term", "ZONE");
+        for (Integer offset : offsets) {
+            uut.addOffset(taz, offset);
+        }
+        byte[] bytes = TermOffsetQueue.toTermWeightInfo(uut.getOffsets(taz));
+        Assert.assertArrayEquals(toInfo(offsets), bytes);
+        Assert.assertEquals(offsets, TermWeight.Info.parseFrom(bytes).getTermOffsetList());
+        Assert.assertArrayEquals(toInfo(offsets), TermOffsetQueue.toTermWeightInfo(offsets));
+    }
+    
+    private static byte[] toInfo(List<Integer> offsets) {
+        return TermWeight.Info.newBuilder().addAllTermOffset(offsets).build().toByteArray();
+    }
+}
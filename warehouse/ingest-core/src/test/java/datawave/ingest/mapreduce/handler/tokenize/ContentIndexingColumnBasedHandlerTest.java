@@ -1,6 +1,7 @@
 package datawave.ingest.mapreduce.handler.tokenize;
 
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
 import datawave.data.hash.UID;
@@ -13,6 +14,7 @@ import datawave.ingest.data.config.NormalizedContentInterface;
 import datawave.ingest.data.config.NormalizedFieldAndValue;
 import datawave.ingest.data.config.ingest.BaseIngestHelper;
 import datawave.ingest.data.config.ingest.ContentBaseIngestHelper;
+import datawave.ingest.data.tokenize.TokenizationHelper;
 import datawave.ingest.input.reader.EventRecordReader;
 import datawave.ingest.mapreduce.job.BulkIngestKey;
 import datawave.policy.IngestPolicyEnforcer;
@@ -325,6 +327,52 @@ public class ContentIndexingColumnBasedHandlerTest {
                         listExpectedAlphanumTfValues, false);
     }
     
+    @Test
+    public void testTokenizerThreads() throws Exception {
+        ctx.getConfiguration().set("test" + ContentBaseIngestHelper.TOKEN_INDEX_WHITELIST, "BODY,TITLE");
+        ctx.getConfiguration().set("test" + ContentBaseIngestHelper.TOKEN_REV_INDEX_WHITELIST, "BODY");
+        
+        TypeRegistry.reset();
+        TypeRegistry.getInstance(ctx.getConfiguration());
+        
+        setupMocks();
+        
+        Multimap<String,NormalizedContentInterface> eventFields = LinkedListMultimap.create();
+        eventFields.put("BODY", new NormalizedFieldAndValue("BODY", "the quick brown fox jumps over the lazy dog"));
+        eventFields.put("BODY", new NormalizedFieldAndValue("BODY", "the lazy dog sleeps under the brown tree"));
+        eventFields.put("TITLE", new NormalizedFieldAndValue("TITLE", "lazy dog"));
+        
+        TestContentIndexingColumnBasedHandler handler = new TestContentIndexingColumnBasedHandler();
+        Multimap<BulkIngestKey,Value> expected = tokenize(handler, eventFields);
+        
+        // the body fields are tokenized by the tokenizer threads, and the title on the calling thread
+        ctx.getConfiguration().setInt("test" + TokenizationHelper.TOKENIZER_THREADS, 2);
+        ctx.getConfiguration().setInt("test" + TokenizationHelper.TOKENIZER_THREADS_MIN_LENGTH, 10);
+        TestContentIndexingColumnBasedHandler threadedHandler = new TestContentIndexingColumnBasedHandler();
+        Multimap<BulkIngestKey,Value> actual = tokenize(threadedHandler, eventFields);
+        
+        Assert.assertFalse(expected.isEmpty());
+        Assert.assertEquals(expected, actual);
+        Assert.assertTrue(equalNciMaps(handler.getIndex(), threadedHandler.getIndex()));
+        Assert.assertTrue(equalNciMaps(handler.getReverse(), threadedHandler.getReverse()));
+    }
+    
+    private Multimap<BulkIngestKey,Value> tokenize(TestContentIndexingColumnBasedHandler handler, Multimap<String,NormalizedContentInterface> eventFields) {
+        handler.setup(ctx);
+        try {
+            handler.getShardNamesAndValues(event, eventFields, true, true, null);
+            
+            handler.shardId = SHARD_ID.getBytes();
+            handler.eventDataTypeName = TEST_TYPE;
+            handler.eventUid = TEST_UUID;
+            Multimap<BulkIngestKey,Value> tfEntries = HashMultimap.create();
+            handler.flushTokenOffsetCache(event, tfEntries);
+            return tfEntries;
+        } finally {
+            handler.close(ctx);
+        }
+    }
+    
     private boolean equalNciMaps(Multimap<String,NormalizedContentInterface> first, Multimap<String,NormalizedContentInterface> second) {
         Multimap<String,NormalizedContentInterface> firstToSecondDiff = Multimaps.filterEntries(first, e -> !second.containsEntry(e.getKey(), e.getValue()));
         Multimap<String,NormalizedContentInterface> secondToFirstDiff = Multimaps.filterEntries(first, e -> !second.containsEntry(e.getKey(), e.getValue()));
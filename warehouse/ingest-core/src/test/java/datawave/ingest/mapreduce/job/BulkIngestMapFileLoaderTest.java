@@ -27,6 +27,10 @@ import datawave.ingest.input.reader.LongLineEventRecordReader;
 
 import org.apache.accumulo.core.client.security.tokens.PasswordToken;
 import org.apache.accumulo.core.client.impl.Credentials;
+import org.apache.accumulo.core.master.thrift.Compacting;
+import org.apache.accumulo.core.master.thrift.MasterMonitorInfo;
+import org.apache.accumulo.core.master.thrift.TableInfo;
+import org.apache.accumulo.core.master.thrift.TabletServerStatus;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FileStatus;
@@ -742,6 +746,47 @@ public class BulkIngestMapFileLoaderTest {
         }
     }
     
+    @Test
+    public void testMainWithBadTableMajCThreshold() throws IOException, InterruptedException {
+        
+        BulkIngestMapFileLoaderTest.logger.info("testMainWithBadTableMajCThreshold called...");
+        
+        try {
+            
+            List<String> cmdList = ProcessUtils.buildApplicationCommandLine(BulkIngestMapFileLoader.class.getName(), systemProperties, false);
+            
+            for (int counter = 0; counter < 6; counter++) {
+                
+                cmdList.add(String.format("%d", counter));
+            }
+            
+            cmdList.add("-tableMajcThreshold");
+            cmdList.add("hello, world");
+            
+            String[] cmdArray = ProcessUtils.convertCommandLine(cmdList);
+            
+            Map<String,String> newEnvironment = new HashMap<>();
+            List<String> dropFromEnvironment = new ArrayList<>();
+            File workingDirectory = new File(System.getProperty("user.dir"));
+            
+            Process proc = ProcessUtils.runInstance(cmdArray, newEnvironment, dropFromEnvironment, workingDirectory);
+            
+            int procResults = proc.waitFor();
+            
+            Assert.assertEquals("BulkIngestMapLoader#main failed to return the expected value.", ProcessUtils.SYSTEM_EXIT_MINUS_TWO, procResults);
+            
+            List<String> stdOut = ProcessUtils.getStandardOutDumps(proc);
+            
+            Assert.assertTrue("BulkIngestMapLoader#main failed to generate the expected error message",
+                            processOutputContains(stdOut, "-tableMajcThreshold must be followed by the maximum number of major compactions of a table on a tablet server"));
+            
+        } finally {
+            
+            BulkIngestMapFileLoaderTest.logger.info("testMainWithBadTableMajCThreshold completed.");
+            
+        }
+    }
+    
     @Test
     public void testMainWithMissingMajCThreshold() throws IOException, InterruptedException {
         
@@ -1594,6 +1639,59 @@ public class BulkIngestMapFileLoaderTest {
         
     }
     
+    @Test
+    public void testCompactionStats() {
+        
+        BulkIngestMapFileLoaderTest.logger.info("testCompactionStats called...");
+        
+        try {
+            MasterMonitorInfo mmi = new MasterMonitorInfo();
+            mmi.setTableMap(new HashMap<>());
+            mmi.setTServerInfo(new ArrayList<>());
+            Map<String,String> tableNames = new HashMap<>();
+            tableNames.put("1", "shard");
+            tableNames.put("2", "shardIndex");
+            
+            int[][] serverCounts = { {10, 3}, {2, 0}};
+            for (int[] counts : serverCounts) {
+                TabletServerStatus server = new TabletServerStatus();
+                server.setTableMap(new HashMap<>());
+                for (int table = 0; table < counts.length; table++) {
+                    String tableId = Integer.toString(table + 1);
+                    TableInfo info = new TableInfo();
+                    info.setMajors(new Compacting(1, counts[table] - 1));
+                    server.putToTableMap(tableId, info);
+                    
+                    TableInfo total = mmi.getTableMap().get(tableId);
+                    if (total == null) {
+                        total = new TableInfo();
+                        total.setMajors(new Compacting(0, 0));
+                        mmi.putToTableMap(tableId, total);
+                    }
+                    total.getMajors().setRunning(total.getMajors().getRunning() + 1);
+                    total.getMajors().setQueued(total.getMajors().getQueued() + counts[table] - 1);
+                }
+                mmi.addToTServerInfo(server);
+            }
+            
+            BulkIngestMapFileLoader.CompactionStats stats = new BulkIngestMapFileLoader.CompactionStats(mmi, tableNames);
+            
+            Assert.assertEquals("CompactionStats failed to total the compactions of the cluster", 15, stats.getTotal());
+            Assert.assertEquals("CompactionStats failed to find the busiest tablet server", 10, stats.getMaxServerCount("shard"));
+            Assert.assertEquals("CompactionStats failed to find the busiest tablet server", 3, stats.getMaxServerCount("shardIndex"));
+            Assert.assertEquals("CompactionStats failed to handle an unknown table", 0, stats.getMaxServerCount("unknown"));
+            
+            stats = new BulkIngestMapFileLoader.CompactionStats(new MasterMonitorInfo(), tableNames);
+            
+            Assert.assertEquals("CompactionStats failed to handle missing stats", 0, stats.getTotal());
+            
+        } finally {
+            
+            BulkIngestMapFileLoaderTest.logger.info("testCompactionStats completed.");
+            
+        }
+    }
+    
     @Test
     public void testCleanUpJobDirectoryHappyPath() throws Exception {
         
@@ -0,0 +1,180 @@
+package datawave.ingest.mapreduce.job.writer;
+
+import com.google.common.collect.Multimap;
+import datawave.ingest.data.Type;
+import datawave.ingest.data.TypeRegistry;
+import datawave.ingest.mapreduce.SimpleDataTypeHandler;
+import datawave.ingest.mapreduce.StandaloneStatusReporter;
+import datawave.ingest.mapreduce.StandaloneTaskAttemptContext;
+import datawave.ingest.mapreduce.job.BulkIngestKey;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.LongCombiner;
+import org.apache.accumulo.core.iterators.user.SummingCombiner;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TableCachingContextWriterTest {
+    
+    private static final Text INDEX_TABLE = new Text("indexTable");
+    private static final Text EVENT_TABLE = new Text("eventTable");
+    
+    private Configuration conf;
+    private StandaloneTaskAttemptContext<?,?,BulkIngestKey,Value> context;
+    
+    @Before
+    public void setup() {
+        conf = new Configuration();
+        conf.set("combiner." + INDEX_TABLE + ".10.iterClazz", SummingCombiner.class.getName());
+        conf.set("combiner." + INDEX_TABLE + ".10.type", LongCombiner.Type.STRING.name());
+        conf.setClass(TableCachingContextWriter.CONTEXT_WRITER_CLASS, ListContextWriter.class, ContextWriter.class);
+        
+        TypeRegistry.reset();
+        TypeRegistry.getInstance(conf).put("test", new Type("test", null, null, new String[] {TableHandler.class.getName()}, 10, null));
+        
+        context = new StandaloneTaskAttemptContext<>(conf, new StandaloneStatusReporter());
+        ListContextWriter.written.clear();
+    }
+    
+    @After
+    public void cleanup() {
+        TypeRegistry.reset();
+    }
+    
+    @Test
+    public void shouldCombineRepeatedKeysAcrossCommits() throws Exception {
+        TableCachingContextWriter writer = new TableCachingContextWriter();
+        writer.setup(conf, false);
+        
+        write(writer, INDEX_TABLE, "b", "5");
+        write(writer, INDEX_TABLE, "a", "1");
+        write(writer, EVENT_TABLE, "event", "x");
+        write(writer, INDEX_TABLE, "a", "2");
+        
+        // only the uncached table has been written so far
+        assertEquals(1, ListContextWriter.written.size());
+        assertEquals(EVENT_TABLE, ListContextWriter.written.get(0).getKey().getTableName());
+        
+        writer.cleanup(context);
+        
+        // the cached entries are combined and written in key order
+        assertEquals(3, ListContextWriter.written.size());
+        assertEntry(ListContextWriter.written.get(1), INDEX_TABLE, "a", "3");
+        assertEntry(ListContextWriter.written.get(2), INDEX_TABLE, "b", "5");
+        assertEquals(1, context.getCounter(TableCachingContextWriter.COMBINED_VALUE_COUNTER, "TOTAL").getValue());
+    }
+    
+    @Test
+    public void shouldNotCacheRolledBackEntries() throws Exception {
+        TableCachingContextWriter writer = new TableCachingContextWriter();
+        writer.setup(conf, false);
+        
+        write(writer, INDEX_TABLE, "a", "1");
+        writer.write(new BulkIngestKey(INDEX_TABLE, new Key("a")), new Value("7".getBytes()), context);
+        writer.rollback();
+        writer.cleanup(context);
+        
+        assertEquals(1, ListContextWriter.written.size());
+        assertEntry(ListContextWriter.written.get(0), INDEX_TABLE, "a", "1");
+    }
+    
+    @Test
+    public void shouldFlushWhenOverTheMemoryLimit() throws Exception {
+        conf.setLong(TableCachingContextWriter.MAX_CACHE_BYTES, 1);
+        TableCachingContextWriter writer = new TableCachingContextWriter();
+        writer.setup(conf, false);
+        
+        write(writer, INDEX_TABLE, "a", "1");
+        write(writer, INDEX_TABLE, "a", "2");
+        
+        assertEquals(2, ListContextWriter.written.size());
+        assertTrue(context.getCounter(TableCachingContextWriter.FLUSHED_BUFFER_COUNTER, INDEX_TABLE.toString()).getValue() >= 2);
+    }
+    
+    @Test
+    public void shouldOnlyCacheConfiguredTablesWhenCombinedTablesDisabled() throws Exception {
+        conf.setBoolean(TableCachingContextWriter.CACHE_COMBINED_TABLES, false);
+        TableCachingContextWriter writer = new TableCachingContextWriter();
+        writer.setup(conf, false);
+        
+        write(writer, INDEX_TABLE, "a", "1");
+        write(writer, INDEX_TABLE, "a", "2");
+        assertEquals(2, ListContextWriter.written.size());
+        
+        conf.setInt(INDEX_TABLE + TableCachingContextWriter.TABLES_TO_CACHE_SUFFIX, 10);
+        ListContextWriter.written.clear();
+        writer = new TableCachingContextWriter();
+        writer.setup(conf, false);
+        
+        write(writer, INDEX_TABLE, "a", "1");
+        write(writer, INDEX_TABLE, "a", "2");
+        writer.cleanup(context);
+        assertEquals(1, ListContextWriter.written.size());
+        assertEntry(ListContextWriter.written.get(0), INDEX_TABLE, "a", "3");
+    }
+    
+    private void write(TableCachingContextWriter writer, Text table, String row, String value) throws IOException, InterruptedException {
+        writer.write(new BulkIngestKey(table, new Key(row)), new Value(value.getBytes()), context);
+        writer.commit(context);
+    }
+    
+    private static void assertEntry(Map.Entry<BulkIngestKey,Value> entry, Text table, String row, String value) {
+        assertEquals(table, entry.getKey().getTableName());
+        assertEquals(row, entry.getKey().getKey().getRow().toString());
+        assertEquals(value, entry.getValue().toString());
+    }
+    
+    /**
+     * A handler that only declares the tables, so that the combiners are configured for them
+     */
+    public static class TableHandler<K> extends SimpleDataTypeHandler<K> {
+        @Override
+        public String[] getTableNames(Configuration conf) {
+            return new String[] {INDEX_TABLE.toString(), EVENT_TABLE.toString()};
+        }
+    }
+    
+    /**
+     * Records the entries written, in order
+     */
+    public static class ListContextWriter implements ContextWriter<BulkIngestKey,Value> {
+        private static final List<Map.Entry<BulkIngestKey,Value>> written = new ArrayList<>();
+        
+        @Override
+        public void setup(Configuration conf, boolean outputTableCounters) {}
+        
+        @Override
+        public void write(BulkIngestKey key, Value value, TaskInputOutputContext<?,?,BulkIngestKey,Value> context) {
+            written.add(new AbstractMap.SimpleEntry<>(key, value));
+        }
+        
+        @Override
+        public void write(Multimap<BulkIngestKey,Value> entries, TaskInputOutputContext<?,?,BulkIngestKey,Value> context) {
+            for (Map.Entry<BulkIngestKey,Value> entry : entries.entries()) {
+                write(entry.getKey(), entry.getValue(), context);
+            }
+        }
+        
+        @Override
+        public void commit(TaskInputOutputContext<?,?,BulkIngestKey,Value> context) {}
+        
+        @Override
+        public void rollback() {}
+        
+        @Override
+        public void cleanup(TaskInputOutputContext<?,?,BulkIngestKey,Value> context) {}
+    }
+}
@@ -5,7 +5,9 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 
@@ -228,4 +230,58 @@ public class GlobalIndexUidAggregatorTest {
         assertEquals(1, resultList.getUIDCount());
         
     }
+    
+    @Test
+    public void testUidsAreSorted() throws Exception {
+        agg.reset();
+        Collection<Value> values = Lists.newArrayList();
+        for (String uid : new String[] {"c", "a", "b", "a"}) {
+            Builder b = createNewUidList();
+            b.setCOUNT(1);
+            b.setIGNORE(false);
+            b.addUID(uid);
+            values.add(new Value(b.build().toByteArray()));
+        }
+        Uid.List resultList = Uid.List.parseFrom(agg.reduce(new Key("key"), values.iterator()).get());
+        
+        assertEquals(4, resultList.getCOUNT());
+        assertEquals(Arrays.asList("a", "b", "c"), resultList.getUIDList());
+    }
+    
+    @Test
+    public void testRemovalsAndReleasedQuarantine() throws Exception {
+        agg.reset();
+        Collection<Value> values = Lists.newArrayList();
+        
+        Builder b = createNewUidList();
+        b.setCOUNT(3);
+        b.setIGNORE(false);
+        b.addAllUID(Arrays.asList("a", "b", "c"));
+        values.add(new Value(b.build().toByteArray()));
+        
+        // remove b and quarantine c
+        b = createNewUidList();
+        b.setCOUNT(-1);
+        b.setIGNORE(false);
+        b.addREMOVEDUID("b");
+        b.addQUARANTINEUID("c");
+        values.add(new Value(b.build().toByteArray()));
+        
+        // release c
+        b = createNewUidList();
+        b.setCOUNT(1);
+        b.setIGNORE(false);
+        b.addQUARANTINEUID("c");
+        values.add(new Value(b.build().toByteArray()));
+        
+        agg.setPropogate(true);
+        Uid.List resultList = Uid.List.parseFrom(agg.reduce(new Key("key"), values.iterator()).get());
+        
+        assertEquals(3, resultList.getCOUNT());
+        assertEquals(false, resultList.getIGNORE());
+        assertEquals(Arrays.asList("a", "c"), resultList.getUIDList());
+        assertEquals(Collections.singletonList("b"), resultList.getREMOVEDUIDList());
+        assertEquals(0, resultList.getQUARANTINEUIDCount());
+        assertTrue(agg.propogateKey());
+    }
 }
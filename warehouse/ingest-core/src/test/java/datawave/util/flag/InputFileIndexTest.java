@@ -0,0 +1,149 @@
+package datawave.util.flag;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import datawave.util.flag.config.FlagDataTypeConfig;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class InputFileIndexTest {
+    
+    private static final String FILE_PATTERN = "2*/*/*/[0-9a-zA-Z]*[0-9a-zA-Z]";
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private ExecutorService executor;
+    private FileSystem fs;
+    private FlagDataTypeConfig fc;
+    private File day;
+    
+    @Before
+    public void setUp() throws Exception {
+        executor = Executors.newFixedThreadPool(2);
+        fs = FileSystem.getLocal(new Configuration());
+        fc = new FlagDataTypeConfig();
+        fc.setDataName("foo");
+        fc.setFolder(Collections.singletonList(folder.getRoot().getAbsolutePath()));
+        day = new File(folder.getRoot(), "2013/01/01");
+        assertTrue(day.mkdirs());
+        createFile("a1");
+        createFile("b2");
+        // hidden files do not match the pattern
+        createFile(".c3");
+        touch(10000);
+    }
+    
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+    
+    private void createFile(String name) throws IOException {
+        assertTrue(new File(day, name).createNewFile());
+    }
+    
+    private void touch(long age) {
+        assertTrue(day.setLastModified(System.currentTimeMillis() - age));
+    }
+    
+    private List<FileStatus> refresh(InputFileIndex index) throws IOException {
+        Map<String,List<FileStatus>> files = index.refresh(fs, Collections.singletonList(fc)).get("foo");
+        assertEquals(1, files.size());
+        return files.values().iterator().next();
+    }
+    
+    @Test
+    public void testUnchangedDirectoryReused() throws Exception {
+        InputFileIndex index = new InputFileIndex(FILE_PATTERN, 0, executor);
+        assertEquals(2, refresh(index).size());
+        assertEquals(1, index.getDirectoriesListed());
+        assertEquals(2, index.getNewFiles());
+        
+        assertEquals(2, refresh(index).size());
+        assertEquals(0, index.getDirectoriesListed());
+        assertEquals(1, index.getDirectoriesReused());
+        assertEquals(0, index.getNewFiles());
+        
+        // adding a file changes the modification time of the directory
+        createFile("d4");
+        touch(5000);
+        assertEquals(3, refresh(index).size());
+        assertEquals(1, index.getDirectoriesListed());
+        assertEquals(1, index.getNewFiles());
+        assertTrue(index.getMaxArrivalLatencyMillis() >= 0);
+        
+        // as does moving one out
+        assertTrue(new File(day, "a1").delete());
+        touch(1000);
+        assertEquals(2, refresh(index).size());
+        assertEquals(1, index.getDirectoriesListed());
+        assertEquals(0, index.getNewFiles());
+    }
+    
+    @Test
+    public void testRecentDirectoryListed() throws Exception {
+        InputFileIndex index = new InputFileIndex(FILE_PATTERN, 60000, executor);
+        refresh(index);
+        // modified within the settle time, so the file could have arrived in the same clock tick as the listing
+        createFile("d4");
+        assertEquals(3, refresh(index).size());
+        assertEquals(1, index.getDirectoriesListed());
+        assertEquals(0, index.getDirectoriesReused());
+    }
+    
+    @Test
+    public void testNewDirectory() throws Exception {
+        InputFileIndex index = new InputFileIndex(FILE_PATTERN, 0, executor);
+        refresh(index);
+        day = new File(folder.getRoot(), "2013/01/02");
+        assertTrue(day.mkdirs());
+        createFile("e5");
+        assertEquals(3, refresh(index).size());
+        assertEquals(1, index.getDirectoriesListed());
+        assertEquals(1, index.getDirectoriesReused());
+        
+        index.invalidate("foo");
+        assertEquals(3, refresh(index).size());
+        assertEquals(2, index.getDirectoriesListed());
+    }
+    
+    @Test
+    public void testOpenFileRefreshed() throws Exception {
+        InputFileIndex index = new InputFileIndex(FILE_PATTERN, 5000, executor);
+        long modified = day.lastModified();
+        for (FileStatus status : refresh(index)) {
+            assertEquals(0, status.getLen());
+        }
+        
+        // writing to a file does not change the modification time of its directory
+        try (FileOutputStream out = new FileOutputStream(new File(day, "a1"))) {
+            out.write(new byte[10]);
+        }
+        assertTrue(day.setLastModified(modified));
+        long length = 0;
+        for (FileStatus status : refresh(index)) {
+            length += status.getLen();
+        }
+        assertEquals(0, index.getDirectoriesListed());
+        assertEquals(1, index.getDirectoriesReused());
+        assertEquals(10, length);
+    }
+}
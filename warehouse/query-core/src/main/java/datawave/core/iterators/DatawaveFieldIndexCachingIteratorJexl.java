@@ -18,6 +18,8 @@ import datawave.query.predicate.TimeFilter;
 import datawave.query.util.TypeMetadata;
 import datawave.query.util.sortedset.HdfsBackedSortedSet;
 import datawave.query.util.sortedset.KeyValueSerializable;
+import datawave.query.util.sortedset.OffHeapBufferBudget;
+import datawave.query.util.sortedset.OffHeapSortedSetBuffer;
 import org.apache.accumulo.core.data.ByteSequence;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.PartialKey;
@@ -40,6 +42,7 @@ import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -472,6 +475,8 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
     
     @Override
     protected void finalize() throws Throwable {
+        // a deep copy may share the set, so leave its files open for the copy
+        this.set = null;
         clearRowBasedHdfsBackedSet();
         super.finalize();
     }
@@ -511,7 +516,7 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
                 Key startKey = r.getStartKey();
                 // decide if keyValues needs to be rebuilt or can be reused
                 if (!keyValues.hasNext() || (keyValues.peek().getKey().compareTo(startKey) > 0)) {
-                    keyValues = new CachingIterator<>(threadSafeSet.iterator());
+                    keyValues = new CachingIterator<>(getKeyValueIterator(startKey));
                 }
             }
         }
@@ -1159,6 +1164,21 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
         return new Path(uniqueDir, row);
     }
     
+    /**
+     * Get an iterator over the sorted set starting at the specified key. When the set is persisted, this seeks directly to the file blocks containing the start
+     * key instead of reading through all of the preceding entries.
+     * 
+     * @param startKey
+     *            the key to start at, or null to iterate over the entire set
+     * @return the iterator
+     */
+    private Iterator<KeyValueSerializable> getKeyValueIterator(Key startKey) {
+        if (sortedUIDs && startKey != null && this.set != null && this.set.isPersisted()) {
+            return this.threadSafeSet.tailSet(new KeyValueSerializable(startKey, new byte[0])).iterator();
+        }
+        return this.threadSafeSet.iterator();
+    }
+    
     /**
      * Clear out the current row based hdfs backed set
      * 
@@ -1167,6 +1187,9 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
     protected void clearRowBasedHdfsBackedSet() throws IOException {
         this.keyValues = null;
         this.currentRow = null;
+        if (this.set != null) {
+            this.set.close();
+        }
         this.set = null;
     }
     
@@ -1206,6 +1229,11 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
             }
             
             this.set = new HdfsBackedSortedSet<>(null, hdfsBackedSetBufferSize, ivaratorCacheDirs, row, maxOpenFiles, numRetries);
+            // hold the buffer off heap if the tserver has an off heap budget configured
+            final OffHeapBufferBudget budget = OffHeapBufferBudget.instance(initEnv);
+            if (budget.isEnabled()) {
+                this.set.setBufferFactory(comparator -> new OffHeapSortedSetBuffer<>(new OffHeapSortedSetBuffer.KeyValueEncoding(), budget));
+            }
             this.threadSafeSet = Collections.synchronizedSortedSet(this.set);
             this.currentRow = row;
             this.setControl.takeOwnership(row, this);
@@ -1215,7 +1243,7 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
                 this.set.clear();
                 this.keyValues = null;
             } else {
-                this.keyValues = new CachingIterator<>(this.set.iterator());
+                this.keyValues = new CachingIterator<>(getKeyValueIterator(lastRangeSeeked == null ? null : lastRangeSeeked.getStartKey()));
             }
             
             // reset the keyValues counter as we have a new set here
@@ -1,13 +1,18 @@
 package datawave.core.iterators;
 
+import java.util.Collections;
 import java.util.Map;
 import java.util.Objects;
 import java.util.TreeMap;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.accumulo.core.conf.AccumuloConfiguration;
 import org.apache.accumulo.core.conf.DefaultConfiguration;
@@ -27,7 +32,8 @@ public class IteratorThreadPoolManager {
     private static final String EVALUATOR_THREAD_NAME = "DATAWAVE Evaluation";
     private static final int DEFAULT_THREAD_POOL_SIZE = 100;
     
-    private Map<String,ExecutorService> threadPools = new TreeMap<>();
+    private Map<String,ThreadPoolExecutor> threadPools = new TreeMap<>();
+    private final Map<String,QueryUtilization> evaluationUtilization = new ConcurrentHashMap<>();
     
     private static final Object instanceSemaphore = new Object();
     private static final String instanceId = Integer.toHexString(instanceSemaphore.hashCode());
@@ -35,18 +41,19 @@ public class IteratorThreadPoolManager {
     
     private IteratorThreadPoolManager(IteratorEnvironment env) {
         // create the thread pools
-        createExecutorService(IVARATOR_THREAD_PROP, IVARATOR_THREAD_NAME, env);
-        createExecutorService(EVALUATOR_THREAD_PROP, EVALUATOR_THREAD_NAME, env);
+        createExecutorService(IVARATOR_THREAD_PROP, IVARATOR_THREAD_NAME, env, new LinkedBlockingQueue<>());
+        // evaluations are scheduled fairly across queries so that one query cannot fill the pool
+        createExecutorService(EVALUATOR_THREAD_PROP, EVALUATOR_THREAD_NAME, env, new QueryFairTaskQueue());
     }
     
-    private ThreadPoolExecutor createExecutorService(final String prop, final String name, IteratorEnvironment env) {
+    private ThreadPoolExecutor createExecutorService(final String prop, final String name, IteratorEnvironment env, BlockingQueue<Runnable> queue) {
         final AccumuloConfiguration accumuloConfiguration;
         if (env != null) {
             accumuloConfiguration = env.getConfig();
         } else {
             accumuloConfiguration = DefaultConfiguration.getInstance();
         }
-        final ThreadPoolExecutor service = createExecutorService(getMaxThreads(prop, accumuloConfiguration), name + " (" + instanceId + ')');
+        final ThreadPoolExecutor service = createExecutorService(getMaxThreads(prop, accumuloConfiguration), name + " (" + instanceId + ')', queue);
         threadPools.put(name, service);
         SimpleTimer.getInstance(accumuloConfiguration).schedule(() -> {
             try {
@@ -57,6 +64,9 @@ public class IteratorThreadPoolManager {
                     service.setCorePoolSize(max);
                     service.setMaximumPoolSize(max);
                 }
+                if (name.equals(EVALUATOR_THREAD_NAME)) {
+                    reportEvaluationUtilization();
+                }
             } catch (Throwable t) {
                 log.error(t, t);
             }
@@ -64,9 +74,8 @@ public class IteratorThreadPoolManager {
         return service;
     }
     
-    private ThreadPoolExecutor createExecutorService(int maxThreads, String name) {
-        ThreadPoolExecutor pool = new ThreadPoolExecutor(maxThreads, maxThreads, 5 * 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
-                        new NamingThreadFactory(name));
+    private ThreadPoolExecutor createExecutorService(int maxThreads, String name, BlockingQueue<Runnable> queue) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(maxThreads, maxThreads, 5 * 60, TimeUnit.SECONDS, queue, new NamingThreadFactory(name));
         pool.allowCoreThreadTimeOut(true);
         return pool;
     }
@@ -93,8 +102,8 @@ public class IteratorThreadPoolManager {
         return instance;
     }
     
-    private Future<?> execute(String name, final Runnable task, final String taskName) {
-        return threadPools.get(name).submit(() -> {
+    private static Runnable named(final Runnable task, final String taskName) {
+        return () -> {
             String oldName = Thread.currentThread().getName();
             Thread.currentThread().setName(oldName + " -> " + taskName);
             try {
@@ -102,7 +111,43 @@ public class IteratorThreadPoolManager {
             } finally {
                 Thread.currentThread().setName(oldName);
             }
+        };
+    }
+    
+    private Future<?> execute(String name, final Runnable task, final String taskName) {
+        return threadPools.get(name).submit(named(task, taskName));
+    }
+    
+    private Future<?> executeEvaluation(final Runnable task, final String taskName, String queryId, int priority) {
+        ThreadPoolExecutor pool = threadPools.get(EVALUATOR_THREAD_NAME);
+        // count the task as queued atomically with the lookup so that the utilization cannot be dropped as idle in between
+        QueryUtilization utilization = evaluationUtilization.compute(String.valueOf(queryId), (k, u) -> {
+            QueryUtilization current = (u == null ? new QueryUtilization(k) : u);
+            current.queued.incrementAndGet();
+            return current;
         });
+        EvaluationTask evaluationTask = new EvaluationTask(named(task, taskName), queryId, priority, pool, utilization);
+        try {
+            pool.execute(evaluationTask);
+        } catch (RuntimeException e) {
+            utilization.queued.decrementAndGet();
+            throw e;
+        }
+        return evaluationTask;
+    }
+    
+    private void reportEvaluationUtilization() {
+        long totalBusy = 0;
+        for (QueryUtilization utilization : evaluationUtilization.values()) {
+            totalBusy += utilization.getBusyNanos();
+        }
+        for (QueryUtilization utilization : evaluationUtilization.values()) {
+            if (log.isDebugEnabled()) {
+                log.debug(utilization.toString(totalBusy));
+            }
+            // forget queries that have gone idle
+            evaluationUtilization.computeIfPresent(utilization.getQueryId(), (k, u) -> (u.isIdle() ? null : u));
+        }
     }
     
     public static Future<?> executeIvarator(Runnable task, String taskName, IteratorEnvironment env) {
@@ -110,7 +155,169 @@ public class IteratorThreadPoolManager {
     }
     
     public static Future<?> executeEvaluation(Runnable task, String taskName, IteratorEnvironment env) {
-        return instance(env).execute(EVALUATOR_THREAD_NAME, task, taskName);
+        return executeEvaluation(task, taskName, null, QueryFairTaskQueue.DEFAULT_PRIORITY, env);
+    }
+    
+    /**
+     * Execute an evaluation for a query. The evaluation pool is shared fairly across the queries with queued evaluations, weighted by their priority.
+     *
+     * @param task
+     * @param taskName
+     * @param queryId
+     * @param priority
+     *            the relative priority of the query
+     * @param env
+     * @return the future for the evaluation
+     */
+    public static Future<?> executeEvaluation(Runnable task, String taskName, String queryId, int priority, IteratorEnvironment env) {
+        return instance(env).executeEvaluation(task, taskName, queryId, priority);
+    }
+    
+    /**
+     * @param env
+     * @return the number of evaluations waiting for a thread across all queries
+     */
+    public static int getEvaluationBacklog(IteratorEnvironment env) {
+        return instance(env).threadPools.get(EVALUATOR_THREAD_NAME).getQueue().size();
     }
     
+    /**
+     * @param env
+     * @return the number of threads in the evaluation pool
+     */
+    public static int getEvaluationThreads(IteratorEnvironment env) {
+        return instance(env).threadPools.get(EVALUATOR_THREAD_NAME).getMaximumPoolSize();
+    }
+    
+    /**
+     * Get the evaluation pool utilization of the queries that are using the pool. Queries are dropped once they are idle at a periodic report.
+     *
+     * @param env
+     * @return the utilization by query id
+     */
+    public static Map<String,QueryUtilization> getEvaluationUtilization(IteratorEnvironment env) {
+        return Collections.unmodifiableMap(instance(env).evaluationUtilization);
+    }
+    
+    /**
+     * An evaluation task that records its query's use of the evaluation pool
+     */
+    private static class EvaluationTask extends FutureTask<Object> implements QueryFairTaskQueue.QueryTask {
+        private final String queryId;
+        private final int priority;
+        private final ThreadPoolExecutor pool;
+        private final QueryUtilization utilization;
+        private final long submitted = System.nanoTime();
+        
+        EvaluationTask(Runnable task, String queryId, int priority, ThreadPoolExecutor pool, QueryUtilization utilization) {
+            super(task, null);
+            this.queryId = queryId;
+            this.priority = priority;
+            this.pool = pool;
+            this.utilization = utilization;
+        }
+        
+        @Override
+        public String getQueryId() {
+            return queryId;
+        }
+        
+        @Override
+        public int getPriority() {
+            return priority;
+        }
+        
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            utilization.queued.decrementAndGet();
+            utilization.running.incrementAndGet();
+            utilization.queuedNanos.addAndGet(start - submitted);
+            try {
+                super.run();
+            } finally {
+                utilization.running.decrementAndGet();
+                utilization.completed.incrementAndGet();
+                utilization.busyNanos.addAndGet(System.nanoTime() - start);
+            }
+        }
+        
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            // pull a cancelled task out of the queue so that it does not hold up the other queries
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled && pool.remove(this)) {
+                utilization.queued.decrementAndGet();
+            }
+            return cancelled;
+        }
+    }
+    
+    /**
+     * The use of the evaluation pool by a query
+     */
+    public static class QueryUtilization {
+        private final String queryId;
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong busyNanos = new AtomicLong();
+        private final AtomicLong queuedNanos = new AtomicLong();
+        
+        QueryUtilization(String queryId) {
+            this.queryId = queryId;
+        }
+        
+        public String getQueryId() {
+            return queryId;
+        }
+        
+        /**
+         * @return the number of evaluations waiting for a thread
+         */
+        public int getQueued() {
+            return queued.get();
+        }
+        
+        /**
+         * @return the number of threads currently evaluating for this query
+         */
+        public int getRunning() {
+            return running.get();
+        }
+        
+        public long getCompleted() {
+            return completed.get();
+        }
+        
+        /**
+         * @return the total time evaluation threads have spent on this query
+         */
+        public long getBusyNanos() {
+            return busyNanos.get();
+        }
+        
+        /**
+         * @return the total time evaluations for this query have waited for a thread
+         */
+        public long getQueuedNanos() {
+            return queuedNanos.get();
+        }
+        
+        boolean isIdle() {
+            return queued.get() == 0 && running.get() == 0;
+        }
+        
+        String toString(long totalBusyNanos) {
+            double share = (totalBusyNanos == 0 ? 0 : (100.0 * getBusyNanos()) / totalBusyNanos);
+            return String.format("Evaluation pool utilization for query %s: %.1f%% of busy time, %d running, %d queued, %d completed, %d ms busy, %d ms queued",
+                            queryId, share, getRunning(), getQueued(), getCompleted(), TimeUnit.NANOSECONDS.toMillis(getBusyNanos()),
+                            TimeUnit.NANOSECONDS.toMillis(getQueuedNanos()));
+        }
+        
+        @Override
+        public String toString() {
+            return toString(getBusyNanos());
+        }
+    }
 }
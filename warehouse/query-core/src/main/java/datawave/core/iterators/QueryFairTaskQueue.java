@@ -0,0 +1,287 @@
+package datawave.core.iterators;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A task queue for a thread pool that hands out tasks fairly across queries instead of in submission order, so that one query with many queued tasks cannot
+ * hold every thread in the pool. Each query is given a share of the pool proportional to its priority using stride scheduling: every time a task is taken for
+ * a query, that query's pass is advanced by a stride inversely proportional to its priority, and the next task is always taken from the query with the lowest
+ * pass. A query that becomes active starts at the current pass so that it cannot claim credit for the time it was idle.
+ * <p>
+ * Tasks that do not implement {@link QueryTask} are grouped together as a single query with the default priority.
+ */
+public class QueryFairTaskQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+    
+    public static final int DEFAULT_PRIORITY = 1;
+    private static final long STRIDE = 1L << 20;
+    
+    /**
+     * A task that belongs to a query
+     */
+    public interface QueryTask {
+        /**
+         * @return the id of the query this task belongs to
+         */
+        String getQueryId();
+        
+        /**
+         * @return the relative priority of the query, where a query with priority 2 gets twice the share of one with priority 1
+         */
+        int getPriority();
+    }
+    
+    private static class QueryQueue {
+        private final String queryId;
+        private final LinkedList<Runnable> tasks = new LinkedList<>();
+        private long stride = STRIDE;
+        private long pass;
+        private long order;
+        
+        QueryQueue(String queryId) {
+            this.queryId = queryId;
+        }
+    }
+    
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Map<String,QueryQueue> queues = new HashMap<>();
+    private final PriorityQueue<QueryQueue> ready = new PriorityQueue<>(Comparator.<QueryQueue> comparingLong(q -> q.pass).thenComparingLong(q -> q.order));
+    private long currentPass = 0;
+    private long order = 0;
+    private int count = 0;
+    
+    private static String getQueryId(Runnable task) {
+        return (task instanceof QueryTask ? ((QueryTask) task).getQueryId() : null);
+    }
+    
+    private static int getPriority(Runnable task) {
+        return (task instanceof QueryTask ? Math.max(1, ((QueryTask) task).getPriority()) : DEFAULT_PRIORITY);
+    }
+    
+    @Override
+    public boolean offer(Runnable task) {
+        Objects.requireNonNull(task);
+        lock.lock();
+        try {
+            String queryId = getQueryId(task);
+            QueryQueue queue = queues.get(queryId);
+            if (queue == null) {
+                queue = new QueryQueue(queryId);
+                queue.pass = currentPass;
+                queues.put(queryId, queue);
+            }
+            queue.stride = STRIDE / getPriority(task);
+            if (queue.tasks.isEmpty()) {
+                queue.pass = Math.max(queue.pass, currentPass);
+                queue.order = order++;
+                ready.add(queue);
+            }
+            queue.tasks.add(task);
+            count++;
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public boolean offer(Runnable task, long timeout, TimeUnit unit) {
+        return offer(task);
+    }
+    
+    @Override
+    public void put(Runnable task) {
+        offer(task);
+    }
+    
+    /**
+     * Take the next task from the query with the lowest pass. Must be called with the lock held and a non-empty queue.
+     */
+    private Runnable dequeue() {
+        QueryQueue queue = ready.poll();
+        Runnable task = queue.tasks.poll();
+        count--;
+        currentPass = queue.pass;
+        queue.pass += queue.stride;
+        if (!queue.tasks.isEmpty()) {
+            queue.order = order++;
+            ready.add(queue);
+        }
+        // forget idle queries whose pass has been caught up with, as they would restart at the current pass anyway
+        if (queues.size() > 2 * ready.size() + 16) {
+            queues.values().removeIf(q -> q.tasks.isEmpty() && q.pass <= currentPass);
+        }
+        return task;
+    }
+    
+    @Override
+    public Runnable poll() {
+        lock.lock();
+        try {
+            return (count == 0 ? null : dequeue());
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public Runnable take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                notEmpty.await();
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public Runnable peek() {
+        lock.lock();
+        try {
+            return (count == 0 ? null : ready.peek().tasks.peek());
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public boolean remove(Object o) {
+        lock.lock();
+        try {
+            for (QueryQueue queue : ready) {
+                if (queue.tasks.remove(o)) {
+                    count--;
+                    if (queue.tasks.isEmpty()) {
+                        ready.remove(queue);
+                    }
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Get the number of queued tasks for a query
+     *
+     * @param queryId
+     * @return the number of queued tasks
+     */
+    public int size(String queryId) {
+        lock.lock();
+        try {
+            QueryQueue queue = queues.get(queryId);
+            return (queue == null ? 0 : queue.tasks.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+    
+    @Override
+    public int drainTo(Collection<? super Runnable> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+    
+    @Override
+    public int drainTo(Collection<? super Runnable> c, int maxElements) {
+        lock.lock();
+        try {
+            int drained = 0;
+            while (count > 0 && drained < maxElements) {
+                c.add(dequeue());
+                drained++;
+            }
+            return drained;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * @return an iterator over a snapshot of the queued tasks, in no particular order
+     */
+    @Override
+    public Iterator<Runnable> iterator() {
+        List<Runnable> snapshot = new ArrayList<>();
+        lock.lock();
+        try {
+            for (QueryQueue queue : ready) {
+                snapshot.addAll(queue.tasks);
+            }
+        } finally {
+            lock.unlock();
+        }
+        Iterator<Runnable> it = snapshot.iterator();
+        return new Iterator<Runnable>() {
+            private Runnable last = null;
+            
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+            
+            @Override
+            public Runnable next() {
+                last = it.next();
+                return last;
+            }
+            
+            @Override
+            public void remove() {
+                QueryFairTaskQueue.this.remove(last);
+            }
+        };
+    }
+}
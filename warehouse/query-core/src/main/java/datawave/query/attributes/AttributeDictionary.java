@@ -0,0 +1,284 @@
+package datawave.query.attributes;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import datawave.data.type.Type;
+
+import org.apache.log4j.Logger;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * A dictionary of field names and attribute types used by the compact Document serialization. Rather than writing the fully qualified class name of every
+ * attribute (and of the datawave type backing every {@link TypeAttribute}) along with every field name, each distinct field name and attribute type is assigned
+ * a small integer id the first time it is seen. The ids are written as varints and the definitions are sent once, as a delta ahead of the first document that
+ * references them, unless they are resent in full via {@link #resendDefinitions()}.
+ * <p>
+ * A writing dictionary accumulates the definitions that have not yet been flushed via {@link #writeDefinitions(Output)}; a reading dictionary is populated by
+ * {@link #readDefinitions(Input)} and resolves every class name exactly once. The definitions for a dictionary must be read in the order that they were
+ * written. Instances are not thread safe.
+ */
+public class AttributeDictionary {
+    private static final Logger log = Logger.getLogger(AttributeDictionary.class);
+    
+    private final Map<String,Integer> fieldIds = new HashMap<>();
+    private final List<String> fields = new ArrayList<>();
+    private int flushedFields = 0;
+    
+    // attribute classes other than TypeAttribute are keyed by their own class, TypeAttributes by the class of their datawave type
+    private final Map<Class<?>,Integer> attributeTypeIds = new HashMap<>();
+    private final Map<Class<?>,Integer> datawaveTypeIds = new HashMap<>();
+    private final List<TypeDefinition> types = new ArrayList<>();
+    private int flushedTypes = 0;
+    
+    /**
+     * @return the number of field names known to this dictionary
+     */
+    public int getFieldCount() {
+        return fields.size();
+    }
+    
+    /**
+     * @return the number of attribute types known to this dictionary
+     */
+    public int getTypeCount() {
+        return types.size();
+    }
+    
+    /**
+     * @return true if there are definitions which have been assigned but not yet written
+     */
+    public boolean hasPendingDefinitions() {
+        return flushedFields < fields.size() || flushedTypes < types.size();
+    }
+    
+    /**
+     * Get the id for a field name, assigning a new id if this is the first time the field has been seen.
+     *
+     * @param field
+     * @return the field id
+     */
+    public int getFieldId(String field) {
+        Integer id = fieldIds.get(field);
+        if (id == null) {
+            id = fields.size();
+            fields.add(field);
+            fieldIds.put(field, id);
+        }
+        return id;
+    }
+    
+    /**
+     * Get the field name for an id previously defined via {@link #readDefinitions(Input)}
+     *
+     * @param id
+     * @return the field name
+     */
+    public String getField(int id) {
+        if (id < 0 || id >= fields.size()) {
+            throw new IllegalStateException("Undefined field id " + id + " (" + fields.size() + " fields defined)");
+        }
+        return fields.get(id);
+    }
+    
+    /**
+     * Get the type id for an attribute, assigning a new id if this is the first time the attribute's type has been seen.
+     *
+     * @param attribute
+     * @return the type id
+     */
+    public int getTypeId(Attribute<?> attribute) {
+        Class<?> datawaveTypeClass = getDatawaveTypeClass(attribute);
+        Map<Class<?>,Integer> ids = (datawaveTypeClass == null ? attributeTypeIds : datawaveTypeIds);
+        Class<?> key = (datawaveTypeClass == null ? attribute.getClass() : datawaveTypeClass);
+        
+        Integer id = ids.get(key);
+        if (id == null) {
+            id = types.size();
+            types.add(new TypeDefinition(attribute.getClass(), datawaveTypeClass));
+            ids.put(key, id);
+        }
+        return id;
+    }
+    
+    /**
+     * Have the next call to {@link #writeDefinitions(Output)} write every definition again, for a reader that may no longer have them
+     */
+    public void resendDefinitions() {
+        flushedFields = 0;
+        flushedTypes = 0;
+    }
+    
+    /**
+     * Write the field and type definitions that have been assigned since the last call to this method
+     *
+     * @param output
+     */
+    public void writeDefinitions(Output output) {
+        output.writeInt(flushedFields, true);
+        output.writeInt(fields.size() - flushedFields, true);
+        for (int i = flushedFields; i < fields.size(); i++) {
+            output.writeString(fields.get(i));
+        }
+        flushedFields = fields.size();
+        
+        output.writeInt(flushedTypes, true);
+        output.writeInt(types.size() - flushedTypes, true);
+        for (int i = flushedTypes; i < types.size(); i++) {
+            TypeDefinition type = types.get(i);
+            output.writeString(type.attributeClass.getName());
+            output.writeString(type.datawaveTypeClass == null ? null : type.datawaveTypeClass.getName());
+        }
+        flushedTypes = types.size();
+    }
+    
+    /**
+     * Read a set of field and type definitions written by {@link #writeDefinitions(Output)}. Definitions which are already known are skipped, however a gap in
+     * the definitions indicates that a previous delta was never read and results in an IllegalStateException.
+     *
+     * @param input
+     */
+    public void readDefinitions(Input input) {
+        int firstField = input.readInt(true);
+        int numFields = input.readInt(true);
+        checkContiguous("field", firstField, fields.size());
+        for (int i = 0; i < numFields; i++) {
+            String field = input.readString();
+            if (firstField + i == fields.size()) {
+                fieldIds.put(field, fields.size());
+                fields.add(field);
+            }
+        }
+        flushedFields = fields.size();
+        
+        int firstType = input.readInt(true);
+        int numTypes = input.readInt(true);
+        checkContiguous("type", firstType, types.size());
+        for (int i = 0; i < numTypes; i++) {
+            String attributeClassName = input.readString();
+            String datawaveTypeClassName = input.readString();
+            if (firstType + i == types.size()) {
+                types.add(resolve(attributeClassName, datawaveTypeClassName));
+            }
+        }
+        flushedTypes = types.size();
+    }
+    
+    /**
+     * Write an attribute as its type id followed by its content. Nested Documents and Attributes write their children through this dictionary as well.
+     *
+     * @param kryo
+     * @param output
+     * @param attribute
+     * @param reducedResponse
+     */
+    public void writeAttribute(Kryo kryo, Output output, Attribute<?> attribute, Boolean reducedResponse) {
+        output.writeInt(getTypeId(attribute), true);
+        
+        if (attribute instanceof Document) {
+            ((Document) attribute).write(kryo, output, reducedResponse, this);
+        } else if (attribute instanceof Attributes) {
+            ((Attributes) attribute).write(kryo, output, reducedResponse, this);
+        } else if (isDictionaryTyped(attribute)) {
+            // the datawave type is implied by the type id
+            ((TypeAttribute<?>) attribute).writeValue(kryo, output, reducedResponse);
+        } else {
+            attribute.write(kryo, output, reducedResponse);
+        }
+    }
+    
+    /**
+     * Read an attribute written by {@link #writeAttribute(Kryo, Output, Attribute, Boolean)}
+     *
+     * @param kryo
+     * @param input
+     * @return the attribute
+     */
+    public Attribute<?> readAttribute(Kryo kryo, Input input) {
+        int id = input.readInt(true);
+        if (id < 0 || id >= types.size()) {
+            throw new IllegalStateException("Undefined attribute type id " + id + " (" + types.size() + " types defined)");
+        }
+        TypeDefinition type = types.get(id);
+        
+        Attribute<?> attr = type.newInstance();
+        if (attr instanceof Document) {
+            ((Document) attr).read(kryo, input, this);
+        } else if (attr instanceof Attributes) {
+            ((Attributes) attr).read(kryo, input, this);
+        } else if (isDictionaryTyped(attr)) {
+            ((TypeAttribute<?>) attr).readValue(kryo, input);
+        } else {
+            attr.read(kryo, input);
+        }
+        return attr;
+    }
+    
+    private static boolean isDictionaryTyped(Attribute<?> attribute) {
+        // subclasses of TypeAttribute are left to serialize themselves
+        return attribute.getClass() == TypeAttribute.class && ((TypeAttribute<?>) attribute).getType() != null;
+    }
+    
+    private static Class<?> getDatawaveTypeClass(Attribute<?> attribute) {
+        if (isDictionaryTyped(attribute)) {
+            return ((TypeAttribute<?>) attribute).getType().getClass();
+        }
+        return null;
+    }
+    
+    private static void checkContiguous(String what, int first, int known) {
+        if (first > known) {
+            throw new IllegalStateException("Missing " + what + " definitions " + known + " through " + (first - 1)
+                            + "; documents from a dictionary must be read in the order they were written");
+        }
+    }
+    
+    private static TypeDefinition resolve(String attributeClassName, String datawaveTypeClassName) {
+        Class<?> attributeClass;
+        Class<?> datawaveTypeClass = null;
+        try {
+            attributeClass = Class.forName(attributeClassName);
+            if (datawaveTypeClassName != null) {
+                datawaveTypeClass = Class.forName(datawaveTypeClassName);
+            }
+        } catch (ClassNotFoundException e) {
+            log.error("could not find class for \"" + attributeClassName + "\" or \"" + datawaveTypeClassName + "\"");
+            throw new RuntimeException(e);
+        }
+        
+        if (!Attribute.class.isAssignableFrom(attributeClass)) {
+            throw new ClassCastException("Found class that was not an instance of Attribute");
+        }
+        if (datawaveTypeClass != null && !Type.class.isAssignableFrom(datawaveTypeClass)) {
+            throw new ClassCastException("Found class that was not an instance of Type");
+        }
+        return new TypeDefinition(attributeClass, datawaveTypeClass);
+    }
+    
+    private static class TypeDefinition {
+        private final Class<?> attributeClass;
+        private final Class<?> datawaveTypeClass;
+        
+        private TypeDefinition(Class<?> attributeClass, Class<?> datawaveTypeClass) {
+            this.attributeClass = attributeClass;
+            this.datawaveTypeClass = datawaveTypeClass;
+        }
+        
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private Attribute<?> newInstance() {
+            try {
+                if (datawaveTypeClass != null) {
+                    return new TypeAttribute((Type) datawaveTypeClass.newInstance(), null, true);
+                }
+                return (Attribute<?>) attributeClass.newInstance();
+            } catch (InstantiationException | IllegalAccessException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
@@ -343,6 +343,44 @@ public class Attributes extends AttributeBag<Attributes> implements Serializable
         invalidateMetadata();
     }
     
+    /**
+     * Write these attributes using the compact encoding, where attribute types are written as ids from the supplied dictionary
+     *
+     * @param kryo
+     * @param output
+     * @param reducedResponse
+     * @param dictionary
+     */
+    public void write(Kryo kryo, Output output, Boolean reducedResponse, AttributeDictionary dictionary) {
+        output.writeInt(this._count, true);
+        output.writeBoolean(this.trackSizes);
+        output.writeInt(this.attributes.size(), true);
+        
+        for (Attribute<? extends Comparable<?>> attr : this.attributes) {
+            dictionary.writeAttribute(kryo, output, attr, reducedResponse);
+        }
+    }
+    
+    /**
+     * Read attributes written by {@link #write(Kryo, Output, Boolean, AttributeDictionary)}
+     *
+     * @param kryo
+     * @param input
+     * @param dictionary
+     */
+    public void read(Kryo kryo, Input input, AttributeDictionary dictionary) {
+        this._count = input.readInt(true);
+        this.trackSizes = input.readBoolean();
+        int numAttrs = input.readInt(true);
+        
+        this.attributes = new LinkedHashSet<>();
+        for (int i = 0; i < numAttrs; i++) {
+            this.attributes.add(dictionary.readAttribute(kryo, input));
+        }
+        
+        invalidateMetadata();
+    }
+    
     /*
      * (non-Javadoc)
      * 
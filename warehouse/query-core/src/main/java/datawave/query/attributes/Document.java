@@ -825,6 +825,55 @@ public class Document extends AttributeBag<Document> implements Serializable {
         this.invalidateMetadata();
     }
     
+    /**
+     * Write this document using the compact encoding, where field names and attribute types are written as ids from the supplied dictionary
+     *
+     * @param kryo
+     * @param output
+     * @param reducedResponse
+     * @param dictionary
+     */
+    public void write(Kryo kryo, Output output, Boolean reducedResponse, AttributeDictionary dictionary) {
+        output.writeInt(this._count, true);
+        output.writeBoolean(trackSizes);
+        output.writeLong(this._bytes, true);
+        
+        output.writeInt(this.dict.size(), true);
+        
+        for (Entry<String,Attribute<? extends Comparable<?>>> entry : this.dict.entrySet()) {
+            output.writeInt(dictionary.getFieldId(entry.getKey()), true);
+            dictionary.writeAttribute(kryo, output, entry.getValue(), reducedResponse);
+        }
+        
+        output.writeLong(this.shardTimestamp);
+    }
+    
+    /**
+     * Read a document written by {@link #write(Kryo, Output, Boolean, AttributeDictionary)}
+     *
+     * @param kryo
+     * @param input
+     * @param dictionary
+     */
+    public void read(Kryo kryo, Input input, AttributeDictionary dictionary) {
+        this._count = input.readInt(true);
+        trackSizes = input.readBoolean();
+        this._bytes = input.readLong(true);
+        
+        int numAttrs = input.readInt(true);
+        
+        this.dict = new TreeMap<>();
+        
+        for (int i = 0; i < numAttrs; i++) {
+            String fieldName = dictionary.getField(input.readInt(true));
+            this.dict.put(fieldName, dictionary.readAttribute(kryo, input));
+        }
+        
+        this.shardTimestamp = input.readLong();
+        
+        this.invalidateMetadata();
+    }
+    
     @Override
     public Document copy() {
         Document d = new Document(this.getMetadata(), this.isToKeep(), trackSizes);
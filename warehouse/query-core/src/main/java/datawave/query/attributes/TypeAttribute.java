@@ -133,6 +133,13 @@ public class TypeAttribute<T extends Comparable<T>> extends Attribute<TypeAttrib
     @Override
     public void write(Kryo kryo, Output output, Boolean reducedResponse) {
         output.writeString(datawaveType.getClass().getName());
+        writeValue(kryo, output, reducedResponse);
+    }
+    
+    /**
+     * Write the metadata and delegate of this attribute without the datawave type class name, which the caller is responsible for conveying
+     */
+    void writeValue(Kryo kryo, Output output, Boolean reducedResponse) {
         super.writeMetadata(kryo, output, reducedResponse);
         
         output.writeString(this.datawaveType.getDelegateAsString());
@@ -145,6 +152,13 @@ public class TypeAttribute<T extends Comparable<T>> extends Attribute<TypeAttrib
         } catch (InstantiationException | IllegalAccessException | ClassNotFoundException e) {
             log.warn("could not read datawateType from input: " + e);
         }
+        readValue(kryo, input);
+    }
+    
+    /**
+     * Read the metadata and delegate written by {@link #writeValue(Kryo, Output, Boolean)} into the datawave type already set on this attribute
+     */
+    void readValue(Kryo kryo, Input input) {
         super.readMetadata(kryo, input);
         if (datawaveType == null)
             datawaveType = (Type) new NoOpType();
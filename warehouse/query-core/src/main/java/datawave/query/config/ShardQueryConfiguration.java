@@ -62,6 +62,7 @@ import java.util.stream.Collectors;
  */
 public class ShardQueryConfiguration extends GenericQueryConfiguration implements Serializable {
     public static final String PARAM_VALUE_SEP_STR = new String(new char[] {Constants.PARAM_VALUE_SEP});
+    public static final int DEFAULT_GROUP_FIELDS_BATCH_SIZE = 1000;
     @SuppressWarnings("unused")
     private static final long serialVersionUID = -4354990715046146110L;
     private static final Logger log = Logger.getLogger(ShardQueryConfiguration.class);
@@ -79,6 +80,10 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
     private boolean allTermsIndexOnly;
     private String accumuloPassword = "";
     private long maxIndexScanTimeMillis = Long.MAX_VALUE;
+    // How long regex and range expansions are reused across queries, or 0 to always scan the index
+    private long indexExpansionCacheTtlMillis = 0;
+    // The threads of the index expansion executor shared by every query on the web server
+    private int sharedIndexExpansionThreads = 100;
     private boolean collapseUids = false;
     private int collapseUidsThreshold = -1;
     private boolean sequentialScheduler = false;
@@ -238,6 +243,12 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
      * By default don't use speculative scanning.
      */
     private boolean speculativeScanning = false;
+    /**
+     * By default don't hedge scans. When enabled, a scan that has not returned a result within the p95 latency of its tablet server is duplicated, for at most
+     * hedgedScanBudget of the scans of a query.
+     */
+    private boolean hedgedScanning = false;
+    private double hedgedScanBudget = 0.05;
     private boolean disableEvaluation = false;
     private boolean containsIndexOnlyTerms = false;
     private boolean containsCompositeTerms = false;
@@ -283,6 +294,10 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
     private long maxIvaratorResults = -1;
     private int maxEvaluationPipelines = 25;
     private int maxPipelineCachedResults = 25;
+    // The relative share of the tserver evaluation thread pool given to this query
+    private int evaluationPriority = 1;
+    // Fetch the term frequencies of the documents queued for evaluation together rather than one document at a time
+    private boolean batchTermFrequencyFetch = false;
     private boolean expandAllTerms = false;
     // Adding the ability to pre-cache the query model for performance sake. If this is null
     // then the query model will be pulled from the MetadataHelper
@@ -297,10 +312,18 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
     private boolean indexOnlyFilterFunctionsEnabled = false;
     private boolean compositeFilterFunctionsEnabled = false;
     
-    private int groupFieldsBatchSize;
+    // The number of results each tserver aggregates into counts per group before returning them when there are group fields. 0 (the default) uses
+    // DEFAULT_GROUP_FIELDS_BATCH_SIZE, and a negative value groups only on the web server
+    private int groupFieldsBatchSize = 0;
     private boolean accrueStats = false;
     private Set<String> groupFields = new HashSet<>(0);
     private Set<String> uniqueFields = new HashSet<>(0);
+    // The memory used to dedupe unique results on the web server before spilling to disk
+    private long uniqueMaxMemory = 64L * 1024 * 1024;
+    // The directory unique hashes are spilled to, or null for java.io.tmpdir
+    private String uniqueSpillDir = null;
+    // The memory used to pre-dedupe unique results on each tserver scan, or 0 to disable the tserver pass
+    private long uniqueTserverMaxMemory = 8L * 1024 * 1024;
     private boolean cacheModel = false;
     /**
      * should the sizes of documents be tracked for this query
@@ -337,6 +360,8 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         this.setAllTermsIndexOnly(other.isAllTermsIndexOnly());
         this.setAccumuloPassword(other.getAccumuloPassword());
         this.setMaxIndexScanTimeMillis(other.getMaxIndexScanTimeMillis());
+        this.setIndexExpansionCacheTtlMillis(other.getIndexExpansionCacheTtlMillis());
+        this.setSharedIndexExpansionThreads(other.getSharedIndexExpansionThreads());
         this.setCollapseUids(other.getCollapseUids());
         this.setCollapseUidsThreshold(other.getCollapseUidsThreshold());
         this.setSequentialScheduler(other.getSequentialScheduler());
@@ -423,6 +448,8 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         this.setReducedResponse(other.isReducedResponse());
         this.setAllowShortcutEvaluation(other.getAllowShortcutEvaluation());
         this.setSpeculativeScanning(other.getSpeculativeScanning());
+        this.setHedgedScanning(other.getHedgedScanning());
+        this.setHedgedScanBudget(other.getHedgedScanBudget());
         this.setDisableEvaluation(other.isDisableEvaluation());
         this.setContainsIndexOnlyTerms(other.isContainsIndexOnlyTerms());
         this.setContainsCompositeTerms(other.isContainsCompositeTerms());
@@ -459,6 +486,8 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         this.setMaxIvaratorResults(other.getMaxIvaratorResults());
         this.setMaxEvaluationPipelines(other.getMaxEvaluationPipelines());
         this.setMaxPipelineCachedResults(other.getMaxPipelineCachedResults());
+        this.setEvaluationPriority(other.getEvaluationPriority());
+        this.setBatchTermFrequencyFetch(other.isBatchTermFrequencyFetch());
         this.setExpandAllTerms(other.isExpandAllTerms());
         this.setQueryModel(null == other.getQueryModel() ? null : new QueryModel(other.getQueryModel()));
         this.setModelName(other.getModelName());
@@ -472,6 +501,9 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         this.setAccrueStats(other.getAccrueStats());
         this.setGroupFields(null == other.getGroupFields() ? null : Sets.newHashSet(other.getGroupFields()));
         this.setUniqueFields(null == other.getUniqueFields() ? null : Sets.newHashSet(other.getUniqueFields()));
+        this.setUniqueMaxMemory(other.getUniqueMaxMemory());
+        this.setUniqueSpillDir(other.getUniqueSpillDir());
+        this.setUniqueTserverMaxMemory(other.getUniqueTserverMaxMemory());
         this.setCacheModel(other.getCacheModel());
         this.setTrackSizes(other.isTrackSizes());
         this.setContentFieldNames(null == other.getContentFieldNames() ? null : Lists.newArrayList(other.getContentFieldNames()));
@@ -1210,6 +1242,14 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         this.maxEvaluationPipelines = maxEvaluationPipelines;
     }
     
+    public int getEvaluationPriority() {
+        return evaluationPriority;
+    }
+    
+    public void setEvaluationPriority(int evaluationPriority) {
+        this.evaluationPriority = evaluationPriority;
+    }
+    
     public int getMaxPipelineCachedResults() {
         return maxPipelineCachedResults;
     }
@@ -1218,6 +1258,14 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         this.maxPipelineCachedResults = maxCachedResults;
     }
     
+    public boolean isBatchTermFrequencyFetch() {
+        return batchTermFrequencyFetch;
+    }
+    
+    public void setBatchTermFrequencyFetch(boolean batchTermFrequencyFetch) {
+        this.batchTermFrequencyFetch = batchTermFrequencyFetch;
+    }
+    
     public boolean isExpandAllTerms() {
         return expandAllTerms;
     }
@@ -1446,7 +1494,15 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         this.groupFieldsBatchSize = groupFieldsBatchSize;
     }
     
+    /**
+     * @return the batch size passed to the tservers, which is {@link #DEFAULT_GROUP_FIELDS_BATCH_SIZE} unless one was set, or 0 to group only on the web server
+     */
     public String getGroupFieldsBatchSizeAsString() {
+        if (groupFieldsBatchSize < 0) {
+            return "0";
+        } else if (groupFieldsBatchSize == 0 && groupFields != null && !groupFields.isEmpty()) {
+            return "" + DEFAULT_GROUP_FIELDS_BATCH_SIZE;
+        }
         return "" + groupFieldsBatchSize;
     }
     
@@ -1462,6 +1518,30 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         return StringUtils.join(this.getUniqueFields(), Constants.PARAM_VALUE_SEP);
     }
     
+    public long getUniqueMaxMemory() {
+        return uniqueMaxMemory;
+    }
+    
+    public void setUniqueMaxMemory(long uniqueMaxMemory) {
+        this.uniqueMaxMemory = uniqueMaxMemory;
+    }
+    
+    public String getUniqueSpillDir() {
+        return uniqueSpillDir;
+    }
+    
+    public void setUniqueSpillDir(String uniqueSpillDir) {
+        this.uniqueSpillDir = uniqueSpillDir;
+    }
+    
+    public long getUniqueTserverMaxMemory() {
+        return uniqueTserverMaxMemory;
+    }
+    
+    public void setUniqueTserverMaxMemory(long uniqueTserverMaxMemory) {
+        this.uniqueTserverMaxMemory = uniqueTserverMaxMemory;
+    }
+    
     public boolean isHitList() {
         return this.hitList;
     }
@@ -1770,6 +1850,22 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         this.maxIndexScanTimeMillis = maxTime;
     }
     
+    public long getIndexExpansionCacheTtlMillis() {
+        return indexExpansionCacheTtlMillis;
+    }
+    
+    public void setIndexExpansionCacheTtlMillis(long indexExpansionCacheTtlMillis) {
+        this.indexExpansionCacheTtlMillis = indexExpansionCacheTtlMillis;
+    }
+    
+    public int getSharedIndexExpansionThreads() {
+        return sharedIndexExpansionThreads;
+    }
+    
+    public void setSharedIndexExpansionThreads(int sharedIndexExpansionThreads) {
+        this.sharedIndexExpansionThreads = sharedIndexExpansionThreads;
+    }
+    
     public boolean getCollapseUids() {
         return collapseUids;
     }
@@ -1936,6 +2032,22 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         this.speculativeScanning = speculativeScanning;
     }
     
+    public boolean getHedgedScanning() {
+        return hedgedScanning;
+    }
+    
+    public void setHedgedScanning(boolean hedgedScanning) {
+        this.hedgedScanning = hedgedScanning;
+    }
+    
+    public double getHedgedScanBudget() {
+        return hedgedScanBudget;
+    }
+    
+    public void setHedgedScanBudget(double hedgedScanBudget) {
+        this.hedgedScanBudget = hedgedScanBudget;
+    }
+    
     public boolean getSerializeQueryIterator() {
         return serializeQueryIterator;
     }
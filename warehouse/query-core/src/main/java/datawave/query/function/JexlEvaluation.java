@@ -46,6 +46,21 @@ public class JexlEvaluation implements Predicate<Tuple3<Key,Document,DatawaveJex
         this.script = this.engine.createScript(query);
     }
     
+    /**
+     * Create an evaluation from a previously parsed jexl tree. The tree is not modified by evaluation and may be shared between evaluations.
+     *
+     * @param query
+     * @param arithmetic
+     * @param parsed
+     *            the tree parsed from the query by a {@link DatawaveJexlEngine}
+     */
+    public JexlEvaluation(String query, JexlArithmetic arithmetic, ASTJexlScript parsed) {
+        this.query = query;
+        this.arithmetic = arithmetic;
+        this.engine = ArithmeticJexlEngines.getEngine(arithmetic);
+        this.script = this.engine.createScript(parsed, query);
+    }
+    
     public JexlArithmetic getArithmetic() {
         return arithmetic;
     }
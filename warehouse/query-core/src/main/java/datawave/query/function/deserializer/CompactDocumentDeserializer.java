@@ -0,0 +1,69 @@
+package datawave.query.function.deserializer;
+
+import java.io.InputStream;
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+import datawave.query.attributes.AttributeDictionary;
+import datawave.query.attributes.Document;
+import datawave.query.function.serializer.CompactDocumentSerializer;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * Transform compact, dictionary encoded bytes written by a {@link CompactDocumentSerializer} back into a Document. One dictionary is kept per serializer
+ * (dictionary id) that has been seen, so the documents from any one scan must be deserialized in the order in which they were returned. Ordering of Attributes
+ * is <b>not</b> guaranteed across serialization.
+ * <p>
+ * The stream of a dictionary has no end marker, so dictionaries that have not been used for {@link #DICTIONARY_EXPIRY_MINUTES} are dropped. That is far
+ * longer than {@link CompactDocumentSerializer#RESEND_AFTER_IDLE_MS}, after which an idle scan resends all of its definitions when it resumes, so a scan whose
+ * dictionary was dropped starts a new one rather than failing. Documents whose definitions were never read still fail rather than being decoded wrongly.
+ */
+public class CompactDocumentDeserializer extends DocumentDeserializer implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    public static final long DICTIONARY_EXPIRY_MINUTES = 60;
+    
+    final transient Kryo kryo = new Kryo();
+    final transient LoadingCache<Long,AttributeDictionary> dictionaries = CacheBuilder.newBuilder()
+                    .expireAfterAccess(DICTIONARY_EXPIRY_MINUTES, TimeUnit.MINUTES).build(new CacheLoader<Long,AttributeDictionary>() {
+                        @Override
+                        public AttributeDictionary load(Long id) {
+                            return new AttributeDictionary();
+                        }
+                    });
+    
+    @Override
+    public Document deserialize(InputStream data) {
+        Input input = new Input(data);
+        
+        byte version = input.readByte();
+        if (version != CompactDocumentSerializer.VERSION) {
+            throw new IllegalArgumentException("Unsupported compact document version " + version);
+        }
+        
+        AttributeDictionary dictionary = dictionaries.getUnchecked(input.readLong());
+        
+        Document document = new Document();
+        synchronized (dictionary) {
+            dictionary.readDefinitions(input);
+            document.read(kryo, input, dictionary);
+        }
+        
+        input.close();
+        
+        return document;
+    }
+    
+    /**
+     * @return the number of scan dictionaries held by this deserializer
+     */
+    public int getDictionaryCount() {
+        return (int) dictionaries.size();
+    }
+    
+}
@@ -0,0 +1,81 @@
+package datawave.query.function.serializer;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import datawave.query.attributes.AttributeDictionary;
+import datawave.query.attributes.Document;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Transform the Document into the compact, dictionary encoded form. Field names and attribute types are replaced with varint ids from an
+ * {@link AttributeDictionary} that lives as long as this serializer (i.e. for the duration of a scan), and only the dictionary entries that have not been sent
+ * before are written ahead of each document. Each serializer is identified by a random dictionary id so that the {@link
+ * datawave.query.function.deserializer.CompactDocumentDeserializer} can keep the dictionaries of many concurrent scans apart. A scan that resumes after
+ * being idle for {@link #RESEND_AFTER_IDLE_MS} resends all of its definitions, as the deserializer drops dictionaries that have not been used for a while.
+ * Ordering of Attributes is <b>not</b> guaranteed across serialization.
+ *
+ * The serialized form is:
+ *
+ * <pre>
+ * byte    format version
+ * long    dictionary id
+ * varint  first new field id, varint count, string field names
+ * varint  first new type id, varint count, (string attribute class, string datawave type class) pairs
+ * ...     document body
+ * </pre>
+ */
+public class CompactDocumentSerializer extends DocumentSerializer {
+    public static final byte VERSION = 1;
+    public static final long RESEND_AFTER_IDLE_MS = 60 * 1000L;
+    
+    final Kryo kryo = new Kryo();
+    final AttributeDictionary dictionary = new AttributeDictionary();
+    final long dictionaryId = ThreadLocalRandom.current().nextLong();
+    
+    // reused across documents, growing as needed
+    final Output body = new Output(4096, -1);
+    final Output frame = new Output(4096, -1);
+    
+    long resendAfterIdleMillis = RESEND_AFTER_IDLE_MS;
+    long lastSerialized = 0;
+    
+    public CompactDocumentSerializer() {
+        this(false, false);
+    }
+    
+    public CompactDocumentSerializer(boolean reducedResponse) {
+        this(reducedResponse, false);
+    }
+    
+    public CompactDocumentSerializer(boolean reducedResponse, boolean compress) {
+        super(reducedResponse, compress);
+    }
+    
+    public long getDictionaryId() {
+        return dictionaryId;
+    }
+    
+    @Override
+    public byte[] serialize(Document doc) {
+        // write the body first so that any new dictionary entries it references are known before the frame is written
+        body.clear();
+        doc.write(kryo, body, reducedResponse, dictionary);
+        
+        long now = System.currentTimeMillis();
+        if (now - lastSerialized >= resendAfterIdleMillis) {
+            dictionary.resendDefinitions();
+        }
+        lastSerialized = now;
+        
+        frame.clear();
+        frame.writeByte(VERSION);
+        frame.writeLong(dictionaryId);
+        dictionary.writeDefinitions(frame);
+        frame.writeBytes(body.getBuffer(), 0, body.position());
+        
+        return frame.toBytes();
+    }
+    
+}
@@ -4,8 +4,15 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.SortedSet;
 
 import datawave.query.language.parser.jexl.JexlNodeSet;
 import org.apache.commons.jexl2.parser.ASTDelayedPredicate;
@@ -23,12 +30,14 @@ import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
 import com.google.common.collect.Sets;
 
 import datawave.query.jexl.JexlNodeFactory;
 import datawave.query.jexl.nodes.ExceededTermThresholdMarkerJexlNode;
 import datawave.query.jexl.nodes.ExceededValueThresholdMarkerJexlNode;
 import datawave.query.jexl.nodes.IndexHoleMarkerJexlNode;
+import datawave.query.jexl.nodes.QueryPropertyMarker;
 import datawave.query.jexl.visitors.RebuildingVisitor;
 import datawave.query.jexl.visitors.TreeFlatteningRebuildingVisitor;
 
@@ -37,7 +46,8 @@ import datawave.query.jexl.visitors.TreeFlatteningRebuildingVisitor;
  * <p>
  * Hits may be represented by individual document ids or by a simple count.
  * <p>
- * The IndexInfo object supports union and intersection operations with other IndexInfo objects.
+ * The IndexInfo object supports union and intersection operations with other IndexInfo objects. The uids are kept in their natural order, so unions are
+ * merges and intersections gallop through the larger set rather than hashing every uid.
  */
 public class IndexInfo implements Writable, UidIntersector {
     
@@ -45,6 +55,7 @@ public class IndexInfo implements Writable, UidIntersector {
     
     protected JexlNode myNode = null;
     protected long count;
+    // always in natural order
     protected ImmutableSortedSet<IndexMatch> uids;
     
     public IndexInfo() {
@@ -266,27 +277,45 @@ public class IndexInfo implements Writable, UidIntersector {
             merged.count = count + o.count;
             merged.uids = ImmutableSortedSet.of();
         } else {
-            HashMultimap<String,JexlNode> ids = HashMultimap.create();
-            
             /*
-             * Concatenate all UIDs and merge the individual nodes
+             * Merge the sorted UIDs and the individual nodes
              */
-            for (IndexMatch match : Iterables.concat(uids, o.uids)) {
+            NodeSets nodeSets = new NodeSets(delayedNodes);
+            List<IndexMatch> matches = new ArrayList<>(Math.max(uids.size(), o.uids.size()));
+            List<IndexMatch> left = uids.asList();
+            List<IndexMatch> right = o.uids.asList();
+            int i = 0;
+            int j = 0;
+            while (i < left.size() || j < right.size()) {
+                int cmp;
+                if (i == left.size()) {
+                    cmp = 1;
+                } else if (j == right.size()) {
+                    cmp = -1;
+                } else {
+                    cmp = left.get(i).uid.compareTo(right.get(j).uid);
+                }
                 
-                JexlNode newNode = match.getNode();
-                if (null != newNode)
-                    ids.put(match.uid, newNode);
-            }
-            
-            Set<IndexMatch> matches = Sets.newHashSet();
-            
-            for (String uid : ids.keySet()) {
-                Set<JexlNode> nodes = Sets.newHashSet(ids.get(uid));
-                if (!nodes.isEmpty()) {
-                    nodes.addAll(delayedNodes);
-                    matches.add(new IndexMatch(nodes, uid, IndexMatchType.OR));
+                String uid;
+                JexlNode leftNode = null;
+                JexlNode rightNode = null;
+                if (cmp <= 0) {
+                    uid = left.get(i).uid;
+                    leftNode = left.get(i++).getNode();
+                } else {
+                    uid = right.get(j).uid;
+                }
+                if (cmp >= 0) {
+                    rightNode = right.get(j++).getNode();
                 }
                 
+                if (null == leftNode) {
+                    leftNode = rightNode;
+                    rightNode = null;
+                }
+                if (null != leftNode) {
+                    matches.add(nodeSets.newMatch(uid, IndexMatchType.OR, leftNode, rightNode));
+                }
             }
             merged.uids = ImmutableSortedSet.copyOf(matches);
             merged.count = merged.uids.size();
@@ -361,20 +390,11 @@ public class IndexInfo implements Writable, UidIntersector {
      */
     protected IndexInfo intersect(long maxPossibilities, Iterable<IndexMatch> matchIterable, JexlNode matchNode, List<JexlNode> otherInfiniteNodes,
                     List<JexlNode> delayedNodes) {
-        HashMultimap<String,JexlNode> ids = HashMultimap.create();
-        Set<IndexMatch> matches = Sets.newHashSet();
-        
         // must be true or we shouldn't be here
         assert otherInfiniteNodes != null;
         assert delayedNodes != null;
         assert otherInfiniteNodes.size() + delayedNodes.size() > 0;
         
-        for (IndexMatch match : matchIterable) {
-            JexlNode newNode = match.getNode();
-            if (null != newNode)
-                ids.put(match.uid, newNode);
-        }
-        
         JexlNodeSet infiniteNodeSet = new JexlNodeSet();
         infiniteNodeSet.addAll(delayedNodes);
         for (JexlNode node : otherInfiniteNodes) {
@@ -382,26 +402,21 @@ public class IndexInfo implements Writable, UidIntersector {
                 infiniteNodeSet.add(node);
         }
         
+        NodeSets nodeSets = new NodeSets(infiniteNodeSet.getNodes());
+        List<IndexMatch> matches = nodeSets.newMatches(matchIterable);
+        
         IndexInfo merged = new IndexInfo();
-        if (ids.keySet().isEmpty()) {
+        if (matches.isEmpty()) {
             merged.count = maxPossibilities;
         } else {
-            for (String uid : ids.keySet()) {
-                JexlNodeSet nodeSet = new JexlNodeSet();
-                nodeSet.addAll(ids.get(uid));
-                nodeSet.addAll(infiniteNodeSet.getNodes());
-                
-                IndexMatch currentMatch = new IndexMatch(Sets.newHashSet(nodeSet.getNodes()), uid, IndexMatchType.AND);
-                matches.add(currentMatch);
-            }
             merged.count = matches.size();
         }
         
         JexlNode newNode;
         if (matches.size() > 1) {
-            // get the unique node sets
+            // get the unique node sets, where matches with the same nodes would only repeat the same node key
             JexlNodeSet nodeSet = new JexlNodeSet();
-            for (IndexMatch match : matches) {
+            for (IndexMatch match : nodeSets.getDistinctMatches()) {
                 nodeSet.add(match.getNode());
             }
             
@@ -494,42 +509,25 @@ public class IndexInfo implements Writable, UidIntersector {
                      */
                     merged.count = count;
                     
-                    HashMultimap<String,JexlNode> ids = HashMultimap.create();
-                    for (IndexMatch match : uids) {
-                        JexlNode newNode = match.getNode();
-                        if (null != newNode)
-                            ids.put(match.uid, newNode);
-                    }
-                    
                     JexlNodeSet ourDelayedNodes = new JexlNodeSet();
                     ourDelayedNodes.addAll(delayedNodes);
                     // we may actually have no node on o
                     if (null != o.getNode())
                         ourDelayedNodes.add(o.getNode());
                     
-                    Set<IndexMatch> matches = buildNodeList(ids, IndexMatchType.AND, true, Lists.newArrayList(ourDelayedNodes.getNodes()));
-                    
-                    merged.uids = ImmutableSortedSet.copyOf(matches);
+                    merged.uids = intersectDelayed(uids, ourDelayedNodes);
                     merged.count = merged.uids.size();
                 } else if (o.onlyEvents()) {
                     /*
                      * E) We have LARGE AND SMALL
                      */
-                    HashMultimap<String,JexlNode> ids = HashMultimap.create();
-                    for (IndexMatch match : o.uids) {
-                        JexlNode newNode = match.getNode();
-                        if (null != newNode)
-                            ids.put(match.uid, newNode);
-                    }
-                    
                     JexlNodeSet ourDelayedNodes = new JexlNodeSet();
                     ourDelayedNodes.addAll(delayedNodes);
                     // possible, depending on how query is processed that we have no node.
                     if (null != getNode())
                         ourDelayedNodes.add(getNode());
                     
-                    Set<IndexMatch> matches = buildNodeList(ids, IndexMatchType.AND, true, Lists.newArrayList(ourDelayedNodes.getNodes()));
-                    merged.uids = ImmutableSortedSet.copyOf(matches);
+                    merged.uids = intersectDelayed(o.uids, ourDelayedNodes);
                     merged.count = merged.uids.size();
                 } else {
                     
@@ -548,8 +546,50 @@ public class IndexInfo implements Writable, UidIntersector {
         return merged;
     }
     
+    /**
+     * Intersect matches with a set of delayed nodes, dropping the matches without a node. If there are no delayed nodes then nothing is left.
+     *
+     * @param matches
+     * @param delayedNodes
+     * @return the matches with the delayed nodes added
+     */
+    private static ImmutableSortedSet<IndexMatch> intersectDelayed(Iterable<IndexMatch> matches, JexlNodeSet delayedNodes) {
+        if (delayedNodes.isEmpty()) {
+            return ImmutableSortedSet.of();
+        }
+        return ImmutableSortedSet.copyOf(new NodeSets(delayedNodes.getNodes()).newMatches(matches));
+    }
+    
+    /**
+     * Intersect two sets of matches, keeping the uids with a different node in each set. When both sets are sorted by uid, each uid of the smaller set is
+     * found in the larger set with a galloping search from the last match, so the cost follows the size of the smaller set when the sizes are lopsided.
+     */
     @Override
     public Set<IndexMatch> intersect(Set<IndexMatch> uids1, Set<IndexMatch> uids2, List<JexlNode> delayedNodes) {
+        List<IndexMatch> sorted1 = sortedUids(uids1);
+        List<IndexMatch> sorted2 = sortedUids(uids2);
+        if (null != sorted1 && null != sorted2) {
+            List<IndexMatch> smaller = (sorted1.size() <= sorted2.size() ? sorted1 : sorted2);
+            List<IndexMatch> larger = (smaller == sorted1 ? sorted2 : sorted1);
+            
+            NodeSets nodeSets = new NodeSets(delayedNodes);
+            List<IndexMatch> matches = new ArrayList<>();
+            int j = 0;
+            for (int i = 0; i < smaller.size() && j < larger.size(); i++) {
+                IndexMatch match = smaller.get(i);
+                j = gallop(larger, j, match.uid);
+                if (j < larger.size() && larger.get(j).uid.equals(match.uid)) {
+                    JexlNode node = match.getNode();
+                    JexlNode otherNode = larger.get(j++).getNode();
+                    // only ids with more than one JexlNode will make it through this method.
+                    if (null != node && null != otherNode && node != otherNode) {
+                        matches.add(nodeSets.newMatch(match.uid, IndexMatchType.AND, node, otherNode));
+                    }
+                }
+            }
+            return ImmutableSortedSet.copyOf(matches);
+        }
+        
         HashMultimap<String,JexlNode> ids = HashMultimap.create();
         for (IndexMatch match : Iterables.concat(uids1, uids2)) {
             JexlNode newNode = match.getNode();
@@ -561,6 +601,57 @@ public class IndexInfo implements Writable, UidIntersector {
         return buildNodeList(ids, IndexMatchType.AND, false, delayedNodes);
     }
     
+    /**
+     * Get the matches of a set as a list in uid order.
+     *
+     * @param matches
+     * @return the sorted matches, or null if the set is not sorted by uid
+     */
+    private static List<IndexMatch> sortedUids(Set<IndexMatch> matches) {
+        if (matches instanceof ImmutableSortedSet && isNaturalOrder(((ImmutableSortedSet<IndexMatch>) matches).comparator())) {
+            return ((ImmutableSortedSet<IndexMatch>) matches).asList();
+        } else if (matches instanceof SortedSet && isNaturalOrder(((SortedSet<IndexMatch>) matches).comparator())) {
+            return new ArrayList<>(matches);
+        }
+        return null;
+    }
+    
+    private static boolean isNaturalOrder(Comparator<?> comparator) {
+        return null == comparator || comparator == Ordering.natural();
+    }
+    
+    /**
+     * Find the first match at or after from with a uid that is not less than the given uid. The distance is doubled until the uid is passed, and the last
+     * step is then binary searched.
+     *
+     * @param matches
+     *            matches sorted by uid
+     * @param from
+     * @param uid
+     * @return the index of the match, or the size of the list if every uid from there is less
+     */
+    static int gallop(List<IndexMatch> matches, int from, String uid) {
+        int size = matches.size();
+        int low = from;
+        int high = from;
+        int step = 1;
+        while (high < size && matches.get(high).uid.compareTo(uid) < 0) {
+            low = high + 1;
+            high = from + step;
+            step <<= 1;
+        }
+        high = Math.min(high, size);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (matches.get(mid).uid.compareTo(uid) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
     protected Set<IndexMatch> buildNodeList(HashMultimap<String,JexlNode> ids, IndexMatchType type, boolean allowsDelayed, List<JexlNode> delayedNodes) {
         Set<IndexMatch> matches = Sets.newHashSet();
         for (String uid : ids.keySet()) {
@@ -606,4 +697,126 @@ public class IndexInfo implements Writable, UidIntersector {
     public void setNode(JexlNode currNode) {
         myNode = currNode;
     }
+    
+    /**
+     * Builds the node sets of the new matches of a single operation. Each distinct node is given a bit the first time it is seen and the nodes of a match are
+     * tracked as a mask of those bits, so a node key is built once per node rather than once per match, and the node set of each distinct mask is built once
+     * and then copied. Nodes with the same node key share a bit, except that delayed nodes are kept apart so they still replace their source nodes in a node
+     * set. Nodes seen after the bits run out are added to the node sets of their matches as before.
+     */
+    private static class NodeSets {
+        // set in the mask of a match with a node that has no bit
+        private static final long OVERFLOW = Long.MIN_VALUE;
+        private static final int MAX_NODES = Long.SIZE - 1;
+        
+        private final JexlNodeSet keys = new JexlNodeSet();
+        private final Map<JexlNode,Long> bits = new IdentityHashMap<>();
+        private final Map<String,Long> bitsByKey = new HashMap<>();
+        private final Map<String,Long> delayedBitsByKey = new HashMap<>();
+        private final List<JexlNode> nodes = new ArrayList<>();
+        private final Map<Long,JexlNodeSet> nodeSets = new HashMap<>();
+        private final List<IndexMatch> distinctMatches = new ArrayList<>();
+        
+        // the nodes added to every match
+        private final Collection<JexlNode> commonNodes;
+        private final long commonMask;
+        
+        private long lastMask;
+        private JexlNodeSet lastNodeSet = null;
+        
+        NodeSets(Collection<JexlNode> commonNodes) {
+            this.commonNodes = (null == commonNodes ? Collections.emptyList() : commonNodes);
+            long mask = 0;
+            for (JexlNode node : this.commonNodes) {
+                mask |= bit(node);
+            }
+            this.commonMask = mask;
+        }
+        
+        private long bit(JexlNode node) {
+            Long bit = bits.get(node);
+            if (null == bit) {
+                Map<String,Long> byKey = (QueryPropertyMarker.instanceOf(node, null) ? delayedBitsByKey : bitsByKey);
+                String key = keys.buildKey(node);
+                bit = byKey.get(key);
+                if (null == bit) {
+                    if (nodes.size() == MAX_NODES) {
+                        bit = OVERFLOW;
+                    } else {
+                        bit = 1L << nodes.size();
+                        nodes.add(node);
+                        byKey.put(key, bit);
+                    }
+                }
+                bits.put(node, bit);
+            }
+            return bit;
+        }
+        
+        /**
+         * Create a match with the common nodes and the nodes of the uid.
+         *
+         * @param uid
+         * @param type
+         * @param node
+         * @param otherNode
+         *            a second node of the uid, may be null
+         * @return the new match
+         */
+        IndexMatch newMatch(String uid, IndexMatchType type, JexlNode node, JexlNode otherNode) {
+            long mask = commonMask | bit(node) | (null == otherNode ? 0 : bit(otherNode));
+            if ((mask & OVERFLOW) != 0) {
+                JexlNodeSet nodeSet = new JexlNodeSet();
+                nodeSet.add(node);
+                if (null != otherNode)
+                    nodeSet.add(otherNode);
+                nodeSet.addAll(commonNodes);
+                
+                IndexMatch match = new IndexMatch(uid, nodeSet, type);
+                distinctMatches.add(match);
+                return match;
+            }
+            
+            if (null == lastNodeSet || mask != lastMask) {
+                lastMask = mask;
+                lastNodeSet = nodeSets.get(mask);
+                if (null == lastNodeSet) {
+                    lastNodeSet = new JexlNodeSet();
+                    for (long remaining = mask; remaining != 0; remaining &= remaining - 1) {
+                        lastNodeSet.add(nodes.get(Long.numberOfTrailingZeros(remaining)));
+                    }
+                    nodeSets.put(mask, lastNodeSet);
+                    
+                    IndexMatch match = new IndexMatch(uid, new JexlNodeSet(lastNodeSet), type);
+                    distinctMatches.add(match);
+                    return match;
+                }
+            }
+            return new IndexMatch(uid, new JexlNodeSet(lastNodeSet), type);
+        }
+        
+        /**
+         * Create an AND match with the common nodes for each match with a node.
+         *
+         * @param matches
+         * @return the new matches, in the order of the given matches
+         */
+        List<IndexMatch> newMatches(Iterable<IndexMatch> matches) {
+            List<IndexMatch> newMatches = new ArrayList<>();
+            for (IndexMatch match : matches) {
+                JexlNode node = match.getNode();
+                if (null != node) {
+                    newMatches.add(newMatch(match.uid, IndexMatchType.AND, node, null));
+                }
+            }
+            return newMatches;
+        }
+        
+        /**
+         * @return one of the created matches for each distinct node set
+         */
+        List<IndexMatch> getDistinctMatches() {
+            return distinctMatches;
+        }
+    }
 }
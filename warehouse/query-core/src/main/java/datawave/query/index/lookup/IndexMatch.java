@@ -59,6 +59,19 @@ public class IndexMatch implements WritableComparable<IndexMatch> {
         this.shard = "";
     }
     
+    /**
+     * @param uid
+     * @param nodeSet
+     *            the node set of this match, which is not copied
+     * @param type
+     */
+    IndexMatch(String uid, JexlNodeSet nodeSet, final IndexMatchType type) {
+        this.uid = uid;
+        this.nodeSet = nodeSet;
+        this.type = type;
+        this.shard = "";
+    }
+    
     public String getUid() {
         return uid;
     }
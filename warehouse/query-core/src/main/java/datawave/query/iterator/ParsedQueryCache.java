@@ -0,0 +1,247 @@
+package datawave.query.iterator;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import datawave.query.composite.CompositeMetadata;
+import datawave.query.function.JexlEvaluation;
+import datawave.query.jexl.ArithmeticJexlEngines;
+import datawave.query.jexl.DefaultArithmetic;
+import datawave.query.jexl.JexlASTHelper;
+import datawave.query.jexl.visitors.RebuildingVisitor;
+import datawave.query.util.TserverSingleton;
+import datawave.query.util.TypeMetadata;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.commons.jexl2.JexlArithmetic;
+import org.apache.commons.jexl2.parser.ASTJexlScript;
+import org.apache.commons.jexl2.parser.ParseException;
+import org.apache.log4j.Logger;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * A tserver wide cache of the query state that every {@link QueryIterator} would otherwise rebuild from its options: the parsed query, the tree used to
+ * compile the {@link JexlEvaluation}, and the deserialized type and composite metadata. A query that hits thousands of tablets sends the same options to each
+ * of them, so all but the first init of a query on a tserver can skip parsing and deserialization.
+ * <p>
+ * Entries are keyed by the query id and the full option value, so a query that sends different options to different ranges (e.g. batched queries) gets a
+ * separate entry for each distinct value. Callers receive their own copies of the mutable state.
+ * <p>
+ * The cache is bounded by the total length of the cached option values, as the parsed and deserialized state grows with them. The bound is set in characters
+ * with the {@value #CACHE_MAX_CHARS_PROP} tserver property and setting it to 0 disables caching. Entries expire after {@value #CACHE_EXPIRATION_PROP}
+ * milliseconds without access.
+ */
+public class ParsedQueryCache {
+    private static final Logger log = Logger.getLogger(ParsedQueryCache.class);
+    public static final String CACHE_MAX_CHARS_PROP = "tserver.datawave.query.cache.max.chars";
+    public static final String CACHE_EXPIRATION_PROP = "tserver.datawave.query.cache.expiration.ms";
+    public static final long DEFAULT_CACHE_MAX_CHARS = 8L * 1024 * 1024;
+    public static final long DEFAULT_CACHE_EXPIRATION = TimeUnit.MINUTES.toMillis(10);
+    
+    private static final TserverSingleton<ParsedQueryCache> instance = new TserverSingleton<>(conf -> new ParsedQueryCache(TserverSingleton.getLongProperty(
+                    conf, CACHE_MAX_CHARS_PROP, DEFAULT_CACHE_MAX_CHARS), TserverSingleton.getLongProperty(conf, CACHE_EXPIRATION_PROP,
+                    DEFAULT_CACHE_EXPIRATION)));
+    
+    private enum EntryType {
+        QUERY, TYPE_METADATA, COMPRESSED_TYPE_METADATA, COMPOSITE_METADATA
+    }
+    
+    private final Cache<CacheKey,Object> cache;
+    
+    /**
+     * @param maxChars
+     *            the maximum total length of the cached query ids and option values, or 0 to disable caching
+     * @param expirationMillis
+     */
+    public ParsedQueryCache(long maxChars, long expirationMillis) {
+        if (maxChars > 0) {
+            this.cache = CacheBuilder.newBuilder().maximumWeight(maxChars).weigher((CacheKey key, Object value) -> key.length())
+                            .expireAfterAccess(expirationMillis, TimeUnit.MILLISECONDS).concurrencyLevel(10).build();
+        } else {
+            this.cache = null;
+        }
+    }
+    
+    /**
+     * Get the tserver wide cache, configuring it from the iterator environment the first time it is requested
+     *
+     * @param env
+     * @return the cache
+     */
+    public static ParsedQueryCache instance(IteratorEnvironment env) {
+        return instance.get(env);
+    }
+    
+    public boolean isEnabled() {
+        return cache != null;
+    }
+    
+    public long size() {
+        return (cache == null ? 0 : cache.size());
+    }
+    
+    public void invalidateAll() {
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+    
+    /**
+     * Get the parsed form of a query
+     *
+     * @param queryId
+     * @param query
+     * @return the parsed query
+     * @throws ParseException
+     *             if the query could not be parsed
+     */
+    public ParsedQuery getParsedQuery(String queryId, String query) throws ParseException {
+        try {
+            return (ParsedQuery) get(new CacheKey(queryId, EntryType.QUERY, query), () -> new ParsedQuery(query));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ParseException) {
+                throw (ParseException) e.getCause();
+            }
+            throw new IllegalArgumentException("Could not parse the JEXL query: '" + query + "'", e.getCause());
+        }
+    }
+    
+    /**
+     * Get the type metadata deserialized from the type metadata option
+     *
+     * @param queryId
+     * @param typeMetadataString
+     * @param compressed
+     *            true if the option was compressed
+     * @return a copy of the type metadata
+     * @throws IOException
+     *             if the option could not be decompressed
+     */
+    public TypeMetadata getTypeMetadata(String queryId, String typeMetadataString, boolean compressed) throws IOException {
+        TypeMetadata typeMetadata;
+        try {
+            typeMetadata = (TypeMetadata) get(new CacheKey(queryId, compressed ? EntryType.COMPRESSED_TYPE_METADATA : EntryType.TYPE_METADATA,
+                            typeMetadataString), () -> QueryOptions.buildTypeMetadata(compressed ? QueryOptions.decompressOption(typeMetadataString,
+                            QueryOptions.UTF8) : typeMetadataString));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+        return new TypeMetadata(typeMetadata);
+    }
+    
+    /**
+     * Get the composite metadata deserialized from the composite metadata option. The composite metadata is only read by the iterators, so a shared instance
+     * is returned.
+     *
+     * @param queryId
+     * @param compositeMetadataString
+     * @return the composite metadata
+     */
+    public CompositeMetadata getCompositeMetadata(String queryId, String compositeMetadataString) {
+        try {
+            return (CompositeMetadata) get(new CacheKey(queryId, EntryType.COMPOSITE_METADATA, compositeMetadataString),
+                            () -> CompositeMetadata.fromBytes(Base64.getDecoder().decode(compositeMetadataString)));
+        } catch (ExecutionException e) {
+            throw new IllegalArgumentException("Could not deserialize the composite metadata", e.getCause());
+        }
+    }
+    
+    private Object get(CacheKey key, Callable<Object> loader) throws ExecutionException {
+        if (cache == null) {
+            try {
+                return loader.call();
+            } catch (Exception e) {
+                throw new ExecutionException(e);
+            }
+        }
+        try {
+            return cache.get(key, loader);
+        } catch (UncheckedExecutionException e) {
+            throw new ExecutionException(e.getCause());
+        }
+    }
+    
+    /**
+     * The parsed form of a query. The parsed script is handed out as a copy because the iterators are free to modify it, while the tree used for evaluation is
+     * never modified and is shared by all evaluations as the jexl engine's own cache would.
+     */
+    public static class ParsedQuery {
+        private final String query;
+        private final ASTJexlScript script;
+        private final ASTJexlScript evaluationTree;
+        
+        public ParsedQuery(String query) throws ParseException {
+            this.query = query;
+            this.script = JexlASTHelper.parseJexlQuery(query);
+            this.evaluationTree = ArithmeticJexlEngines.getEngine(new DefaultArithmetic()).parse(query);
+            if (log.isTraceEnabled()) {
+                log.trace("Parsed query " + query);
+            }
+        }
+        
+        public String getQuery() {
+            return query;
+        }
+        
+        /**
+         * @return a copy of the parsed query
+         */
+        public ASTJexlScript getScript() {
+            return (ASTJexlScript) RebuildingVisitor.copy(script);
+        }
+        
+        /**
+         * Create an evaluation of the query using the supplied arithmetic
+         *
+         * @param arithmetic
+         * @return the evaluation
+         */
+        public JexlEvaluation createEvaluation(JexlArithmetic arithmetic) {
+            return new JexlEvaluation(query, arithmetic, evaluationTree);
+        }
+    }
+    
+    private static class CacheKey {
+        private final String queryId;
+        private final EntryType type;
+        private final String value;
+        private final int hashCode;
+        
+        CacheKey(String queryId, EntryType type, String value) {
+            this.queryId = queryId;
+            this.type = type;
+            this.value = value;
+            this.hashCode = Objects.hash(queryId, type, value);
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) o;
+            return hashCode == other.hashCode && type == other.type && Objects.equals(queryId, other.queryId) && Objects.equals(value, other.value);
+        }
+        
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+        
+        int length() {
+            return (queryId == null ? 0 : queryId.length()) + (value == null ? 0 : value.length());
+        }
+    }
+}
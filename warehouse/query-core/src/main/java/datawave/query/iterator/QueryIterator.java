@@ -32,7 +32,10 @@ import datawave.query.function.LimitFields;
 import datawave.query.function.MaskedValueFilterFactory;
 import datawave.query.function.MaskedValueFilterInterface;
 import datawave.query.function.RemoveGroupingContext;
+import datawave.query.function.deserializer.CompactDocumentDeserializer;
+import datawave.query.function.deserializer.DocumentDeserializer;
 import datawave.query.function.deserializer.KryoDocumentDeserializer;
+import datawave.query.function.serializer.CompactDocumentSerializer;
 import datawave.query.function.serializer.KryoDocumentSerializer;
 import datawave.query.function.serializer.ToStringDocumentSerializer;
 import datawave.query.function.serializer.WritableDocumentSerializer;
@@ -51,7 +54,6 @@ import datawave.query.iterator.profile.QuerySpanCollector;
 import datawave.query.iterator.profile.SourceTrackingIterator;
 import datawave.query.jexl.DatawaveJexlContext;
 import datawave.query.jexl.DefaultArithmetic;
-import datawave.query.jexl.JexlASTHelper;
 import datawave.query.jexl.StatefulArithmetic;
 import datawave.query.jexl.functions.IdentityAggregator;
 import datawave.query.jexl.functions.KeyAdjudicator;
@@ -59,6 +61,7 @@ import datawave.query.jexl.visitors.IteratorBuildingVisitor;
 import datawave.query.jexl.visitors.SatisfactionVisitor;
 import datawave.query.jexl.visitors.VariableNameVisitor;
 import datawave.query.postprocessing.tf.TFFactory;
+import datawave.query.postprocessing.tf.TermFrequencyBatch;
 import datawave.query.predicate.EmptyDocumentFilter;
 import datawave.query.statsd.QueryStatsDClient;
 import datawave.query.tracking.ActiveQuery;
@@ -87,6 +90,7 @@ import org.apache.accumulo.core.trace.Trace;
 import org.apache.accumulo.tserver.tablet.TabletClosedException;
 import org.apache.commons.jexl2.JexlArithmetic;
 import org.apache.commons.jexl2.parser.ASTJexlScript;
+import org.apache.commons.jexl2.parser.ParseException;
 import org.apache.commons.lang.builder.CompareToBuilder;
 import org.apache.hadoop.io.Text;
 import org.apache.log4j.Logger;
@@ -182,6 +186,9 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
     
     protected Map<String,Object> exceededOrEvaluationCache = null;
     
+    // the term frequencies of the documents queued for evaluation, shared by the evaluation pipelines of the current seek
+    protected TermFrequencyBatch termFrequencyBatch = null;
+    
     public QueryIterator() {}
     
     public QueryIterator(QueryIterator other, IteratorEnvironment env) {
@@ -226,10 +233,11 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
         
         this.exceededOrEvaluationCache = new HashMap<>();
         
-        // Parse the query
+        // Parse the query, reusing the parse of any other iterator for this query on this tserver
         try {
-            this.script = JexlASTHelper.parseJexlQuery(this.getQuery());
-            this.myEvaluationFunction = new JexlEvaluation(this.getQuery(), arithmetic);
+            ParsedQueryCache.ParsedQuery parsedQuery = ParsedQueryCache.instance(env).getParsedQuery(getQueryId(), this.getQuery());
+            this.script = parsedQuery.getScript();
+            this.myEvaluationFunction = parsedQuery.createEvaluation(arithmetic);
             
         } catch (Exception e) {
             throw new IOException("Could not parse the JEXL query: '" + this.getQuery() + "'", e);
@@ -378,6 +386,9 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
                 this.seekKeySource = buildDocumentIterator(documentRange, range, columnFamilies, inclusive);
             }
             
+            // the pipelines of this seek fetch the term frequencies of their documents together
+            this.termFrequencyBatch = (isTermFrequenciesRequired() && isBatchTermFrequencyFetch() ? new TermFrequencyBatch() : null);
+            
             // Create the pipeline iterator for document aggregation and
             // evaluation within a thread pool
             PipelineIterator pipelineIter = PipelineFactory.createIterator(this.seekKeySource, getMaxEvaluationPipelines(), getMaxPipelineCachedResults(),
@@ -436,6 +447,9 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
             } else if (this.getReturnType() == ReturnType.writable) {
                 // Use the Writable interface to serialize the Document
                 this.serializedDocuments = Iterators.transform(pipelineDocuments, new WritableDocumentSerializer(isReducedResponse()));
+            } else if (this.getReturnType() == ReturnType.compact) {
+                // Serialize the Document using the compact, dictionary encoded format
+                this.serializedDocuments = Iterators.transform(pipelineDocuments, new CompactDocumentSerializer(isReducedResponse(), isCompressResults()));
             } else if (this.getReturnType() == ReturnType.tostring) {
                 // Just return a toString() representation of the document
                 this.serializedDocuments = Iterators.transform(pipelineDocuments, new ToStringDocumentSerializer(isReducedResponse()));
@@ -444,7 +458,7 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
             }
             
             if (log.isTraceEnabled()) {
-                KryoDocumentDeserializer dser = new KryoDocumentDeserializer();
+                DocumentDeserializer dser = this.getReturnType() == ReturnType.compact ? new CompactDocumentDeserializer() : new KryoDocumentDeserializer();
                 this.serializedDocuments = Iterators.filter(this.serializedDocuments, keyValueEntry -> {
                     log.trace("after serializing, keyValueEntry:" + dser.apply(keyValueEntry));
                     return true;
@@ -468,7 +482,7 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
                                 this.getReturnType(), this.isReducedResponse(), this.isCompressResults(), this.yield);
             }
             if (log.isTraceEnabled()) {
-                KryoDocumentDeserializer dser = new KryoDocumentDeserializer();
+                DocumentDeserializer dser = this.getReturnType() == ReturnType.compact ? new CompactDocumentDeserializer() : new KryoDocumentDeserializer();
                 this.serializedDocuments = Iterators.filter(this.serializedDocuments, keyValueEntry -> {
                     log.debug("finally, considering:" + dser.apply(keyValueEntry));
                     return true;
@@ -610,8 +624,9 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
                 JexlEvaluation eval = null;
                 try {
                     
-                    myScript = JexlASTHelper.parseJexlQuery(queries.getValue());
-                    eval = new JexlEvaluation(queries.getValue(), myArithmetic);
+                    ParsedQueryCache.ParsedQuery parsedQuery = ParsedQueryCache.instance(myEnvironment).getParsedQuery(getQueryId(), queries.getValue());
+                    myScript = parsedQuery.getScript();
+                    eval = parsedQuery.createEvaluation(myArithmetic);
                     
                 } catch (Exception e) {
                     throw new IOException("Could not parse the JEXL query: '" + this.getQuery() + "'", e);
@@ -930,7 +945,7 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
             if (this.isTermFrequenciesRequired()) {
                 Function<Tuple2<Key,Document>,Tuple3<Key,Document,Map<String,Object>>> tfFunction;
                 tfFunction = TFFactory.getFunction(getScript(documentSource), getContentExpansionFields(), getTermFrequencyFields(), this.getTypeMetadata(),
-                                super.equality, getEvaluationFilter(), sourceDeepCopy.deepCopy(myEnvironment));
+                                super.equality, getEvaluationFilter(), sourceDeepCopy.deepCopy(myEnvironment), termFrequencyBatch);
                 
                 itrWithContext = TraceIterators.transform(tupleItr, tfFunction, "Term Frequency Lookup");
             } else {
@@ -967,24 +982,42 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
         }
     }
     
+    public TermFrequencyBatch getTermFrequencyBatch() {
+        return termFrequencyBatch;
+    }
+    
     protected JexlEvaluation getJexlEvaluation(NestedQueryIterator<Key> documentSource) {
         
         if (null == documentSource) {
-            return new JexlEvaluation(query, getArithmetic());
+            return createJexlEvaluation();
         }
         JexlEvaluation jexlEvaluationFunction = null;
         NestedQuery<Key> nestedQuery = documentSource.getNestedQuery();
         if (null == nestedQuery) {
-            jexlEvaluationFunction = new JexlEvaluation(query, getArithmetic());
+            jexlEvaluationFunction = createJexlEvaluation();
         } else {
             jexlEvaluationFunction = nestedQuery.getEvaluation();
             if (null == jexlEvaluationFunction) {
-                return new JexlEvaluation(query, getArithmetic());
+                return createJexlEvaluation();
             }
         }
         return jexlEvaluationFunction;
     }
     
+    /**
+     * Create an evaluation of the query from the cached parse of the query
+     *
+     * @return the evaluation
+     */
+    protected JexlEvaluation createJexlEvaluation() {
+        try {
+            return ParsedQueryCache.instance(myEnvironment).getParsedQuery(getQueryId(), query).createEvaluation(getArithmetic());
+        } catch (ParseException e) {
+            // let the jexl engine report the failure as it always has
+            return new JexlEvaluation(query, getArithmetic());
+        }
+    }
+    
     @Override
     public JexlArithmetic getArithmetic() {
         JexlArithmetic myArithmetic = this.arithmetic;
@@ -1442,10 +1475,11 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
     }
     
     protected UniqueTransform getUniqueTransform() {
-        if (uniqueTransform == null && getUniqueFields() != null & !getUniqueFields().isEmpty()) {
+        if (uniqueTransform == null && getUniqueFields() != null & !getUniqueFields().isEmpty() && getUniqueMaxMemory() > 0) {
             synchronized (getUniqueFields()) {
                 if (uniqueTransform == null) {
-                    uniqueTransform = new UniqueTransform(getUniqueFields());
+                    // the web server does the exact dedupe, so this pass stops recording once its memory is used rather than spilling
+                    uniqueTransform = new UniqueTransform(getUniqueFields(), getUniqueMaxMemory(), null);
                 }
             }
         }
@@ -52,6 +52,7 @@ import datawave.util.UniversalSet;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.PartialKey;
 import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
 import org.apache.accumulo.core.iterators.OptionDescriber;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.jexl2.JexlArithmetic;
@@ -127,6 +128,7 @@ public class QueryOptions implements OptionDescriber {
     public static final String DOCUMENT_PERMUTATION_CLASSES = "document.permutation.classes";
     public static final String TERM_FREQUENCY_FIELDS = "term.frequency.fields";
     public static final String TERM_FREQUENCIES_REQUIRED = "term.frequencies.are.required";
+    public static final String BATCH_TERM_FREQUENCY_FETCH = "batch.term.frequency.fetch";
     public static final String CONTENT_EXPANSION_FIELDS = "content.expansion.fields";
     public static final String LIMIT_FIELDS = "limit.fields";
     public static final String LIMIT_FIELDS_PRE_QUERY_EVALUATION = "limit.fields.pre.query.evaluation";
@@ -134,6 +136,8 @@ public class QueryOptions implements OptionDescriber {
     public static final String GROUP_FIELDS = "group.fields";
     public static final String GROUP_FIELDS_BATCH_SIZE = "group.fields.batch.size";
     public static final String UNIQUE_FIELDS = "unique.fields";
+    public static final String UNIQUE_MAX_MEMORY = "unique.max.memory";
+    public static final long DEFAULT_UNIQUE_MAX_MEMORY = 8L * 1024 * 1024;
     public static final String TYPE_METADATA_IN_HDFS = "type.metadata.in.hdfs";
     public static final String HITS_ONLY = "hits.only";
     public static final String HIT_LIST = "hit.list";
@@ -218,6 +222,9 @@ public class QueryOptions implements OptionDescriber {
     
     public static final String MAX_EVALUATION_PIPELINES = "max.evaluation.pipelines";
     
+    public static final String EVALUATION_PRIORITY = "evaluation.priority";
+    public static final int DEFAULT_EVALUATION_PRIORITY = 1;
+    
     public static final String SERIAL_EVALUATION_PIPELINE = "serial.evaluation.pipeline";
     
     public static final String MAX_PIPELINE_CACHED_RESULTS = "max.pipeline.cached.results";
@@ -262,6 +269,7 @@ public class QueryOptions implements OptionDescriber {
     protected Set<String> groupFields = Sets.newHashSet();
     protected int groupFieldsBatchSize = Integer.MAX_VALUE;
     protected Set<String> uniqueFields = Sets.newHashSet();
+    protected long uniqueMaxMemory = DEFAULT_UNIQUE_MAX_MEMORY;
     
     protected Set<String> hitsOnlySet = new HashSet<>();
     
@@ -273,6 +281,7 @@ public class QueryOptions implements OptionDescriber {
     protected EventDataQueryFilter evaluationFilter;
     
     protected int maxEvaluationPipelines = 25;
+    protected int evaluationPriority = DEFAULT_EVALUATION_PRIORITY;
     protected int maxPipelineCachedResults = 25;
     
     protected Set<String> indexOnlyFields = Sets.newHashSet();
@@ -333,6 +342,7 @@ public class QueryOptions implements OptionDescriber {
     protected Map<String,Set<String>> nonIndexedDataTypeMap = Maps.newHashMap();
     
     protected boolean termFrequenciesRequired = false;
+    protected boolean batchTermFrequencyFetch = false;
     protected Set<String> termFrequencyFields = Collections.emptySet();
     protected Set<String> contentExpansionFields;
     
@@ -450,6 +460,7 @@ public class QueryOptions implements OptionDescriber {
         this.limitFieldsField = other.limitFieldsField;
         this.groupFields = other.groupFields;
         this.groupFieldsBatchSize = other.groupFieldsBatchSize;
+        this.uniqueMaxMemory = other.uniqueMaxMemory;
         this.hitsOnlySet = other.hitsOnlySet;
         
         this.compressedMappings = other.compressedMappings;
@@ -473,12 +484,14 @@ public class QueryOptions implements OptionDescriber {
         this.sortedUIDs = other.sortedUIDs;
         
         this.termFrequenciesRequired = other.termFrequenciesRequired;
+        this.batchTermFrequencyFetch = other.batchTermFrequencyFetch;
         this.termFrequencyFields = other.termFrequencyFields;
         this.contentExpansionFields = other.contentExpansionFields;
         
         this.batchedQueries = other.batchedQueries;
         this.batchStack = other.batchStack;
         this.maxEvaluationPipelines = other.maxEvaluationPipelines;
+        this.evaluationPriority = other.evaluationPriority;
         
         this.dateIndexTimeTravel = other.dateIndexTimeTravel;
         
@@ -951,6 +964,14 @@ public class QueryOptions implements OptionDescriber {
         this.uniqueFields = uniqueFields;
     }
     
+    public long getUniqueMaxMemory() {
+        return uniqueMaxMemory;
+    }
+    
+    public void setUniqueMaxMemory(long uniqueMaxMemory) {
+        this.uniqueMaxMemory = uniqueMaxMemory;
+    }
+    
     public Set<String> getHitsOnlySet() {
         return hitsOnlySet;
     }
@@ -1027,6 +1048,7 @@ public class QueryOptions implements OptionDescriber {
         options.put(GROUP_FIELDS, "group fields");
         options.put(GROUP_FIELDS_BATCH_SIZE, "group fields.batch.size");
         options.put(UNIQUE_FIELDS, "unique fields");
+        options.put(UNIQUE_MAX_MEMORY, "The bytes of memory used to drop duplicate unique results before they are returned, or 0 to leave that to the web server");
         options.put(HIT_LIST, "hit list");
         options.put(NON_INDEXED_DATATYPES, "Normalizers to apply only at aggregation time");
         options.put(CONTAINS_INDEX_ONLY_TERMS, "Does the query being evaluated contain any terms which are index-only");
@@ -1034,6 +1056,7 @@ public class QueryOptions implements OptionDescriber {
                         "Allow the evaluation to occur purely on values pulled from the field index for queries only accessing indexed fields (default is true)");
         options.put(ALLOW_TERM_FREQUENCY_LOOKUP, "Allow the evaluation to use the term frequencies in lieu of the field index when appropriate");
         options.put(TERM_FREQUENCIES_REQUIRED, "Does the query require gathering term frequencies");
+        options.put(BATCH_TERM_FREQUENCY_FETCH, "Fetch the term frequencies of the documents queued for evaluation together rather than one document at a time");
         options.put(TERM_FREQUENCY_FIELDS, "comma-delimited list of fields that contain term frequencies");
         options.put(CONTENT_EXPANSION_FIELDS, "comma-delimited list of fields used for content function expansions");
         options.put(HDFS_SITE_CONFIG_URLS, "URLs (comma delimited) of where to find the hadoop hdfs and core site configuration files");
@@ -1056,6 +1079,7 @@ public class QueryOptions implements OptionDescriber {
                         "The threshold in milliseconds that the query iterator will evaluate consecutive documents to false before yielding the scan.");
         options.put(COMPRESS_SERVER_SIDE_RESULTS, "GZIP compress the serialized Documents before returning to the webserver");
         options.put(MAX_EVALUATION_PIPELINES, "The max number of evaluation pipelines");
+        options.put(EVALUATION_PRIORITY, "The relative share of the tserver evaluation thread pool this query receives when it is contended");
         options.put(SERIAL_EVALUATION_PIPELINE, "Forces us to use the serial pipeline. Allows us to still have a single thread for evaluation");
         options.put(MAX_PIPELINE_CACHED_RESULTS, "The max number of non-null evaluated results to cache beyond the evaluation pipelines in queue");
         options.put(DATE_INDEX_TIME_TRAVEL, "Whether the shards from before the event should be gathered from the dateIndex");
@@ -1133,7 +1157,7 @@ public class QueryOptions implements OptionDescriber {
         if (options.containsKey(COMPOSITE_METADATA)) {
             String compositeMetadataString = options.get(COMPOSITE_METADATA);
             if (compositeMetadataString != null && !compositeMetadataString.isEmpty())
-                this.compositeMetadata = CompositeMetadata.fromBytes(java.util.Base64.getDecoder().decode(compositeMetadataString));
+                this.compositeMetadata = getParsedQueryCache(options).getCompositeMetadata(this.queryId, compositeMetadataString);
             
             if (log.isTraceEnabled()) {
                 log.trace("Using compositeMetadata: " + this.compositeMetadata);
@@ -1343,6 +1367,10 @@ public class QueryOptions implements OptionDescriber {
             }
         }
         
+        if (options.containsKey(UNIQUE_MAX_MEMORY)) {
+            this.setUniqueMaxMemory(Long.parseLong(options.get(UNIQUE_MAX_MEMORY)));
+        }
+        
         if (options.containsKey(HIT_LIST)) {
             log.debug("Adding hitList to QueryOptions? " + options.get(HIT_LIST));
             if (Boolean.parseBoolean(options.get(HIT_LIST))) {
@@ -1456,6 +1484,10 @@ public class QueryOptions implements OptionDescriber {
             this.setMaxEvaluationPipelines(Integer.parseInt(options.get(MAX_EVALUATION_PIPELINES)));
         }
         
+        if (options.containsKey(EVALUATION_PRIORITY)) {
+            this.setEvaluationPriority(Integer.parseInt(options.get(EVALUATION_PRIORITY)));
+        }
+        
         if (options.containsKey(SERIAL_EVALUATION_PIPELINE)) {
             this.setSerialEvaluationPipeline(Boolean.parseBoolean(options.get(SERIAL_EVALUATION_PIPELINE)));
         }
@@ -1467,6 +1499,9 @@ public class QueryOptions implements OptionDescriber {
         if (options.containsKey(TERM_FREQUENCIES_REQUIRED)) {
             this.setTermFrequenciesRequired(Boolean.parseBoolean(options.get(TERM_FREQUENCIES_REQUIRED)));
         }
+        if (options.containsKey(BATCH_TERM_FREQUENCY_FETCH)) {
+            this.setBatchTermFrequencyFetch(Boolean.parseBoolean(options.get(BATCH_TERM_FREQUENCY_FETCH)));
+        }
         this.setTermFrequencyFields(parseTermFrequencyFields(options));
         this.setContentExpansionFields(parseContentExpansionFields(options));
         
@@ -1539,10 +1574,7 @@ public class QueryOptions implements OptionDescriber {
         if (options.containsKey(TYPE_METADATA)) {
             String typeMetadataString = options.get(TYPE_METADATA);
             try {
-                if (compressedMappings) {
-                    typeMetadataString = decompressOption(typeMetadataString, QueryOptions.UTF8);
-                }
-                this.typeMetadata = buildTypeMetadata(typeMetadataString);
+                this.typeMetadata = getParsedQueryCache(options).getTypeMetadata(this.queryId, typeMetadataString, compressedMappings);
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
@@ -1557,6 +1589,20 @@ public class QueryOptions implements OptionDescriber {
         
     }
     
+    /**
+     * Get the tserver wide cache of parsed query state, using the iterator environment from the options if available
+     *
+     * @param options
+     * @return the cache
+     */
+    protected ParsedQueryCache getParsedQueryCache(Map<String,String> options) {
+        IteratorEnvironment env = null;
+        if (options instanceof SourcedOptions) {
+            env = ((SourcedOptions<String,String>) options).getEnvironment();
+        }
+        return ParsedQueryCache.instance(env);
+    }
+    
     protected static String decompressOption(final String buffer, Charset characterSet) throws IOException {
         final byte[] inBase64 = Base64.decodeBase64(buffer.getBytes());
         
@@ -1801,6 +1847,14 @@ public class QueryOptions implements OptionDescriber {
         this.termFrequenciesRequired = termFrequenciesRequired;
     }
     
+    public boolean isBatchTermFrequencyFetch() {
+        return batchTermFrequencyFetch;
+    }
+    
+    public void setBatchTermFrequencyFetch(boolean batchTermFrequencyFetch) {
+        this.batchTermFrequencyFetch = batchTermFrequencyFetch;
+    }
+    
     public Set<String> parseTermFrequencyFields(Map<String,String> options) {
         String val = options.get(TERM_FREQUENCY_FIELDS);
         if (val == null) {
@@ -1843,6 +1897,14 @@ public class QueryOptions implements OptionDescriber {
         this.maxEvaluationPipelines = maxEvaluationPipelines;
     }
     
+    public int getEvaluationPriority() {
+        return evaluationPriority;
+    }
+    
+    public void setEvaluationPriority(int evaluationPriority) {
+        this.evaluationPriority = evaluationPriority;
+    }
+    
     public int getMaxPipelineCachedResults() {
         return maxPipelineCachedResults;
     }
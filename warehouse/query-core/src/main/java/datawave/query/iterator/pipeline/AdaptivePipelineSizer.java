@@ -0,0 +1,93 @@
+package datawave.query.iterator.pipeline;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Decides how many evaluation pipelines a {@link PipelineIterator} keeps in flight. The configured maximum is used until the evaluations show that the shared
+ * evaluation pool is contended, i.e. evaluations spend longer waiting for a thread than running or the pool has more queued evaluations than threads. The
+ * number of pipelines is then cut back by a quarter, leaving threads for other queries, and grown back by one at a time while the iterator finds itself
+ * waiting on evaluations that were not held up by the pool.
+ * <p>
+ * Decisions are made once per window of evaluations, where the window is the current number of pipelines.
+ */
+public class AdaptivePipelineSizer {
+    private static final Logger log = Logger.getLogger(AdaptivePipelineSizer.class);
+    public static final int MIN_PIPELINES = 2;
+    
+    private final int minPipelines;
+    private final int maxPipelines;
+    private int targetPipelines;
+    
+    // the current window
+    private int samples = 0;
+    private int waits = 0;
+    private long queueNanos = 0;
+    private long runNanos = 0;
+    private int maxBacklog = 0;
+    
+    public AdaptivePipelineSizer(int maxPipelines) {
+        this.maxPipelines = Math.max(1, maxPipelines);
+        this.minPipelines = Math.min(MIN_PIPELINES, this.maxPipelines);
+        this.targetPipelines = this.maxPipelines;
+    }
+    
+    public int getMaxPipelines() {
+        return maxPipelines;
+    }
+    
+    /**
+     * @return the number of pipelines that should currently be in flight
+     */
+    public int getTargetPipelines() {
+        return targetPipelines;
+    }
+    
+    /**
+     * Record a completed evaluation
+     *
+     * @param queueNanos
+     *            the time the evaluation waited for a thread
+     * @param runNanos
+     *            the time spent evaluating
+     * @param waited
+     *            true if the iterator had to wait for this evaluation to complete
+     * @param backlog
+     *            the number of evaluations queued in the shared pool
+     * @param poolThreads
+     *            the number of threads in the shared pool
+     */
+    public void record(long queueNanos, long runNanos, boolean waited, int backlog, int poolThreads) {
+        this.samples++;
+        this.queueNanos += queueNanos;
+        this.runNanos += runNanos;
+        if (waited) {
+            this.waits++;
+        }
+        this.maxBacklog = Math.max(this.maxBacklog, backlog);
+        
+        if (samples >= targetPipelines) {
+            adjust(poolThreads);
+        }
+    }
+    
+    private void adjust(int poolThreads) {
+        int previous = targetPipelines;
+        boolean contended = queueNanos > runNanos || maxBacklog > poolThreads;
+        if (contended) {
+            targetPipelines = Math.max(minPipelines, targetPipelines - Math.max(1, targetPipelines / 4));
+        } else if (waits > 0) {
+            targetPipelines = Math.min(maxPipelines, targetPipelines + 1);
+        }
+        
+        if (log.isDebugEnabled() && previous != targetPipelines) {
+            log.debug("Adjusted evaluation pipelines from " + previous + " to " + targetPipelines + " (queued " + queueNanos / 1000 + "us, ran " + runNanos
+                            / 1000 + "us, waited " + waits + " of " + samples + ", backlog " + maxBacklog + " for " + poolThreads + " threads)");
+        }
+        
+        samples = 0;
+        waits = 0;
+        queueNanos = 0;
+        runNanos = 0;
+        maxBacklog = 0;
+    }
+}
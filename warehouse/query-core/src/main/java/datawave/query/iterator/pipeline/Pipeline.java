@@ -32,6 +32,11 @@ public class Pipeline implements Runnable {
     
     private QuerySpanCollector querySpanCollector = null;
     
+    // timings of the last evaluation
+    private long submitNanos = 0;
+    private long startNanos = 0;
+    private long endNanos = 0;
+    
     public Pipeline(QuerySpanCollector querySpanCollector, SortedKeyValueIterator<Key,Value> sourceForDeepCopy) {
         this.querySpanCollector = querySpanCollector;
         this.iterator = null;
@@ -62,12 +67,40 @@ public class Pipeline implements Runnable {
         return result;
     }
     
+    /**
+     * Mark this pipeline as submitted for evaluation
+     */
+    public void submitted() {
+        this.submitNanos = System.nanoTime();
+        this.startNanos = 0;
+        this.endNanos = 0;
+    }
+    
+    /**
+     * @return the time the last evaluation waited for a thread after being submitted
+     */
+    public long getQueueNanos() {
+        return (startNanos == 0 || submitNanos == 0 ? 0 : startNanos - submitNanos);
+    }
+    
+    /**
+     * @return the time spent on the last evaluation
+     */
+    public long getRunNanos() {
+        return (endNanos == 0 ? 0 : endNanos - startNanos);
+    }
+    
     @Override
     public void run() {
-        if (iterator.hasNext()) {
-            result = iterator.next();
-        } else {
-            result = null;
+        startNanos = System.nanoTime();
+        try {
+            if (iterator.hasNext()) {
+                result = iterator.next();
+            } else {
+                result = null;
+            }
+        } finally {
+            endNanos = System.nanoTime();
         }
         
         if (log.isTraceEnabled()) {
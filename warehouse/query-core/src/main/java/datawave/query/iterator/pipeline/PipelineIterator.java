@@ -6,8 +6,10 @@ import datawave.query.iterator.NestedIterator;
 import datawave.query.iterator.NestedQuery;
 import datawave.query.iterator.NestedQueryIterator;
 import datawave.query.iterator.QueryIterator;
+import datawave.query.iterator.QueryOptions;
 import datawave.query.iterator.profile.QuerySpan;
 import datawave.query.iterator.profile.QuerySpanCollector;
+import datawave.query.postprocessing.tf.TermFrequencyBatch;
 import datawave.query.util.Tuple2;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Value;
@@ -28,7 +30,9 @@ import java.util.concurrent.TimeoutException;
 
 /**
  * This is the iterator that handles the evaluation pipelines. Essentially it will queue up N evaluations. On each hasNext and next call, it will pull the
- * results ready from the top and cache the non-null results in a results queue.
+ * results ready from the top and cache the non-null results in a results queue. The number of evaluations kept in flight is adjusted between 2 and N by an
+ * {@link AdaptivePipelineSizer} based on how long evaluations wait in the shared evaluation pool. When the query iterator fetches term frequencies in
+ * batches, the queued documents are tracked in its {@link TermFrequencyBatch} until they have been evaluated.
  */
 public class PipelineIterator implements Iterator<Entry<Key,Document>> {
     
@@ -45,6 +49,10 @@ public class PipelineIterator implements Iterator<Entry<Key,Document>> {
     protected final QuerySpan querySpan;
     protected boolean collectTimingDetails = false;
     protected IteratorEnvironment env;
+    protected final AdaptivePipelineSizer sizer;
+    protected final String queryId;
+    protected final int priority;
+    protected final TermFrequencyBatch termFrequencyBatch;
     
     public PipelineIterator(NestedIterator<Key> documents, int maxPipelines, int maxCachedResults, QuerySpanCollector querySpanCollector, QuerySpan querySpan,
                     QueryIterator sourceIterator, SortedKeyValueIterator<Key,Value> sourceForDeepCopy, IteratorEnvironment env,
@@ -59,6 +67,10 @@ public class PipelineIterator implements Iterator<Entry<Key,Document>> {
         this.env = env;
         this.yield = yieldCallback;
         this.yieldThresholdMs = yieldThresholdMs;
+        this.sizer = new AdaptivePipelineSizer(maxPipelines);
+        this.queryId = (sourceIterator == null ? null : sourceIterator.getQueryId());
+        this.priority = (sourceIterator == null ? QueryOptions.DEFAULT_EVALUATION_PRIORITY : sourceIterator.getEvaluationPriority());
+        this.termFrequencyBatch = (sourceIterator == null ? null : sourceIterator.getTermFrequencyBatch());
     }
     
     public void setCollectTimingDetails(boolean collectTimingDetails) {
@@ -231,7 +243,8 @@ public class PipelineIterator implements Iterator<Entry<Key,Document>> {
             }
             
             // wait for it to complete if not already done
-            if (!nextFuture.first().isDone()) {
+            boolean waited = !nextFuture.first().isDone();
+            if (waited) {
                 long start = System.currentTimeMillis();
                 
                 nextFuture.first().get(waitMs, TimeUnit.MILLISECONDS);
@@ -245,6 +258,10 @@ public class PipelineIterator implements Iterator<Entry<Key,Document>> {
             // call get to ensure that we throw any exception that occurred
             nextFuture.first().get();
             
+            // let the observed latency and pool contention adjust the number of pipelines in flight
+            sizer.record(nextFuture.second().getQueueNanos(), nextFuture.second().getRunNanos(), waited, IteratorThreadPoolManager.getEvaluationBacklog(env),
+                            IteratorThreadPoolManager.getEvaluationThreads(env));
+            
             // pull the result
             result = nextFuture.second().getResult();
             
@@ -261,12 +278,16 @@ public class PipelineIterator implements Iterator<Entry<Key,Document>> {
             cancel();
             throw e;
         } finally {
+            // the document is done with its term frequencies
+            if (termFrequencyBatch != null) {
+                termFrequencyBatch.remove(nextFuture.second().getSource().getKey());
+            }
             // return the pipeline for reuse
             pipelines.checkIn(nextFuture.second());
         }
         
-        // start a new evaluation if we can
-        if (docSource.hasNext()) {
+        // start new evaluations if we can, up to the current number of pipelines
+        while (evaluationQueue.size() < sizer.getTargetPipelines() && docSource.hasNext()) {
             Key keySource = docSource.next();
             NestedQuery<Key> nestedQuery = null;
             if (docSource instanceof NestedQueryIterator) {
@@ -297,11 +318,14 @@ public class PipelineIterator implements Iterator<Entry<Key,Document>> {
             pipelines.checkIn(nextFuture.second());
         }
         results.clear();
+        if (termFrequencyBatch != null) {
+            termFrequencyBatch.clear();
+        }
     }
     
     public void startPipeline() {
         // start up to maxPipeline pipelines
-        int maxPipelines = pipelines.maxPipelines;
+        int maxPipelines = sizer.getTargetPipelines();
         boolean isNested = false;
         NestedQuery<Key> nestedQuery = null;
         if (docSource instanceof NestedQueryIterator) {
@@ -329,8 +353,12 @@ public class PipelineIterator implements Iterator<Entry<Key,Document>> {
             log.trace("Adding evaluation of " + key + " to pipeline");
         }
         Pipeline pipeline = pipelines.checkOut(key, document, nestedQuery);
+        if (termFrequencyBatch != null) {
+            termFrequencyBatch.add(key);
+        }
+        pipeline.submitted();
         
-        evaluationQueue.add(new Tuple2<>(IteratorThreadPoolManager.executeEvaluation(pipeline, pipeline.toString(), env), pipeline));
+        evaluationQueue.add(new Tuple2<>(IteratorThreadPoolManager.executeEvaluation(pipeline, pipeline.toString(), queryId, priority, env), pipeline));
     }
     
     /*
@@ -6,6 +6,7 @@ import org.apache.commons.jexl2.Interpreter;
 import org.apache.commons.jexl2.JexlArithmetic;
 import org.apache.commons.jexl2.JexlContext;
 import org.apache.commons.jexl2.JexlEngine;
+import org.apache.commons.jexl2.Script;
 import org.apache.commons.jexl2.introspection.Uberspect;
 import org.apache.commons.jexl2.parser.ASTJexlScript;
 import org.apache.commons.logging.Log;
@@ -37,4 +38,16 @@ public class DatawaveJexlEngine extends JexlEngine {
     public ASTJexlScript parse(CharSequence expression) {
         return super.parse(expression, null, null);
     }
+    
+    /**
+     * Create a script from a previously parsed tree, avoiding the cost of parsing the expression again
+     *
+     * @param tree
+     * @param expression
+     * @return the script
+     */
+    @Override
+    public Script createScript(ASTJexlScript tree, String expression) {
+        return super.createScript(tree, expression);
+    }
 }
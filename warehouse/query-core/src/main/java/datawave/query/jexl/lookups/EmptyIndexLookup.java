@@ -9,4 +9,9 @@ public class EmptyIndexLookup extends IndexLookup {
         return new IndexLookupMap(config.getMaxUnfieldedExpansionThreshold(), config.getMaxValueExpansionThreshold());
     }
     
+    @Override
+    public IndexLookupMap timedOut(ShardQueryConfiguration config) {
+        return lookup(config, null, 0);
+    }
+    
 }
@@ -0,0 +1,89 @@
+package datawave.query.jexl.lookups;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * A web server wide cache of index expansions. Dashboards and saved queries issue the same regexes and ranges over and over, and each query would otherwise
+ * scan the global index to expand the same terms again.
+ * <p>
+ * Entries are keyed by everything that determines the result of the lookup (the term, date range, datatypes, auths, tables and thresholds), which the caller
+ * builds. Each query decides how old an expansion it will accept, and the cache keeps entries for at most {@link #MAX_TTL_MILLIS}. Callers receive their own
+ * copies of the cached maps, since expansions are trimmed in place. The cache is cleared when the metadata caches are evicted, which is how a reload of the
+ * index tables is signalled.
+ */
+public class IndexExpansionCache {
+    private static final Logger log = Logger.getLogger(IndexExpansionCache.class);
+    
+    public static final long MAX_SIZE = 10000;
+    public static final long MAX_TTL_MILLIS = TimeUnit.HOURS.toMillis(1);
+    
+    private static final IndexExpansionCache instance = new IndexExpansionCache(MAX_SIZE, MAX_TTL_MILLIS);
+    
+    private final Cache<Object,Expansion> cache;
+    
+    public IndexExpansionCache(long maxSize, long maxTtlMillis) {
+        this.cache = CacheBuilder.newBuilder().maximumSize(maxSize).expireAfterWrite(maxTtlMillis, TimeUnit.MILLISECONDS).concurrencyLevel(10).build();
+    }
+    
+    /**
+     * @return the web server wide cache
+     */
+    public static IndexExpansionCache instance() {
+        return instance;
+    }
+    
+    /**
+     * Get a cached expansion
+     *
+     * @param key
+     *            the key of the lookup
+     * @param ttlMillis
+     *            the age of the oldest expansion the caller accepts
+     * @return a copy of the expansion, or null if there is none that is recent enough
+     */
+    public IndexLookupMap get(Object key, long ttlMillis) {
+        Expansion expansion = cache.getIfPresent(key);
+        if (null == expansion || System.currentTimeMillis() - expansion.created > ttlMillis) {
+            return null;
+        }
+        if (log.isTraceEnabled()) {
+            log.trace("Reusing the expansion of " + key);
+        }
+        return new IndexLookupMap(expansion.fieldsToValues);
+    }
+    
+    /**
+     * Cache an expansion. The map is copied, so the caller may go on to change it.
+     *
+     * @param key
+     *            the key of the lookup
+     * @param fieldsToValues
+     *            the result of the lookup
+     */
+    public void put(Object key, IndexLookupMap fieldsToValues) {
+        cache.put(key, new Expansion(new IndexLookupMap(fieldsToValues), System.currentTimeMillis()));
+    }
+    
+    public long size() {
+        return cache.size();
+    }
+    
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+    
+    private static class Expansion {
+        private final IndexLookupMap fieldsToValues;
+        private final long created;
+        
+        Expansion(IndexLookupMap fieldsToValues, long created) {
+            this.fieldsToValues = fieldsToValues;
+            this.created = created;
+        }
+    }
+}
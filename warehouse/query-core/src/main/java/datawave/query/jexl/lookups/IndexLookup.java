@@ -34,6 +34,16 @@ public abstract class IndexLookup {
      */
     public abstract IndexLookupMap lookup(ShardQueryConfiguration config, ScannerFactory scannerFactory, long timer);
     
+    /**
+     * The result of this lookup when it could not be started within its timeout, as {@link #timedScan} leaves it when the scan times out
+     * 
+     * @param config
+     * @return a map of fieldname to values with the thresholds exceeded, or null if this lookup has to be run
+     */
+    public IndexLookupMap timedOut(ShardQueryConfiguration config) {
+        return null;
+    }
+    
     public boolean supportReference() {
         return false;
     }
@@ -23,6 +23,21 @@ public class IndexLookupMap implements Map<String,ValueSet>, Serializable {
         this.valueThreshold = valueThreshold;
     }
     
+    /**
+     * Copy the fields, values and threshold state of another map. The value sets are copied, so neither map is changed through the other.
+     *
+     * @param other
+     */
+    public IndexLookupMap(IndexLookupMap other) {
+        this.patterns = (null == other.patterns ? null : new HashSet<>(other.patterns));
+        for (Entry<String,ValueSet> entry : other.index.entrySet()) {
+            this.index.put(entry.getKey(), new ValueSet(entry.getValue()));
+        }
+        this.exceededKeyThreshold = other.exceededKeyThreshold;
+        this.keyThreshold = other.keyThreshold;
+        this.valueThreshold = other.valueThreshold;
+    }
+    
     public boolean isKeyThresholdExceeded() {
         return this.exceededKeyThreshold;
     }
@@ -36,6 +36,7 @@ import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
 
 public class LookupTermsFromRegex extends RegexIndexLookup {
     private static final Logger log = Logger.getLogger(LookupTermsFromRegex.class);
@@ -205,6 +206,21 @@ public class LookupTermsFromRegex extends RegexIndexLookup {
         return fieldsToValues;
     }
     
+    @Override
+    public IndexLookupMap timedOut(ShardQueryConfiguration config) {
+        IndexLookupMap fieldsToValues = new IndexLookupMap(config.getMaxUnfieldedExpansionThreshold(), config.getMaxValueExpansionThreshold());
+        fieldsToValues.setPatterns(patterns);
+        // Only if not doing an unfielded lookup should we mark all fields as having an exceeded threshold
+        if (!unfieldedLookup) {
+            for (String field : Sets.union(fields, reverseFields)) {
+                fieldsToValues.put(field, "");
+                fieldsToValues.get(field).setThresholdExceeded();
+            }
+        } else
+            fieldsToValues.setKeyThresholdExceeded();
+        return fieldsToValues;
+    }
+    
     @Override
     protected Callable<Boolean> createTimedCallable(final Iterator<Entry<Key,Value>> iter, final IndexLookupMap fieldsToValues, ShardQueryConfiguration config,
                     final boolean unfieldedLookup, final Set<String> fields, final boolean isReverse, long timeout) {
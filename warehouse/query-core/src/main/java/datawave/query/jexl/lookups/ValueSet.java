@@ -22,6 +22,17 @@ public class ValueSet implements Set<String>, Serializable {
         this.threshold = _threshold;
     }
     
+    /**
+     * Copy the values and threshold state of another set.
+     *
+     * @param other
+     */
+    public ValueSet(ValueSet other) {
+        this.values = new HashSet<>(other.values);
+        this.exceededThreshold = other.exceededThreshold;
+        this.threshold = other.threshold;
+    }
+    
     public boolean isThresholdExceeded() {
         return this.exceededThreshold;
     }
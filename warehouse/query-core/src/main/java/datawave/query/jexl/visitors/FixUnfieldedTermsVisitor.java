@@ -145,11 +145,8 @@ public class FixUnfieldedTermsVisitor extends ParallelIndexExpansion {
             }
             concurrentExecution();
         } finally {
-            log.debug("Shutting down executor");
-            // no need for this anymore.
-            if (executor != null) {
-                executor.shutdownNow();
-            }
+            // the executor is shared with other queries, so only our reference is dropped
+            executor = null;
         }
         
         LookupRemark remark = new LookupRemark();
@@ -13,6 +13,7 @@ import datawave.query.exceptions.EmptyUnfieldedTermExpansionException;
 import datawave.query.jexl.JexlASTHelper;
 import datawave.query.jexl.JexlNodeFactory;
 import datawave.query.jexl.JexlNodeFactory.ContainerType;
+import datawave.query.jexl.lookups.IndexExpansionCache;
 import datawave.query.jexl.lookups.IndexLookup;
 import datawave.query.jexl.lookups.IndexLookupMap;
 import datawave.query.jexl.lookups.ShardIndexQueryTableStaticMethods;
@@ -26,7 +27,6 @@ import datawave.query.planner.pushdown.Cost;
 import datawave.query.planner.pushdown.CostEstimator;
 import datawave.query.tables.ScannerFactory;
 import datawave.query.util.MetadataHelper;
-import datawave.webservice.query.Query;
 import org.apache.accumulo.core.client.TableNotFoundException;
 import org.apache.commons.jexl2.parser.ASTAndNode;
 import org.apache.commons.jexl2.parser.ASTDelayedPredicate;
@@ -49,7 +49,9 @@ import org.apache.commons.jexl2.parser.ParserTreeConstants;
 import org.apache.log4j.Logger;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -59,7 +61,13 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static datawave.query.jexl.JexlASTHelper.isIndexed;
 import static datawave.query.jexl.JexlASTHelper.isLiteralEquality;
@@ -87,6 +95,10 @@ public class ParallelIndexExpansion extends RebuildingVisitor {
     protected String threadName;
     private static final Logger log = Logger.getLogger(ParallelIndexExpansion.class);
     
+    // the lookups of every query run on one executor rather than a thread pool per query
+    private static final Object sharedExecutorLock = new Object();
+    private static ThreadPoolExecutor sharedExecutor = null;
+    
     public ParallelIndexExpansion(ShardQueryConfiguration config, ScannerFactory scannerFactory, MetadataHelper helper, Set<String> expansionFields,
                     boolean expandFields, boolean expandValues, boolean expandUnfieldedNegations) throws InstantiationException, IllegalAccessException,
                     TableNotFoundException {
@@ -128,35 +140,47 @@ public class ParallelIndexExpansion extends RebuildingVisitor {
         costAnalysis = new CostEstimator(config, scannerFactory, helper);
     }
     
-    protected class ParallelExpansionFactory implements ThreadFactory {
+    protected static class ParallelExpansionFactory implements ThreadFactory {
         
         private ThreadFactory dtf = Executors.defaultThreadFactory();
-        private int threadNum = 1;
-        private String threadIdentifier;
+        private AtomicInteger threadNum = new AtomicInteger(1);
         protected String name = "Datawave ParallelIndexExpansion";
         
-        public ParallelExpansionFactory(Query query, String name) {
-            if (query == null || query.getId() == null) {
-                this.threadIdentifier = "(unknown)";
-            } else {
-                this.threadIdentifier = query.getId().toString();
-            }
-            this.name = name;
-        }
-        
         public Thread newThread(Runnable r) {
             Thread thread = dtf.newThread(r);
-            thread.setName(name + " Session " + threadIdentifier + " -" + threadNum++);
+            thread.setName(name + " -" + threadNum.getAndIncrement());
             thread.setDaemon(true);
-            thread.setUncaughtExceptionHandler(config.getQuery().getUncaughtExceptionHandler());
             return thread;
         }
         
     }
     
+    /**
+     * Get the executor shared by the expansions of all queries. Its size is set for the whole web server rather than by the lookup threads of a query, so that
+     * the total number of index lookups stays bounded however many queries are planned at once. The number of threads grows to the largest size configured,
+     * and idle threads time out. Lookup failures are returned through the futures of {@link #concurrentExecution()}, so no query specific exception handler is
+     * needed.
+     *
+     * @param threads
+     *            the number of threads configured for the shared executor
+     * @return the shared executor, which must not be shut down
+     */
+    protected static ExecutorService getSharedExecutor(int threads) {
+        synchronized (sharedExecutorLock) {
+            if (null == sharedExecutor) {
+                sharedExecutor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new ParallelExpansionFactory());
+                sharedExecutor.allowCoreThreadTimeOut(true);
+            } else if (sharedExecutor.getMaximumPoolSize() < threads) {
+                // grow the maximum first, as the core size may not exceed it
+                sharedExecutor.setMaximumPoolSize(threads);
+                sharedExecutor.setCorePoolSize(threads);
+            }
+            return sharedExecutor;
+        }
+    }
+    
     protected void setupThreadResources() {
-        int threads = this.config.getNumIndexLookupThreads().intValue();
-        executor = Executors.newFixedThreadPool((int) Math.max(Math.ceil(threads), 10), new ParallelExpansionFactory(this.config.getQuery(), this.threadName));
+        executor = getSharedExecutor(Math.max(this.config.getSharedIndexExpansionThreads(), 1));
     }
     
     @Override
@@ -199,9 +223,8 @@ public class ParallelIndexExpansion extends RebuildingVisitor {
             
             concurrentExecution();
         } finally {
-            
-            // no need for this anymore.
-            executor.shutdown();
+            // the executor is shared with other queries, so only our reference is dropped
+            executor = null;
         }
         
         LookupRemark remark = new LookupRemark();
@@ -244,6 +267,36 @@ public class ParallelIndexExpansion extends RebuildingVisitor {
         return new IndexLookupCallable(task, node, true, false);
     }
     
+    /**
+     * Build the key of an expansion in the {@link IndexExpansionCache} from everything that determines what the lookup finds.
+     *
+     * @param lookup
+     * @param node
+     *            the node being expanded
+     * @return the cache key
+     */
+    protected Object getExpansionCacheKey(IndexLookup lookup, JexlNode node) {
+        String nodeString = JexlStringBuildingVisitor.buildQueryWithoutParse(TreeFlatteningRebuildingVisitor.flatten(node), true);
+        Set<String> fieldTypes = new HashSet<>();
+        if (null != config.getQueryFieldsDatatypes()) {
+            for (Type<?> type : config.getQueryFieldsDatatypes().get(JexlASTHelper.getIdentifier(node))) {
+                fieldTypes.add(type.getClass().getName());
+            }
+        }
+        return Arrays.asList(lookup.getClass().getName(), nodeString, copyOf(config.getBeginDate()), copyOf(config.getEndDate()), copyOf(config
+                        .getDatatypeFilter()), copyOf(config.getAuthorizations()), config.getIndexTableName(), config.getReverseIndexTableName(), config
+                        .getMetadataTableName(), config.getMaxValueExpansionThreshold(), config.getMaxUnfieldedExpansionThreshold(), config
+                        .getLimitAnyFieldLookups(), copyOf(expansionFields), fieldTypes);
+    }
+    
+    private static Date copyOf(Date date) {
+        return (null == date ? null : new Date(date.getTime()));
+    }
+    
+    private static <T> Set<T> copyOf(Set<T> set) {
+        return (null == set ? null : new HashSet<>(set));
+    }
+    
     /**
      * Determines if we should expand a regular expression given the current AST.
      * 
@@ -645,22 +698,42 @@ public class ParallelIndexExpansion extends RebuildingVisitor {
     }
     
     /**
-     * Executes the tasks in the todo list
+     * Executes the tasks in the todo list. As the executor is shared with the other queries, the lookups may first wait in its queue. The time a lookup with a
+     * timeout waits to start is bounded by the index scan timeout, after which it is not run but treated as a lookup whose scan timed out. Running lookups
+     * are left to their own timeouts, and lookups without a timeout are waited for.
      */
     protected void concurrentExecution() {
         
-        List<Future<JexlNode>> futures;
+        List<IndexLookupCallable> callables = Lists.newArrayList(todo);
+        List<Future<JexlNode>> futures = Lists.newArrayListWithCapacity(callables.size());
         try {
-            futures = executor.invokeAll(todo);
+            for (IndexLookupCallable callable : callables) {
+                futures.add(executor.submit(callable));
+            }
             
-            for (Future<JexlNode> future : futures) {
+            long timeout = config.getMaxIndexScanTimeMillis();
+            long deadline = (timeout > 0 && timeout < Long.MAX_VALUE ? System.currentTimeMillis() + timeout : -1);
+            for (int i = 0; i < futures.size(); i++) {
+                Future<JexlNode> future = futures.get(i);
+                IndexLookupCallable callable = callables.get(i);
                 Exception sawException = null;
                 try {
-                    if (future.get() != null) {
-                        
+                    if (deadline > 0 && callable.enforceTimeout) {
+                        try {
+                            future.get(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+                        } catch (TimeoutException e) {
+                            if (callable.giveUpIfNotStarted()) {
+                                future.cancel(false);
+                                continue;
+                            }
+                            // already running, and bounded by its own timeout
+                            future.get();
+                        }
+                    } else {
+                        future.get();
                     }
                 } catch (InterruptedException e) {
-                    sawException = (Exception) e.getCause();
+                    throw new CannotExpandUnfieldedTermFatalException(e.getMessage());
                 } catch (ExecutionException e) {
                     sawException = (Exception) e.getCause();
                 } catch (Exception e) {
@@ -672,9 +745,11 @@ public class ParallelIndexExpansion extends RebuildingVisitor {
                     throw new CannotExpandUnfieldedTermFatalException(sawException);
                 }
             }
-        } catch (InterruptedException e) {
-            throw new CannotExpandUnfieldedTermFatalException(e.getMessage());
         } finally {
+            // once a lookup has failed, the queued lookups of the query are not needed
+            for (Future<JexlNode> future : futures) {
+                future.cancel(false);
+            }
             todo.clear();
         }
         
@@ -690,6 +765,10 @@ public class ParallelIndexExpansion extends RebuildingVisitor {
         private int id;
         private JexlNode newNode;
         protected boolean enforceTimeout;
+        // set once the lookup is run, or given up on before it started
+        private final AtomicBoolean started = new AtomicBoolean(false);
+        // the key of the lookup in the expansion cache, or null if expansions are not cached
+        protected Object cacheKey = null;
         
         public IndexLookupCallable(IndexLookup lookup, JexlNode currNode, boolean enforceTimeout, boolean ignoreComposites) {
             this.lookup = lookup;
@@ -697,6 +776,9 @@ public class ParallelIndexExpansion extends RebuildingVisitor {
             this.enforceTimeout = enforceTimeout;
             this.ignoreComposites = ignoreComposites;
             parentNode = currNode.jjtGetParent();
+            if (config.getIndexExpansionCacheTtlMillis() > 0) {
+                cacheKey = getExpansionCacheKey(lookup, currNode);
+            }
         }
         
         public void setParentId(JexlNode parentNode, int id) {
@@ -711,17 +793,43 @@ public class ParallelIndexExpansion extends RebuildingVisitor {
          */
         @Override
         public JexlNode call() throws Exception {
+            if (!started.compareAndSet(false, true)) {
+                // given up on while waiting to start
+                return newNode;
+            }
             
             IndexLookupMap fieldsToValues = null;
             try {
                 long timeout = -1;
                 if (enforceTimeout)
                     timeout = config.getMaxIndexScanTimeMillis();
-                fieldsToValues = lookup.lookup(config, scannerFactory, timeout);
+                fieldsToValues = expand(timeout);
             } catch (Exception e) {
                 log.error(e);
                 throw e;
             }
+            return rewrite(fieldsToValues);
+        }
+        
+        /**
+         * Give up on the lookup if it has not started, replacing the node as if the scan of the lookup had timed out
+         * 
+         * @return true if the lookup was given up on, false if it is already running or has to be run
+         */
+        protected boolean giveUpIfNotStarted() {
+            IndexLookupMap fieldsToValues = lookup.timedOut(config);
+            if (null == fieldsToValues || !started.compareAndSet(false, true)) {
+                return false;
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Index lookup of " + JexlStringBuildingVisitor.buildQuery(node) + " did not start within " + config.getMaxIndexScanTimeMillis()
+                                + " ms, treating it as timed out");
+            }
+            rewrite(fieldsToValues);
+            return true;
+        }
+        
+        private JexlNode rewrite(IndexLookupMap fieldsToValues) {
             newNode = null;
             
             if (ignoreComposites)
@@ -768,6 +876,30 @@ public class ParallelIndexExpansion extends RebuildingVisitor {
             return newNode;
         }
         
+        /**
+         * Run the lookup, reusing a recent expansion of the same lookup by any query when the expansion cache is enabled.
+         *
+         * @param timeout
+         * @return a map of fieldname to values that belongs to this callable
+         */
+        private IndexLookupMap expand(long timeout) {
+            if (null == cacheKey) {
+                return lookup.lookup(config, scannerFactory, timeout);
+            }
+            
+            IndexExpansionCache cache = IndexExpansionCache.instance();
+            IndexLookupMap fieldsToValues = cache.get(cacheKey, config.getIndexExpansionCacheTtlMillis());
+            if (null == fieldsToValues) {
+                long start = System.currentTimeMillis();
+                fieldsToValues = lookup.lookup(config, scannerFactory, timeout);
+                // a lookup cut short by the scan timeout says more about the load on the index than about the term
+                if (timeout <= 0 || System.currentTimeMillis() - start < timeout) {
+                    cache.put(cacheKey, fieldsToValues);
+                }
+            }
+            return fieldsToValues;
+        }
+        
         private void onlyRetainFieldNamesInTheModelForwardMapping(IndexLookupMap fieldsToValues) {
             if (null != onlyUseThese) {
                 fieldsToValues.retainFields(onlyUseThese);
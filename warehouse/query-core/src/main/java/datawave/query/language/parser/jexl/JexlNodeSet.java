@@ -49,6 +49,17 @@ public class JexlNodeSet implements Set<JexlNode> {
         this.nodeMap = new HashMap<>();
     }
     
+    /**
+     * Copy the nodes of another set without rebuilding their node keys.
+     *
+     * @param other
+     *            the set to copy
+     */
+    public JexlNodeSet(JexlNodeSet other) {
+        this.useSourceNodeForKeys = other.useSourceNodeForKeys;
+        this.nodeMap = new HashMap<>(other.nodeMap);
+    }
+    
     /**
      * Get all the Jexl nodes in the set.
      *
@@ -83,6 +83,10 @@ public class ContentQueryMetricsIngestHelper extends CSVIngestHelper implements
         return normalize(delegate.getEventFieldsToWrite(updatedQueryMetric));
     }
     
+    public Multimap<String,NormalizedContentInterface> getEventFieldsToWrite(BaseQueryMetric updatedQueryMetric, BaseQueryMetric storedQueryMetric) {
+        return normalize(delegate.getEventFieldsToWrite(updatedQueryMetric, storedQueryMetric));
+    }
+    
     @Override
     public boolean isTermFrequencyField(String field) {
         return contentIndexFields.contains(field);
@@ -247,6 +251,29 @@ public class ContentQueryMetricsIngestHelper extends CSVIngestHelper implements
             
         }
         
+        /**
+         * Get the fields of the updated metric that are not already stored. Fields that are unchanged since the stored metric (the query, its parameters,
+         * earlier pages, etc) were written by a previous update and are not written again.
+         *
+         * @param updatedQueryMetric
+         *            the updated metric
+         * @param storedQueryMetric
+         *            the metric as it was last written, or null if it is not known
+         * @return the new and changed fields
+         */
+        public Multimap<String,String> getEventFieldsToWrite(T updatedQueryMetric, T storedQueryMetric) {
+            Multimap<String,String> fields = getEventFieldsToWrite(updatedQueryMetric);
+            // a metric read back from the table may be incomplete, in which case everything is written
+            if (storedQueryMetric == null || storedQueryMetric.getQueryType() == null || storedQueryMetric.getCreateDate() == null
+                            || storedQueryMetric.getLastUpdated() == null) {
+                return fields;
+            }
+            for (Map.Entry<String,String> e : getEventFieldsToWrite(storedQueryMetric).entries()) {
+                fields.remove(e.getKey(), e.getValue());
+            }
+            return fields;
+        }
+        
         public Multimap<String,String> getEventFieldsToDelete(T updatedQueryMetric, T storedQueryMetric) {
             
             HashMultimap<String,String> fields = HashMultimap.create();
@@ -17,16 +17,20 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
 
 import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
+import com.google.common.util.concurrent.Striped;
 
 import datawave.configuration.DatawaveEmbeddedProjectStageHolder;
 import datawave.data.hash.UID;
@@ -86,7 +90,6 @@ import org.apache.accumulo.core.data.Mutation;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.security.ColumnVisibility;
 import org.apache.commons.codec.binary.Base64;
-import org.apache.commons.collections4.map.LRUMap;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.time.DateUtils;
 import org.apache.deltaspike.core.api.config.ConfigProperty;
@@ -143,8 +146,10 @@ public class ShardTableQueryMetricHandler extends BaseQueryMetricHandler<QueryMe
     public static final String CONTEXT_WRITER_MAX_CACHE_SIZE = "context.writer.max.cache.size";
     
     // static to share the cache across instances of this class held by QueryExecutorBean, CachedResultsBean, QueryMetricsEnrichmentInterceptor, etc
-    @SuppressWarnings("unchecked")
-    private static Map metricsCache = Collections.synchronizedMap(new LRUMap(5000));
+    private static final Cache<String,QueryMetric> metricsCache = CacheBuilder.newBuilder().maximumSize(5000).concurrencyLevel(16).build();
+    
+    // updates of the same query are applied in order, while updates of different queries do not wait on each other
+    private static final Striped<Lock> metricLocks = Striped.lock(64);
     
     private final Configuration conf = new Configuration();
     private final StatusReporter reporter = new MockStatusReporter();
@@ -296,6 +301,9 @@ public class ShardTableQueryMetricHandler extends BaseQueryMetricHandler<QueryMe
         
         if (delete) {
             fields = ingestHelper.getEventFieldsToDelete(updatedQueryMetric, storedQueryMetric);
+        } else if (storedQueryMetric != updatedQueryMetric) {
+            // only append the fields that have changed since the stored metric was written
+            fields = ingestHelper.getEventFieldsToWrite(updatedQueryMetric, storedQueryMetric);
         } else {
             fields = ingestHelper.getEventFieldsToWrite(updatedQueryMetric);
         }
@@ -343,7 +351,7 @@ public class ShardTableQueryMetricHandler extends BaseQueryMetricHandler<QueryMe
                 entry.getKey().getKey().setTimestamp(lastUpdated.getTime());
             } else {
                 // this will ensure that the QueryMetrics can be found within second precision in most cases
-                entry.getKey().getKey().setTimestamp(storedQueryMetric.getCreateDate().getTime() + storedQueryMetric.getNumUpdates());
+                entry.getKey().getKey().setTimestamp(storedQueryMetric.getCreateDate().getTime() + updatedQueryMetric.getNumUpdates());
             }
             entry.getKey().getKey().setDeleted(delete);
         }
@@ -351,7 +359,6 @@ public class ShardTableQueryMetricHandler extends BaseQueryMetricHandler<QueryMe
         return r;
     }
     
-    @SuppressWarnings("unchecked")
     @Override
     public void updateMetric(QueryMetric updatedQueryMetric, DatawavePrincipal datawavePrincipal) throws Exception {
         Date lastUpdated = updatedQueryMetric.getLastUpdated();
@@ -368,36 +375,9 @@ public class ShardTableQueryMetricHandler extends BaseQueryMetricHandler<QueryMe
             Date end = new Date();
             Date begin = DateUtils.setYears(end, 2000);
             
-            // user's DatawavePrincipal must have the Administrator role to use the Metrics query logic
-            QueryMetric cachedQueryMetric;
-            QueryMetric newCachedQueryMetric;
-            synchronized (ShardTableQueryMetricHandler.class) {
-                cachedQueryMetric = (QueryMetric) metricsCache.get(updatedQueryMetric.getQueryId());
-                // duplicate updatedQueryMetric because we're counting on the cache to be a snapshot of the QueryMetric
-                // so that we can retrieve it next update call to create the delete Mutations for the values written to Accumulo
-                Map<Long,PageMetric> storedPageMetricMap = new TreeMap<>();
-                if (cachedQueryMetric != null) {
-                    List<PageMetric> cachedPageMetrics = cachedQueryMetric.getPageTimes();
-                    if (cachedPageMetrics != null) {
-                        for (PageMetric p : cachedPageMetrics) {
-                            storedPageMetricMap.put(p.getPageNumber(), p);
-                        }
-                    }
-                }
-                // combine all of the page metrics from the cached metric and the updated metric
-                for (PageMetric p : updatedQueryMetric.getPageTimes()) {
-                    storedPageMetricMap.put(p.getPageNumber(), p);
-                }
-                newCachedQueryMetric = (QueryMetric) updatedQueryMetric.duplicate();
-                ArrayList<PageMetric> newPageMetrics = new ArrayList<>();
-                newPageMetrics.addAll(storedPageMetricMap.values());
-                newCachedQueryMetric.setPageTimes(newPageMetrics);
-                metricsCache.put(updatedQueryMetric.getQueryId(), newCachedQueryMetric);
-            }
-            
-            List<QueryMetric> queryMetrics = new ArrayList<>();
-            
-            if (cachedQueryMetric == null) {
+            // look up the stored metric before taking the lock, as it is a query of its own
+            List<QueryMetric> storedQueryMetrics = null;
+            if (metricsCache.getIfPresent(updatedQueryMetric.getQueryId()) == null) {
                 // if numPages > 0 or Lifecycle > DEFINED, then we should have a metric cached already
                 // if we don't, then query for the current stored metric
                 if (updatedQueryMetric.getNumPages() > 0 || updatedQueryMetric.getLifecycle().compareTo(Lifecycle.DEFINED) > 0) {
@@ -414,33 +394,75 @@ public class ShardTableQueryMetricHandler extends BaseQueryMetricHandler<QueryMe
                     query.setPagesize(1000);
                     query.setId(UUID.randomUUID());
                     query.setParameters(ImmutableMap.of(QueryOptions.INCLUDE_GROUPING_CONTEXT, "true"));
-                    queryMetrics = getQueryMetrics(response, query, callerPrincipal);
+                    // user's DatawavePrincipal must have the Administrator role to use the Metrics query logic
+                    storedQueryMetrics = getQueryMetrics(response, query, callerPrincipal);
                 }
-            } else {
-                queryMetrics = Collections.singletonList(cachedQueryMetric);
-            }
-            
-            if (!queryMetrics.isEmpty()) {
-                writeMetrics(updatedQueryMetric, queryMetrics, lastUpdated, true);
             }
             
-            long nextUpdateNumber = 0;
+            List<QueryMetric> queryMetrics = new ArrayList<>();
+            QueryMetric storedQueryMetric;
             
-            for (BaseQueryMetric m : queryMetrics) {
-                if ((m.getNumUpdates() + 1) > nextUpdateNumber) {
-                    nextUpdateNumber = m.getNumUpdates() + 1;
+            // only the snapshot is taken under the lock, so that updates of the same query compare against each other in order
+            Lock lock = metricLocks.get(updatedQueryMetric.getQueryId());
+            lock.lock();
+            try {
+                QueryMetric cachedQueryMetric = metricsCache.getIfPresent(updatedQueryMetric.getQueryId());
+                // duplicate updatedQueryMetric because we're counting on the cache to be a snapshot of the QueryMetric
+                // so that we can retrieve it next update call to create the delete Mutations for the values written to Accumulo
+                Map<Long,PageMetric> storedPageMetricMap = new TreeMap<>();
+                if (cachedQueryMetric != null) {
+                    List<PageMetric> cachedPageMetrics = cachedQueryMetric.getPageTimes();
+                    if (cachedPageMetrics != null) {
+                        for (PageMetric p : cachedPageMetrics) {
+                            storedPageMetricMap.put(p.getPageNumber(), p);
+                        }
+                    }
                 }
-            }
-            
-            updatedQueryMetric.setNumUpdates(nextUpdateNumber);
-            
-            synchronized (ShardTableQueryMetricHandler.class) {
+                // combine all of the page metrics from the cached metric and the updated metric
+                for (PageMetric p : updatedQueryMetric.getPageTimes()) {
+                    storedPageMetricMap.put(p.getPageNumber(), p);
+                }
+                QueryMetric newCachedQueryMetric = (QueryMetric) updatedQueryMetric.duplicate();
+                ArrayList<PageMetric> newPageMetrics = new ArrayList<>();
+                newPageMetrics.addAll(storedPageMetricMap.values());
+                newCachedQueryMetric.setPageTimes(newPageMetrics);
+                
+                if (cachedQueryMetric != null) {
+                    // another update may have cached the metric while this one was looking it up
+                    queryMetrics = Collections.singletonList(cachedQueryMetric);
+                } else if (storedQueryMetrics != null) {
+                    queryMetrics = storedQueryMetrics;
+                }
+                
+                long nextUpdateNumber = 0;
+                
+                for (BaseQueryMetric m : queryMetrics) {
+                    if ((m.getNumUpdates() + 1) > nextUpdateNumber) {
+                        nextUpdateNumber = m.getNumUpdates() + 1;
+                    }
+                }
+                
+                updatedQueryMetric.setNumUpdates(nextUpdateNumber);
                 newCachedQueryMetric.setNumUpdates(nextUpdateNumber);
+                
+                // write the new and changed entries, or every entry if there is no single stored metric to compare with
+                storedQueryMetric = (queryMetrics.size() == 1 ? queryMetrics.get(0) : updatedQueryMetric);
+                
                 metricsCache.put(updatedQueryMetric.getQueryId(), newCachedQueryMetric);
+            } finally {
+                lock.unlock();
             }
             
-            // write new entry
-            writeMetrics(updatedQueryMetric, Collections.singletonList(updatedQueryMetric), lastUpdated, false);
+            try {
+                if (!queryMetrics.isEmpty()) {
+                    writeMetrics(updatedQueryMetric, queryMetrics, lastUpdated, true);
+                }
+                writeMetrics(updatedQueryMetric, Collections.singletonList(storedQueryMetric), lastUpdated, false);
+            } catch (Exception e) {
+                // the snapshot no longer matches what was written, so the next update looks up the stored metric
+                metricsCache.invalidate(updatedQueryMetric.getQueryId());
+                throw e;
+            }
         } finally {
             enableLogs(true);
         }
@@ -893,6 +915,8 @@ public class ShardTableQueryMetricHandler extends BaseQueryMetricHandler<QueryMe
                 // don't try to flush the mtbw (close). If recordWriter != null then this method is being called
                 // because of an Exception and the metrics have been saved off to be added to the new recordWriter.
                 this.recordWriter.returnConnector();
+                // the cached metrics may not have been flushed, so compare the next updates against the table instead
+                metricsCache.invalidateAll();
             }
             recordWriter = new AccumuloRecordWriter(this.connectionFactory, conf);
         } catch (AccumuloException | AccumuloSecurityException | IOException e) {
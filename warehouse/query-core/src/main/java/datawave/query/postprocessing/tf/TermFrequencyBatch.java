@@ -0,0 +1,149 @@
+package datawave.query.postprocessing.tf;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeSet;
+
+import datawave.core.iterators.TermFrequencyIterator;
+import datawave.query.Constants;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.PartialKey;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.hadoop.io.Text;
+import org.apache.log4j.Logger;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+
+/**
+ * The documents queued for evaluation by a {@link datawave.query.iterator.pipeline.PipelineIterator}, and the term frequencies fetched for them. The first
+ * evaluation that needs the term offsets of a document fetches the term frequencies of every pending document in its shard in one forward pass over the shard,
+ * rather than each evaluation pipeline seeking its own source for its own document. The documents are removed once evaluated, so only the term frequencies of
+ * the documents in flight are held.
+ * <p>
+ * The batch is shared by the pipelines of one query iterator, each of which passes its own source. The source is only used while the batch is locked.
+ */
+public class TermFrequencyBatch {
+    private static final Logger log = Logger.getLogger(TermFrequencyBatch.class);
+    
+    // the documents queued for evaluation as row and datatype\0uid
+    private final TreeSet<Key> pending = new TreeSet<>();
+    
+    // the term frequencies fetched for pending documents
+    private final Map<Key,List<Entry<Key,Value>>> fetched = new HashMap<>();
+    
+    // the field values of the fetched term frequencies
+    private Multimap<String,String> fieldValues = null;
+    
+    private long fetches = 0;
+    
+    /**
+     * Add a document that has been queued for evaluation
+     *
+     * @param docKey
+     *            the document key
+     */
+    public synchronized void add(Key docKey) {
+        pending.add(getDocKey(docKey));
+    }
+    
+    /**
+     * Remove a document once its evaluation is complete
+     *
+     * @param docKey
+     *            the document key
+     */
+    public synchronized void remove(Key docKey) {
+        Key key = getDocKey(docKey);
+        pending.remove(key);
+        fetched.remove(key);
+    }
+    
+    public synchronized void clear() {
+        pending.clear();
+        fetched.clear();
+    }
+    
+    /**
+     * @return the number of passes made over a shard to fetch term frequencies
+     */
+    public synchronized long getFetches() {
+        return fetches;
+    }
+    
+    /**
+     * Take the term frequencies of a pending document. If they have not been fetched yet, then those of every pending document in the same row that have not
+     * been fetched are fetched with them.
+     *
+     * @param docKey
+     *            the document key
+     * @param termFrequencyFieldValues
+     *            the fields and values to fetch
+     * @param source
+     *            the source to fetch them with
+     * @return the term frequency keys and values of the document, or null if the document is not pending or the batch fetches other field values
+     * @throws IOException
+     *             if the fetch fails
+     */
+    public synchronized List<Entry<Key,Value>> take(Key docKey, Multimap<String,String> termFrequencyFieldValues, SortedKeyValueIterator<Key,Value> source)
+                    throws IOException {
+        Key key = getDocKey(docKey);
+        if (!pending.contains(key)) {
+            return null;
+        }
+        if (fieldValues == null) {
+            fieldValues = termFrequencyFieldValues;
+        } else if (!fieldValues.equals(termFrequencyFieldValues)) {
+            return null;
+        }
+        
+        if (!fetched.containsKey(key)) {
+            fetch(key.getRow(), source);
+        }
+        
+        pending.remove(key);
+        return fetched.remove(key);
+    }
+    
+    private void fetch(Text row, SortedKeyValueIterator<Key,Value> source) throws IOException {
+        TermFrequencyIterator tfSource = new TermFrequencyIterator(fieldValues);
+        tfSource.init(source, null, null);
+        
+        // the pending documents are sorted, so each range is ahead of the last
+        Key start = new Key(row);
+        for (Key doc : pending.subSet(start, true, start.followingKey(PartialKey.ROW), false)) {
+            if (fetched.containsKey(doc)) {
+                continue;
+            }
+            List<Entry<Key,Value>> entries = new ArrayList<>();
+            tfSource.seek(getRange(doc), null, false);
+            while (tfSource.hasTop()) {
+                entries.add(Maps.immutableEntry(new Key(tfSource.getTopKey()), new Value(tfSource.getTopValue())));
+                tfSource.next();
+            }
+            fetched.put(doc, entries);
+        }
+        fetches++;
+        
+        if (log.isTraceEnabled()) {
+            log.trace("Fetched the term frequencies of " + fetched.size() + " documents in " + row);
+        }
+    }
+    
+    private static Range getRange(Key doc) {
+        Key startKey = new Key(doc.getRow(), Constants.TERM_FREQUENCY_COLUMN_FAMILY, doc.getColumnFamily());
+        Key endKey = new Key(doc.getRow(), Constants.TERM_FREQUENCY_COLUMN_FAMILY, new Text(doc.getColumnFamily().toString() + '\1'));
+        return new Range(startKey, true, endKey, true);
+    }
+    
+    private static Key getDocKey(Key key) {
+        return new Key(key.getRow(), key.getColumnFamily());
+    }
+}
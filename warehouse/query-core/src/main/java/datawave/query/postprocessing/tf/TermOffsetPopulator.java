@@ -61,13 +61,20 @@ public class TermOffsetPopulator {
     private SortedKeyValueIterator<Key,Value> source;
     private Document document;
     private Set<String> contentExpansionFields;
+    private TermFrequencyBatch batch;
     
     public TermOffsetPopulator(Multimap<String,String> termFrequencyFieldValues, Set<String> contentExpansionFields, EventDataQueryFilter evaluationFilter,
                     SortedKeyValueIterator<Key,Value> source) {
+        this(termFrequencyFieldValues, contentExpansionFields, evaluationFilter, source, null);
+    }
+    
+    public TermOffsetPopulator(Multimap<String,String> termFrequencyFieldValues, Set<String> contentExpansionFields, EventDataQueryFilter evaluationFilter,
+                    SortedKeyValueIterator<Key,Value> source, TermFrequencyBatch batch) {
         this.termFrequencyFieldValues = termFrequencyFieldValues;
         this.contentExpansionFields = contentExpansionFields;
         this.source = source;
         this.evaluationFilter = evaluationFilter;
+        this.batch = batch;
     }
     
     public Document document() {
@@ -132,14 +139,27 @@ public class TermOffsetPopulator {
     public Map<String,Object> getContextMap(Key docKey, Set<Key> keys) {
         document = new Document();
         
-        TermFrequencyIterator tfSource = new TermFrequencyIterator(termFrequencyFieldValues);
+        // a single document may have been fetched with the other documents queued for evaluation
+        List<Entry<Key,Value>> batched = null;
+        if (batch != null && keys.size() == 1) {
+            try {
+                batched = batch.take(keys.iterator().next(), termFrequencyFieldValues, source);
+            } catch (IOException e) {
+                log.error("Batched fetch of the term frequencies failed for " + docKey, e);
+            }
+        }
         
-        Range range = getRange(keys);
-        try {
-            tfSource.init(source, null, null);
-            tfSource.seek(getRange(keys), null, false);
-        } catch (IOException e) {
-            log.error("Seek to the range failed: " + range, e);
+        TermFrequencyIterator tfSource = null;
+        Range range = null;
+        if (batched == null) {
+            tfSource = new TermFrequencyIterator(termFrequencyFieldValues);
+            range = getRange(keys);
+            try {
+                tfSource.init(source, null, null);
+                tfSource.seek(getRange(keys), null, false);
+            } catch (IOException e) {
+                log.error("Seek to the range failed: " + range, e);
+            }
         }
         
         // set the document context on the filter
@@ -149,58 +169,24 @@ public class TermOffsetPopulator {
         
         Map<String,TermFrequencyList> termOffsetMap = Maps.newHashMap();
         
-        while (tfSource.hasTop()) {
-            Key key = tfSource.getTopKey();
-            FieldValue fv = FieldValue.getFieldValue(key);
-            
-            // add the zone and term to our internal document
-            Content attr = new Content(fv.getValue(), source.getTopKey(), evaluationFilter == null || evaluationFilter.keep(key));
-            
-            // no need to apply the evaluation filter here as the TermFrequencyIterator above is already doing more filtering than we can do here.
-            // So this filter is simply extraneous. However if the an EventDataQueryFilter implementation gets smarter somehow, then it can be added back in
-            // here.
-            // For example the AncestorQueryLogic may require this....
-            // if (evaluationFilter == null || evaluationFilter.apply(Maps.immutableEntry(key, StringUtils.EMPTY_STRING))) {
-            
-            this.document.put(fv.getField(), attr);
-            
-            TreeMultimap<TermFrequencyList.Zone,TermWeightPosition> offsets = TreeMultimap.create();
-            try {
-                TermWeight.Info twInfo = TermWeight.Info.parseFrom(tfSource.getTopValue().get());
-                
-                // if no content expansion fields then assume every field is permitted for unfielded content functions
-                TermFrequencyList.Zone twZone = new TermFrequencyList.Zone(fv.getField(),
-                                (contentExpansionFields == null || contentExpansionFields.isEmpty() || contentExpansionFields.contains(fv.getField())),
-                                TermFrequencyList.getEventId(key));
-                
-                TermWeightPosition.Builder position = new TermWeightPosition.Builder();
-                for (int i = 0; i < twInfo.getTermOffsetCount(); i++) {
-                    position.setTermWeightOffsetInfo(twInfo, i);
-                    offsets.put(twZone, position.build());
-                    position.reset();
+        if (batched != null) {
+            for (Entry<Key,Value> entry : batched) {
+                if (!addTermOffsets(entry.getKey(), entry.getValue(), termOffsetMap)) {
+                    return null;
                 }
-                
-            } catch (InvalidProtocolBufferException e) {
-                log.error("Could not deserialize TermWeight protocol buffer for: " + source.getTopKey());
-                
-                return null;
-            }
-            
-            // First time looking up this term in a field
-            TermFrequencyList tfl = termOffsetMap.get(fv.getValue());
-            if (null == tfl) {
-                termOffsetMap.put(fv.getValue(), new TermFrequencyList(offsets));
-            } else {
-                // Merge in the offsets for the current field+term with all previous
-                // offsets from other fields in the same term
-                tfl.addOffsets(offsets);
             }
-            
-            try {
-                tfSource.next();
-            } catch (IOException ioe) {
-                log.error("Next failed: " + range, ioe);
-                break;
+        } else {
+            while (tfSource.hasTop()) {
+                if (!addTermOffsets(tfSource.getTopKey(), tfSource.getTopValue(), termOffsetMap)) {
+                    return null;
+                }
+                
+                try {
+                    tfSource.next();
+                } catch (IOException ioe) {
+                    log.error("Next failed: " + range, ioe);
+                    break;
+                }
             }
         }
         
@@ -211,6 +197,59 @@ public class TermOffsetPopulator {
         return map;
     }
     
+    /**
+     * Add a term frequency entry to the document and to the term offsets
+     *
+     * @return false if the term frequency could not be deserialized
+     */
+    private boolean addTermOffsets(Key key, Value value, Map<String,TermFrequencyList> termOffsetMap) {
+        FieldValue fv = FieldValue.getFieldValue(key);
+        
+        // add the zone and term to our internal document
+        Content attr = new Content(fv.getValue(), key, evaluationFilter == null || evaluationFilter.keep(key));
+        
+        // no need to apply the evaluation filter here as the TermFrequencyIterator above is already doing more filtering than we can do here.
+        // So this filter is simply extraneous. However if the an EventDataQueryFilter implementation gets smarter somehow, then it can be added back in
+        // here.
+        // For example the AncestorQueryLogic may require this....
+        // if (evaluationFilter == null || evaluationFilter.apply(Maps.immutableEntry(key, StringUtils.EMPTY_STRING))) {
+        
+        this.document.put(fv.getField(), attr);
+        
+        TreeMultimap<TermFrequencyList.Zone,TermWeightPosition> offsets = TreeMultimap.create();
+        try {
+            TermWeight.Info twInfo = TermWeight.Info.parseFrom(value.get());
+            
+            // if no content expansion fields then assume every field is permitted for unfielded content functions
+            TermFrequencyList.Zone twZone = new TermFrequencyList.Zone(fv.getField(),
+                            (contentExpansionFields == null || contentExpansionFields.isEmpty() || contentExpansionFields.contains(fv.getField())),
+                            TermFrequencyList.getEventId(key));
+            
+            TermWeightPosition.Builder position = new TermWeightPosition.Builder();
+            for (int i = 0; i < twInfo.getTermOffsetCount(); i++) {
+                position.setTermWeightOffsetInfo(twInfo, i);
+                offsets.put(twZone, position.build());
+                position.reset();
+            }
+            
+        } catch (InvalidProtocolBufferException e) {
+            log.error("Could not deserialize TermWeight protocol buffer for: " + key);
+            
+            return false;
+        }
+        
+        // First time looking up this term in a field
+        TermFrequencyList tfl = termOffsetMap.get(fv.getValue());
+        if (null == tfl) {
+            termOffsetMap.put(fv.getValue(), new TermFrequencyList(offsets));
+        } else {
+            // Merge in the offsets for the current field+term with all previous
+            // offsets from other fields in the same term
+            tfl.addOffsets(offsets);
+        }
+        return true;
+    }
+    
     public static boolean isContentFunctionTerm(String functionName) {
         return phraseFunctions.contains(functionName);
     }
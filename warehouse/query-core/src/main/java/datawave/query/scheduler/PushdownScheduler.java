@@ -114,6 +114,11 @@ public class PushdownScheduler extends Scheduler {
                 session.setSpeculativeScanning(true);
             }
             
+            if (config.getHedgedScanning()) {
+                session.setHedgedScanBudget(config.getHedgedScanBudget());
+                session.setHedgedScanning(true);
+            }
+            
             session.addVisitor(new VisitorFunction(config, metadataHelper));
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -9,9 +9,12 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -41,10 +44,12 @@ import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.Service;
 
 import datawave.mr.bulk.RfileResource;
+import datawave.query.tables.async.HedgedScan;
 import datawave.query.tables.async.Scan;
 import datawave.query.tables.async.ScannerChunk;
 import datawave.query.tables.async.SessionArbiter;
 import datawave.query.tables.async.SpeculativeScan;
+import datawave.query.tables.stats.ScanLatencyTracker;
 import datawave.webservice.query.Query;
 
 /**
@@ -58,6 +63,8 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
     
     private static final double QUEUE_MULTIPLIER = 25;
     
+    private static final double HEDGE_PERCENTILE = 0.95;
+    
     /**
      * Delegates scanners to us, blocking if none are available or used by other sources.
      */
@@ -106,6 +113,21 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
     
     protected int threadCount = 5;
     
+    protected boolean hedgedScanning = false;
+    
+    /**
+     * Fraction of the scans of this session that may be hedged
+     */
+    protected double hedgedScanBudget = 0.05;
+    
+    protected AtomicInteger hedgeableScans = new AtomicInteger(0);
+    
+    protected AtomicInteger hedgedScans = new AtomicInteger(0);
+    
+    protected ScheduledExecutorService hedgeScheduler = null;
+    
+    protected ExecutorService hedgeService = null;
+    
     private class BatchReaderThreadFactory implements ThreadFactory {
         
         private ThreadFactory dtf = Executors.defaultThreadFactory();
@@ -322,8 +344,14 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
                     return;
                 }
             }
-            service.shutdown();
-            while (!service.awaitTermination(250, TimeUnit.MILLISECONDS)) {}
+            if (hedgedScans.get() > 0) {
+                // scans that lost to their hedges have been cancelled, but may still be waiting on their servers
+                service.shutdownNow();
+                shutdownHedging();
+            } else {
+                service.shutdown();
+                while (!service.awaitTermination(250, TimeUnit.MILLISECONDS)) {}
+            }
         } catch (Exception e) {
             uncaughtExceptionHandler.uncaughtException(Thread.currentThread().currentThread(), e);
             Throwables.propagate(e);
@@ -381,6 +409,8 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
                 
                 ((SpeculativeScan) scan).addScan(childScan);
                 
+            } else if (hedgedScanning) {
+                scan = newHedgedScan(chunk);
             } else {
                 scan = new Scan(localTableName, localAuths, chunk, delegatorReference, delegatedResourceInitializer, resultQueue, listenerService);
             }
@@ -431,6 +461,8 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
                 ((SpeculativeScan) scan).addScan(new Scan(localTableName, localAuths, new ScannerChunk(chunk), delegatorReference,
                                 delegatedResourceInitializer, ((SpeculativeScan) scan).getQueue(), listenerService));
                 
+            } else if (hedgedScanning) {
+                scan = newHedgedScan(chunk);
             } else {
                 scan = new Scan(localTableName, localAuths, chunk, delegatorReference, delegatedResourceInitializer, resultQueue, listenerService);
             }
@@ -449,12 +481,87 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
     }
     
     protected void submitScan(Scan scan, boolean increment) {
-        ListenableFuture<Scan> future = (ListenableFuture<Scan>) service.submit(scan);
+        submitScan(service, scan, increment);
+    }
+    
+    protected void submitScan(ExecutorService executor, Scan scan, boolean increment) {
+        ListenableFuture<Scan> future = (ListenableFuture<Scan>) executor.submit(scan);
         if (increment)
             runnableCount.incrementAndGet();
+        if (scan instanceof HedgedScan)
+            ((HedgedScan) scan).setFuture(future);
         Futures.addCallback(future, this);
     }
     
+    /**
+     * Create a scan that is hedged once it has gone longer than the p95 time to first result of its tablet server. The scan and its hedge count as one
+     * runnable, which the first of them to finish releases.
+     * 
+     * @param chunk
+     * @return
+     */
+    protected HedgedScan newHedgedScan(ScannerChunk chunk) {
+        hedgeableScans.incrementAndGet();
+        return new HedgedScan(localTableName, localAuths, chunk, delegatorReference, delegatedResourceInitializer, resultQueue, listenerService,
+                        ScanLatencyTracker.instance(), new HedgedScan.Launcher() {
+                            @Override
+                            public void started(HedgedScan scan) {
+                                scheduleHedge(scan);
+                            }
+                        });
+    }
+    
+    protected void scheduleHedge(final HedgedScan scan) {
+        long delay = ScanLatencyTracker.instance().getPercentile(localTableName, scan.getScanLocation(), HEDGE_PERCENTILE);
+        if (delay < 0) {
+            // not enough is known about this server yet
+            return;
+        }
+        try {
+            hedgeScheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    launchHedge(scan);
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // the session is closing
+        }
+    }
+    
+    protected void launchHedge(HedgedScan scan) {
+        if (scan.claimed() || !isRunning()) {
+            return;
+        }
+        // keep within the budget so that a slow server does not get twice the load
+        synchronized (hedgedScans) {
+            if (hedgedScans.get() + 1 > hedgedScanBudget * hedgeableScans.get()) {
+                if (log.isTraceEnabled()) {
+                    log.trace("Not hedging " + scan.getScanLocation() + ", " + hedgedScans.get() + " of " + hedgeableScans.get() + " scans already hedged");
+                }
+                return;
+            }
+            hedgedScans.incrementAndGet();
+        }
+        HedgedScan hedge = scan.newHedge();
+        if (null == hedge) {
+            return;
+        }
+        if (backoffEnabled) {
+            hedge.setSessionArbiter(this);
+        }
+        hedge.setVisitors(visitorFunctions);
+        hedge.setTimeout(scanLimitTimeout);
+        if (log.isDebugEnabled()) {
+            log.debug("Hedging a scan of " + scan.getScanLocation());
+        }
+        try {
+            submitScan(hedgeService, hedge, false);
+        } catch (RejectedExecutionException e) {
+            // the session is closing
+        }
+    }
+    
     /**
      * Set the scanner options
      * 
@@ -504,7 +611,9 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
          */
         
         if (finishedScan.finished()) {
-            runnableCount.decrementAndGet();
+            // the scan that lost to its hedge, or the hedge that lost to its scan or failed, does not hold a runnable
+            if (!(finishedScan instanceof HedgedScan) || ((HedgedScan) finishedScan).holdsRunnable())
+                runnableCount.decrementAndGet();
             
             finishedScan.close();
             
@@ -524,7 +633,10 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
                 failCount.incrementAndGet();
             }
             
-            submitScan(finishedScan, false);
+            if (finishedScan instanceof HedgedScan && ((HedgedScan) finishedScan).isHedge())
+                submitScan(hedgeService, finishedScan, false);
+            else
+                submitScan(finishedScan, false);
         }
         
     }
@@ -536,6 +648,10 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
      */
     @Override
     public void onFailure(Throwable t) {
+        if (t instanceof CancellationException) {
+            // a hedged scan cancelled because the other claimed its chunk
+            return;
+        }
         stop();
         uncaughtExceptionHandler.uncaughtException(Thread.currentThread().currentThread(), t);
         Throwables.propagate(t);
@@ -630,6 +746,7 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
         protected void shutdownServices() {
             service.shutdownNow();
             listenerService.shutdownNow();
+            shutdownHedging();
             int count = 0;
             try {
                 while (!service.awaitTermination(250, TimeUnit.MILLISECONDS) && count < MAX_WAIT) {
@@ -650,6 +767,14 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
         stop();
         service.shutdownNow();
         listenerService.shutdownNow();
+        shutdownHedging();
+    }
+    
+    protected void shutdownHedging() {
+        if (null != hedgeScheduler)
+            hedgeScheduler.shutdownNow();
+        if (null != hedgeService)
+            hedgeService.shutdownNow();
     }
     
     public void addVisitor(Function<ScannerChunk,ScannerChunk> visitorFunction) {
@@ -692,6 +817,31 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
         this.speculativeScanning = speculative;
     }
     
+    /**
+     * Hedge scans that are slow to return a result for their tablet server. The hedges run on their own threads, a budget's share of the session threads, so
+     * that they are not queued behind the scans they are meant to overtake.
+     * 
+     * @param hedged
+     */
+    public void setHedgedScanning(boolean hedged) {
+        shutdownHedging();
+        this.hedgedScanning = hedged;
+        if (hedged) {
+            int hedgeThreads = Math.max(1, (int) Math.ceil(threadCount * hedgedScanBudget));
+            hedgeScheduler = Executors.newSingleThreadScheduledExecutor(new BatchReaderThreadFactory(threadId, this));
+            hedgeService = new ThreadPoolExecutor(hedgeThreads, hedgeThreads, 120, TimeUnit.MINUTES, new LinkedBlockingQueue<>(), new BatchReaderThreadFactory(
+                            threadId, this));
+            hedgeService = MoreExecutors.listeningDecorator(hedgeService);
+        } else {
+            hedgeScheduler = null;
+            hedgeService = null;
+        }
+    }
+    
+    public void setHedgedScanBudget(double hedgedScanBudget) {
+        this.hedgedScanBudget = hedgedScanBudget;
+    }
+    
     @Override
     public void uncaughtException(Thread t, Throwable e) {
         t.interrupt();
@@ -41,9 +41,9 @@ class DedupingIterator implements Iterator<Entry<Key,Value>> {
         }
     }
     
-    private byte[] getBytes(Entry<Key,Value> entry) {
-        ByteSequence row = entry.getKey().getRowData();
-        ByteSequence cf = entry.getKey().getColumnFamilyData();
+    static byte[] getBytes(Key key) {
+        ByteSequence row = key.getRowData();
+        ByteSequence cf = key.getColumnFamilyData();
         
         // only append the last 2 tokens (the datatype and uid)
         // we are expecting that they may be prefixed with a count (see sortedUIDs in the DefaultQueryPlanner / QueryIterator)
@@ -87,7 +87,7 @@ class DedupingIterator implements Iterator<Entry<Key,Value>> {
     }
     
     private boolean isDuplicate(Entry<Key,Value> entry) {
-        byte[] bytes = getBytes(entry);
+        byte[] bytes = getBytes(entry.getKey());
         ByteSequence byteSeq = new ArrayByteSequence(bytes);
         if (bloom.mightContain(bytes)) {
             if (DEBUG && !seen.contains(byteSeq)) {
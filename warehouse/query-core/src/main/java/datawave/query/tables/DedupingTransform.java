@@ -0,0 +1,31 @@
+package datawave.query.tables;
+
+import java.util.HashSet;
+import java.util.Map.Entry;
+
+import javax.annotation.Nullable;
+
+import datawave.query.attributes.Document;
+import datawave.query.transformer.DocumentTransform;
+
+import org.apache.accumulo.core.data.ArrayByteSequence;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+
+/**
+ * Drops documents that have already been returned, the same way as the {@link DedupingIterator}, but after they have been deserialized. The compact return
+ * type sends dictionary definitions along with the first document of a scan that uses them, so its serialized documents may not be dropped before they are
+ * read.
+ */
+class DedupingTransform extends DocumentTransform.DefaultDocumentTransform {
+    private final HashSet<ByteSequence> seen = new HashSet<>();
+    
+    @Nullable
+    @Override
+    public Entry<Key,Document> apply(@Nullable Entry<Key,Document> entry) {
+        if (entry != null && !seen.add(new ArrayByteSequence(DedupingIterator.getBytes(entry.getKey())))) {
+            return null;
+        }
+        return entry;
+    }
+}
@@ -183,6 +183,9 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
     
     private CardinalityConfiguration cardinalityConfiguration = null;
     
+    // the unique transforms handed out by getTransformer, which may have spilled hashes to disk
+    private final List<UniqueTransform> uniqueTransforms = Collections.synchronizedList(new ArrayList<UniqueTransform>());
+    
     /**
      * Basic constructor
      */
@@ -547,7 +550,8 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         this.scanner = null;
         this.iterator = this.scheduler.iterator();
         
-        if (!config.isSortedUIDs()) {
+        // compact documents are deduped once deserialized, see getTransformer
+        if (!config.isSortedUIDs() && config.getReturnType() != DocumentSerialization.ReturnType.compact) {
             this.iterator = new DedupingIterator(this.iterator);
         }
         
@@ -576,6 +580,10 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         }
         boolean reduced = (this.isReducedResponse() || reducedInSettings);
         DocumentTransformer transformer = new DocumentTransformer(this, settings, markingFunctions, responseObjectFactory, reduced);
+        // ahead of the other transforms, so that they see each document once
+        if (getConfig() != null && !getConfig().isSortedUIDs() && getConfig().getReturnType() == DocumentSerialization.ReturnType.compact) {
+            transformer.addTransform(new DedupingTransform());
+        }
         transformer.setEventQueryDataDecoratorTransformer(eventQueryDataDecoratorTransformer);
         transformer.setContentFieldNames(getConfig().getContentFieldNames());
         transformer.setLogTimingDetails(this.getLogTimingDetails());
@@ -586,7 +594,9 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
             transformer.setProjectFields(getConfig().getProjectFields());
             transformer.setBlacklistedFields(getConfig().getBlacklistedFields());
             if (getConfig().getUniqueFields() != null && !getConfig().getUniqueFields().isEmpty()) {
-                transformer.addTransform(new UniqueTransform(this, getConfig().getUniqueFields()));
+                UniqueTransform uniqueTransform = new UniqueTransform(this, getConfig().getUniqueFields());
+                uniqueTransforms.add(uniqueTransform);
+                transformer.addTransform(uniqueTransform);
             }
             if (getConfig().getGroupFields() != null && !getConfig().getGroupFields().isEmpty()) {
                 transformer.addTransform(new GroupingTransform(this, getConfig().getGroupFields()));
@@ -1091,6 +1101,17 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
             }
         }
         
+        synchronized (uniqueTransforms) {
+            for (UniqueTransform uniqueTransform : uniqueTransforms) {
+                try {
+                    uniqueTransform.close();
+                } catch (IOException e) {
+                    log.error("Caught exception trying to close UniqueTransform", e);
+                }
+            }
+            uniqueTransforms.clear();
+        }
+        
     }
     
     @Override
@@ -1215,6 +1236,30 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         getConfig().setUniqueFields(uniqueFields);
     }
     
+    public long getUniqueMaxMemory() {
+        return getConfig().getUniqueMaxMemory();
+    }
+    
+    public void setUniqueMaxMemory(long uniqueMaxMemory) {
+        getConfig().setUniqueMaxMemory(uniqueMaxMemory);
+    }
+    
+    public String getUniqueSpillDir() {
+        return getConfig().getUniqueSpillDir();
+    }
+    
+    public void setUniqueSpillDir(String uniqueSpillDir) {
+        getConfig().setUniqueSpillDir(uniqueSpillDir);
+    }
+    
+    public long getUniqueTserverMaxMemory() {
+        return getConfig().getUniqueTserverMaxMemory();
+    }
+    
+    public void setUniqueTserverMaxMemory(long uniqueTserverMaxMemory) {
+        getConfig().setUniqueTserverMaxMemory(uniqueTserverMaxMemory);
+    }
+    
     public String getBlacklistedFieldsString() {
         return getConfig().getBlacklistedFieldsAsString();
     }
@@ -1688,6 +1733,14 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         getConfig().setMaxEvaluationPipelines(maxEvaluationPipelines);
     }
     
+    public int getEvaluationPriority() {
+        return getConfig().getEvaluationPriority();
+    }
+    
+    public void setEvaluationPriority(int evaluationPriority) {
+        getConfig().setEvaluationPriority(evaluationPriority);
+    }
+    
     public int getMaxPipelineCachedResults() {
         return getConfig().getMaxPipelineCachedResults();
     }
@@ -1696,6 +1749,14 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         getConfig().setMaxPipelineCachedResults(maxCachedResults);
     }
     
+    public boolean isBatchTermFrequencyFetch() {
+        return getConfig().isBatchTermFrequencyFetch();
+    }
+    
+    public void setBatchTermFrequencyFetch(boolean batchTermFrequencyFetch) {
+        getConfig().setBatchTermFrequencyFetch(batchTermFrequencyFetch);
+    }
+    
     public double getMinimumSelectivity() {
         return getConfig().getMinSelectivity();
     }
@@ -1951,6 +2012,22 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         getConfig().setMaxIndexScanTimeMillis(maxTime);
     }
     
+    public long getIndexExpansionCacheTtlMillis() {
+        return getConfig().getIndexExpansionCacheTtlMillis();
+    }
+    
+    public void setIndexExpansionCacheTtlMillis(long indexExpansionCacheTtlMillis) {
+        getConfig().setIndexExpansionCacheTtlMillis(indexExpansionCacheTtlMillis);
+    }
+    
+    public int getSharedIndexExpansionThreads() {
+        return getConfig().getSharedIndexExpansionThreads();
+    }
+    
+    public void setSharedIndexExpansionThreads(int sharedIndexExpansionThreads) {
+        getConfig().setSharedIndexExpansionThreads(sharedIndexExpansionThreads);
+    }
+    
     public Function getQueryMacroFunction() {
         return queryMacroFunction;
     }
@@ -1975,6 +2052,22 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         getConfig().setSpeculativeScanning(speculativeScanning);
     }
     
+    public boolean getHedgedScanning() {
+        return getConfig().getHedgedScanning();
+    }
+    
+    public void setHedgedScanning(boolean hedgedScanning) {
+        getConfig().setHedgedScanning(hedgedScanning);
+    }
+    
+    public double getHedgedScanBudget() {
+        return getConfig().getHedgedScanBudget();
+    }
+    
+    public void setHedgedScanBudget(double hedgedScanBudget) {
+        getConfig().setHedgedScanBudget(hedgedScanBudget);
+    }
+    
     public boolean getAllowShortcutEvaluation() {
         return getConfig().getAllowShortcutEvaluation();
     }
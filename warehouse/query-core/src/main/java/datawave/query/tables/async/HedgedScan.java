@@ -0,0 +1,211 @@
+package datawave.query.tables.async;
+
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.log4j.Logger;
+
+import datawave.query.tables.AccumuloResource;
+import datawave.query.tables.ResourceQueue;
+import datawave.query.tables.stats.ScanLatencyTracker;
+
+/**
+ * A scan that may be raced by a duplicate of itself, its hedge. Both write to the same results, so whichever returns a result first, or completes without one,
+ * claims the chunk. The other stops returning results and is cancelled.
+ * <p>
+ * Each scan records its time to first result with the {@link ScanLatencyTracker}, which is what decides when a hedge is launched. A scan cancelled by its hedge
+ * records the time it had run, so that the servers that are slow enough to be hedged are not left out of their own percentiles.
+ * <p>
+ * A hedge is speculative, so it fails quietly unless it has already claimed the chunk, and the scan carries on as if it had never been hedged.
+ */
+public class HedgedScan extends Scan {
+    private static final Logger log = Logger.getLogger(HedgedScan.class);
+    
+    /**
+     * Called when a scan that may be hedged starts
+     */
+    public interface Launcher {
+        void started(HedgedScan scan);
+    }
+    
+    private final String tableName;
+    private final Set<Authorizations> auths;
+    private final ScannerChunk chunk;
+    private final ResourceQueue delegatorReference;
+    private final Class<? extends AccumuloResource> delegatedResourceInitializer;
+    private final ScanLatencyTracker tracker;
+    private final Launcher launcher;
+    
+    // shared with the hedge
+    private final AtomicReference<HedgedScan> winner;
+    
+    private volatile HedgedScan sibling = null;
+    private volatile Future<Scan> future = null;
+    
+    private volatile long started = -1;
+    private final AtomicBoolean recorded = new AtomicBoolean(false);
+    private volatile boolean failed = false;
+    
+    public HedgedScan(String localTableName, Set<Authorizations> localAuths, ScannerChunk chunk, ResourceQueue delegatorReference,
+                    Class<? extends AccumuloResource> delegatedResourceInitializer, BlockingQueue<Entry<Key,Value>> results, ExecutorService callingService,
+                    ScanLatencyTracker tracker, Launcher launcher) {
+        this(localTableName, localAuths, chunk, delegatorReference, delegatedResourceInitializer, results, callingService, tracker, launcher,
+                        new AtomicReference<HedgedScan>());
+    }
+    
+    private HedgedScan(String localTableName, Set<Authorizations> localAuths, ScannerChunk chunk, ResourceQueue delegatorReference,
+                    Class<? extends AccumuloResource> delegatedResourceInitializer, BlockingQueue<Entry<Key,Value>> results, ExecutorService callingService,
+                    ScanLatencyTracker tracker, Launcher launcher, AtomicReference<HedgedScan> winner) {
+        super(localTableName, localAuths, chunk, delegatorReference, delegatedResourceInitializer, results, callingService);
+        this.tableName = localTableName;
+        this.auths = localAuths;
+        // the ranges of the chunk are consumed as the scan runs, so keep a copy for the hedge
+        this.chunk = new ScannerChunk(chunk);
+        this.delegatorReference = delegatorReference;
+        this.delegatedResourceInitializer = delegatedResourceInitializer;
+        this.tracker = tracker;
+        this.launcher = launcher;
+        this.winner = winner;
+    }
+    
+    /**
+     * Create the hedge of this scan, which scans the chunk from the start
+     *
+     * @return the hedge, or null if this scan is a hedge or has already been hedged
+     */
+    public synchronized HedgedScan newHedge() {
+        if (null != sibling || null == launcher) {
+            return null;
+        }
+        HedgedScan hedge = new HedgedScan(tableName, auths, chunk, delegatorReference, delegatedResourceInitializer, results, caller, tracker, null, winner);
+        hedge.sibling = this;
+        hedge.disableStats();
+        sibling = hedge;
+        return hedge;
+    }
+    
+    /**
+     * @return true if this is the hedge of a scan
+     */
+    public boolean isHedge() {
+        return null == launcher;
+    }
+    
+    public void setFuture(Future<Scan> future) {
+        this.future = future;
+    }
+    
+    /**
+     * @return true once this scan or its hedge has claimed the chunk
+     */
+    public boolean claimed() {
+        return null != winner.get();
+    }
+    
+    /**
+     * @return true if the hedge of this scan claimed the chunk, or this is the hedge and the scan claimed it
+     */
+    public boolean lost() {
+        HedgedScan scan = winner.get();
+        return null != scan && scan != this;
+    }
+    
+    /**
+     * A scan and its hedge hold one runnable between them, which belongs to whichever claimed the chunk, or to the scan until one of them has
+     * 
+     * @return true if this scan holds the runnable of its chunk
+     */
+    public boolean holdsRunnable() {
+        HedgedScan scan = winner.get();
+        return null == scan ? !isHedge() : scan == this;
+    }
+    
+    @Override
+    public Scan call() throws Exception {
+        start();
+        if (lost()) {
+            return this;
+        }
+        try {
+            super.call();
+        } catch (Exception e) {
+            if (lost()) {
+                return this;
+            }
+            if (isHedge() && !claimed()) {
+                log.warn("Hedge of " + chunk + " failed, leaving the chunk to its scan", e);
+                failed = true;
+                return this;
+            }
+            throw e;
+        }
+        // a scan that completes without a result claims the chunk as well
+        if (super.finished() && !caller.isShutdown()) {
+            claim();
+        }
+        return this;
+    }
+    
+    void start() {
+        if (started < 0) {
+            started = System.currentTimeMillis();
+            if (null != launcher) {
+                launcher.started(this);
+            }
+        }
+    }
+    
+    @Override
+    public boolean finished() {
+        return failed || lost() || super.finished();
+    }
+    
+    @Override
+    protected boolean offerResult(Entry<Key,Value> entry) throws InterruptedException {
+        if (!claim()) {
+            return false;
+        }
+        return super.offerResult(entry);
+    }
+    
+    @Override
+    protected boolean abandoned() {
+        return lost() || (isHedge() && !claimed());
+    }
+    
+    private void recordLatency() {
+        if (started >= 0 && !failed && recorded.compareAndSet(false, true)) {
+            tracker.record(tableName, getScanLocation(), System.currentTimeMillis() - started);
+        }
+    }
+    
+    boolean claim() {
+        recordLatency();
+        if (winner.get() == this) {
+            return true;
+        }
+        if (!winner.compareAndSet(null, this)) {
+            return false;
+        }
+        HedgedScan other = sibling;
+        if (null != other) {
+            // the other has run at least this long without a result
+            other.recordLatency();
+            if (null != other.future) {
+                if (log.isTraceEnabled()) {
+                    log.trace((isHedge() ? "Hedge" : "Scan") + " claimed " + chunk + ", cancelling the other");
+                }
+                other.future.cancel(true);
+            }
+        }
+        return true;
+    }
+}
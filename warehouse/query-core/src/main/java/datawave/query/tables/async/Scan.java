@@ -267,15 +267,12 @@ public class Scan implements Callable<Scan> {
                         throw new Exception("Stopped mid cycle");
                     myEntry = iter.next();
                     
-                    while (!caller.isShutdown() && !results.offer(myEntry, 25, TimeUnit.MILLISECONDS)) {
-                        if (log.isTraceEnabled())
-                            log.trace("offering");
-                    }
+                    boolean offered = offerResult(myEntry);
                     
                     if (log.isTraceEnabled())
                         log.trace("size of results " + results.size() + " is shutdown? " + caller.isShutdown());
                     
-                    if (caller.isShutdown())
+                    if (!offered)
                         break;
                     
                     lastSeenKey = myEntry.getKey();
@@ -306,7 +303,8 @@ public class Scan implements Callable<Scan> {
         Exception e)
         
         {
-            log.error("exception ", e);
+            if (!abandoned())
+                log.error("exception ", e);
             throw e;
         } finally
         
@@ -319,6 +317,29 @@ public class Scan implements Callable<Scan> {
         
     }
     
+    /**
+     * Offer a result, waiting until there is room for it.
+     * 
+     * @param entry
+     *            the result
+     * @return false if the scan should stop returning results
+     * @throws InterruptedException
+     */
+    protected boolean offerResult(Entry<Key,Value> entry) throws InterruptedException {
+        while (!caller.isShutdown() && !results.offer(entry, 25, TimeUnit.MILLISECONDS)) {
+            if (log.isTraceEnabled())
+                log.trace("offering");
+        }
+        return !caller.isShutdown();
+    }
+    
+    /**
+     * @return true if the results of this scan are no longer wanted, or are not relied upon, in which case its failure is not an error
+     */
+    protected boolean abandoned() {
+        return false;
+    }
+    
     static final AtomicLong scanIdFactory = new AtomicLong(0);
     
     private String getNewScanId() {
@@ -0,0 +1,118 @@
+package datawave.query.tables.stats;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+
+/**
+ * The recent time to first result of scans, by table and tablet server. This is shared by every query on the web server, so that a query can tell when one of
+ * its scans is slow for that server without having to first observe enough of its own scans. Only the most recent {@link #WINDOW} samples are kept for each
+ * server, so the percentiles follow the current load of the server.
+ */
+public class ScanLatencyTracker {
+    
+    public static final int WINDOW = 128;
+    
+    public static final int MIN_SAMPLES = 20;
+    
+    private static final ScanLatencyTracker instance = new ScanLatencyTracker(WINDOW, MIN_SAMPLES);
+    
+    private final ConcurrentMap<String,Samples> latencies = Maps.newConcurrentMap();
+    
+    private final int window;
+    
+    private final int minSamples;
+    
+    public ScanLatencyTracker(int window, int minSamples) {
+        Preconditions.checkArgument(window > 0 && minSamples <= window);
+        this.window = window;
+        this.minSamples = minSamples;
+    }
+    
+    /**
+     * @return the web server wide tracker
+     */
+    public static ScanLatencyTracker instance() {
+        return instance;
+    }
+    
+    /**
+     * Record the time a scan took to return its first result, or to complete if it returned none
+     *
+     * @param tableName
+     *            the table scanned
+     * @param server
+     *            the tablet server scanned
+     * @param millis
+     *            the latency
+     */
+    public void record(String tableName, String server, long millis) {
+        String key = getKey(tableName, server);
+        Samples samples = latencies.get(key);
+        if (null == samples) {
+            Samples newSamples = new Samples(window);
+            samples = latencies.putIfAbsent(key, newSamples);
+            if (null == samples) {
+                samples = newSamples;
+            }
+        }
+        samples.add(millis);
+    }
+    
+    /**
+     * Get a latency percentile of a server
+     *
+     * @param tableName
+     *            the table scanned
+     * @param server
+     *            the tablet server scanned
+     * @param percentile
+     *            the percentile, between 0 and 1
+     * @return the latency, or -1 if there are not enough samples for the server
+     */
+    public long getPercentile(String tableName, String server, double percentile) {
+        Samples samples = latencies.get(getKey(tableName, server));
+        if (null == samples) {
+            return -1;
+        }
+        return samples.getPercentile(percentile, minSamples);
+    }
+    
+    public void clear() {
+        latencies.clear();
+    }
+    
+    private static String getKey(String tableName, String server) {
+        return tableName + '\0' + server;
+    }
+    
+    private static class Samples {
+        private final long[] samples;
+        private int next = 0;
+        private int count = 0;
+        
+        Samples(int window) {
+            samples = new long[window];
+        }
+        
+        synchronized void add(long millis) {
+            samples[next] = millis;
+            next = (next + 1) % samples.length;
+            if (count < samples.length) {
+                count++;
+            }
+        }
+        
+        synchronized long getPercentile(double percentile, int minSamples) {
+            if (count == 0 || count < minSamples) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile * count) - 1;
+            return sorted[Math.max(0, Math.min(count - 1, index))];
+        }
+    }
+}
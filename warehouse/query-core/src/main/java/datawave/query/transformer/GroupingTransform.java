@@ -1,6 +1,8 @@
 package datawave.query.transformer;
 
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.TreeMultimap;
@@ -26,7 +28,6 @@ import org.springframework.util.Assert;
 import javax.annotation.Nullable;
 import java.math.BigDecimal;
 import java.util.AbstractMap;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
@@ -39,7 +40,6 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
@@ -52,6 +52,9 @@ import static org.slf4j.LoggerFactory.getLogger;
  * Because the tserver may tear down and start a new iterator at any time after a next() call, there can be no saved state in this class. For that reason, each
  * next call on the tserver will flatten the aggregated data into a single Entry&gt;Key,Document&lt; to return to the web server. The web server will then
  * aggregate these documents by count.
+ *
+ * The flattened documents are partial aggregates: each group appears once with its COUNT and merged visibility, however many documents matched it. The web
+ * server merges them by adding the counts, so the tservers ship one document per batch of group.fields.batch.size results rather than every result.
  */
 public class GroupingTransform extends DocumentTransform.DefaultDocumentTransform {
     
@@ -89,9 +92,9 @@ public class GroupingTransform extends DocumentTransform.DefaultDocumentTransfor
     private Map<String,String> reverseModelMapping = null;
     
     /**
-     * list of keys that have been read, in order to keep track of where we left off when a new iterator is created
+     * the most recent key read, in order to keep track of where we left off when a new iterator is created
      */
-    private List<Key> keys = new ArrayList<>();
+    private Key lastKey = null;
     
     /**
      * flatten or not. true on the tserver, false on the webserver
@@ -178,7 +181,7 @@ public class GroupingTransform extends DocumentTransform.DefaultDocumentTransfor
                         log.trace("hasNext is false because yield was called");
                         if (countingMap != null && !countingMap.isEmpty()) {
                             // reset the yield and use its key in the flattened document prepared below
-                            keys.add(yieldCallback.getPositionAndReset());
+                            lastKey = yieldCallback.getPositionAndReset();
                         }
                         break;
                     } else {
@@ -224,11 +227,9 @@ public class GroupingTransform extends DocumentTransform.DefaultDocumentTransfor
                 } catch (Exception e) {
                     throw new IllegalStateException("Unable to merge column visibilities: " + fieldVisibilities.get(entry), e);
                 }
-                // grab a key from those saved during getListKeyCounts
-                Assert.notEmpty(keys, "no available keys for grouping results");
-                // use the last (most recent) key so a new iterator will know where to start
-                Key docKey = keys.get(keys.size() - 1);
-                Document d = new Document(docKey, true);
+                // use the last (most recent) key saved during getListKeyCounts so a new iterator will know where to start
+                Assert.notNull(lastKey, "no available keys for grouping results");
+                Document d = new Document(lastKey, true);
                 d.setColumnVisibility(columnVisibility);
                 
                 entry.forEach(base -> d.put(getFieldName(base), base));
@@ -247,15 +248,16 @@ public class GroupingTransform extends DocumentTransform.DefaultDocumentTransfor
             log.trace("{} will flush first of {} documents: {}", this.hashCode(), documents.size(), documents);
             Document d = documents.pop();
             Key key;
-            if (keys.size() > 0 && flatten) {
+            if (lastKey != null && flatten) {
                 // use the last (most recent) key so a new iterator will know where to start
-                key = keys.get(keys.size() - 1);
+                key = lastKey;
             } else {
                 key = d.getMetadata();
             }
             Entry<Key,Document> entry = Maps.immutableEntry(key, d);
             log.trace("flushing out {}", entry);
             countingMap.clear();
+            fieldVisibilities.clear();
             return entry;
         }
         return null;
@@ -393,7 +395,7 @@ public class GroupingTransform extends DocumentTransform.DefaultDocumentTransfor
     private void getListKeyCounts(Entry<Key,Document> entry) {
         
         log.trace("{} get list key counts for: {}", flatten ? "t" : "web" + "server", entry);
-        keys.add(entry.getKey());
+        lastKey = entry.getKey();
         
         Set<String> expandedGroupFieldsList = new LinkedHashSet<>();
         // if the incoming Documents have been aggregated on the tserver, they will have a COUNT field.
@@ -443,7 +445,7 @@ public class GroupingTransform extends DocumentTransform.DefaultDocumentTransfor
                     count = 1;
                 // see above comment about the COUNT field
                 log.trace("{} adding {} of {} to counting map", flatten ? "tserver" : "webserver", count, fieldCollection);
-                IntStream.range(0, count).forEach(j -> countingMap.add(fieldCollection));
+                countingMap.add(fieldCollection, count);
                 fieldVisibilities.put(fieldCollection, getColumnVisibility(entry));
                 log.trace("put {} to {} into fieldVisibilities {}", fieldCollection, getColumnVisibility(entry), fieldVisibilities);
             } else {
@@ -478,35 +480,58 @@ public class GroupingTransform extends DocumentTransform.DefaultDocumentTransfor
         
         private MarkingFunctions markingFunctions;
         
+        /**
+         * the attributes of the existing map keys, indexed by themselves (ignoring the metadata) so that visibilities can be merged without a scan of every key
+         */
+        private ListMultimap<GroupingTypeAttribute<?>,GroupingTypeAttribute<?>> keyAttributes = ArrayListMultimap.create();
+        
         public GroupCountingHashMap(MarkingFunctions markingFunctions) {
             this.markingFunctions = markingFunctions;
         }
         
         public int add(Collection<GroupingTypeAttribute<?>> in) {
-            int count = 0;
-            if (super.containsKey(in)) {
-                count = super.get(in);
+            return add(in, 1);
+        }
+        
+        /**
+         * Add a group with a count, as when merging a partial aggregate from a tserver
+         *
+         * @param in
+         *            the group
+         * @param count
+         *            the number of documents in the group
+         * @return the total count for the group
+         */
+        public int add(Collection<GroupingTypeAttribute<?>> in, int count) {
+            Integer existing = super.get(in);
+            if (existing != null) {
+                count += existing;
                 // aggregate the visibilities
-                combine(this.keySet(), in);
+                combineVisibilities(in);
+            } else {
+                in.forEach(attribute -> keyAttributes.put(attribute, attribute));
             }
-            count++;
             super.put(in, count);
             return count;
         }
         
-        private void combine(Set<Collection<GroupingTypeAttribute<?>>> existingMapKeys, Collection<? extends Attribute<?>> incomingAttributes) {
+        @Override
+        public void clear() {
+            super.clear();
+            keyAttributes.clear();
+        }
+        
+        private void combineVisibilities(Collection<? extends GroupingTypeAttribute<?>> incomingAttributes) {
             
-            // for each Attribute in the incomingAttributes, find the existing map key attribute that matches its data.
+            // for each Attribute in the incomingAttributes, find the existing map key attributes that match its data.
             // combine the column visibilities of the incoming attribute and the existing one, and set
             // the column visibility of the EXISTING map key to the new value.
             // Note that the hashCode and equals methods for the GroupingTypeAttribute will ignore the metadata (which contains the column visibility)
             incomingAttributes.forEach(incomingAttribute -> {
-                existingMapKeys.stream()
-                                .flatMap(Collection::stream)
-                                // if the existing and incoming attributes are equal (other than the metadata), the incoming attribute's visibility will be
-                                // considered for merging into the existing attribute unless the column visibilities are already equal
-                                .filter(existingAttribute -> existingAttribute.getData().equals(incomingAttribute.getData())
-                                                && !existingAttribute.getColumnVisibility().equals(incomingAttribute.getColumnVisibility()))
+                keyAttributes.get(incomingAttribute).stream()
+                                // the incoming attribute's visibility will be considered for merging into the existing attribute unless the column
+                                // visibilities are already equal
+                                .filter(existingAttribute -> !existingAttribute.getColumnVisibility().equals(incomingAttribute.getColumnVisibility()))
                                 .forEach(existingAttribute -> existingAttribute.setColumnVisibility(combine(Arrays.asList(
                                                 existingAttribute.getColumnVisibility(), incomingAttribute.getColumnVisibility()))));
             });
@@ -4,28 +4,28 @@ import com.google.common.base.Joiner;
 import com.google.common.base.Predicate;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
-import com.google.common.hash.BloomFilter;
-import com.google.common.hash.Funnel;
-import com.google.common.hash.PrimitiveSink;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
 import datawave.query.attributes.Attribute;
 import datawave.query.attributes.Attributes;
 import datawave.query.attributes.Document;
 import datawave.query.jexl.JexlASTHelper;
 import datawave.query.model.QueryModel;
 import datawave.query.tables.ShardQueryLogic;
+import datawave.query.util.sortedset.SpillingHashPairSet;
 import datawave.util.StringUtils;
 import datawave.webservice.query.logic.BaseQueryLogic;
-import org.apache.accumulo.core.data.ArrayByteSequence;
-import org.apache.accumulo.core.data.ByteSequence;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Value;
 import org.apache.log4j.Logger;
 
 import javax.annotation.Nullable;
 import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.DataOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -42,23 +42,37 @@ import java.util.stream.Collectors;
 /**
  * This is a iterator that will filter documents base on a uniqueness across a set of configured fields. Only the first instance of an event with a unique set
  * of those fields will be returned. This transform is thread safe.
+ * <p>
+ * Documents are identified by a 128 bit hash of their unique field values, which are kept in a {@link SpillingHashPairSet}. With a spill directory the
+ * deduplication is exact regardless of the number of results. Without one, documents are only compared against those seen before the memory was used up, which
+ * is how the tserver drops duplicates ahead of the web server. Closing the transform deletes any spilled hashes.
  */
-public class UniqueTransform extends DocumentTransform.DefaultDocumentTransform {
+public class UniqueTransform extends DocumentTransform.DefaultDocumentTransform implements Closeable {
     
     private static final Logger log = Logger.getLogger(GroupingTransform.class);
     
-    private BloomFilter<byte[]> bloom = null;
-    private HashSet<ByteSequence> seen;
+    public static final long DEFAULT_MAX_MEMORY = 64L * 1024 * 1024;
+    private static final HashFunction HASH = Hashing.murmur3_128();
+    
+    private final SpillingHashPairSet seen;
     private Set<String> fields;
     private Multimap<String,String> modelMapping;
-    private final boolean DEBUG = false;
     
     public UniqueTransform(Set<String> fields) {
+        this(fields, DEFAULT_MAX_MEMORY, new File(System.getProperty("java.io.tmpdir")));
+    }
+    
+    /**
+     * @param fields
+     *            the unique fields
+     * @param maxMemory
+     *            the bytes of memory to use for the hashes of the documents seen
+     * @param spillDir
+     *            the directory to spill hashes to once the memory is used, or null to stop recording new documents at that point
+     */
+    public UniqueTransform(Set<String> fields, long maxMemory, File spillDir) {
         this.fields = deconstruct(fields);
-        this.bloom = BloomFilter.create(new ByteFunnel(), 500000, 1e-15);
-        if (DEBUG) {
-            this.seen = new HashSet<>();
-        }
+        this.seen = new SpillingHashPairSet(maxMemory, spillDir);
         if (log.isTraceEnabled())
             log.trace("unique fields: " + this.fields);
     }
@@ -74,7 +88,7 @@ public class UniqueTransform extends DocumentTransform.DefaultDocumentTransform
      * @param fields
      */
     public UniqueTransform(BaseQueryLogic<Entry<Key,Value>> logic, Set<String> fields) {
-        this(fields);
+        this(fields, ((ShardQueryLogic) logic).getUniqueMaxMemory(), getSpillDir((ShardQueryLogic) logic));
         QueryModel model = ((ShardQueryLogic) logic).getQueryModel();
         if (model != null) {
             modelMapping = HashMultimap.create();
@@ -85,6 +99,11 @@ public class UniqueTransform extends DocumentTransform.DefaultDocumentTransform
         }
     }
     
+    private static File getSpillDir(ShardQueryLogic logic) {
+        String spillDir = logic.getUniqueSpillDir();
+        return new File(spillDir == null ? System.getProperty("java.io.tmpdir") : spillDir);
+    }
+    
     /**
      * Get a predicate that will apply this transform.
      * 
@@ -109,7 +128,7 @@ public class UniqueTransform extends DocumentTransform.DefaultDocumentTransform
                     keyDocumentEntry = null;
                 }
             } catch (IOException ioe) {
-                log.error("Failed to convert document to bytes.  Returning document as unique.", ioe);
+                log.error("Failed to check the document for uniqueness.  Returning document as unique.", ioe);
             }
         }
         return keyDocumentEntry;
@@ -123,22 +142,18 @@ public class UniqueTransform extends DocumentTransform.DefaultDocumentTransform
      * @throws IOException
      */
     private boolean isDuplicate(Document document) throws IOException {
-        byte[] bytes = getBytes(document);
-        ByteSequence byteSeq = new ArrayByteSequence(bytes);
-        synchronized (bloom) {
-            if (bloom.mightContain(bytes)) {
-                if (DEBUG && !seen.contains(byteSeq)) {
-                    throw new IllegalStateException("This event is 1 in 1Q!");
-                } else {
-                    return true;
-                }
-            }
-            bloom.put(bytes);
-            if (DEBUG) {
-                seen.add(byteSeq);
-            }
-        }
-        return false;
+        ByteBuffer hash = ByteBuffer.wrap(HASH.hashBytes(getBytes(document)).asBytes());
+        return !seen.add(hash.getLong(), hash.getLong());
+    }
+    
+    /**
+     * Delete the hashes spilled to disk
+     * 
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        seen.close();
     }
     
     /**
@@ -401,15 +416,4 @@ public class UniqueTransform extends DocumentTransform.DefaultDocumentTransform
         return false;
     }
     
-    public static class ByteFunnel implements Funnel<byte[]>, Serializable {
-        
-        private static final long serialVersionUID = -2126172579955897986L;
-        
-        @Override
-        public void funnel(byte[] from, PrimitiveSink into) {
-            into.putBytes(from);
-        }
-        
-    }
-    
 }
@@ -2,6 +2,7 @@ package datawave.query.util;
 
 import java.util.ArrayList;
 
+import datawave.query.jexl.lookups.IndexExpansionCache;
 import datawave.webservice.common.cache.SharedCacheCoordinator;
 
 import org.apache.accumulo.core.client.Connector;
@@ -13,7 +14,7 @@ import org.apache.log4j.Logger;
 
 /**
  * Uses the SharedCacheCoordinator to register listeners so that when an event is fired (for example, when a new model is loaded) the spring injected cache of
- * the MetadataHelpers will be evicted.
+ * the MetadataHelpers will be evicted, along with the cached index expansions.
  *
  * Note that because the SharedCacheCoordinator uses zookeeper, this class will not work in cases where zookeeper is not running (like in unit tests). This
  * class is created by the MetadataHelperCacheListenerContext.xml which is not loaded in unit tests
@@ -72,6 +73,7 @@ public class MetadataHelperCacheManagementListener {
                     if (!watcher.checkCounter(metadataTableName, newCount)) {
                         log.debug("will evictCaches for " + metadataTableName);
                         metadataCacheManager.evictCaches();
+                        IndexExpansionCache.instance().invalidateAll();
                     } else {
                         log.debug("did not evictCaches for " + metadataTableName);
                     }
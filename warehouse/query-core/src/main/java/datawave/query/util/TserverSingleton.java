@@ -0,0 +1,67 @@
+package datawave.query.util;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import org.apache.accumulo.core.conf.AccumuloConfiguration;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+
+/**
+ * A tserver wide instance that is created from the tserver configuration the first time an iterator requests it. The configuration is only read once, so
+ * later changes to the tserver properties apply after a restart.
+ *
+ * @param <T>
+ *            the type of the instance
+ */
+public class TserverSingleton<T> {
+    
+    private final Function<AccumuloConfiguration,T> factory;
+    private volatile T instance;
+    
+    /**
+     * @param factory
+     *            creates the instance from the tserver configuration, which is null when there is no iterator environment
+     */
+    public TserverSingleton(Function<AccumuloConfiguration,T> factory) {
+        this.factory = factory;
+    }
+    
+    /**
+     * Get the instance, creating it from the iterator environment the first time it is requested
+     *
+     * @param env
+     * @return the instance
+     */
+    public T get(IteratorEnvironment env) {
+        if (instance == null) {
+            synchronized (this) {
+                if (instance == null) {
+                    instance = factory.apply(env == null ? null : env.getConfig());
+                }
+            }
+        }
+        return instance;
+    }
+    
+    /**
+     * Get a numeric tserver property
+     *
+     * @param conf
+     *            the tserver configuration, or null
+     * @param prop
+     * @param defaultValue
+     * @return the value of the property, or the default if it is not set
+     */
+    public static long getLongProperty(AccumuloConfiguration conf, String prop, long defaultValue) {
+        if (conf != null) {
+            Map<String,String> properties = new TreeMap<>();
+            conf.getProperties(properties, k -> Objects.equals(k, prop));
+            if (properties.containsKey(prop)) {
+                return Long.parseLong(properties.get(prop));
+            }
+        }
+        return defaultValue;
+    }
+}
@@ -0,0 +1,700 @@
+package datawave.query.util.sortedset;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import datawave.webservice.query.exception.DatawaveErrorCode;
+import datawave.webservice.query.exception.QueryException;
+
+import org.apache.accumulo.core.data.Key;
+
+/**
+ * The file format used to persist a {@link FileSortedSet}. Entries are written in sorted order into blocks of roughly {@link #DEFAULT_BLOCK_SIZE} bytes which
+ * are individually deflated and checksummed. A block index holding the offset, checksum, and first and last entry of every block follows the blocks, and a
+ * fixed length footer locates and checksums the index. This allows the size, first, and last entries to be read without touching any blocks, and allows an
+ * iterator to seek directly to the block containing a given entry.
+ *
+ * <pre>
+ * block*  entries, deflated if compression is enabled and beneficial
+ * index   per block: long offset, int stored length, int raw length, int entry count, int crc32, byte encoding, first entry, last entry
+ * footer  long index offset, int index length, int size, int block count, int index crc32, short flags, short version, int magic
+ * </pre>
+ *
+ * The entries within a block are encoded by a codec selected from the first entry in the block. Byte arrays, Strings, and {@link KeyValueSerializable}s (the
+ * ivarator case) are written directly; anything else falls back to java serialization with one object stream per block.
+ */
+public class BlockedSortedSetFile {
+    public static final int MAGIC = 0x53534246;
+    public static final short VERSION = 1;
+    public static final int FOOTER_LENGTH = 32;
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+    
+    private static final short FLAG_COMPRESSED = 0x1;
+    private static final int DEFLATED = 0x80;
+    
+    private BlockedSortedSetFile() {}
+    
+    /**
+     * The encoding of the entries within a block
+     */
+    enum Codec {
+        JAVA, BYTES, STRING, KEY_VALUE;
+        
+        static Codec of(Object o) {
+            if (o == null) {
+                return JAVA;
+            } else if (o instanceof byte[]) {
+                return BYTES;
+            } else if (o.getClass() == String.class) {
+                return STRING;
+            } else if (o.getClass() == KeyValueSerializable.class && ((KeyValueSerializable) o).key != null) {
+                return KEY_VALUE;
+            }
+            return JAVA;
+        }
+        
+        boolean accepts(Object o) {
+            return this == JAVA || o == null || of(o) == this;
+        }
+    }
+    
+    /**
+     * Encodes entries with a given codec into a reusable buffer
+     */
+    private static class EntryEncoder {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private Codec codec;
+        private DataOutputStream data;
+        private ObjectOutputStream objects;
+        
+        void start(Codec codec) throws IOException {
+            this.codec = codec;
+            bytes.reset();
+            if (codec == Codec.JAVA) {
+                objects = new ObjectOutputStream(bytes);
+                data = null;
+            } else {
+                data = new DataOutputStream(bytes);
+                objects = null;
+            }
+        }
+        
+        void write(Object o) throws IOException {
+            if (codec == Codec.JAVA) {
+                objects.writeObject(o == null ? FileSortedSet.NULL_OBJECT : o);
+                return;
+            }
+            data.writeBoolean(o != null);
+            if (o == null) {
+                return;
+            }
+            switch (codec) {
+                case BYTES:
+                    writeBytes(data, (byte[]) o);
+                    break;
+                case STRING:
+                    writeBytes(data, ((String) o).getBytes(StandardCharsets.UTF_8));
+                    break;
+                case KEY_VALUE:
+                    KeyValueSerializable kv = (KeyValueSerializable) o;
+                    kv.key.write(data);
+                    writeBytes(data, kv.value);
+                    break;
+                default:
+                    throw new IllegalStateException("Unexpected codec " + codec);
+            }
+        }
+        
+        /**
+         * @return the approximate number of bytes encoded so far
+         */
+        int size() {
+            return bytes.size();
+        }
+        
+        byte[] finish() throws IOException {
+            if (objects != null) {
+                objects.flush();
+            } else {
+                data.flush();
+            }
+            return bytes.toByteArray();
+        }
+        
+        byte[] encode(Codec codec, Object o) throws IOException {
+            start(codec);
+            write(o);
+            return finish();
+        }
+        
+        private static void writeBytes(DataOutputStream out, byte[] b) throws IOException {
+            if (b == null) {
+                out.writeInt(-1);
+            } else {
+                out.writeInt(b.length);
+                out.write(b);
+            }
+        }
+    }
+    
+    /**
+     * Decodes entries written by an {@link EntryEncoder}
+     */
+    private static class EntryDecoder {
+        private final Codec codec;
+        private final DataInputStream data;
+        private final ObjectInputStream objects;
+        
+        EntryDecoder(Codec codec, byte[] bytes, int len) throws IOException {
+            this.codec = codec;
+            InputStream in = new ByteArrayInputStream(bytes, 0, len);
+            if (codec == Codec.JAVA) {
+                this.objects = new ObjectInputStream(in);
+                this.data = null;
+            } else {
+                this.data = new DataInputStream(in);
+                this.objects = null;
+            }
+        }
+        
+        Object read() throws IOException {
+            if (codec == Codec.JAVA) {
+                try {
+                    Object o = objects.readObject();
+                    return (o instanceof FileSortedSet.NullObject ? null : o);
+                } catch (ClassNotFoundException e) {
+                    throw new IOException("Unable to deserialize entry", e);
+                }
+            }
+            if (!data.readBoolean()) {
+                return null;
+            }
+            switch (codec) {
+                case BYTES:
+                    return readBytes(data);
+                case STRING:
+                    return new String(readBytes(data), StandardCharsets.UTF_8);
+                case KEY_VALUE:
+                    Key key = new Key();
+                    key.readFields(data);
+                    return new KeyValueSerializable(key, readBytes(data));
+                default:
+                    throw new IllegalStateException("Unexpected codec " + codec);
+            }
+        }
+        
+        private static byte[] readBytes(DataInputStream in) throws IOException {
+            int len = in.readInt();
+            if (len < 0) {
+                return null;
+            }
+            byte[] b = new byte[len];
+            in.readFully(b);
+            return b;
+        }
+    }
+    
+    /**
+     * Writes a sorted stream of entries into the blocked format. Entries must be appended in sorted order.
+     *
+     * @param <E>
+     */
+    public static class Writer<E> implements Closeable {
+        private final DataOutputStream out;
+        private final boolean compressed;
+        private final int blockSize;
+        private final Deflater deflater;
+        private final CRC32 crc = new CRC32();
+        
+        private final EntryEncoder block = new EntryEncoder();
+        private final EntryEncoder keys = new EntryEncoder();
+        private final ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+        private final DataOutputStream index = new DataOutputStream(indexBytes);
+        private byte[] deflateBuffer = new byte[0];
+        
+        private long position = 0;
+        private Codec codec = null;
+        private E first = null;
+        private E last = null;
+        private int blockCount = 0;
+        private int numBlocks = 0;
+        private int size = 0;
+        
+        public Writer(OutputStream out, boolean compressed) {
+            this(out, compressed, DEFAULT_BLOCK_SIZE);
+        }
+        
+        public Writer(OutputStream out, boolean compressed, int blockSize) {
+            this.out = new DataOutputStream(out);
+            this.compressed = compressed;
+            this.blockSize = blockSize;
+            this.deflater = (compressed ? new Deflater(Deflater.BEST_SPEED) : null);
+        }
+        
+        public void append(E e) throws IOException {
+            if (blockCount > 0 && (block.size() >= blockSize || !codec.accepts(e))) {
+                flushBlock();
+            }
+            if (blockCount == 0) {
+                codec = Codec.of(e);
+                block.start(codec);
+                first = e;
+            }
+            block.write(e);
+            last = e;
+            blockCount++;
+            size++;
+        }
+        
+        public int size() {
+            return size;
+        }
+        
+        private void flushBlock() throws IOException {
+            byte[] raw = block.finish();
+            byte[] stored = raw;
+            int storedLength = raw.length;
+            int encoding = codec.ordinal();
+            
+            if (compressed) {
+                int deflatedLength = deflate(raw);
+                // only keep the deflated form if it actually saves space
+                if (deflatedLength < raw.length) {
+                    stored = deflateBuffer;
+                    storedLength = deflatedLength;
+                    encoding |= DEFLATED;
+                }
+            }
+            
+            crc.reset();
+            crc.update(stored, 0, storedLength);
+            
+            index.writeLong(position);
+            index.writeInt(storedLength);
+            index.writeInt(raw.length);
+            index.writeInt(blockCount);
+            index.writeInt((int) crc.getValue());
+            index.writeByte(encoding);
+            writeKey(first);
+            writeKey(last);
+            
+            out.write(stored, 0, storedLength);
+            position += storedLength;
+            numBlocks++;
+            blockCount = 0;
+            first = last = null;
+        }
+        
+        private void writeKey(E key) throws IOException {
+            byte[] bytes = keys.encode(codec, key);
+            index.writeInt(bytes.length);
+            index.write(bytes);
+        }
+        
+        private int deflate(byte[] raw) {
+            deflater.reset();
+            deflater.setInput(raw);
+            deflater.finish();
+            if (deflateBuffer.length < raw.length) {
+                deflateBuffer = new byte[raw.length];
+            }
+            int len = 0;
+            while (!deflater.finished() && len < deflateBuffer.length) {
+                len += deflater.deflate(deflateBuffer, len, deflateBuffer.length - len);
+            }
+            // if the deflated form did not fit into the raw length, then it is not worth keeping
+            return (deflater.finished() ? len : raw.length);
+        }
+        
+        @Override
+        public void close() throws IOException {
+            try {
+                if (blockCount > 0) {
+                    flushBlock();
+                }
+                index.flush();
+                byte[] indexData = indexBytes.toByteArray();
+                crc.reset();
+                crc.update(indexData, 0, indexData.length);
+                
+                out.write(indexData);
+                out.writeLong(position);
+                out.writeInt(indexData.length);
+                out.writeInt(size);
+                out.writeInt(numBlocks);
+                out.writeInt((int) crc.getValue());
+                out.writeShort(compressed ? FLAG_COMPRESSED : 0);
+                out.writeShort(VERSION);
+                out.writeInt(MAGIC);
+                out.flush();
+            } finally {
+                out.close();
+                if (deflater != null) {
+                    deflater.end();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Reads a file written by a {@link Writer}. The footer and block index are read and verified when the reader is opened, after which the first and last
+     * entries and the size are available without reading any blocks. Blocks are read, verified, and decoded as they are iterated over. A reader may be shared
+     * by concurrent iterators.
+     *
+     * @param <E>
+     */
+    public static class Reader<E> implements Closeable {
+        private final SortedSetRandomAccess file;
+        private final Comparator<? super E> comparator;
+        private final boolean compressed;
+        private final int size;
+        private final int numBlocks;
+        
+        private final long[] offsets;
+        private final int[] storedLengths;
+        private final int[] rawLengths;
+        private final int[] counts;
+        private final int[] crcs;
+        private final byte[] encodings;
+        private final byte[][] firstKeys;
+        private final byte[][] lastKeys;
+        
+        // lazily decoded first and last entries of each block
+        private final Object[] firsts;
+        private final Object[] lasts;
+        private final boolean[] decoded;
+        
+        public Reader(SortedSetRandomAccess file, Comparator<? super E> comparator) throws IOException {
+            this.file = file;
+            this.comparator = comparator;
+            
+            long length = file.length();
+            if (length < FOOTER_LENGTH) {
+                throw new IOException("File is too short (" + length + " bytes) to contain a sorted set footer");
+            }
+            byte[] footerBytes = new byte[FOOTER_LENGTH];
+            file.readFully(length - FOOTER_LENGTH, footerBytes, 0, FOOTER_LENGTH);
+            DataInputStream footer = new DataInputStream(new ByteArrayInputStream(footerBytes));
+            long indexOffset = footer.readLong();
+            int indexLength = footer.readInt();
+            this.size = footer.readInt();
+            this.numBlocks = footer.readInt();
+            int indexCrc = footer.readInt();
+            short flags = footer.readShort();
+            short version = footer.readShort();
+            int magic = footer.readInt();
+            
+            if (magic != MAGIC) {
+                throw new IOException("File is not a blocked sorted set file");
+            }
+            if (version != VERSION) {
+                throw new IOException("Unsupported sorted set file version " + version);
+            }
+            if (indexOffset < 0 || indexLength < 0 || indexOffset + indexLength + FOOTER_LENGTH != length) {
+                throw new IOException("Sorted set file index is out of bounds");
+            }
+            this.compressed = (flags & FLAG_COMPRESSED) != 0;
+            
+            byte[] indexData = new byte[indexLength];
+            file.readFully(indexOffset, indexData, 0, indexLength);
+            CRC32 crc = new CRC32();
+            crc.update(indexData, 0, indexLength);
+            if ((int) crc.getValue() != indexCrc) {
+                throw new IOException("Sorted set file index failed checksum verification");
+            }
+            
+            offsets = new long[numBlocks];
+            storedLengths = new int[numBlocks];
+            rawLengths = new int[numBlocks];
+            counts = new int[numBlocks];
+            crcs = new int[numBlocks];
+            encodings = new byte[numBlocks];
+            firstKeys = new byte[numBlocks][];
+            lastKeys = new byte[numBlocks][];
+            firsts = new Object[numBlocks];
+            lasts = new Object[numBlocks];
+            decoded = new boolean[numBlocks];
+            
+            DataInputStream index = new DataInputStream(new ByteArrayInputStream(indexData));
+            int total = 0;
+            for (int i = 0; i < numBlocks; i++) {
+                offsets[i] = index.readLong();
+                storedLengths[i] = index.readInt();
+                rawLengths[i] = index.readInt();
+                counts[i] = index.readInt();
+                crcs[i] = index.readInt();
+                encodings[i] = index.readByte();
+                firstKeys[i] = new byte[index.readInt()];
+                index.readFully(firstKeys[i]);
+                lastKeys[i] = new byte[index.readInt()];
+                index.readFully(lastKeys[i]);
+                total += counts[i];
+            }
+            if (total != size) {
+                throw new IOException("Sorted set file index does not match the size " + size);
+            }
+        }
+        
+        public int size() {
+            return size;
+        }
+        
+        public int getBlockCount() {
+            return numBlocks;
+        }
+        
+        public boolean isCompressed() {
+            return compressed;
+        }
+        
+        public E first() throws IOException {
+            if (size == 0) {
+                QueryException qe = new QueryException(DatawaveErrorCode.FETCH_FIRST_ELEMENT_ERROR);
+                throw (NoSuchElementException) (new NoSuchElementException().initCause(qe));
+            }
+            return getFirst(0);
+        }
+        
+        public E last() throws IOException {
+            if (size == 0) {
+                QueryException qe = new QueryException(DatawaveErrorCode.FETCH_LAST_ELEMENT_ERROR);
+                throw (NoSuchElementException) (new NoSuchElementException().initCause(qe));
+            }
+            return getLast(numBlocks - 1);
+        }
+        
+        @SuppressWarnings("unchecked")
+        private E getFirst(int block) throws IOException {
+            decodeKeys(block);
+            return (E) firsts[block];
+        }
+        
+        @SuppressWarnings("unchecked")
+        private E getLast(int block) throws IOException {
+            decodeKeys(block);
+            return (E) lasts[block];
+        }
+        
+        private synchronized void decodeKeys(int block) throws IOException {
+            if (!decoded[block]) {
+                Codec codec = codec(block);
+                firsts[block] = new EntryDecoder(codec, firstKeys[block], firstKeys[block].length).read();
+                lasts[block] = new EntryDecoder(codec, lastKeys[block], lastKeys[block].length).read();
+                decoded[block] = true;
+            }
+        }
+        
+        private Codec codec(int block) {
+            return Codec.values()[encodings[block] & (DEFLATED - 1)];
+        }
+        
+        /**
+         * Find the first block that may contain entries greater than or equal to the specified entry
+         *
+         * @param from
+         * @return the block, or the number of blocks if all entries are less than from
+         * @throws IOException
+         */
+        int findBlock(E from) throws IOException {
+            int low = 0;
+            int high = numBlocks;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (compare(getLast(mid), from) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+        
+        /**
+         * Read, verify, and decode a block
+         *
+         * @param block
+         * @return the entries in the block
+         * @throws IOException
+         */
+        Object[] readBlock(int block) throws IOException {
+            byte[] stored = new byte[storedLengths[block]];
+            file.readFully(offsets[block], stored, 0, stored.length);
+            
+            CRC32 crc = new CRC32();
+            crc.update(stored, 0, stored.length);
+            if ((int) crc.getValue() != crcs[block]) {
+                throw new IOException("Sorted set file block " + block + " failed checksum verification");
+            }
+            
+            byte[] raw = stored;
+            if ((encodings[block] & DEFLATED) != 0) {
+                raw = new byte[rawLengths[block]];
+                Inflater inflater = new Inflater();
+                try {
+                    inflater.setInput(stored);
+                    int len = 0;
+                    while (len < raw.length && !inflater.finished()) {
+                        int count = inflater.inflate(raw, len, raw.length - len);
+                        if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                            break;
+                        }
+                        len += count;
+                    }
+                    if (len != raw.length) {
+                        throw new IOException("Sorted set file block " + block + " inflated to " + len + " bytes, expected " + raw.length);
+                    }
+                } catch (DataFormatException e) {
+                    throw new IOException("Unable to inflate sorted set file block " + block, e);
+                } finally {
+                    inflater.end();
+                }
+            }
+            
+            EntryDecoder decoder = new EntryDecoder(codec(block), raw, rawLengths[block]);
+            Object[] entries = new Object[counts[block]];
+            for (int i = 0; i < entries.length; i++) {
+                entries[i] = decoder.read();
+            }
+            return entries;
+        }
+        
+        @SuppressWarnings("unchecked")
+        int compare(E o1, E o2) {
+            if (comparator != null) {
+                return comparator.compare(o1, o2);
+            }
+            return ((Comparable<? super E>) o1).compareTo(o2);
+        }
+        
+        /**
+         * @return an iterator over all of the entries
+         */
+        public Iterator<E> iterator() {
+            return new BlockIterator(false, null, false, null);
+        }
+        
+        /**
+         * Get an iterator over a range of the entries. The iterator seeks directly to the block that contains the start of the range.
+         *
+         * @param hasFrom
+         *            true if the range has a lower bound
+         * @param from
+         *            the inclusive lower bound
+         * @param hasTo
+         *            true if the range has an upper bound
+         * @param to
+         *            the exclusive upper bound
+         * @return the iterator
+         */
+        public Iterator<E> iterator(boolean hasFrom, E from, boolean hasTo, E to) {
+            return new BlockIterator(hasFrom, from, hasTo, to);
+        }
+        
+        @Override
+        public void close() throws IOException {
+            file.close();
+        }
+        
+        private class BlockIterator implements Iterator<E> {
+            private final boolean hasTo;
+            private final E to;
+            private int block;
+            private Object[] entries = null;
+            private int index = 0;
+            private E next = null;
+            private boolean populated = false;
+            private boolean done = false;
+            
+            BlockIterator(boolean hasFrom, E from, boolean hasTo, E to) {
+                this.hasTo = hasTo;
+                this.to = to;
+                try {
+                    this.block = (hasFrom ? findBlock(from) : 0);
+                    if (hasFrom && block < numBlocks) {
+                        // skip over the entries in the first block that are less than from
+                        entries = readBlock(block);
+                        while (index < entries.length && compare(entry(index), from) < 0) {
+                            index++;
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException("Unable to seek within file", e);
+                }
+            }
+            
+            @SuppressWarnings("unchecked")
+            private E entry(int i) {
+                return (E) entries[i];
+            }
+            
+            private void populate() {
+                if (populated || done) {
+                    return;
+                }
+                try {
+                    while (entries == null || index >= entries.length) {
+                        if (entries != null) {
+                            block++;
+                        }
+                        if (block >= numBlocks) {
+                            done = true;
+                            entries = null;
+                            return;
+                        }
+                        entries = readBlock(block);
+                        index = 0;
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException("Unable to get next element from file", e);
+                }
+                E candidate = entry(index++);
+                if (hasTo && compare(candidate, to) >= 0) {
+                    done = true;
+                    entries = null;
+                    return;
+                }
+                next = candidate;
+                populated = true;
+            }
+            
+            @Override
+            public boolean hasNext() {
+                populate();
+                return populated;
+            }
+            
+            @Override
+            public E next() {
+                if (!hasNext()) {
+                    QueryException qe = new QueryException(DatawaveErrorCode.FETCH_NEXT_ELEMENT_ERROR);
+                    throw (NoSuchElementException) (new NoSuchElementException().initCause(qe));
+                }
+                populated = false;
+                E o = next;
+                next = null;
+                return o;
+            }
+            
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("Cannot remove elements from a persisted file.  Please call load() first.");
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package datawave.query.util.sortedset;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -17,12 +18,12 @@ import org.apache.log4j.Logger;
 
 /**
  * This is a sorted set that will hold up to a specified number of entries before flushing the data to disk. Files will be created as needed. An additional
- * "persist" call is supplied to force flushing to disk. The iterator.remove and the subset operations will work up until any buffer has been flushed to disk.
- * After that, those operations will not work as specified by the underlying FileSortedSet.
+ * "persist" call is supplied to force flushing to disk. The iterator.remove operation will work up until any buffer has been flushed to disk. After that, it
+ * will not work as specified by the underlying FileSortedSet, and the subset operations will return read only views which seek into the persisted files.
  * 
  * @param <E>
  */
-public class BufferedFileBackedSortedSet<E extends Serializable> implements SortedSet<E> {
+public class BufferedFileBackedSortedSet<E extends Serializable> implements SortedSet<E>, Closeable {
     private static final Logger log = Logger.getLogger(BufferedFileBackedSortedSet.class);
     protected static final int DEFAULT_BUFFER_PERSIST_THRESHOLD = 1000;
     protected static final int DEFAULT_MAX_OPEN_FILES = 100;
@@ -38,6 +39,7 @@ public class BufferedFileBackedSortedSet<E extends Serializable> implements Sort
     
     protected List<SortedSetFileHandlerFactory> handlerFactories;
     protected int bufferPersistThreshold;
+    protected SortedSetBufferFactory<E> bufferFactory = null;
     
     /**
      * A factory for SortedSetFileHandlers
@@ -51,6 +53,16 @@ public class BufferedFileBackedSortedSet<E extends Serializable> implements Sort
         boolean isValid();
     }
     
+    /**
+     * A factory for the in memory buffers which hold entries until they are persisted
+     * 
+     * 
+     * 
+     */
+    public interface SortedSetBufferFactory<E> {
+        SortedSet<E> createBuffer(Comparator<? super E> comparator);
+    }
+    
     public BufferedFileBackedSortedSet(BufferedFileBackedSortedSet<E> other) {
         this(other.comparator, other.bufferPersistThreshold, other.maxOpenFiles, other.numRetries, new ArrayList<>(other.handlerFactories));
         for (SortedSet<E> subSet : other.set.getSets()) {
@@ -62,6 +74,7 @@ public class BufferedFileBackedSortedSet<E extends Serializable> implements Sort
         }
         this.sizeModified = other.sizeModified;
         this.size = other.size;
+        this.bufferFactory = other.bufferFactory;
     }
     
     public BufferedFileBackedSortedSet(List<SortedSetFileHandlerFactory> handlerFactories) {
@@ -148,6 +161,16 @@ public class BufferedFileBackedSortedSet<E extends Serializable> implements Sort
         size += subSet.size();
     }
     
+    /**
+     * Close the persisted files. The contents are kept, and the files are opened again if the set is read again.
+     */
+    @Override
+    public void close() {
+        for (FileSortedSet<E> subSet : getSets()) {
+            subSet.close();
+        }
+    }
+    
     public boolean hasPersistedData() {
         for (SortedSet<E> subSet : set.getSets()) {
             if (((FileSortedSet<E>) subSet).isPersisted()) {
@@ -171,6 +194,19 @@ public class BufferedFileBackedSortedSet<E extends Serializable> implements Sort
         return this.size;
     }
     
+    public SortedSetBufferFactory<E> getBufferFactory() {
+        return bufferFactory;
+    }
+    
+    /**
+     * Set the factory used to create the in memory buffers. If null (the default), then buffers are held in a TreeSet.
+     * 
+     * @param bufferFactory
+     */
+    public void setBufferFactory(SortedSetBufferFactory<E> bufferFactory) {
+        this.bufferFactory = bufferFactory;
+    }
+    
     public int getBufferPersistThreshold() {
         return this.bufferPersistThreshold;
     }
@@ -332,42 +368,55 @@ public class BufferedFileBackedSortedSet<E extends Serializable> implements Sort
         return set.toArray(a);
     }
     
-    @Override
-    public boolean add(E e) {
-        if (buffer == null) {
-            try {
+    private void createBuffer(boolean useFactory) {
+        try {
+            if (useFactory && bufferFactory != null) {
+                buffer = FileSortedSet.wrap(bufferFactory.createBuffer(comparator), null);
+            } else {
                 buffer = new FileSortedSet<>(comparator, null, false);
-            } catch (Exception ex) {
-                throw new IllegalStateException("Unable to create an underlying FileSortedSet", ex);
             }
-            
-            set.addSet(buffer);
+        } catch (Exception ex) {
+            throw new IllegalStateException("Unable to create an underlying FileSortedSet", ex);
         }
-        if (buffer.add(e)) {
-            sizeModified = true;
-            if (buffer.size() >= bufferPersistThreshold) {
+        set.addSet(buffer);
+    }
+    
+    /**
+     * Add an element to the buffer. If the buffer is unable to grow because its memory budget is exhausted, then the buffer is persisted to release its memory
+     * and the element is added to a new buffer. If even an empty buffer cannot be allocated, then an on heap buffer is used instead.
+     * 
+     * @param e
+     * @return true if added
+     */
+    private boolean addToBuffer(E e) {
+        if (buffer == null) {
+            createBuffer(true);
+        }
+        try {
+            return buffer.add(e);
+        } catch (OffHeapBufferBudget.BudgetExhaustedException ex) {
+            if (buffer.isEmpty()) {
+                log.warn("Unable to allocate an off heap buffer, falling back to an on heap buffer: " + ex.getMessage());
+                set.getSets().remove(buffer);
+                createBuffer(false);
+            } else {
+                if (log.isDebugEnabled()) {
+                    log.debug("Persisting buffer of " + buffer.size() + " entries early: " + ex.getMessage());
+                }
                 try {
                     persist();
-                } catch (Exception ex) {
-                    throw new IllegalStateException("Unable to persist or compact FileSortedSet", ex);
+                } catch (IOException ioe) {
+                    throw new IllegalStateException("Unable to persist or compact FileSortedSet", ioe);
                 }
+                createBuffer(true);
             }
-            return true;
+            return buffer.add(e);
         }
-        return false;
     }
     
     @Override
-    public boolean addAll(Collection<? extends E> c) {
-        if (buffer == null) {
-            try {
-                buffer = new FileSortedSet<>(comparator, null, false);
-            } catch (Exception ex) {
-                throw new IllegalStateException("Unable to create an underlying FileSortedSet", ex);
-            }
-            set.addSet(buffer);
-        }
-        if (buffer.addAll(c)) {
+    public boolean add(E e) {
+        if (addToBuffer(e)) {
             sizeModified = true;
             if (buffer.size() >= bufferPersistThreshold) {
                 try {
@@ -381,6 +430,17 @@ public class BufferedFileBackedSortedSet<E extends Serializable> implements Sort
         return false;
     }
     
+    @Override
+    public boolean addAll(Collection<? extends E> c) {
+        boolean modified = false;
+        for (E e : c) {
+            if (add(e)) {
+                modified = true;
+            }
+        }
+        return modified;
+    }
+    
     @Override
     public boolean remove(Object o) {
         boolean removed = false;
@@ -1,15 +1,15 @@
 package datawave.query.util.sortedset;
 
-import java.io.FileNotFoundException;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.lang.reflect.Array;
-import java.util.ArrayList;
+import java.util.AbstractSet;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.Iterator;
-import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -21,11 +21,13 @@ import org.apache.log4j.Logger;
  * A sorted set that can be persisted into a file and still be read in its persisted state. The set can always be re-loaded and then all operations will work as
  * expected. This will support null contained in the underlying sets iff a comparator is supplied that can handle null values.
  *
- * The persisted file will contain the serialized entries, followed by the actual size.
+ * The persisted file is written in the {@link BlockedSortedSetFile} format: blocks of entries followed by a block index and a checksummed footer. The size, first
+ * and last entries are read from the index, and iterators and subsets of a persisted set seek directly to the block that contains their first entry. The file
+ * is opened when the persisted set is first read, and held open until the set is closed, loaded or cleared.
  *
  * @param <E>
  */
-public class FileSortedSet<E extends Serializable> implements SortedSet<E> {
+public class FileSortedSet<E extends Serializable> implements SortedSet<E>, Closeable {
     private static Logger log = Logger.getLogger(FileSortedSet.class);
     protected boolean persisted = false;
     protected SortedSet<E> set = null;
@@ -34,37 +36,44 @@ public class FileSortedSet<E extends Serializable> implements SortedSet<E> {
     
     // The file handler that handles the underlying io
     public SortedSetFileHandler handler;
+    // The reader over the persisted file, opened as needed
+    private BlockedSortedSetFile.Reader<E> reader = null;
     
     /**
-     * A factory that will provide the input stream and output stream to the same underlying file.
+     * A factory that will provide the input stream, random access, and output stream to the same underlying file.
      * 
      * 
      * 
      */
     public interface SortedSetFileHandler {
         /**
-         * Return the sorted set input stream, compressed if needed
+         * Return the base input stream
          * 
-         * @return the sorted set input stream
+         * @return the input stream
          * @throws IOException
          */
-        SortedSetInputStream getSortedSetInputStream() throws IOException;
+        InputStream getInputStream() throws IOException;
         
         /**
-         * Return the base input stream, uncompressed
+         * Return positional access to the file, memory mapped if the file is local
          * 
-         * @return the input stream
+         * @return the random access
          * @throws IOException
          */
-        InputStream getInputStream() throws IOException;
+        SortedSetRandomAccess getRandomAccess() throws IOException;
         
         /**
-         * Return the sorted set output stream, compressed if needed
+         * Return the base output stream
          * 
-         * @return the sorted set output stream
+         * @return the output stream
          * @throws IOException
          */
-        SortedSetOutputStream getSortedSetOutputStream() throws IOException;
+        OutputStream getOutputStream() throws IOException;
+        
+        /**
+         * @return true if the blocks written to this file should be compressed
+         */
+        boolean isCompressed();
         
         long getSize();
         
@@ -130,6 +139,21 @@ public class FileSortedSet<E extends Serializable> implements SortedSet<E> {
         this.persisted = false;
     }
     
+    /**
+     * Create an unpersisted sorted set which uses the supplied set directly as its in memory buffer rather than copying it into a TreeSet. This allows an
+     * {@link OffHeapSortedSetBuffer} to be streamed straight into the persisted file. Once persisted, the buffer is cleared and replaced by a TreeSet.
+     *
+     * @param buffer
+     * @param handler
+     * @param <E>
+     * @return the unpersisted sorted set
+     */
+    public static <E extends Serializable> FileSortedSet<E> wrap(SortedSet<E> buffer, SortedSetFileHandler handler) {
+        FileSortedSet<E> fileSet = new FileSortedSet<>(buffer.comparator(), handler, false);
+        fileSet.set = buffer;
+        return fileSet;
+    }
+    
     /**
      * Create an sorted set out of another sorted set. If persist is true, then the set will be directly persisted using the set's iterator which avoid pulling
      * all of its entries into memory at once.
@@ -166,6 +190,10 @@ public class FileSortedSet<E extends Serializable> implements SortedSet<E> {
         if (!persisted) {
             persist(this.set, handler);
             this.set.clear();
+            if (!(this.set instanceof TreeSet)) {
+                // release the wrapped buffer, and hold any reloaded entries on the heap
+                this.set = new TreeSet<>(this.set.comparator());
+            }
             persisted = true;
         }
     }
@@ -185,54 +213,29 @@ public class FileSortedSet<E extends Serializable> implements SortedSet<E> {
             this.handler = handler;
             
             int actualSize = 0;
-            List<E> firstOneHundred = new ArrayList<>();
-            SortedSetOutputStream stream = getOutputStream();
+            BlockedSortedSetFile.Writer<E> writer = new BlockedSortedSetFile.Writer<>(handler.getOutputStream(), handler.isCompressed());
             try {
                 for (E t : set) {
-                    writeObject(stream, t);
-                    if (firstOneHundred.size() < 100) {
-                        firstOneHundred.add(t);
-                    }
+                    writer.append(t);
                     actualSize++;
                 }
-                // write a buffered object at the end so that we can follow with an uncompressed int.
-                writeObject(stream, null);
-                // change the compression to false which should flush
-                stream.setCompressed(false);
-                // and write an uncompressed
-                stream.writeInt(actualSize);
-            } catch (Exception e) {
-                throw new IOException("Failed to write uncompressed actualSize", e);
             } finally {
-                stream.close();
+                writer.close();
             }
-            // verify we wrote at least the size....
-            if (handler.getSize() == 0) {
+            // verify we wrote at least the footer....
+            if (handler.getSize() < BlockedSortedSetFile.FOOTER_LENGTH) {
                 throw new IOException("Failed to verify file existence");
             }
-            // now verify the first 100 objects were written correctly
-            SortedSetInputStream inStream = getInputStream();
-            try {
-                int count = 0;
-                for (E t : firstOneHundred) {
-                    count++;
-                    E input = readObject(inStream);
-                    if (!equals(t, input)) {
-                        throw new IOException("Failed to verify element " + count + " was written");
-                    }
-                }
-            } catch (ClassNotFoundException e) {
-                throw new IOException("Failed to verify elements were written", e);
-            } finally {
-                inStream.close();
+            // opening the reader verifies the footer and index checksum, which are written last
+            int verifiedSize;
+            try (BlockedSortedSetFile.Reader<E> verified = openReader()) {
+                verifiedSize = verified.size();
             }
-            
-            // now verify the size was written at the end
-            int test = readSize();
-            if (test != actualSize) {
+            if (verifiedSize != actualSize) {
                 throw new IOException("Failed to verify file size was written");
             }
         } catch (IOException e) {
+            closeReader();
             handler.deleteFile();
             this.handler = null;
             throw e;
@@ -245,110 +248,81 @@ public class FileSortedSet<E extends Serializable> implements SortedSet<E> {
     }
     
     /**
-     * Read the size from the file which is in the last 4 bytes.
+     * Open a reader over the persisted file
      * 
-     * @return the size (in terms of objects)
+     * @return the reader
      * @throws IOException
      */
-    private int readSize() throws IOException {
-        long bytesToSkip = handler.getSize() - 4;
-        InputStream inStream = handler.getInputStream();
+    private BlockedSortedSetFile.Reader<E> openReader() throws IOException {
+        SortedSetRandomAccess file = handler.getRandomAccess();
         try {
-            long total = 0;
-            long cur = 0;
-            
-            while ((total < bytesToSkip) && ((cur = inStream.skip(bytesToSkip - total)) > 0)) {
-                total += cur;
-            }
-            
-            byte[] buffer = new byte[4];
-            inStream.read(buffer);
-            
-            return ((buffer[3] & 0xFF)) + ((buffer[2] & 0xFF) << 8) + ((buffer[1] & 0xFF) << 16) + ((buffer[0]) << 24);
-            
-        } finally {
-            inStream.close();
+            return new BlockedSortedSetFile.Reader<>(file, set.comparator());
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
         }
     }
     
     /**
-     * This will read the file into an in-memory set, making this file "unpersisted"
+     * Get the reader over the persisted file, opening it if needed
      * 
+     * @return the reader
      * @throws IOException
-     * @throws ClassNotFoundException
      */
-    public void load() throws IOException, ClassNotFoundException {
-        if (persisted) {
-            try {
-                int size = readSize();
-                SortedSetInputStream stream = getInputStream();
-                try {
-                    for (int i = 0; i < size; i++) {
-                        E obj = readObject(stream);
-                        set.add(obj);
-                    }
-                } finally {
-                    stream.close();
-                }
-            } catch (Exception e) {
-                throw new IOException("Unable to read file into a complete set", e);
-            }
-            handler.deleteFile();
-            persisted = false;
+    protected synchronized BlockedSortedSetFile.Reader<E> getReader() throws IOException {
+        if (reader == null) {
+            reader = openReader();
         }
+        return reader;
     }
     
-    /**
-     * Get an input stream
-     *
-     * @return the input stream
-     * @throws FileNotFoundException
-     * @throws IOException
-     */
-    protected SortedSetInputStream getInputStream() throws IOException {
-        return handler.getSortedSetInputStream();
+    private synchronized void closeReader() {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                log.warn("Failed to close reader for " + handler, e);
+            }
+            reader = null;
+        }
     }
     
     /**
-     * Get an output stream
-     *
-     * @return the output stream
-     * @throws IOException
+     * Close the persisted file. The set stays persisted, and the file is opened again if the set is read again.
      */
-    protected SortedSetOutputStream getOutputStream() throws IOException {
-        return handler.getSortedSetOutputStream();
+    @Override
+    public void close() {
+        closeReader();
     }
     
     /**
-     * Write T to an object output stream
+     * Read the size from the block index.
      * 
-     * @param stream
-     * @param t
+     * @return the size (in terms of objects)
      * @throws IOException
      */
-    protected void writeObject(SortedSetOutputStream stream, E t) throws IOException {
-        if (t == null) {
-            stream.writeObject(NULL_OBJECT);
-        } else {
-            stream.writeObject(t);
-        }
+    private int readSize() throws IOException {
+        return getReader().size();
     }
     
     /**
-     * Read T from an object input stream
-     *
-     * @param stream
-     * @return
+     * This will read the file into an in-memory set, making this file "unpersisted"
+     * 
      * @throws IOException
      * @throws ClassNotFoundException
      */
-    @SuppressWarnings("unchecked")
-    protected E readObject(SortedSetInputStream stream) throws IOException, ClassNotFoundException {
-        Object o = stream.readObject();
-        if (o instanceof NullObject) {
-            return null;
-        } else {
-            return (E) o;
+    public void load() throws IOException, ClassNotFoundException {
+        if (persisted) {
+            try {
+                for (Iterator<E> it = getReader().iterator(); it.hasNext();) {
+                    set.add(it.next());
+                }
+            } catch (Exception e) {
+                throw new IOException("Unable to read file into a complete set", e);
+            }
+            closeReader();
+            handler.deleteFile();
+            persisted = false;
         }
     }
     
@@ -393,15 +367,9 @@ public class FileSortedSet<E extends Serializable> implements SortedSet<E> {
     public boolean contains(Object o) {
         if (persisted) {
             E t = (E) o;
-            for (Iterator<E> it = iterator(); it.hasNext();) {
-                if (it.hasNext()) {
-                    E next = it.next();
-                    if (equals(next, t)) {
-                        return true;
-                    }
-                }
-            }
-            return false;
+            // seek to the block that would contain the element
+            Iterator<E> it = iterator(true, t, false, null);
+            return it.hasNext() && equals(it.next(), t);
         } else {
             return set.contains(o);
         }
@@ -410,27 +378,31 @@ public class FileSortedSet<E extends Serializable> implements SortedSet<E> {
     @Override
     public Iterator<E> iterator() {
         if (persisted) {
-            return new FileIterator();
+            return iterator(false, null, false, null);
         } else {
             return set.iterator();
         }
     }
     
+    private Iterator<E> iterator(boolean hasFrom, E from, boolean hasTo, E to) {
+        try {
+            return getReader().iterator(hasFrom, from, hasTo, to);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read file", e);
+        }
+    }
+    
     @Override
     public Object[] toArray() {
         if (persisted) {
             try {
                 int size = readSize();
-                SortedSetInputStream stream = getInputStream();
-                try {
-                    Object[] data = new Object[size];
-                    for (int i = 0; i < size; i++) {
-                        data[i] = readObject(stream);
-                    }
-                    return data;
-                } finally {
-                    stream.close();
+                Iterator<E> it = iterator();
+                Object[] data = new Object[size];
+                for (int i = 0; i < size; i++) {
+                    data[i] = it.next();
                 }
+                return data;
             } catch (Exception e) {
                 throw new IllegalStateException("Unable to read file into a complete set", e);
             }
@@ -445,30 +417,26 @@ public class FileSortedSet<E extends Serializable> implements SortedSet<E> {
         if (persisted) {
             try {
                 int size = readSize();
-                SortedSetInputStream stream = getInputStream();
-                try {
-                    T[] dest = a;
-                    int i = 0;
-                    for (; i < size; i++) {
-                        T obj = (T) readObject(stream);
-                        if (dest.length <= i) {
-                            T[] newDest = (T[]) (Array.newInstance(a.getClass().getComponentType(), size));
-                            System.arraycopy(dest, 0, newDest, 0, i);
-                            dest = newDest;
-                        }
-                        dest[i] = obj;
+                Iterator<E> it = iterator();
+                T[] dest = a;
+                int i = 0;
+                for (; i < size; i++) {
+                    T obj = (T) it.next();
+                    if (dest.length <= i) {
+                        T[] newDest = (T[]) (Array.newInstance(a.getClass().getComponentType(), size));
+                        System.arraycopy(dest, 0, newDest, 0, i);
+                        dest = newDest;
                     }
-                    // if not resized
-                    if (dest == a) {
-                        // ensure extra elements are set to null
-                        for (; i < dest.length; i++) {
-                            dest[i] = null;
-                        }
+                    dest[i] = obj;
+                }
+                // if not resized
+                if (dest == a) {
+                    // ensure extra elements are set to null
+                    for (; i < dest.length; i++) {
+                        dest[i] = null;
                     }
-                    return dest;
-                } finally {
-                    stream.close();
                 }
+                return dest;
             } catch (Exception e) {
                 throw new IllegalStateException("Unable to read file into a complete set", e);
             }
@@ -507,19 +475,14 @@ public class FileSortedSet<E extends Serializable> implements SortedSet<E> {
                 for (Object o : c) {
                     all.add((E) o);
                 }
-                int size = readSize();
-                SortedSetInputStream stream = getInputStream();
-                try {
-                    for (int i = 0; i < size; i++) {
-                        E obj = readObject(stream);
-                        if (all.remove(obj)) {
-                            if (all.isEmpty()) {
-                                return true;
-                            }
+                // start at the smallest element being looked for
+                for (Iterator<E> it = iterator(true, all.first(), false, null); it.hasNext();) {
+                    E obj = it.next();
+                    if (all.remove(obj)) {
+                        if (all.isEmpty()) {
+                            return true;
                         }
                     }
-                } finally {
-                    stream.close();
                 }
             } catch (Exception e) {
                 throw new IllegalStateException("Unable to read file into a complete set", e);
@@ -560,6 +523,7 @@ public class FileSortedSet<E extends Serializable> implements SortedSet<E> {
     @Override
     public void clear() {
         if (persisted) {
+            closeReader();
             handler.deleteFile();
             persisted = false;
         } else {
@@ -575,7 +539,7 @@ public class FileSortedSet<E extends Serializable> implements SortedSet<E> {
     @Override
     public SortedSet<E> subSet(E fromElement, E toElement) {
         if (persisted) {
-            throw new IllegalStateException("Unable to subset a persisted FileSortedSet.  Please call load() first.");
+            return new PersistedSubSet(true, fromElement, true, toElement);
         } else {
             return set.subSet(fromElement, toElement);
         }
@@ -584,7 +548,7 @@ public class FileSortedSet<E extends Serializable> implements SortedSet<E> {
     @Override
     public SortedSet<E> headSet(E toElement) {
         if (persisted) {
-            throw new IllegalStateException("Unable to subset a persisted FileSortedSet.  Please call load() first.");
+            return new PersistedSubSet(false, null, true, toElement);
         } else {
             return set.headSet(toElement);
         }
@@ -593,7 +557,7 @@ public class FileSortedSet<E extends Serializable> implements SortedSet<E> {
     @Override
     public SortedSet<E> tailSet(E fromElement) {
         if (persisted) {
-            throw new IllegalStateException("Unable to subset a persisted FileSortedSet.  Please call load() first.");
+            return new PersistedSubSet(true, fromElement, false, null);
         } else {
             return set.tailSet(fromElement);
         }
@@ -605,18 +569,10 @@ public class FileSortedSet<E extends Serializable> implements SortedSet<E> {
         E first = null;
         if (persisted) {
             try {
-                int size = readSize();
-                SortedSetInputStream stream = getInputStream();
-                try {
-                    if (size != 0) {
-                        first = readObject(stream);
-                        gotFirst = true;
-                    }
-                } catch (IOException ioe) {
-                    QueryException qe = new QueryException(DatawaveErrorCode.FETCH_FIRST_ELEMENT_ERROR, ioe);
-                    throw (NoSuchElementException) (new NoSuchElementException().initCause(qe));
-                } finally {
-                    stream.close();
+                BlockedSortedSetFile.Reader<E> reader = getReader();
+                if (reader.size() != 0) {
+                    first = reader.first();
+                    gotFirst = true;
                 }
             } catch (Exception e) {
                 QueryException qe = new QueryException(DatawaveErrorCode.FETCH_FIRST_ELEMENT_ERROR, e);
@@ -640,15 +596,10 @@ public class FileSortedSet<E extends Serializable> implements SortedSet<E> {
         E last = null;
         if (persisted) {
             try {
-                int size = readSize();
-                SortedSetInputStream stream = getInputStream();
-                try {
-                    for (int i = 0; i < size; i++) {
-                        last = readObject(stream);
-                        gotLast = true;
-                    }
-                } finally {
-                    stream.close();
+                BlockedSortedSetFile.Reader<E> reader = getReader();
+                if (reader.size() != 0) {
+                    last = reader.last();
+                    gotLast = true;
                 }
             } catch (Exception e) {
                 throw new IllegalStateException("Unable to get last from file", e);
@@ -668,84 +619,139 @@ public class FileSortedSet<E extends Serializable> implements SortedSet<E> {
     /********* Some sub classes ***********/
     
     /**
-     * This is the iterator for a persisted FileSortedSet
+     * A read only view of a range of a persisted FileSortedSet. Iterating over the view seeks directly to the block containing the start of the range.
      * 
      * 
      * 
      */
-    protected class FileIterator implements Iterator<E> {
-        private int size = 0;
-        private int index = 0;
-        private SortedSetInputStream stream = null;
+    protected class PersistedSubSet extends AbstractSet<E> implements SortedSet<E> {
+        private final boolean hasFrom;
+        private final E from;
+        private final boolean hasTo;
+        private final E to;
         
-        public FileIterator() {
-            try {
-                this.size = readSize();
-                if (this.size == 0) {
-                    cleanup();
-                } else {
-                    this.stream = getInputStream();
-                }
-            } catch (Exception e) {
-                throw new IllegalStateException("Unable to read file", e);
+        public PersistedSubSet(boolean hasFrom, E from, boolean hasTo, E to) {
+            if (hasFrom && hasTo && compare(from, to) > 0) {
+                throw new IllegalArgumentException("fromElement is greater than toElement");
             }
+            this.hasFrom = hasFrom;
+            this.from = from;
+            this.hasTo = hasTo;
+            this.to = to;
         }
         
-        public void cleanup() {
-            if (stream != null) {
-                try {
-                    stream.close();
-                } catch (Exception e) {
-                    // we tried...
-                }
-                stream = null;
-            }
+        private boolean inRange(E e) {
+            return (!hasFrom || compare(e, from) >= 0) && (!hasTo || compare(e, to) < 0);
         }
         
         @Override
-        public boolean hasNext() {
-            if (stream == null) {
-                return false;
-            }
-            if (index >= size) {
-                cleanup();
-            }
-            return index < size;
+        public Iterator<E> iterator() {
+            return FileSortedSet.this.iterator(hasFrom, from, hasTo, to);
         }
         
         @Override
-        public E next() {
-            if (!hasNext()) {
-                QueryException qe = new QueryException(DatawaveErrorCode.FETCH_NEXT_ELEMENT_ERROR);
-                throw (NoSuchElementException) (new NoSuchElementException().initCause(qe));
-            }
-            try {
-                E o = readObject(stream);
-                index++;
-                if (index >= size) {
-                    cleanup();
-                }
-                return o;
-            } catch (Exception e) {
-                throw new IllegalStateException("Unable to get next element from file", e);
+        public int size() {
+            int size = 0;
+            for (Iterator<E> it = iterator(); it.hasNext(); it.next()) {
+                size++;
             }
+            return size;
+        }
+        
+        @Override
+        public boolean isEmpty() {
+            return !iterator().hasNext();
+        }
+        
+        @SuppressWarnings("unchecked")
+        @Override
+        public boolean contains(Object o) {
+            return inRange((E) o) && FileSortedSet.this.contains(o);
+        }
+        
+        @Override
+        public boolean add(E e) {
+            throw new IllegalStateException("Cannot add an element to a persisted FileSortedSet.  Please call load() first.");
+        }
+        
+        @Override
+        public boolean remove(Object o) {
+            throw new IllegalStateException("Cannot remove an element to a persisted FileSortedSet.  Please call load() first.");
+        }
+        
+        @Override
+        public Comparator<? super E> comparator() {
+            return FileSortedSet.this.comparator();
         }
         
         @Override
-        public void remove() {
-            throw new UnsupportedOperationException("Cannot remove elements from a persisted file.  Please call load() first.");
+        public SortedSet<E> subSet(E fromElement, E toElement) {
+            return narrow(true, fromElement, true, toElement);
+        }
+        
+        @Override
+        public SortedSet<E> headSet(E toElement) {
+            return narrow(false, null, true, toElement);
+        }
+        
+        @Override
+        public SortedSet<E> tailSet(E fromElement) {
+            return narrow(true, fromElement, false, null);
+        }
+        
+        private SortedSet<E> narrow(boolean newHasFrom, E newFrom, boolean newHasTo, E newTo) {
+            if ((newHasFrom && !inRange(newFrom)) || (newHasTo && hasTo && compare(newTo, to) > 0) || (newHasTo && hasFrom && compare(newTo, from) < 0)) {
+                throw new IllegalArgumentException("Subset is out of range");
+            }
+            return new PersistedSubSet(newHasFrom || hasFrom, newHasFrom ? newFrom : from, newHasTo || hasTo, newHasTo ? newTo : to);
         }
         
         @Override
-        protected void finalize() throws Throwable {
-            cleanup();
-            super.finalize();
+        public E first() {
+            Iterator<E> it = iterator();
+            if (!it.hasNext()) {
+                QueryException qe = new QueryException(DatawaveErrorCode.FETCH_FIRST_ELEMENT_ERROR);
+                throw (NoSuchElementException) (new NoSuchElementException().initCause(qe));
+            }
+            return it.next();
         }
         
+        @Override
+        public E last() {
+            if (!hasTo) {
+                // the last element of the file is the last element of any tail set that is not empty
+                E last = FileSortedSet.this.last();
+                if (inRange(last)) {
+                    return last;
+                }
+                QueryException qe = new QueryException(DatawaveErrorCode.FETCH_LAST_ELEMENT_ERROR);
+                throw (NoSuchElementException) (new NoSuchElementException().initCause(qe));
+            }
+            boolean gotLast = false;
+            E last = null;
+            for (Iterator<E> it = iterator(); it.hasNext();) {
+                last = it.next();
+                gotLast = true;
+            }
+            if (!gotLast) {
+                QueryException qe = new QueryException(DatawaveErrorCode.FETCH_LAST_ELEMENT_ERROR);
+                throw (NoSuchElementException) (new NoSuchElementException().initCause(qe));
+            }
+            return last;
+        }
     }
     
     /********* Some utilities ***********/
     
+    @SuppressWarnings("unchecked")
+    private int compare(E o1, E o2) {
+        if (set.comparator() == null) {
+            return ((Comparable<? super E>) o1).compareTo(o2);
+        } else {
+            return set.comparator().compare(o1, o2);
+        }
+    }
+    
     private boolean equals(E o1, E o2) {
         if (o1 == null) {
             return o2 == null;
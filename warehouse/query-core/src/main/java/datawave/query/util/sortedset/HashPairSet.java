@@ -0,0 +1,220 @@
+package datawave.query.util.sortedset;
+
+import java.util.Arrays;
+
+/**
+ * A set of 128 bit hashes, each held as a pair of longs, in a primitive open addressing hash table. This uses 16 bytes per slot and no objects per entry, as
+ * opposed to the hundred or so bytes per entry of a HashSet of byte arrays.
+ * <p>
+ * The hashes are expected to be uniformly distributed, so the low bits are used directly as the slot. The pair (0, 0) marks an empty slot and is tracked
+ * separately.
+ */
+public class HashPairSet {
+    private static final double LOAD_FACTOR = 0.5;
+    private static final int MIN_CAPACITY = 16;
+    
+    // pairs of hi, lo
+    private long[] table;
+    private int mask;
+    private int size = 0;
+    private boolean containsZero = false;
+    
+    public HashPairSet() {
+        this(MIN_CAPACITY);
+    }
+    
+    public HashPairSet(int expectedSize) {
+        allocate(tableSlots(expectedSize));
+    }
+    
+    private static int tableSlots(int expectedSize) {
+        int slots = MIN_CAPACITY;
+        while (slots * LOAD_FACTOR < expectedSize) {
+            slots <<= 1;
+        }
+        return slots;
+    }
+    
+    private void allocate(int slots) {
+        this.table = new long[slots * 2];
+        this.mask = slots - 1;
+    }
+    
+    private int slot(long hi, long lo) {
+        return (int) (lo ^ (hi >>> 32)) & mask;
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    /**
+     * @return the bytes used by the table
+     */
+    public long getMemoryUsage() {
+        return table.length * 8L;
+    }
+    
+    /**
+     * @return true if adding another hash will grow the table
+     */
+    public boolean isFull() {
+        return size + 1 > (table.length / 2) * LOAD_FACTOR;
+    }
+    
+    /**
+     * @return the bytes that will be used by the table after it next grows
+     */
+    public long getGrownMemoryUsage() {
+        return table.length * 16L;
+    }
+    
+    public boolean contains(long hi, long lo) {
+        if (hi == 0 && lo == 0) {
+            return containsZero;
+        }
+        int slot = slot(hi, lo);
+        while (true) {
+            long slotHi = table[slot * 2];
+            long slotLo = table[slot * 2 + 1];
+            if (slotHi == hi && slotLo == lo) {
+                return true;
+            } else if (slotHi == 0 && slotLo == 0) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+    
+    /**
+     * Add a hash
+     *
+     * @param hi
+     * @param lo
+     * @return true if the hash was not already in the set
+     */
+    public boolean add(long hi, long lo) {
+        if (hi == 0 && lo == 0) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            size++;
+            return true;
+        }
+        if (isFull()) {
+            grow();
+        }
+        int slot = slot(hi, lo);
+        while (true) {
+            long slotHi = table[slot * 2];
+            long slotLo = table[slot * 2 + 1];
+            if (slotHi == hi && slotLo == lo) {
+                return false;
+            } else if (slotHi == 0 && slotLo == 0) {
+                table[slot * 2] = hi;
+                table[slot * 2 + 1] = lo;
+                size++;
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+    
+    private void grow() {
+        long[] old = table;
+        allocate((mask + 1) << 1);
+        for (int i = 0; i < old.length; i += 2) {
+            long hi = old[i];
+            long lo = old[i + 1];
+            if (hi != 0 || lo != 0) {
+                int slot = slot(hi, lo);
+                while (table[slot * 2] != 0 || table[slot * 2 + 1] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot * 2] = hi;
+                table[slot * 2 + 1] = lo;
+            }
+        }
+    }
+    
+    /**
+     * Remove all hashes, keeping the table allocated
+     */
+    public void clear() {
+        Arrays.fill(table, 0L);
+        size = 0;
+        containsZero = false;
+    }
+    
+    /**
+     * @return the hashes as hi, lo pairs sorted by {@link #compare(long, long, long, long)}
+     */
+    public long[] toSortedArray() {
+        long[] pairs = new long[size * 2];
+        int index = 0;
+        if (containsZero) {
+            index += 2;
+        }
+        for (int i = 0; i < table.length; i += 2) {
+            if (table[i] != 0 || table[i + 1] != 0) {
+                pairs[index++] = table[i];
+                pairs[index++] = table[i + 1];
+            }
+        }
+        sort(pairs, 0, size - 1);
+        return pairs;
+    }
+    
+    /**
+     * Compare two hashes as unsigned 128 bit values
+     */
+    public static int compare(long hi1, long lo1, long hi2, long lo2) {
+        int comparison = Long.compare(hi1 + Long.MIN_VALUE, hi2 + Long.MIN_VALUE);
+        if (comparison == 0) {
+            comparison = Long.compare(lo1 + Long.MIN_VALUE, lo2 + Long.MIN_VALUE);
+        }
+        return comparison;
+    }
+    
+    private static int compare(long[] pairs, int i, int j) {
+        return compare(pairs[i * 2], pairs[i * 2 + 1], pairs[j * 2], pairs[j * 2 + 1]);
+    }
+    
+    private static void swap(long[] pairs, int i, int j) {
+        long hi = pairs[i * 2];
+        long lo = pairs[i * 2 + 1];
+        pairs[i * 2] = pairs[j * 2];
+        pairs[i * 2 + 1] = pairs[j * 2 + 1];
+        pairs[j * 2] = hi;
+        pairs[j * 2 + 1] = lo;
+    }
+    
+    /**
+     * Quicksort the pairs from low to high inclusive. The hashes are random, so the middle pair is a good pivot.
+     */
+    private static void sort(long[] pairs, int low, int high) {
+        while (low < high) {
+            swap(pairs, (low + high) >>> 1, high);
+            int store = low;
+            for (int i = low; i < high; i++) {
+                if (compare(pairs, i, high) < 0) {
+                    swap(pairs, i, store++);
+                }
+            }
+            swap(pairs, store, high);
+            // recurse into the smaller side to bound the stack depth
+            if (store - low < high - store) {
+                sort(pairs, low, store - 1);
+                low = store + 1;
+            } else {
+                sort(pairs, store + 1, high);
+                high = store - 1;
+            }
+        }
+    }
+}
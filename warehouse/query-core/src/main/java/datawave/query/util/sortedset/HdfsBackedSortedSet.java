@@ -2,6 +2,7 @@ package datawave.query.util.sortedset;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -10,8 +11,6 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.SortedSet;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 import datawave.query.iterator.ivarator.IvaratorCacheDir;
 import datawave.query.util.sortedset.FileSortedSet.SortedSetFileHandler;
@@ -183,26 +182,33 @@ public class HdfsBackedSortedSet<E extends Serializable> extends BufferedFileBac
         }
         
         @Override
-        public SortedSetInputStream getSortedSetInputStream() throws IOException {
-            // only need to compress if we are using a local file system
-            return new SortedSetInputStream(getInputStream(), "file".equals(getScheme()));
+        public InputStream getInputStream() throws IOException {
+            if (log.isDebugEnabled()) {
+                log.debug("Reading " + file);
+            }
+            return new BufferedInputStream(fs.open(file));
         }
         
         @Override
-        public InputStream getInputStream() throws IOException {
+        public SortedSetRandomAccess getRandomAccess() throws IOException {
             if (log.isDebugEnabled()) {
                 log.debug("Reading " + file);
             }
-            return new BufferedInputStream(fs.open(file));
+            // local ivarator cache dirs are memory mapped
+            if ("file".equals(getScheme())) {
+                return new SortedSetRandomAccess.MappedFile(new File(file.toUri().getPath()));
+            }
+            return new SortedSetRandomAccess.HadoopFile(fs.open(file), fs.getFileStatus(file).getLen());
         }
         
         @Override
-        public SortedSetOutputStream getSortedSetOutputStream() throws IOException {
+        public boolean isCompressed() {
             // only need to compress if we are using a local file system
-            return new SortedSetOutputStream(getOutputStream(), "file".equals(getScheme()));
+            return "file".equals(getScheme());
         }
         
-        private OutputStream getOutputStream() throws IOException {
+        @Override
+        public OutputStream getOutputStream() throws IOException {
             if (log.isDebugEnabled()) {
                 log.debug("Creating " + file);
             }
@@ -0,0 +1,150 @@
+package datawave.query.util.sortedset;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.log4j.Logger;
+
+import datawave.query.util.TserverSingleton;
+
+/**
+ * A tserver wide budget for the off heap memory used by {@link OffHeapSortedSetBuffer}s. Buffers reserve memory before growing and release it when cleared.
+ * When the budget is exhausted, a reservation waits for other buffers to release memory, which applies back-pressure to the ivarators filling them. If no
+ * memory is released in time the reservation fails, and the owner of the buffer is expected to persist it to disk.
+ * <p>
+ * The budget is configured with the {@value #OFFHEAP_BYTES_PROP} tserver property. Off heap buffers are disabled unless it is set to a positive value.
+ */
+public class OffHeapBufferBudget {
+    private static final Logger log = Logger.getLogger(OffHeapBufferBudget.class);
+    public static final String OFFHEAP_BYTES_PROP = "tserver.datawave.ivarator.offheap.bytes";
+    public static final String OFFHEAP_WAIT_PROP = "tserver.datawave.ivarator.offheap.wait.ms";
+    public static final long DEFAULT_WAIT_MILLIS = 1000L;
+    
+    private static final TserverSingleton<OffHeapBufferBudget> instance = new TserverSingleton<>(conf -> {
+        OffHeapBufferBudget budget = new OffHeapBufferBudget(TserverSingleton.getLongProperty(conf, OFFHEAP_BYTES_PROP, 0L), TserverSingleton.getLongProperty(
+                        conf, OFFHEAP_WAIT_PROP, DEFAULT_WAIT_MILLIS));
+        if (budget.isEnabled()) {
+            log.info("Ivarator off heap buffers enabled with a budget of " + budget.getCapacity() + " bytes");
+        }
+        return budget;
+    });
+    
+    private long capacity;
+    private long maxWaitMillis;
+    private long reserved = 0;
+    private long exhaustedCount = 0;
+    
+    public OffHeapBufferBudget(long capacity, long maxWaitMillis) {
+        this.capacity = capacity;
+        this.maxWaitMillis = maxWaitMillis;
+    }
+    
+    /**
+     * Get the tserver wide budget, configuring it from the iterator environment the first time it is requested
+     *
+     * @param env
+     * @return the budget
+     */
+    public static OffHeapBufferBudget instance(IteratorEnvironment env) {
+        return instance.get(env);
+    }
+    
+    public synchronized boolean isEnabled() {
+        return capacity > 0;
+    }
+    
+    public synchronized long getCapacity() {
+        return capacity;
+    }
+    
+    public synchronized void setCapacity(long capacity) {
+        this.capacity = capacity;
+        notifyAll();
+    }
+    
+    public synchronized long getReserved() {
+        return reserved;
+    }
+    
+    public synchronized long getAvailable() {
+        return Math.max(0, capacity - reserved);
+    }
+    
+    /**
+     * @return the number of reservations that failed because the budget was exhausted
+     */
+    public synchronized long getExhaustedCount() {
+        return exhaustedCount;
+    }
+    
+    /**
+     * Reserve memory, waiting up to the configured wait time for other buffers to release memory if the budget is exhausted
+     *
+     * @param bytes
+     * @return true if reserved, false if the budget remained exhausted
+     */
+    public boolean reserve(long bytes) {
+        return reserve(bytes, maxWaitMillis);
+    }
+    
+    /**
+     * Reserve memory, waiting up to maxWaitMillis for other buffers to release memory if the budget is exhausted
+     *
+     * @param bytes
+     * @param maxWaitMillis
+     * @return true if reserved, false if the budget remained exhausted
+     */
+    public synchronized boolean reserve(long bytes, long maxWaitMillis) {
+        if (bytes > capacity) {
+            exhaustedCount++;
+            return false;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        while (reserved + bytes > capacity) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                exhaustedCount++;
+                return false;
+            }
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                exhaustedCount++;
+                return false;
+            }
+        }
+        reserved += bytes;
+        return true;
+    }
+    
+    /**
+     * Release previously reserved memory
+     *
+     * @param bytes
+     */
+    public synchronized void release(long bytes) {
+        reserved -= bytes;
+        if (reserved < 0) {
+            log.warn("Released more off heap memory than was reserved");
+            reserved = 0;
+        }
+        notifyAll();
+    }
+    
+    @Override
+    public synchronized String toString() {
+        return "OffHeapBufferBudget(" + reserved + " of " + capacity + " bytes reserved)";
+    }
+    
+    /**
+     * Thrown when a buffer is unable to grow because the budget is exhausted
+     */
+    public static class BudgetExhaustedException extends IllegalStateException {
+        private static final long serialVersionUID = 4226213371318392516L;
+        
+        public BudgetExhaustedException(String message) {
+            super(message);
+        }
+    }
+}
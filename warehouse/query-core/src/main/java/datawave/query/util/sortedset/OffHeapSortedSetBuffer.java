@@ -0,0 +1,611 @@
+package datawave.query.util.sortedset;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+
+import datawave.webservice.query.exception.DatawaveErrorCode;
+import datawave.webservice.query.exception.QueryException;
+
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+
+/**
+ * A sorted set which keeps its entries off heap, in a direct byte buffer, with only primitive arrays of offsets and lengths in sorted order on the heap. This
+ * follows the same approach as the {@link SortedByteSetBuffer}, but avoids holding any per entry objects on the heap while an ivarator fills its buffer.
+ * <p>
+ * Entries are stored using an {@link Encoding} which must preserve the order of the entries under an unsigned byte comparison, so that entries can be compared
+ * in place without being decoded. The direct buffer grows as needed, reserving memory from an {@link OffHeapBufferBudget} first. If the budget is exhausted,
+ * then add will throw a {@link OffHeapBufferBudget.BudgetExhaustedException} and the set is left unmodified. Clearing the set releases its memory.
+ *
+ * @param <E>
+ */
+public class OffHeapSortedSetBuffer<E> extends AbstractSet<E> implements SortedSet<E> {
+    public static final int DEFAULT_INITIAL_CAPACITY = 64 * 1024;
+    public static final int DEFAULT_INDEX_SIZE = 1024;
+    
+    private final Encoding<E> encoding;
+    private final OffHeapBufferBudget budget;
+    private final int initialCapacity;
+    
+    protected ByteBuffer data = null;
+    protected int[] offsets;
+    protected int[] lengths;
+    protected int size = 0;
+    protected int dataSize = 0;
+    protected int modCount = 0;
+    
+    /**
+     * An order preserving, reversible encoding of entries into bytes
+     *
+     * @param <E>
+     */
+    public interface Encoding<E> {
+        /**
+         * Encode an entry such that an unsigned byte comparison of encoded entries matches the comparator
+         *
+         * @param e
+         * @return the encoded entry
+         */
+        byte[] encode(E e);
+        
+        E decode(byte[] bytes);
+        
+        /**
+         * @return the comparator matching the encoded order, or null for the natural ordering
+         */
+        Comparator<? super E> comparator();
+    }
+    
+    public OffHeapSortedSetBuffer(Encoding<E> encoding, OffHeapBufferBudget budget) {
+        this(encoding, budget, DEFAULT_INITIAL_CAPACITY);
+    }
+    
+    public OffHeapSortedSetBuffer(Encoding<E> encoding, OffHeapBufferBudget budget, int initialCapacity) {
+        this.encoding = encoding;
+        this.budget = budget;
+        this.initialCapacity = initialCapacity;
+        this.offsets = new int[DEFAULT_INDEX_SIZE];
+        this.lengths = new int[DEFAULT_INDEX_SIZE];
+    }
+    
+    /************************** Overridden methods *************************/
+    
+    @Override
+    public int size() {
+        return size;
+    }
+    
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    @SuppressWarnings("unchecked")
+    @Override
+    public boolean contains(Object o) {
+        try {
+            return binarySearch(encoding.encode((E) o), 0, size - 1) >= 0;
+        } catch (ClassCastException e) {
+            return false;
+        }
+    }
+    
+    @Override
+    public Iterator<E> iterator() {
+        return new BufferIterator(0, size);
+    }
+    
+    @Override
+    public boolean add(E e) {
+        byte[] term = encoding.encode(e);
+        int index = binarySearch(term, 0, size - 1);
+        if (index < 0) {
+            add(-1 - index, term);
+            return true;
+        }
+        return false;
+    }
+    
+    @SuppressWarnings("unchecked")
+    @Override
+    public boolean remove(Object o) {
+        int index;
+        try {
+            index = binarySearch(encoding.encode((E) o), 0, size - 1);
+        } catch (ClassCastException e) {
+            return false;
+        }
+        if (index >= 0) {
+            remove(index);
+            return true;
+        }
+        return false;
+    }
+    
+    @Override
+    public void clear() {
+        modCount++;
+        size = 0;
+        dataSize = 0;
+        if (data != null) {
+            budget.release(data.capacity());
+            data = null;
+        }
+        offsets = new int[DEFAULT_INDEX_SIZE];
+        lengths = new int[DEFAULT_INDEX_SIZE];
+    }
+    
+    @Override
+    public Comparator<? super E> comparator() {
+        return encoding.comparator();
+    }
+    
+    @Override
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        return new SubSetBuffer(encoding.encode(fromElement), encoding.encode(toElement));
+    }
+    
+    @Override
+    public SortedSet<E> headSet(E toElement) {
+        return new SubSetBuffer(null, encoding.encode(toElement));
+    }
+    
+    @Override
+    public SortedSet<E> tailSet(E fromElement) {
+        return new SubSetBuffer(encoding.encode(fromElement), null);
+    }
+    
+    @Override
+    public E first() {
+        if (size == 0) {
+            QueryException qe = new QueryException(DatawaveErrorCode.FETCH_FIRST_ELEMENT_ERROR);
+            throw (NoSuchElementException) (new NoSuchElementException().initCause(qe));
+        }
+        return get(0);
+    }
+    
+    @Override
+    public E last() {
+        if (size == 0) {
+            QueryException qe = new QueryException(DatawaveErrorCode.FETCH_LAST_ELEMENT_ERROR);
+            throw (NoSuchElementException) (new NoSuchElementException().initCause(qe));
+        }
+        return get(size - 1);
+    }
+    
+    /***************************** Other public methods *************************/
+    
+    public E get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index is out of range");
+        }
+        byte[] term = new byte[lengths[index]];
+        ByteBuffer view = data.duplicate();
+        view.position(offsets[index]);
+        view.get(term);
+        return encoding.decode(term);
+    }
+    
+    /**
+     * @return the number of off heap bytes held by this buffer
+     */
+    public int getCapacity() {
+        return (data == null ? 0 : data.capacity());
+    }
+    
+    /**
+     * @return the number of encoded bytes stored in this buffer
+     */
+    public int getDataSize() {
+        return dataSize;
+    }
+    
+    @Override
+    protected void finalize() throws Throwable {
+        // ensure the reservation is returned to the budget if this buffer was dropped without being cleared
+        if (data != null) {
+            budget.release(data.capacity());
+            data = null;
+        }
+        super.finalize();
+    }
+    
+    /******************************* The protected stuff ***************************/
+    
+    protected void checkCapacity(int plusSize) {
+        int minCapacity = dataSize + plusSize;
+        if (minCapacity < 0) {
+            throw new OffHeapBufferBudget.BudgetExhaustedException("Off heap buffer cannot grow beyond " + Integer.MAX_VALUE + " bytes");
+        }
+        int oldCapacity = (data == null ? 0 : data.capacity());
+        if (minCapacity > oldCapacity) {
+            int newCapacity = Math.max(initialCapacity, (int) Math.min(Integer.MAX_VALUE, (oldCapacity * 3L) / 2 + 1));
+            if (newCapacity < minCapacity) {
+                newCapacity = minCapacity;
+            }
+            if (!budget.reserve(newCapacity)) {
+                throw new OffHeapBufferBudget.BudgetExhaustedException("Unable to reserve " + newCapacity + " bytes from " + budget);
+            }
+            ByteBuffer newData = ByteBuffer.allocateDirect(newCapacity);
+            if (data != null) {
+                ByteBuffer old = data.duplicate();
+                old.position(0).limit(dataSize);
+                newData.put(old);
+                budget.release(oldCapacity);
+            }
+            data = newData;
+        }
+        if (size + 1 > offsets.length) {
+            int newLen = (offsets.length * 3) / 2 + 1;
+            offsets = Arrays.copyOf(offsets, newLen);
+            lengths = Arrays.copyOf(lengths, newLen);
+        }
+    }
+    
+    protected void add(int index, byte[] term) {
+        checkCapacity(term.length);
+        modCount++;
+        ByteBuffer view = data.duplicate();
+        view.position(dataSize);
+        view.put(term);
+        System.arraycopy(offsets, index, offsets, index + 1, size - index);
+        System.arraycopy(lengths, index, lengths, index + 1, size - index);
+        offsets[index] = dataSize;
+        lengths[index] = term.length;
+        dataSize += term.length;
+        size++;
+    }
+    
+    protected void remove(int index) {
+        modCount++;
+        int offset = offsets[index];
+        int length = lengths[index];
+        // shift the data following the removed entry down
+        byte[] tail = new byte[dataSize - offset - length];
+        ByteBuffer view = data.duplicate();
+        view.position(offset + length);
+        view.get(tail);
+        view.position(offset);
+        view.put(tail);
+        dataSize -= length;
+        size--;
+        System.arraycopy(offsets, index + 1, offsets, index, size - index);
+        System.arraycopy(lengths, index + 1, lengths, index, size - index);
+        for (int i = 0; i < size; i++) {
+            if (offsets[i] > offset) {
+                offsets[i] -= length;
+            }
+        }
+    }
+    
+    /**
+     * An unsigned comparison of the entry at the specified index with an encoded term
+     */
+    protected int compare(int index, byte[] term) {
+        int offset = offsets[index];
+        int length = lengths[index];
+        int minSize = Math.min(length, term.length);
+        for (int i = 0; i < minSize; i++) {
+            int comparison = (data.get(offset + i) & 0xff) - (term[i] & 0xff);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return length - term.length;
+    }
+    
+    protected int binarySearch(byte[] term, int start, int end) {
+        while (start <= end) {
+            int middle = (start + end) >>> 1;
+            int comparison = compare(middle, term);
+            
+            if (comparison < 0)
+                start = middle + 1;
+            else if (comparison > 0)
+                end = middle - 1;
+            else
+                return middle;
+        }
+        // return a negative index if not found so we know where it should go
+        return -(start + 1);
+    }
+    
+    protected int insertionPoint(byte[] term) {
+        int index = binarySearch(term, 0, size - 1);
+        return (index < 0 ? -1 - index : index);
+    }
+    
+    protected static int compareTerms(byte[] a, byte[] b) {
+        int minSize = Math.min(a.length, b.length);
+        for (int i = 0; i < minSize; i++) {
+            int comparison = (a[i] & 0xff) - (b[i] & 0xff);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return a.length - b.length;
+    }
+    
+    protected class BufferIterator implements Iterator<E> {
+        protected int index;
+        protected int end;
+        protected int expectedModCount;
+        protected int last = -1;
+        
+        public BufferIterator(int start, int end) {
+            this.expectedModCount = modCount;
+            this.index = start;
+            this.end = end;
+        }
+        
+        final void checkModCount() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+        
+        @Override
+        public boolean hasNext() {
+            checkModCount();
+            return index < end;
+        }
+        
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                QueryException qe = new QueryException(DatawaveErrorCode.FETCH_NEXT_ELEMENT_ERROR);
+                throw (NoSuchElementException) (new NoSuchElementException().initCause(qe));
+            }
+            last = index;
+            return get(index++);
+        }
+        
+        @Override
+        public void remove() {
+            checkModCount();
+            if (last >= 0) {
+                OffHeapSortedSetBuffer.this.remove(last);
+                index--;
+                end--;
+                last = -1;
+                expectedModCount = modCount;
+            } else {
+                throw new IllegalStateException("next needs to be called first");
+            }
+        }
+    }
+    
+    /**
+     * A view of a range of the buffer. The bounds are held in their encoded form.
+     */
+    protected class SubSetBuffer extends AbstractSet<E> implements SortedSet<E> {
+        protected final byte[] from;
+        protected final byte[] to;
+        
+        public SubSetBuffer(byte[] from, byte[] to) {
+            if (from != null && to != null && compareTerms(from, to) > 0) {
+                throw new IllegalArgumentException("The start is greater than the end");
+            }
+            this.from = from;
+            this.to = to;
+        }
+        
+        private boolean inRange(byte[] term) {
+            return (from == null || compareTerms(term, from) >= 0) && (to == null || compareTerms(term, to) < 0);
+        }
+        
+        private int start() {
+            return (from == null ? 0 : insertionPoint(from));
+        }
+        
+        private int end() {
+            return (to == null ? size : insertionPoint(to));
+        }
+        
+        @Override
+        public Comparator<? super E> comparator() {
+            return OffHeapSortedSetBuffer.this.comparator();
+        }
+        
+        @Override
+        public SortedSet<E> subSet(E fromElement, E toElement) {
+            return narrow(encoding.encode(fromElement), encoding.encode(toElement));
+        }
+        
+        @Override
+        public SortedSet<E> headSet(E toElement) {
+            return narrow(from, encoding.encode(toElement));
+        }
+        
+        @Override
+        public SortedSet<E> tailSet(E fromElement) {
+            return narrow(encoding.encode(fromElement), to);
+        }
+        
+        private SortedSet<E> narrow(byte[] newFrom, byte[] newTo) {
+            if ((from != null && compareTerms(newFrom, from) < 0) || (to != null && compareTerms(to, newTo) < 0)) {
+                throw new IllegalArgumentException("Cannot create subset outside of the range of this subset");
+            }
+            return new SubSetBuffer(newFrom, newTo);
+        }
+        
+        @Override
+        public E first() {
+            int start = start();
+            if (start >= end()) {
+                QueryException qe = new QueryException(DatawaveErrorCode.FETCH_FIRST_ELEMENT_ERROR);
+                throw (NoSuchElementException) (new NoSuchElementException().initCause(qe));
+            }
+            return get(start);
+        }
+        
+        @Override
+        public E last() {
+            int end = end();
+            if (start() >= end) {
+                QueryException qe = new QueryException(DatawaveErrorCode.FETCH_LAST_ELEMENT_ERROR);
+                throw (NoSuchElementException) (new NoSuchElementException().initCause(qe));
+            }
+            return get(end - 1);
+        }
+        
+        @Override
+        public Iterator<E> iterator() {
+            int start = start();
+            return new BufferIterator(start, Math.max(start, end()));
+        }
+        
+        @Override
+        public int size() {
+            return Math.max(0, end() - start());
+        }
+        
+        @SuppressWarnings("unchecked")
+        @Override
+        public boolean contains(Object o) {
+            byte[] term;
+            try {
+                term = encoding.encode((E) o);
+            } catch (ClassCastException e) {
+                return false;
+            }
+            return inRange(term) && binarySearch(term, 0, size - 1) >= 0;
+        }
+        
+        @Override
+        public boolean add(E e) {
+            if (!inRange(encoding.encode(e))) {
+                throw new IllegalArgumentException("Cannot add element outside of subset range");
+            }
+            return OffHeapSortedSetBuffer.this.add(e);
+        }
+        
+        @Override
+        public boolean remove(Object o) {
+            if (contains(o)) {
+                return OffHeapSortedSetBuffer.this.remove(o);
+            }
+            return false;
+        }
+    }
+    
+    /********* Encodings ***********/
+    
+    /**
+     * Encodes byte arrays in the order of the {@link ByteArrayComparator}, which compares signed bytes, by flipping the sign bit of every byte.
+     */
+    public static class ByteArrayEncoding implements Encoding<byte[]> {
+        @Override
+        public byte[] encode(byte[] e) {
+            byte[] encoded = new byte[e.length];
+            for (int i = 0; i < e.length; i++) {
+                encoded[i] = (byte) (e[i] ^ 0x80);
+            }
+            return encoded;
+        }
+        
+        @Override
+        public byte[] decode(byte[] bytes) {
+            // flipping the sign bit is its own inverse
+            return encode(bytes);
+        }
+        
+        @Override
+        public Comparator<? super byte[]> comparator() {
+            return new ByteArrayComparator();
+        }
+    }
+    
+    /**
+     * Encodes KeyValueSerializables in their natural order: the row, column family, column qualifier, and column visibility as escaped, terminated byte
+     * strings, followed by the inverted timestamp, the delete flag, and the value with its sign bits flipped to match the {@link ByteArrayComparator}.
+     */
+    public static class KeyValueEncoding implements Encoding<KeyValueSerializable> {
+        private static final int ESCAPE = 0x00;
+        private static final int ESCAPED_ZERO = 0xff;
+        private static final int TERMINATOR = 0x00;
+        
+        @Override
+        public byte[] encode(KeyValueSerializable e) {
+            Key key = e.key;
+            ByteArrayOutputStream out = new ByteArrayOutputStream(key.getSize() + e.value.length + 32);
+            writeEscaped(out, key.getRowData());
+            writeEscaped(out, key.getColumnFamilyData());
+            writeEscaped(out, key.getColumnQualifierData());
+            writeEscaped(out, key.getColumnVisibilityData());
+            // flipping the sign bit orders timestamps as unsigned values, and inverting them sorts the latest first
+            long timestamp = ~(key.getTimestamp() ^ Long.MIN_VALUE);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                out.write((int) (timestamp >>> shift));
+            }
+            // deleted keys sort first
+            out.write(key.isDeleted() ? 0 : 1);
+            for (byte b : e.value) {
+                out.write(b ^ 0x80);
+            }
+            return out.toByteArray();
+        }
+        
+        private static void writeEscaped(ByteArrayOutputStream out, ByteSequence bytes) {
+            for (int i = 0; i < bytes.length(); i++) {
+                int b = bytes.byteAt(i) & 0xff;
+                out.write(b);
+                if (b == ESCAPE) {
+                    out.write(ESCAPED_ZERO);
+                }
+            }
+            out.write(ESCAPE);
+            out.write(TERMINATOR);
+        }
+        
+        @Override
+        public KeyValueSerializable decode(byte[] bytes) {
+            int[] position = new int[] {0};
+            byte[] row = readEscaped(bytes, position);
+            byte[] cf = readEscaped(bytes, position);
+            byte[] cq = readEscaped(bytes, position);
+            byte[] cv = readEscaped(bytes, position);
+            long timestamp = 0;
+            for (int i = 0; i < 8; i++) {
+                timestamp = (timestamp << 8) | (bytes[position[0]++] & 0xff);
+            }
+            timestamp = ~timestamp ^ Long.MIN_VALUE;
+            boolean deleted = (bytes[position[0]++] == 0);
+            byte[] value = new byte[bytes.length - position[0]];
+            for (int i = 0; i < value.length; i++) {
+                value[i] = (byte) (bytes[position[0] + i] ^ 0x80);
+            }
+            Key key = new Key(row, cf, cq, cv, timestamp, deleted, false);
+            return new KeyValueSerializable(key, value);
+        }
+        
+        private static byte[] readEscaped(byte[] bytes, int[] position) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int i = position[0];
+            while (true) {
+                int b = bytes[i++] & 0xff;
+                if (b == ESCAPE) {
+                    int next = bytes[i++] & 0xff;
+                    if (next == TERMINATOR) {
+                        break;
+                    }
+                }
+                out.write(b);
+            }
+            position[0] = i;
+            return out.toByteArray();
+        }
+        
+        @Override
+        public Comparator<? super KeyValueSerializable> comparator() {
+            // the natural ordering
+            return null;
+        }
+    }
+}
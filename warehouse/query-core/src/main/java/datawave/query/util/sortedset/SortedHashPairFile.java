@@ -0,0 +1,238 @@
+package datawave.query.util.sortedset;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * A sorted run of 128 bit hashes spilled from a {@link HashPairSet}. The file is a plain sequence of 16 byte big endian hi, lo pairs in unsigned order. The
+ * first hash of every block of {@value #BLOCK_PAIRS} pairs is kept in memory, so a lookup is a binary search of that index followed by a binary search of a
+ * single block read from the memory mapped file.
+ */
+public class SortedHashPairFile implements Closeable {
+    public static final int PAIR_LENGTH = 16;
+    public static final int BLOCK_PAIRS = 256;
+    
+    private final File file;
+    private final long size;
+    // the first hash of each block as hi, lo pairs
+    private final long[] index;
+    private SortedSetRandomAccess access;
+    
+    private SortedHashPairFile(File file, long size, long[] index) throws IOException {
+        this.file = file;
+        this.size = size;
+        this.index = index;
+        this.access = (size == 0 ? null : new SortedSetRandomAccess.MappedFile(file));
+    }
+    
+    /**
+     * Write a sorted array of hi, lo pairs to a file
+     *
+     * @param file
+     * @param sortedPairs
+     * @return the sorted run
+     * @throws IOException
+     */
+    public static SortedHashPairFile write(File file, long[] sortedPairs) throws IOException {
+        Writer writer = new Writer(file, sortedPairs.length / 2);
+        for (int i = 0; i < sortedPairs.length; i += 2) {
+            writer.append(sortedPairs[i], sortedPairs[i + 1]);
+        }
+        return writer.close();
+    }
+    
+    /**
+     * Merge sorted runs into a single sorted run, dropping duplicate hashes
+     *
+     * @param file
+     * @param runs
+     * @return the merged run
+     * @throws IOException
+     */
+    public static SortedHashPairFile merge(File file, List<SortedHashPairFile> runs) throws IOException {
+        long total = 0;
+        for (SortedHashPairFile run : runs) {
+            total += run.size();
+        }
+        PriorityQueue<PairReader> readers = new PriorityQueue<>((a, b) -> HashPairSet.compare(a.hi, a.lo, b.hi, b.lo));
+        Writer writer = new Writer(file, total);
+        try {
+            for (SortedHashPairFile run : runs) {
+                PairReader reader = new PairReader(run.file);
+                if (reader.next()) {
+                    readers.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+            boolean first = true;
+            long lastHi = 0;
+            long lastLo = 0;
+            while (!readers.isEmpty()) {
+                PairReader reader = readers.poll();
+                if (first || reader.hi != lastHi || reader.lo != lastLo) {
+                    writer.append(reader.hi, reader.lo);
+                    lastHi = reader.hi;
+                    lastLo = reader.lo;
+                    first = false;
+                }
+                if (reader.next()) {
+                    readers.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+        } finally {
+            for (PairReader reader : readers) {
+                reader.close();
+            }
+        }
+        return writer.close();
+    }
+    
+    public File getFile() {
+        return file;
+    }
+    
+    public long size() {
+        return size;
+    }
+    
+    /**
+     * @return the bytes of memory held for the block index
+     */
+    public long getMemoryUsage() {
+        return index.length * 8L;
+    }
+    
+    public boolean contains(long hi, long lo) throws IOException {
+        if (size == 0) {
+            return false;
+        }
+        
+        // find the last block whose first hash is not greater than the one we are looking for
+        int low = 0;
+        int high = index.length / 2 - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (HashPairSet.compare(index[mid * 2], index[mid * 2 + 1], hi, lo) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        int block = high;
+        if (block < 0) {
+            return false;
+        }
+        
+        long start = (long) block * BLOCK_PAIRS;
+        int count = (int) Math.min(BLOCK_PAIRS, size - start);
+        byte[] bytes = new byte[count * PAIR_LENGTH];
+        access.readFully(start * PAIR_LENGTH, bytes, 0, bytes.length);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        low = 0;
+        high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int comparison = HashPairSet.compare(buffer.getLong(mid * PAIR_LENGTH), buffer.getLong(mid * PAIR_LENGTH + 8), hi, lo);
+            if (comparison == 0) {
+                return true;
+            } else if (comparison < 0) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return false;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        if (access != null) {
+            access.close();
+            access = null;
+        }
+    }
+    
+    /**
+     * Close and delete the file
+     *
+     * @return true if the file was deleted
+     */
+    public boolean delete() throws IOException {
+        close();
+        return file.delete();
+    }
+    
+    private static class Writer {
+        private final File file;
+        private final DataOutputStream output;
+        private final long[] index;
+        private long count = 0;
+        
+        Writer(File file, long expectedSize) throws IOException {
+            this.file = file;
+            this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+            this.index = new long[(int) ((expectedSize + BLOCK_PAIRS - 1) / BLOCK_PAIRS) * 2];
+        }
+        
+        void append(long hi, long lo) throws IOException {
+            if (count % BLOCK_PAIRS == 0) {
+                int block = (int) (count / BLOCK_PAIRS);
+                index[block * 2] = hi;
+                index[block * 2 + 1] = lo;
+            }
+            output.writeLong(hi);
+            output.writeLong(lo);
+            count++;
+        }
+        
+        SortedHashPairFile close() throws IOException {
+            output.close();
+            int blocks = (int) ((count + BLOCK_PAIRS - 1) / BLOCK_PAIRS);
+            long[] trimmed = index;
+            if (blocks * 2 != index.length) {
+                trimmed = new long[blocks * 2];
+                System.arraycopy(index, 0, trimmed, 0, trimmed.length);
+            }
+            return new SortedHashPairFile(file, count, trimmed);
+        }
+    }
+    
+    private static class PairReader implements Closeable {
+        private final DataInputStream input;
+        private long hi;
+        private long lo;
+        
+        PairReader(File file) throws IOException {
+            this.input = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+        }
+        
+        boolean next() throws IOException {
+            try {
+                hi = input.readLong();
+            } catch (EOFException e) {
+                return false;
+            }
+            lo = input.readLong();
+            return true;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+}
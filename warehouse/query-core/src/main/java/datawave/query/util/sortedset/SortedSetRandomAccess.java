@@ -0,0 +1,125 @@
+package datawave.query.util.sortedset;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+
+/**
+ * Positional, read only access to a persisted sorted set file. Implementations must support concurrent reads from multiple iterators over the same file.
+ */
+public interface SortedSetRandomAccess extends Closeable {
+    
+    /**
+     * @return the length of the underlying file in bytes
+     */
+    long length();
+    
+    /**
+     * Read exactly len bytes starting at the specified position in the file
+     *
+     * @param position
+     * @param buffer
+     * @param offset
+     * @param len
+     * @throws IOException
+     */
+    void readFully(long position, byte[] buffer, int offset, int len) throws IOException;
+    
+    /**
+     * A random access over a local file which is memory mapped in segments. The file channel is closed as soon as the file is mapped, so no file handles are
+     * held open while the set is persisted.
+     */
+    class MappedFile implements SortedSetRandomAccess {
+        // mapped buffers are limited to 2GB, so large files are mapped in segments
+        static final int SEGMENT_SIZE = 1 << 30;
+        
+        private final long length;
+        private final int segmentSize;
+        private MappedByteBuffer[] segments;
+        
+        public MappedFile(File file) throws IOException {
+            this(file, SEGMENT_SIZE);
+        }
+        
+        MappedFile(File file, int segmentSize) throws IOException {
+            this.segmentSize = segmentSize;
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+                this.length = channel.size();
+                int numSegments = (int) ((length + segmentSize - 1) / segmentSize);
+                this.segments = new MappedByteBuffer[numSegments];
+                for (int i = 0; i < numSegments; i++) {
+                    long start = (long) i * segmentSize;
+                    segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(segmentSize, length - start));
+                }
+            }
+        }
+        
+        @Override
+        public long length() {
+            return length;
+        }
+        
+        @Override
+        public void readFully(long position, byte[] buffer, int offset, int len) throws IOException {
+            if (segments == null) {
+                throw new IOException("Mapped file has been closed");
+            }
+            if (position < 0 || position + len > length) {
+                throw new EOFException("Unable to read " + len + " bytes at " + position + " from a file of length " + length);
+            }
+            while (len > 0) {
+                int segment = (int) (position / segmentSize);
+                int segmentOffset = (int) (position % segmentSize);
+                int count = Math.min(len, segmentSize - segmentOffset);
+                // duplicate so that concurrent readers do not share a position
+                ByteBuffer view = segments[segment].duplicate();
+                view.position(segmentOffset);
+                view.get(buffer, offset, count);
+                position += count;
+                offset += count;
+                len -= count;
+            }
+        }
+        
+        @Override
+        public void close() {
+            // the mappings are released when garbage collected
+            segments = null;
+        }
+    }
+    
+    /**
+     * A random access over a hadoop file system stream using positional reads
+     */
+    class HadoopFile implements SortedSetRandomAccess {
+        private final FSDataInputStream stream;
+        private final long length;
+        
+        public HadoopFile(FSDataInputStream stream, long length) {
+            this.stream = stream;
+            this.length = length;
+        }
+        
+        @Override
+        public long length() {
+            return length;
+        }
+        
+        @Override
+        public void readFully(long position, byte[] buffer, int offset, int len) throws IOException {
+            stream.readFully(position, buffer, offset, len);
+        }
+        
+        @Override
+        public void close() throws IOException {
+            stream.close();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package datawave.query.util.sortedset;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+/**
+ * An exact set of 128 bit hashes with a bounded memory footprint. Hashes are held in a {@link HashPairSet} until it would grow past the memory budget, at
+ * which point it is sorted and spilled to a {@link SortedHashPairFile} run in the spill directory, in the same way that a {@link BufferedFileBackedSortedSet}
+ * persists its buffers. When there are too many runs they are merged into one. The runs are deleted when the set is closed.
+ * <p>
+ * Without a spill directory the set stops recording new hashes once the budget is reached, and {@link #add(long, long)} will only detect duplicates of hashes
+ * recorded before that point. That is suitable for a best effort filter ahead of an exact one.
+ */
+public class SpillingHashPairSet implements Closeable {
+    private static final Logger log = Logger.getLogger(SpillingHashPairSet.class);
+    public static final int DEFAULT_MAX_RUNS = 10;
+    
+    private final long maxMemory;
+    private final File spillDir;
+    private final int maxRuns;
+    private final HashPairSet memory = new HashPairSet();
+    private final List<SortedHashPairFile> runs = new ArrayList<>();
+    private boolean saturated = false;
+    
+    /**
+     * @param maxMemory
+     *            the maximum bytes of memory to use for hashes
+     * @param spillDir
+     *            the directory to spill hashes to, or null to stop recording hashes when the memory is exhausted
+     */
+    public SpillingHashPairSet(long maxMemory, File spillDir) {
+        this(maxMemory, spillDir, DEFAULT_MAX_RUNS);
+    }
+    
+    public SpillingHashPairSet(long maxMemory, File spillDir, int maxRuns) {
+        this.maxMemory = maxMemory;
+        this.spillDir = spillDir;
+        this.maxRuns = maxRuns;
+    }
+    
+    /**
+     * Add a hash
+     *
+     * @param hi
+     * @param lo
+     * @return false if the hash was previously added, true otherwise
+     * @throws IOException
+     *             if the spilled hashes could not be read or written
+     */
+    public synchronized boolean add(long hi, long lo) throws IOException {
+        if (memory.contains(hi, lo)) {
+            return false;
+        }
+        for (SortedHashPairFile run : runs) {
+            if (run.contains(hi, lo)) {
+                return false;
+            }
+        }
+        if (memory.isFull() && memory.getGrownMemoryUsage() > maxMemory) {
+            if (spillDir == null) {
+                if (!saturated) {
+                    log.debug("Hash set memory of " + maxMemory + " bytes exhausted after " + memory.size() + " hashes; no longer recording hashes");
+                    saturated = true;
+                }
+                return true;
+            }
+            spill();
+        }
+        memory.add(hi, lo);
+        return true;
+    }
+    
+    private void spill() throws IOException {
+        if (!spillDir.exists() && !spillDir.mkdirs() && !spillDir.exists()) {
+            throw new IOException("Unable to create hash spill directory " + spillDir);
+        }
+        File file = File.createTempFile("hashes", ".run", spillDir);
+        try {
+            runs.add(SortedHashPairFile.write(file, memory.toSortedArray()));
+        } catch (IOException e) {
+            file.delete();
+            throw e;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Spilled " + memory.size() + " hashes to " + file);
+        }
+        memory.clear();
+        
+        if (runs.size() > maxRuns) {
+            File merged = File.createTempFile("hashes", ".run", spillDir);
+            SortedHashPairFile run;
+            try {
+                run = SortedHashPairFile.merge(merged, runs);
+            } catch (IOException e) {
+                merged.delete();
+                throw e;
+            }
+            for (SortedHashPairFile old : runs) {
+                old.delete();
+            }
+            runs.clear();
+            runs.add(run);
+        }
+    }
+    
+    /**
+     * @return the number of hashes recorded
+     */
+    public synchronized long size() {
+        long size = memory.size();
+        for (SortedHashPairFile run : runs) {
+            size += run.size();
+        }
+        return size;
+    }
+    
+    /**
+     * @return true if hashes are no longer being recorded because the memory is exhausted and there is no spill directory
+     */
+    public synchronized boolean isSaturated() {
+        return saturated;
+    }
+    
+    public synchronized int getRunCount() {
+        return runs.size();
+    }
+    
+    /**
+     * Delete any spilled runs
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        for (SortedHashPairFile run : runs) {
+            run.delete();
+        }
+        runs.clear();
+        memory.clear();
+    }
+    
+    @Override
+    protected void finalize() throws Throwable {
+        close();
+        super.finalize();
+    }
+}
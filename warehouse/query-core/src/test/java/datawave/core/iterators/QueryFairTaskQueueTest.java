@@ -0,0 +1,129 @@
+package datawave.core.iterators;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class QueryFairTaskQueueTest {
+    
+    private static class Task implements Runnable, QueryFairTaskQueue.QueryTask {
+        private final String queryId;
+        private final int priority;
+        
+        Task(String queryId, int priority) {
+            this.queryId = queryId;
+            this.priority = priority;
+        }
+        
+        @Override
+        public String getQueryId() {
+            return queryId;
+        }
+        
+        @Override
+        public int getPriority() {
+            return priority;
+        }
+        
+        @Override
+        public void run() {}
+    }
+    
+    private static Map<String,Integer> take(QueryFairTaskQueue queue, int count) {
+        Map<String,Integer> counts = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            Task task = (Task) queue.poll();
+            counts.merge(task.getQueryId(), 1, Integer::sum);
+        }
+        return counts;
+    }
+    
+    @Test
+    public void testFairAcrossQueries() {
+        QueryFairTaskQueue queue = new QueryFairTaskQueue();
+        // a heavy query queues all of its tasks before a light query arrives
+        for (int i = 0; i < 100; i++) {
+            queue.offer(new Task("heavy", 1));
+        }
+        for (int i = 0; i < 10; i++) {
+            queue.offer(new Task("light", 1));
+        }
+        assertEquals(110, queue.size());
+        assertEquals(10, queue.size("light"));
+        
+        // the light query is not stuck behind the heavy query
+        Map<String,Integer> counts = take(queue, 20);
+        assertEquals(10, counts.get("heavy").intValue());
+        assertEquals(10, counts.get("light").intValue());
+        assertEquals(90, queue.size());
+    }
+    
+    @Test
+    public void testWeightedByPriority() {
+        QueryFairTaskQueue queue = new QueryFairTaskQueue();
+        for (int i = 0; i < 100; i++) {
+            queue.offer(new Task("low", 1));
+            queue.offer(new Task("high", 3));
+        }
+        Map<String,Integer> counts = take(queue, 40);
+        assertEquals(10, counts.get("low").intValue());
+        assertEquals(30, counts.get("high").intValue());
+    }
+    
+    @Test
+    public void testOrderWithinQuery() {
+        QueryFairTaskQueue queue = new QueryFairTaskQueue();
+        List<Runnable> tasks = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Runnable task = () -> {};
+            tasks.add(task);
+            queue.put(task);
+        }
+        for (Runnable task : tasks) {
+            assertSame(task, queue.peek());
+            assertSame(task, queue.poll());
+        }
+        assertNull(queue.poll());
+    }
+    
+    @Test
+    public void testIdleQueryGetsNoCredit() {
+        QueryFairTaskQueue queue = new QueryFairTaskQueue();
+        for (int i = 0; i < 50; i++) {
+            queue.offer(new Task("busy", 1));
+        }
+        take(queue, 40);
+        // a query arriving late shares the queue from now on rather than catching up on the 40 tasks it missed
+        for (int i = 0; i < 50; i++) {
+            queue.offer(new Task("late", 1));
+        }
+        Map<String,Integer> counts = take(queue, 10);
+        assertEquals(5, counts.get("busy").intValue());
+        assertEquals(5, counts.get("late").intValue());
+    }
+    
+    @Test
+    public void testRemoveAndDrain() throws InterruptedException {
+        QueryFairTaskQueue queue = new QueryFairTaskQueue();
+        Task removed = new Task("a", 1);
+        queue.offer(new Task("a", 1));
+        queue.offer(removed);
+        queue.offer(new Task("b", 1));
+        assertTrue(queue.remove(removed));
+        assertEquals(2, queue.size());
+        
+        List<Runnable> drained = new ArrayList<>();
+        assertEquals(2, queue.drainTo(drained));
+        assertEquals(0, queue.size());
+        assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+    }
+}
@@ -57,6 +57,8 @@ public class ShardQueryConfigurationTest {
         Assert.assertFalse(config.isAllTermsIndexOnly());
         Assert.assertEquals("", config.getAccumuloPassword());
         Assert.assertEquals(Long.MAX_VALUE, config.getMaxIndexScanTimeMillis());
+        Assert.assertEquals(0L, config.getIndexExpansionCacheTtlMillis());
+        Assert.assertEquals(100, config.getSharedIndexExpansionThreads());
         Assert.assertFalse(config.getCollapseUids());
         Assert.assertFalse(config.getSequentialScheduler());
         Assert.assertFalse(config.getCollectTimingDetails());
@@ -139,6 +141,8 @@ public class ShardQueryConfigurationTest {
         Assert.assertTrue(config.getAllowShortcutEvaluation());
         Assert.assertFalse(config.getBypassAccumulo());
         Assert.assertFalse(config.getSpeculativeScanning());
+        Assert.assertFalse(config.getHedgedScanning());
+        Assert.assertEquals(0.05, config.getHedgedScanBudget(), 0.0);
         Assert.assertFalse(config.isDisableEvaluation());
         Assert.assertFalse(config.isContainsIndexOnlyTerms());
         Assert.assertFalse(config.isContainsCompositeTerms());
@@ -171,6 +175,8 @@ public class ShardQueryConfigurationTest {
         Assert.assertEquals(33, config.getMaxIvaratorSources());
         Assert.assertEquals(25, config.getMaxEvaluationPipelines());
         Assert.assertEquals(25, config.getMaxPipelineCachedResults());
+        Assert.assertEquals(1, config.getEvaluationPriority());
+        Assert.assertFalse(config.isBatchTermFrequencyFetch());
         Assert.assertFalse(config.isExpandAllTerms());
         Assert.assertNull(config.getQueryModel());
         Assert.assertNull(config.getModelName());
@@ -184,6 +190,9 @@ public class ShardQueryConfigurationTest {
         Assert.assertFalse(config.getAccrueStats());
         Assert.assertEquals(Sets.newHashSet(), config.getGroupFields());
         Assert.assertEquals(Sets.newHashSet(), config.getUniqueFields());
+        Assert.assertEquals(64L * 1024 * 1024, config.getUniqueMaxMemory());
+        Assert.assertNull(config.getUniqueSpillDir());
+        Assert.assertEquals(8L * 1024 * 1024, config.getUniqueTserverMaxMemory());
         Assert.assertFalse(config.getCacheModel());
         Assert.assertTrue(config.isTrackSizes());
         Assert.assertEquals(Lists.newArrayList(), config.getContentFieldNames());
@@ -424,6 +433,21 @@ public class ShardQueryConfigurationTest {
         Assert.assertTrue(config.isTldQuery());
     }
     
+    @Test
+    public void testGroupFieldsBatchSizeAsString() {
+        Assert.assertEquals("0", config.getGroupFieldsBatchSizeAsString());
+        
+        // the tservers aggregate grouped results by default
+        config.setGroupFields(Sets.newHashSet("groupFieldA"));
+        Assert.assertEquals(Integer.toString(ShardQueryConfiguration.DEFAULT_GROUP_FIELDS_BATCH_SIZE), config.getGroupFieldsBatchSizeAsString());
+        
+        config.setGroupFieldsBatchSize(50);
+        Assert.assertEquals("50", config.getGroupFieldsBatchSizeAsString());
+        
+        config.setGroupFieldsBatchSize(-1);
+        Assert.assertEquals("0", config.getGroupFieldsBatchSizeAsString());
+    }
+    
     /**
      * This test will fail if a new variable is added improperly to the ShardQueryConfiguration
      *
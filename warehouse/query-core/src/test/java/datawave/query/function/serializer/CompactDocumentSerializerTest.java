@@ -0,0 +1,139 @@
+package datawave.query.function.serializer;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import datawave.data.type.LcNoDiacriticsType;
+import datawave.data.type.NumberType;
+import datawave.query.DocumentSerialization;
+import datawave.query.attributes.Attribute;
+import datawave.query.attributes.Attributes;
+import datawave.query.attributes.Content;
+import datawave.query.attributes.Document;
+import datawave.query.attributes.Numeric;
+import datawave.query.attributes.TypeAttribute;
+import datawave.query.function.deserializer.CompactDocumentDeserializer;
+import datawave.query.function.deserializer.KryoDocumentDeserializer;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+public class CompactDocumentSerializerTest {
+    
+    private static final Key DOC_KEY = new Key("20190101_0", "datatype\u0000uid", "", "A&B", 1234L);
+    
+    private Document buildDocument(String suffix) {
+        Document d = new Document(DOC_KEY, true);
+        d.put("FIELD_A", new TypeAttribute<>(new LcNoDiacriticsType("value" + suffix), DOC_KEY, true));
+        d.put("FIELD_B", new TypeAttribute<>(new NumberType("12" + suffix.length()), DOC_KEY, true));
+        d.put("FIELD_C", new Content("content" + suffix, DOC_KEY, true));
+        d.put("FIELD_D", new Numeric(42, DOC_KEY, true));
+        d.put("FIELD_E", new Attributes(Arrays.<Attribute<? extends Comparable<?>>> asList(new TypeAttribute<>(new LcNoDiacriticsType("one" + suffix),
+                        DOC_KEY, true), new TypeAttribute<>(new LcNoDiacriticsType("two" + suffix), DOC_KEY, true)), true));
+        return d;
+    }
+    
+    private Map.Entry<Key,Value> serialize(DocumentSerializer serializer, Document d) {
+        return serializer.apply(Maps.immutableEntry(DOC_KEY, d));
+    }
+    
+    private Document kryoRoundTrip(Document d) {
+        return new KryoDocumentDeserializer().apply(serialize(new KryoDocumentSerializer(), d)).getValue();
+    }
+    
+    @Test
+    public void testRoundTrip() {
+        CompactDocumentSerializer serializer = new CompactDocumentSerializer();
+        CompactDocumentDeserializer deserializer = new CompactDocumentDeserializer();
+        
+        for (String suffix : Arrays.asList("", "x", "yy", "zzz")) {
+            Document d = buildDocument(suffix);
+            Document result = deserializer.apply(serialize(serializer, d)).getValue();
+            
+            Document expected = kryoRoundTrip(d);
+            
+            Assert.assertEquals(expected, result);
+            Assert.assertEquals(d.size(), result.size());
+            Assert.assertEquals(expected.sizeInBytes(), result.sizeInBytes());
+        }
+    }
+    
+    @Test
+    public void testDefinitionsSentOnce() {
+        CompactDocumentSerializer serializer = new CompactDocumentSerializer();
+        KryoDocumentSerializer kryoSerializer = new KryoDocumentSerializer();
+        
+        int first = serialize(serializer, buildDocument("a")).getValue().getSize();
+        int second = serialize(serializer, buildDocument("b")).getValue().getSize();
+        int kryo = serialize(kryoSerializer, buildDocument("b")).getValue().getSize();
+        
+        Assert.assertTrue("expected the second document to omit the dictionary: " + first + " vs " + second, second < first);
+        Assert.assertTrue("expected the compact form to be smaller than kryo: " + second + " vs " + kryo, second < kryo / 2);
+    }
+    
+    @Test
+    public void testInterleavedScans() {
+        CompactDocumentSerializer scan1 = new CompactDocumentSerializer();
+        CompactDocumentSerializer scan2 = new CompactDocumentSerializer(true);
+        CompactDocumentDeserializer deserializer = new CompactDocumentDeserializer();
+        
+        Document other = new Document(DOC_KEY, true);
+        other.put("FIELD_Z", new Content("zzz", DOC_KEY, true));
+        
+        Map.Entry<Key,Value> a1 = serialize(scan1, buildDocument("1"));
+        Map.Entry<Key,Value> b1 = serialize(scan2, other);
+        Map.Entry<Key,Value> a2 = serialize(scan1, buildDocument("2"));
+        Map.Entry<Key,Value> b2 = serialize(scan2, buildDocument("3"));
+        
+        Assert.assertEquals(kryoRoundTrip(buildDocument("1")), deserializer.apply(a1).getValue());
+        Assert.assertEquals(1, deserializer.apply(b1).getValue().size());
+        Assert.assertEquals(kryoRoundTrip(buildDocument("2")), deserializer.apply(a2).getValue());
+        Assert.assertEquals(buildDocument("3").size(), deserializer.apply(b2).getValue().size());
+        Assert.assertEquals(2, deserializer.getDictionaryCount());
+    }
+    
+    @Test
+    public void testIdleScanResendsDefinitions() {
+        CompactDocumentSerializer serializer = new CompactDocumentSerializer();
+        serializer.resendAfterIdleMillis = 0;
+        Document first = new Document(DOC_KEY, true);
+        first.put("FIELD_Z", new Content("zzz", DOC_KEY, true));
+        serialize(serializer, first);
+        
+        // the dictionary was dropped while the scan was idle
+        Document result = new CompactDocumentDeserializer().apply(serialize(serializer, buildDocument(""))).getValue();
+        Assert.assertEquals(kryoRoundTrip(buildDocument("")), result);
+    }
+    
+    @Test
+    public void testResentDefinitionsAreSkipped() {
+        CompactDocumentSerializer serializer = new CompactDocumentSerializer();
+        CompactDocumentDeserializer deserializer = new CompactDocumentDeserializer();
+        deserializer.apply(serialize(serializer, buildDocument("1")));
+        
+        serializer.resendAfterIdleMillis = 0;
+        Assert.assertEquals(kryoRoundTrip(buildDocument("2")), deserializer.apply(serialize(serializer, buildDocument("2"))).getValue());
+        Assert.assertEquals(1, deserializer.getDictionaryCount());
+    }
+    
+    @Test(expected = IllegalStateException.class)
+    public void testMissingDefinitions() {
+        CompactDocumentSerializer serializer = new CompactDocumentSerializer();
+        Document first = new Document(DOC_KEY, true);
+        first.put("FIELD_Z", new Content("zzz", DOC_KEY, true));
+        serialize(serializer, first);
+        
+        // the dictionary delta for the first document was never seen
+        new CompactDocumentDeserializer().apply(serialize(serializer, buildDocument("")));
+    }
+    
+    @Test
+    public void testReturnType() {
+        Assert.assertTrue(DocumentSerialization.getDocumentSerializer(DocumentSerialization.ReturnType.compact) instanceof CompactDocumentSerializer);
+        Assert.assertTrue(DocumentSerialization.getDocumentDeserializer(DocumentSerialization.ReturnType.compact) instanceof CompactDocumentDeserializer);
+    }
+}
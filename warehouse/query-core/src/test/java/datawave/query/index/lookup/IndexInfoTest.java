@@ -328,4 +328,73 @@ public class IndexInfoTest {
         assertEquals(expectedMerged, left.union(right));
         assertEquals(expectedMerged, right.union(left));
     }
+    
+    /**
+     * Intersection of a small term with a much larger term, where the document ids of the small term are found by galloping through the larger one.
+     */
+    @Test
+    public void testIntersection_LopsidedTerms() {
+        List<String> docIds = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            docIds.add(String.format("doc%04d", i));
+        }
+        IndexInfo left = new IndexInfo(buildIndexMatches("FIELD", "VALUE", docIds.toArray(new String[0])));
+        IndexInfo right = new IndexInfo(buildIndexMatches("FIELD2", "VALUE2", "doc0000", "doc0017", "doc0500", "doc0999", "doc5000"));
+        
+        Set<IndexMatch> expectedDocs = buildExpectedIndexMatches("doc0000", "doc0017", "doc0500", "doc0999");
+        for (IndexInfo merged : Arrays.asList(left.intersect(right), right.intersect(left))) {
+            assertEquals(expectedDocs, merged.uids());
+            for (IndexMatch match : merged.uids()) {
+                assertEquals(IndexMatchType.AND, match.type);
+                assertEquals(new HashSet<>(Arrays.asList("FIELD == 'VALUE'", "FIELD2 == 'VALUE2'")), match.nodeSet.getNodeKeys());
+            }
+        }
+    }
+    
+    /**
+     * A document id is only kept by an intersection if it was matched by different nodes.
+     */
+    @Test
+    public void testIntersection_SameNodeIsPruned() {
+        JexlNode node = JexlNodeFactory.buildEQNode("FIELD", "VALUE");
+        IndexInfo left = new IndexInfo(Arrays.asList(new IndexMatch("doc1", node), new IndexMatch("doc2", node)));
+        IndexInfo right = new IndexInfo(Arrays.asList(new IndexMatch("doc1", node), buildIndexMatch("FIELD", "VALUE", "doc2")));
+        
+        assertEquals(buildExpectedIndexMatches("doc2"), left.intersect(right).uids());
+    }
+    
+    /**
+     * Galloping search for the first document id that is not less than a given id.
+     */
+    @Test
+    public void testGallop() {
+        List<IndexMatch> matches = ImmutableSortedSet.copyOf(buildExpectedIndexMatches("b", "d", "f", "h", "j", "l", "n")).asList();
+        assertEquals(0, IndexInfo.gallop(matches, 0, "a"));
+        assertEquals(0, IndexInfo.gallop(matches, 0, "b"));
+        assertEquals(1, IndexInfo.gallop(matches, 0, "c"));
+        assertEquals(5, IndexInfo.gallop(matches, 2, "k"));
+        assertEquals(6, IndexInfo.gallop(matches, 6, "n"));
+        assertEquals(7, IndexInfo.gallop(matches, 3, "o"));
+        assertEquals(7, IndexInfo.gallop(matches, 7, "a"));
+    }
+    
+    /**
+     * Union of query terms with document ids merges the nodes of each document id.
+     */
+    @Test
+    public void testUnion_MergesNodes() {
+        IndexInfo left = new IndexInfo(buildIndexMatches("FIELD", "VALUE", "doc1", "doc2", "doc3"));
+        IndexInfo right = new IndexInfo(buildIndexMatches("FIELD2", "VALUE2", "doc2", "doc4"));
+        List<JexlNode> delayedNodes = new ArrayList<>();
+        delayedNodes.add(ASTDelayedPredicate.create(JexlNodeFactory.buildEQNode("FIELD3", "VALUE3")));
+        
+        IndexInfo merged = left.union(right, delayedNodes);
+        assertEquals(buildExpectedIndexMatches("doc1", "doc2", "doc3", "doc4"), merged.uids());
+        assertEquals(4L, merged.count());
+        for (IndexMatch match : merged.uids()) {
+            assertEquals(IndexMatchType.OR, match.type);
+            assertEquals(match.uid.equals("doc2") ? 3 : 2, match.nodeSet.size());
+            assertTrue(match.nodeSet.getNodeKeys().contains("FIELD3 == 'VALUE3'"));
+        }
+    }
 }
@@ -0,0 +1,100 @@
+package datawave.query.iterator;
+
+import datawave.query.attributes.Document;
+import datawave.query.jexl.DatawaveJexlContext;
+import datawave.query.jexl.DefaultArithmetic;
+import datawave.query.jexl.visitors.JexlStringBuildingVisitor;
+import datawave.query.function.JexlEvaluation;
+import datawave.query.util.Tuple3;
+import org.apache.commons.jexl2.parser.ASTJexlScript;
+import org.apache.commons.jexl2.parser.ParseException;
+import org.apache.commons.lang.StringUtils;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ParsedQueryCacheTest {
+    
+    private static final String QUERY = "FOO == 'bar' && BAZ =~ 'qu.*'";
+    private static final long MAX_CHARS = 1 << 20;
+    
+    @Test
+    public void testParsedQueryIsShared() throws ParseException {
+        ParsedQueryCache cache = new ParsedQueryCache(MAX_CHARS, 60000);
+        ParsedQueryCache.ParsedQuery parsed = cache.getParsedQuery("query1", QUERY);
+        assertSame(parsed, cache.getParsedQuery("query1", QUERY));
+        assertEquals(1, cache.size());
+        
+        // a different query id or query gets its own entry
+        assertNotSame(parsed, cache.getParsedQuery("query2", QUERY));
+        assertNotSame(parsed, cache.getParsedQuery("query1", "FOO == 'bar'"));
+        assertEquals(3, cache.size());
+    }
+    
+    @Test
+    public void testScriptIsCopied() throws ParseException {
+        ParsedQueryCache cache = new ParsedQueryCache(MAX_CHARS, 60000);
+        ParsedQueryCache.ParsedQuery parsed = cache.getParsedQuery("query1", QUERY);
+        ASTJexlScript script1 = parsed.getScript();
+        ASTJexlScript script2 = parsed.getScript();
+        assertNotSame(script1, script2);
+        assertEquals(JexlStringBuildingVisitor.buildQuery(script1), JexlStringBuildingVisitor.buildQuery(script2));
+        
+        // modifying one copy does not affect later copies
+        script1.jjtAddChild(null, 0);
+        assertEquals(JexlStringBuildingVisitor.buildQuery(script2), JexlStringBuildingVisitor.buildQuery(parsed.getScript()));
+    }
+    
+    @Test
+    public void testEvaluation() throws ParseException {
+        ParsedQueryCache cache = new ParsedQueryCache(MAX_CHARS, 60000);
+        JexlEvaluation evaluation = cache.getParsedQuery("query1", "FOO == 'bar'").createEvaluation(new DefaultArithmetic());
+        DatawaveJexlContext context = new DatawaveJexlContext();
+        context.set("FOO", "bar");
+        assertTrue(evaluation.apply(new Tuple3<>(null, new Document(), context)));
+        context.set("FOO", "baz");
+        assertFalse(evaluation.apply(new Tuple3<>(null, new Document(), context)));
+    }
+    
+    @Test
+    public void testDisabled() throws ParseException {
+        ParsedQueryCache cache = new ParsedQueryCache(0, 60000);
+        assertFalse(cache.isEnabled());
+        assertNotSame(cache.getParsedQuery("query1", QUERY), cache.getParsedQuery("query1", QUERY));
+        assertEquals(0, cache.size());
+    }
+    
+    @Test
+    public void testWeight() throws ParseException {
+        // a query longer than the cache is never cached
+        ParsedQueryCache cache = new ParsedQueryCache(100, 60000);
+        cache.getParsedQuery("query1", "FOO == '" + StringUtils.repeat("x", 200) + "'");
+        assertEquals(0, cache.size());
+        
+        // the queries that are cached are no longer than the cache between them
+        cache = new ParsedQueryCache(1000, 60000);
+        for (int i = 0; i < 100; i++) {
+            cache.getParsedQuery("query1", "FOO == '" + StringUtils.leftPad(Integer.toString(i), 30, '0') + "'");
+        }
+        long length = ("query1" + "FOO == '" + StringUtils.leftPad("0", 30, '0') + "'").length();
+        assertTrue(cache.size() > 0);
+        assertTrue(cache.size() * length <= 1000);
+    }
+    
+    @Test
+    public void testParseFailure() {
+        ParsedQueryCache cache = new ParsedQueryCache(MAX_CHARS, 60000);
+        try {
+            cache.getParsedQuery("query1", "FOO == ");
+            fail("Expected the query to fail parsing");
+        } catch (ParseException e) {
+            // expected
+        }
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,66 @@
+package datawave.query.iterator.pipeline;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class AdaptivePipelineSizerTest {
+    
+    private static void window(AdaptivePipelineSizer sizer, long queueNanos, long runNanos, boolean waited, int backlog) {
+        int samples = sizer.getTargetPipelines();
+        for (int i = 0; i < samples; i++) {
+            sizer.record(queueNanos, runNanos, waited, backlog, 10);
+        }
+    }
+    
+    @Test
+    public void testStartsAtMax() {
+        AdaptivePipelineSizer sizer = new AdaptivePipelineSizer(25);
+        assertEquals(25, sizer.getTargetPipelines());
+        
+        // an uncontended pool leaves the pipelines alone
+        window(sizer, 10, 1000, true, 0);
+        assertEquals(25, sizer.getTargetPipelines());
+    }
+    
+    @Test
+    public void testShrinksUnderContention() {
+        AdaptivePipelineSizer sizer = new AdaptivePipelineSizer(25);
+        window(sizer, 5000, 1000, true, 0);
+        assertEquals(19, sizer.getTargetPipelines());
+        
+        // a pool backlog larger than the pool is also contention
+        window(sizer, 10, 1000, true, 50);
+        assertEquals(15, sizer.getTargetPipelines());
+        
+        for (int i = 0; i < 20; i++) {
+            window(sizer, 5000, 1000, true, 50);
+        }
+        assertEquals(AdaptivePipelineSizer.MIN_PIPELINES, sizer.getTargetPipelines());
+    }
+    
+    @Test
+    public void testGrowsWhenWaiting() {
+        AdaptivePipelineSizer sizer = new AdaptivePipelineSizer(25);
+        window(sizer, 5000, 1000, true, 0);
+        assertEquals(19, sizer.getTargetPipelines());
+        
+        // not waiting on evaluations means more pipelines would not help
+        window(sizer, 10, 1000, false, 0);
+        assertEquals(19, sizer.getTargetPipelines());
+        
+        window(sizer, 10, 1000, true, 0);
+        assertEquals(20, sizer.getTargetPipelines());
+        for (int i = 0; i < 20; i++) {
+            window(sizer, 10, 1000, true, 0);
+        }
+        assertEquals(25, sizer.getTargetPipelines());
+    }
+    
+    @Test
+    public void testSinglePipeline() {
+        AdaptivePipelineSizer sizer = new AdaptivePipelineSizer(1);
+        window(sizer, 5000, 1000, true, 50);
+        assertEquals(1, sizer.getTargetPipelines());
+    }
+}
@@ -0,0 +1,48 @@
+package datawave.query.jexl.lookups;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IndexExpansionCacheTest {
+    
+    @Test
+    public void testCopies() {
+        IndexExpansionCache cache = new IndexExpansionCache(10, 60000);
+        IndexLookupMap fieldsToValues = new IndexLookupMap(10, 2);
+        fieldsToValues.put("FOO", "bar");
+        fieldsToValues.put("FOO2", "bar");
+        fieldsToValues.put("FOO2", "baz");
+        fieldsToValues.put("FOO2", "bat");
+        cache.put(Arrays.asList("FOO", "ba.*"), fieldsToValues);
+        
+        // changes to either map are not seen through the cache
+        fieldsToValues.put("FOO", "bad");
+        IndexLookupMap cached = cache.get(Arrays.asList("FOO", "ba.*"), 60000);
+        Assert.assertEquals(Collections.singleton("bar"), cached.get("FOO"));
+        Assert.assertTrue(cached.get("FOO2").isThresholdExceeded());
+        cached.retainFields(Collections.singleton("FOO2"));
+        
+        cached = cache.get(Arrays.asList("FOO", "ba.*"), 60000);
+        Assert.assertEquals(2, cached.size());
+        Assert.assertNull(cache.get(Arrays.asList("FOO", "bb.*"), 60000));
+    }
+    
+    @Test
+    public void testTtl() throws InterruptedException {
+        IndexExpansionCache cache = new IndexExpansionCache(10, 60000);
+        IndexLookupMap fieldsToValues = new IndexLookupMap(10, 10);
+        fieldsToValues.setKeyThresholdExceeded();
+        cache.put("key", fieldsToValues);
+        Thread.sleep(20);
+        
+        // each caller decides how old an expansion may be
+        Assert.assertNull(cache.get("key", 10));
+        Assert.assertTrue(cache.get("key", 60000).isKeyThresholdExceeded());
+        
+        cache.invalidateAll();
+        Assert.assertNull(cache.get("key", 60000));
+    }
+}
@@ -0,0 +1,96 @@
+package datawave.query.metrics;
+
+import java.util.Date;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Multimap;
+
+import datawave.query.metrics.ContentQueryMetricsIngestHelper.HelperDelegate;
+import datawave.webservice.query.metric.BaseQueryMetric;
+import datawave.webservice.query.metric.BaseQueryMetric.Lifecycle;
+import datawave.webservice.query.metric.QueryMetric;
+
+public class ContentQueryMetricsIngestHelperTest {
+    
+    private HelperDelegate<BaseQueryMetric> delegate = new HelperDelegate<>();
+    private QueryMetric stored;
+    
+    @Before
+    public void setup() {
+        stored = new QueryMetric();
+        stored.setQueryType("RunningQuery");
+        stored.setQueryId("queryId");
+        stored.setQuery("FIELD == 'value'");
+        stored.setQueryLogic("EventQuery");
+        stored.setUser("user");
+        stored.setLifecycle(Lifecycle.RESULTS);
+        // not the first update, so the query is not parsed for its selectors
+        stored.setNumUpdates(1);
+        stored.setLastUpdated(new Date(stored.getCreateDate().getTime() + 1000));
+        stored.addPageTime(10, 100, 1000, 1100);
+    }
+    
+    @Test
+    public void testUnchanged() {
+        BaseQueryMetric updated = stored.duplicate();
+        Assert.assertTrue(delegate.getEventFieldsToWrite(updated, stored).isEmpty());
+    }
+    
+    @Test
+    public void testChangedField() {
+        BaseQueryMetric updated = stored.duplicate();
+        updated.setLifecycle(Lifecycle.CLOSED);
+        
+        Multimap<String,String> fields = delegate.getEventFieldsToWrite(updated, stored);
+        Assert.assertEquals(1, fields.size());
+        Assert.assertTrue(fields.containsEntry("LIFECYCLE", Lifecycle.CLOSED.toString()));
+    }
+    
+    @Test
+    public void testChangedPage() {
+        BaseQueryMetric updated = stored.duplicate();
+        updated.getPageTimes().get(0).setReturnTime(200);
+        
+        Multimap<String,String> fields = delegate.getEventFieldsToWrite(updated, stored);
+        Assert.assertEquals(1, fields.size());
+        Assert.assertEquals(1, fields.get("PAGE_METRICS.1").size());
+        Assert.assertNotEquals(delegate.getEventFieldsToWrite(stored).get("PAGE_METRICS.1"), fields.get("PAGE_METRICS.1"));
+    }
+    
+    @Test
+    public void testAddedPage() {
+        BaseQueryMetric updated = stored.duplicate();
+        updated.addPageTime(10, 100, 2000, 2100);
+        
+        Multimap<String,String> fields = delegate.getEventFieldsToWrite(updated, stored);
+        // the earlier page is not written again, but the page counts are
+        Assert.assertFalse(fields.containsKey("PAGE_METRICS.1"));
+        Assert.assertTrue(fields.containsKey("PAGE_METRICS.2"));
+        Assert.assertTrue(fields.containsEntry("NUM_PAGES", "2"));
+        Assert.assertTrue(fields.containsEntry("NUM_RESULTS", "20"));
+        Assert.assertFalse(fields.containsKey("QUERY"));
+    }
+    
+    @Test
+    public void testAddedField() {
+        BaseQueryMetric updated = stored.duplicate();
+        updated.setErrorMessage("error");
+        
+        Multimap<String,String> fields = delegate.getEventFieldsToWrite(updated, stored);
+        Assert.assertEquals(1, fields.size());
+        Assert.assertTrue(fields.containsEntry("ERROR_MESSAGE", "error"));
+    }
+    
+    @Test
+    public void testIncompleteStoredMetric() {
+        BaseQueryMetric updated = stored.duplicate();
+        stored.setQueryType((String) null);
+        
+        // everything is written when the stored metric can not be compared with
+        Assert.assertEquals(delegate.getEventFieldsToWrite(updated), delegate.getEventFieldsToWrite(updated, stored));
+        Assert.assertEquals(delegate.getEventFieldsToWrite(updated), delegate.getEventFieldsToWrite(updated, null));
+    }
+}
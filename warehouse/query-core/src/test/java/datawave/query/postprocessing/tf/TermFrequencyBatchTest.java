@@ -0,0 +1,120 @@
+package datawave.query.postprocessing.tf;
+
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import datawave.ingest.protobuf.TermWeight;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+
+public class TermFrequencyBatchTest {
+    
+    private static final String ROW = "20190101_0";
+    
+    private SortedMap<Key,Value> data;
+    private Multimap<String,String> fieldValues;
+    
+    @Before
+    public void setup() {
+        data = new TreeMap<>();
+        for (String uid : new String[] {"a.b.c", "a.b.d", "a.b.e", "a.b.f"}) {
+            addTf(uid, "quick", "BODY", 1, 5);
+            addTf(uid, "brown", "BODY", 2);
+            addTf(uid, "fox", "BODY", 3);
+            addTf(uid, "quick", "TITLE", 1);
+            // children of the document are not part of its term frequencies
+            addTf(uid + ".1", "quick", "BODY", 7);
+        }
+        // other columns of the shard
+        data.put(new Key(ROW, "datatype\0a.b.c", "BODY\0quick"), new Value(new byte[0]));
+        data.put(new Key(ROW, "fi\0BODY", "quick\0datatype\0a.b.c"), new Value(new byte[0]));
+        
+        fieldValues = HashMultimap.create();
+        fieldValues.put("BODY", "quick");
+        fieldValues.put("BODY", "fox");
+    }
+    
+    @Test
+    public void testFetchesPendingDocumentsTogether() throws Exception {
+        TermFrequencyBatch batch = new TermFrequencyBatch();
+        batch.add(docKey("a.b.c"));
+        batch.add(docKey("a.b.e"));
+        batch.add(docKey("a.b.f"));
+        
+        SortedMapIterator source = new SortedMapIterator(data);
+        List<Entry<Key,Value>> e = batch.take(docKey("a.b.e"), fieldValues, source);
+        assertEntries(e, "a.b.e");
+        Assert.assertEquals(1, batch.getFetches());
+        
+        assertEntries(batch.take(docKey("a.b.c"), fieldValues, source), "a.b.c");
+        assertEntries(batch.take(docKey("a.b.f"), fieldValues, source), "a.b.f");
+        Assert.assertEquals(1, batch.getFetches());
+        
+        // taken and never queued documents are fetched by the caller
+        Assert.assertNull(batch.take(docKey("a.b.c"), fieldValues, source));
+        Assert.assertNull(batch.take(docKey("a.b.d"), fieldValues, source));
+    }
+    
+    @Test
+    public void testRemove() throws Exception {
+        TermFrequencyBatch batch = new TermFrequencyBatch();
+        batch.add(docKey("a.b.c"));
+        batch.add(docKey("a.b.d"));
+        
+        SortedMapIterator source = new SortedMapIterator(data);
+        assertEntries(batch.take(docKey("a.b.c"), fieldValues, source), "a.b.c");
+        
+        // a document removed before it was taken releases its term frequencies
+        batch.remove(new Key(ROW, "datatype\0a.b.d", "ignored"));
+        Assert.assertNull(batch.take(docKey("a.b.d"), fieldValues, source));
+        
+        // a document queued again is fetched again
+        batch.add(docKey("a.b.d"));
+        assertEntries(batch.take(docKey("a.b.d"), fieldValues, source), "a.b.d");
+        Assert.assertEquals(2, batch.getFetches());
+    }
+    
+    @Test
+    public void testOtherFieldValues() throws Exception {
+        TermFrequencyBatch batch = new TermFrequencyBatch();
+        batch.add(docKey("a.b.c"));
+        batch.add(docKey("a.b.d"));
+        
+        SortedMapIterator source = new SortedMapIterator(data);
+        assertEntries(batch.take(docKey("a.b.c"), fieldValues, source), "a.b.c");
+        
+        Multimap<String,String> other = HashMultimap.create();
+        other.put("TITLE", "quick");
+        Assert.assertNull(batch.take(docKey("a.b.d"), other, source));
+    }
+    
+    private void assertEntries(List<Entry<Key,Value>> entries, String uid) throws Exception {
+        Assert.assertNotNull(entries);
+        Assert.assertEquals(2, entries.size());
+        Assert.assertEquals(new Key(ROW, "tf", "datatype\0" + uid + "\0fox\0BODY"), entries.get(0).getKey());
+        Assert.assertEquals(new Key(ROW, "tf", "datatype\0" + uid + "\0quick\0BODY"), entries.get(1).getKey());
+        Assert.assertEquals(2, TermWeight.Info.parseFrom(entries.get(1).getValue().get()).getTermOffsetCount());
+    }
+    
+    private void addTf(String uid, String value, String field, int... offsets) {
+        TermWeight.Info.Builder builder = TermWeight.Info.newBuilder();
+        for (int offset : offsets) {
+            builder.addTermOffset(offset);
+        }
+        data.put(new Key(ROW, "tf", "datatype\0" + uid + "\0" + value + "\0" + field), new Value(builder.build().toByteArray()));
+    }
+    
+    private static Key docKey(String uid) {
+        return new Key(ROW, "datatype\0" + uid);
+    }
+}
@@ -0,0 +1,55 @@
+package datawave.query.tables;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import datawave.query.attributes.Content;
+import datawave.query.attributes.Document;
+import datawave.query.function.deserializer.CompactDocumentDeserializer;
+import datawave.query.function.serializer.CompactDocumentSerializer;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+public class DedupingTransformTest {
+    
+    private static final Key DOC_1 = new Key("20190101_0", "datatype\u0000uid1");
+    private static final Key DOC_2 = new Key("20190101_0", "datatype\u0000uid2");
+    
+    private Map.Entry<Key,Value> serialize(CompactDocumentSerializer serializer, Key key, String field) {
+        Document d = new Document(key, true);
+        d.put(field, new Content("value", key, true));
+        return serializer.apply(Maps.immutableEntry(key, d));
+    }
+    
+    @Test
+    public void testDuplicateDefinitionsAreRead() {
+        // overlapping scans both return the first document, along with the definitions of their own dictionaries
+        CompactDocumentSerializer scan1 = new CompactDocumentSerializer();
+        CompactDocumentSerializer scan2 = new CompactDocumentSerializer();
+        List<Map.Entry<Key,Value>> results = new ArrayList<>();
+        results.add(serialize(scan1, DOC_1, "FIELD_A"));
+        results.add(serialize(scan2, DOC_1, "FIELD_A"));
+        results.add(serialize(scan2, DOC_2, "FIELD_A"));
+        
+        CompactDocumentDeserializer deserializer = new CompactDocumentDeserializer();
+        DedupingTransform deduping = new DedupingTransform();
+        List<Key> returned = new ArrayList<>();
+        for (Map.Entry<Key,Value> result : results) {
+            Map.Entry<Key,Document> document = deduping.apply(deserializer.apply(result));
+            if (document != null) {
+                Assert.assertNotNull(document.getValue().get("FIELD_A"));
+                returned.add(document.getKey());
+            }
+        }
+        
+        Assert.assertEquals(2, returned.size());
+        Assert.assertEquals(DOC_1, returned.get(0));
+        Assert.assertEquals(DOC_2, returned.get(1));
+    }
+}
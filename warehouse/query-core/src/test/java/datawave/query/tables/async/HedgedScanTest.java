@@ -0,0 +1,154 @@
+package datawave.query.tables.async;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.Map.Entry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import datawave.query.tables.BatchResource;
+import datawave.query.tables.SessionOptions;
+import datawave.query.tables.stats.ScanLatencyTracker;
+
+public class HedgedScanTest {
+    
+    private static final String SERVER = "tserver1:9997";
+    
+    private BlockingQueue<Entry<Key,Value>> results;
+    private ExecutorService caller;
+    private ScanLatencyTracker tracker;
+    
+    @Before
+    public void setup() {
+        results = new ArrayBlockingQueue<>(100);
+        caller = Executors.newFixedThreadPool(2);
+        tracker = new ScanLatencyTracker(10, 2);
+    }
+    
+    @After
+    public void teardown() {
+        caller.shutdownNow();
+    }
+    
+    @Test
+    public void testClaimRace() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            results.clear();
+            final HedgedScan scan = newScan();
+            final HedgedScan hedge = scan.newHedge();
+            final CountDownLatch latch = new CountDownLatch(1);
+            Future<Boolean> scanOffered = caller.submit(offer(scan, latch));
+            Future<Boolean> hedgeOffered = caller.submit(offer(hedge, latch));
+            latch.countDown();
+            
+            // exactly one of them claims the chunk and returns its result
+            Assert.assertTrue(scanOffered.get() ^ hedgeOffered.get());
+            Assert.assertEquals(1, results.size());
+            HedgedScan winner = scanOffered.get() ? scan : hedge;
+            HedgedScan loser = scanOffered.get() ? hedge : scan;
+            Assert.assertFalse(winner.lost());
+            Assert.assertTrue(loser.lost());
+            Assert.assertTrue(loser.finished());
+            Assert.assertFalse(loser.offerResult(entry()));
+            Assert.assertEquals(1, results.size());
+        }
+    }
+    
+    @Test
+    public void testLoserCancelled() throws Exception {
+        HedgedScan scan = newScan();
+        HedgedScan hedge = scan.newHedge();
+        FutureTask<Scan> scanFuture = new FutureTask<>(scan);
+        FutureTask<Scan> hedgeFuture = new FutureTask<>(hedge);
+        scan.setFuture(scanFuture);
+        hedge.setFuture(hedgeFuture);
+        scan.start();
+        hedge.start();
+        
+        Assert.assertTrue(hedge.offerResult(entry()));
+        Assert.assertTrue(scanFuture.isCancelled());
+        Assert.assertFalse(hedgeFuture.isCancelled());
+        
+        // the cancelled scan still counts towards the percentiles of its server
+        Assert.assertTrue(tracker.getPercentile("shard", SERVER, 1.0) >= 0);
+    }
+    
+    @Test
+    public void testRunnable() throws Exception {
+        HedgedScan scan = newScan();
+        Assert.assertNull(scan.newHedge().newHedge());
+        
+        // the scan holds the runnable until one of them claims the chunk
+        scan = newScan();
+        HedgedScan hedge = scan.newHedge();
+        Assert.assertTrue(scan.holdsRunnable());
+        Assert.assertFalse(hedge.holdsRunnable());
+        Assert.assertTrue(hedge.offerResult(entry()));
+        Assert.assertFalse(scan.holdsRunnable());
+        Assert.assertTrue(hedge.holdsRunnable());
+        
+        scan = newScan();
+        hedge = scan.newHedge();
+        Assert.assertTrue(scan.offerResult(entry()));
+        Assert.assertTrue(scan.holdsRunnable());
+        Assert.assertFalse(hedge.holdsRunnable());
+    }
+    
+    @Test
+    public void testHedgeFailure() throws Exception {
+        // there are no resources, so both fail as soon as they run
+        HedgedScan scan = newScan();
+        HedgedScan hedge = scan.newHedge();
+        
+        Assert.assertSame(hedge, hedge.call());
+        Assert.assertTrue(hedge.finished());
+        Assert.assertFalse(hedge.holdsRunnable());
+        Assert.assertFalse(scan.claimed());
+        Assert.assertTrue(scan.holdsRunnable());
+        
+        try {
+            scan.call();
+            Assert.fail("the scan should have failed");
+        } catch (Exception e) {
+            // expected
+        }
+    }
+    
+    private HedgedScan newScan() {
+        ScannerChunk chunk = new ScannerChunk(new SessionOptions(), Collections.singleton(new Range("20190101_0")), SERVER);
+        return new HedgedScan("shard", Collections.singleton(new Authorizations()), chunk, null, BatchResource.class, results, caller, tracker,
+                        new HedgedScan.Launcher() {
+                            @Override
+                            public void started(HedgedScan scan) {}
+                        });
+    }
+    
+    private static Callable<Boolean> offer(final HedgedScan scan, final CountDownLatch latch) {
+        return new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                latch.await();
+                return scan.offerResult(entry());
+            }
+        };
+    }
+    
+    private static Entry<Key,Value> entry() {
+        return new AbstractMap.SimpleEntry<>(new Key("20190101_0"), new Value(new byte[0]));
+    }
+}
@@ -0,0 +1,43 @@
+package datawave.query.tables.stats;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ScanLatencyTrackerTest {
+    
+    @Test
+    public void testPercentile() {
+        ScanLatencyTracker tracker = new ScanLatencyTracker(100, 10);
+        for (int i = 1; i <= 9; i++) {
+            tracker.record("shard", "tserver1:9997", i);
+        }
+        // not enough samples yet
+        Assert.assertEquals(-1, tracker.getPercentile("shard", "tserver1:9997", 0.95));
+        
+        for (int i = 10; i <= 100; i++) {
+            tracker.record("shard", "tserver1:9997", i);
+        }
+        Assert.assertEquals(95, tracker.getPercentile("shard", "tserver1:9997", 0.95));
+        Assert.assertEquals(50, tracker.getPercentile("shard", "tserver1:9997", 0.5));
+        Assert.assertEquals(100, tracker.getPercentile("shard", "tserver1:9997", 1.0));
+        
+        // other servers and tables are tracked separately
+        Assert.assertEquals(-1, tracker.getPercentile("shard", "tserver2:9997", 0.95));
+        Assert.assertEquals(-1, tracker.getPercentile("shardIndex", "tserver1:9997", 0.95));
+    }
+    
+    @Test
+    public void testWindow() {
+        ScanLatencyTracker tracker = new ScanLatencyTracker(10, 5);
+        for (int i = 0; i < 10; i++) {
+            tracker.record("shard", "tserver1:9997", 1000);
+        }
+        Assert.assertEquals(1000, tracker.getPercentile("shard", "tserver1:9997", 0.95));
+        
+        // only the most recent samples count
+        for (int i = 0; i < 10; i++) {
+            tracker.record("shard", "tserver1:9997", 10);
+        }
+        Assert.assertEquals(10, tracker.getPercentile("shard", "tserver1:9997", 0.95));
+    }
+}
@@ -514,6 +514,31 @@ public abstract class GroupingTest {
         }
     }
     
+    @Test
+    public void testCountingMapMergesPartialCounts() {
+        MarkingFunctions markingFunctions = new MarkingFunctions.Default();
+        GroupingTransform.GroupCountingHashMap map = new GroupingTransform.GroupCountingHashMap(markingFunctions);
+        
+        GroupingTypeAttribute attr1 = new GroupingTypeAttribute(new LcType("FOO"), new Key("FOO"), true);
+        attr1.setColumnVisibility(new ColumnVisibility("A"));
+        Assert.assertEquals(3, map.add(Collections.singleton(attr1), 3));
+        
+        GroupingTypeAttribute attr2 = new GroupingTypeAttribute(new LcType("FOO"), new Key("FOO"), true);
+        attr2.setColumnVisibility(new ColumnVisibility("B"));
+        Assert.assertEquals(8, map.add(Collections.singleton(attr2), 5));
+        Assert.assertEquals(9, map.add(Collections.singleton(attr2)));
+        
+        Assert.assertEquals(1, map.size());
+        Assert.assertEquals(new ColumnVisibility("A&B"), attr1.getColumnVisibility());
+        
+        map.clear();
+        GroupingTypeAttribute attr3 = new GroupingTypeAttribute(new LcType("FOO"), new Key("FOO"), true);
+        attr3.setColumnVisibility(new ColumnVisibility("C"));
+        Assert.assertEquals(2, map.add(Collections.singleton(attr3), 2));
+        Assert.assertEquals(new ColumnVisibility("A&B"), attr1.getColumnVisibility());
+        Assert.assertEquals(new ColumnVisibility("C"), attr3.getColumnVisibility());
+    }
+    
     private static RemoteEdgeDictionary mockRemoteEdgeDictionary = EasyMock.createMock(RemoteEdgeDictionary.class);
     
     public static class Producer {
@@ -20,8 +20,12 @@ import org.apache.commons.collections4.iterators.TransformIterator;
 import org.apache.log4j.Logger;
 import org.junit.Assert;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
@@ -37,6 +41,9 @@ public class UniqueTransformTest {
     private List<String> values = new ArrayList();
     private List<String> visibilities = new ArrayList();
     
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    
     @Before
     public void setup() {
         Random random = new Random(1000);
@@ -192,6 +199,23 @@ public class UniqueTransformTest {
         Assert.assertNull(transform.apply(null));
     }
     
+    @Test
+    public void testCloseDeletesSpilledHashes() throws IOException {
+        File spillDir = temporaryFolder.newFolder();
+        Random random = new Random(2000);
+        Set<String> fields = Sets.newHashSet("Attr0", "Attr1", "Attr2", "Attr3");
+        // no memory, so the hashes are spilled as soon as the first table fills
+        UniqueTransform transform = new UniqueTransform(fields, 0, spillDir);
+        for (int i = 0; i < 100; i++) {
+            Document d = createDocument(random, false);
+            transform.apply(Maps.immutableEntry(d.getMetadata(), d));
+        }
+        Assert.assertTrue(spillDir.list().length > 0);
+        
+        transform.close();
+        Assert.assertEquals(0, spillDir.list().length);
+    }
+    
     /**
      * Test that groups get placed into separate field sets
      */
@@ -0,0 +1,228 @@
+package datawave.query.util.sortedset;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.PartialKey;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BlockedSortedSetFileTest {
+    
+    private File file = null;
+    
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("BlockedSortedSetFileTest", ".bin");
+        file.deleteOnExit();
+    }
+    
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+    
+    private <E> void write(Iterable<E> entries, boolean compressed, int blockSize) throws IOException {
+        BlockedSortedSetFile.Writer<E> writer = new BlockedSortedSetFile.Writer<>(new FileOutputStream(file), compressed, blockSize);
+        for (E e : entries) {
+            writer.append(e);
+        }
+        writer.close();
+    }
+    
+    private <E> BlockedSortedSetFile.Reader<E> open() throws IOException {
+        return new BlockedSortedSetFile.Reader<>(new SortedSetRandomAccess.MappedFile(file), null);
+    }
+    
+    private SortedSet<String> strings(int count) {
+        SortedSet<String> set = new TreeSet<>();
+        for (int i = 0; i < count; i++) {
+            set.add(String.format("value%06d", i * 2));
+        }
+        return set;
+    }
+    
+    @Test
+    public void testStrings() throws IOException {
+        SortedSet<String> expected = strings(5000);
+        write(expected, true, 1024);
+        
+        BlockedSortedSetFile.Reader<String> reader = open();
+        assertEquals(expected.size(), reader.size());
+        assertTrue(reader.getBlockCount() > 1);
+        assertTrue(reader.isCompressed());
+        assertEquals(expected.first(), reader.first());
+        assertEquals(expected.last(), reader.last());
+        
+        List<String> actual = new ArrayList<>();
+        for (Iterator<String> it = reader.iterator(); it.hasNext();) {
+            actual.add(it.next());
+        }
+        assertEquals(new ArrayList<>(expected), actual);
+        reader.close();
+    }
+    
+    @Test
+    public void testSeek() throws IOException {
+        SortedSet<String> expected = strings(5000);
+        write(expected, true, 512);
+        BlockedSortedSetFile.Reader<String> reader = open();
+        
+        // seek to both existing and missing entries
+        for (String from : new String[] {"a", "value000000", "value002001", "value004000", "value009998", "value009999", "z"}) {
+            for (String to : new String[] {"value002001", "value007777", "z"}) {
+                if (from.compareTo(to) > 0) {
+                    continue;
+                }
+                List<String> actual = new ArrayList<>();
+                for (Iterator<String> it = reader.iterator(true, from, true, to); it.hasNext();) {
+                    actual.add(it.next());
+                }
+                assertEquals(from + " -> " + to, new ArrayList<>(expected.subSet(from, to)), actual);
+            }
+        }
+        reader.close();
+    }
+    
+    @Test
+    public void testKeyValues() throws IOException {
+        SortedSet<KeyValueSerializable> expected = new TreeSet<>();
+        for (int i = 0; i < 1000; i++) {
+            Key key = new Key("20190101_" + (i % 3), "datatype\0uid" + i, "", "A&B", 1234L);
+            expected.add(new KeyValueSerializable(key, ("value" + i).getBytes()));
+        }
+        write(expected, true, 2048);
+        
+        BlockedSortedSetFile.Reader<KeyValueSerializable> reader = open();
+        assertEquals(expected.size(), reader.size());
+        KeyValueSerializable from = new KeyValueSerializable(expected.first().getKey().followingKey(PartialKey.ROW), new byte[0]);
+        Iterator<KeyValueSerializable> it = reader.iterator(true, from, false, null);
+        for (KeyValueSerializable kv : expected.tailSet(from)) {
+            assertEquals(kv, it.next());
+        }
+        assertFalse(it.hasNext());
+        reader.close();
+    }
+    
+    @Test
+    public void testJavaSerialization() throws IOException {
+        SortedSet<BigInteger> expected = new TreeSet<>();
+        for (int i = 0; i < 1000; i++) {
+            expected.add(BigInteger.valueOf(i * 7));
+        }
+        write(expected, false, 256);
+        
+        BlockedSortedSetFile.Reader<BigInteger> reader = open();
+        assertFalse(reader.isCompressed());
+        assertEquals(expected.first(), reader.first());
+        assertEquals(expected.last(), reader.last());
+        Iterator<BigInteger> it = reader.iterator(true, BigInteger.valueOf(500), false, null);
+        assertEquals(BigInteger.valueOf(504), it.next());
+        reader.close();
+    }
+    
+    @Test
+    public void testEmpty() throws IOException {
+        write(new TreeSet<String>(), true, 1024);
+        BlockedSortedSetFile.Reader<String> reader = open();
+        assertEquals(0, reader.size());
+        assertFalse(reader.iterator().hasNext());
+        assertFalse(reader.iterator(true, "a", false, null).hasNext());
+        try {
+            reader.first();
+            fail("Expected first to fail on an empty file");
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+        reader.close();
+    }
+    
+    @Test
+    public void testBlockChecksum() throws IOException {
+        write(strings(1000), true, 1024);
+        corrupt(10);
+        
+        BlockedSortedSetFile.Reader<String> reader = open();
+        try {
+            for (Iterator<String> it = reader.iterator(); it.hasNext();) {
+                it.next();
+            }
+            fail("Expected the corrupted block to fail verification");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getCause().getMessage().contains("checksum"));
+        }
+        reader.close();
+    }
+    
+    @Test
+    public void testIndexChecksum() throws IOException {
+        write(strings(1000), true, 1024);
+        corrupt(file.length() - BlockedSortedSetFile.FOOTER_LENGTH - 10);
+        
+        try {
+            open();
+            fail("Expected the corrupted index to fail verification");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("checksum"));
+        }
+    }
+    
+    @Test
+    public void testMappedSegments() throws IOException {
+        SortedSet<String> expected = strings(1000);
+        write(expected, true, 1024);
+        
+        // map the file in very small segments to ensure reads span segments
+        BlockedSortedSetFile.Reader<String> reader = new BlockedSortedSetFile.Reader<>(new SortedSetRandomAccess.MappedFile(file, 100), null);
+        List<String> actual = new ArrayList<>();
+        for (Iterator<String> it = reader.iterator(); it.hasNext();) {
+            actual.add(it.next());
+        }
+        assertEquals(new ArrayList<>(expected), actual);
+        reader.close();
+    }
+    
+    @Test
+    public void testFileSortedSet() throws Exception {
+        SortedSet<String> expected = strings(20000);
+        FileSortedSet<String> set = new FileSortedSet<>(expected, new SortedSetTempFileHandler(), true);
+        assertTrue(set.isPersisted());
+        assertEquals(expected.size(), set.size());
+        assertEquals(expected.first(), set.first());
+        assertEquals(expected.last(), set.last());
+        assertTrue(set.contains("value000100"));
+        assertFalse(set.contains("value000101"));
+        assertEquals(new ArrayList<>(expected.tailSet("value010001")), new ArrayList<>(set.tailSet("value010001")));
+        assertEquals(expected.subSet("value000100", "value000200").size(), set.subSet("value000100", "value000200").size());
+        assertEquals(expected.headSet("value000200").last(), set.headSet("value000200").last());
+        
+        set.load();
+        assertFalse(set.isPersisted());
+        assertEquals(expected, new TreeSet<>(set));
+    }
+    
+    private void corrupt(long position) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(position);
+            int b = raf.read();
+            raf.seek(position);
+            raf.write(b ^ 0xFF);
+        }
+    }
+}
@@ -115,6 +115,20 @@ public class BufferedFileBackedSortedSetTest {
         assertTrue(set.isEmpty());
     }
     
+    @Test
+    public void testClose() {
+        set.close();
+        // the persisted files are opened again
+        assertEquals(data.length, set.size());
+        assertTrue(set.contains(data[0]));
+        set.close();
+        int index = 0;
+        for (byte[] value : set) {
+            assertTrue(Arrays.equals(data[sortedOrder[index++]], value));
+        }
+        assertEquals(data.length, index);
+    }
+    
     @Test
     public void testContainsObject() {
         for (int i = (data.length / 2); i < data.length; i++) {
@@ -182,31 +196,35 @@ public class BufferedFileBackedSortedSetTest {
     public void testSubSet() {
         int start = sortedOrder.length / 3;
         int end = start * 2;
-        try {
-            SortedSet<byte[]> subSet = set.subSet(data[sortedOrder[start]], data[sortedOrder[end]]);
-            fail("Expected the subSet operation to fail with underlying persisted FileSortedSets");
-        } catch (Exception e) {
-            // expected
-        }
+        SortedSet<byte[]> subSet = set.subSet(data[sortedOrder[start]], data[sortedOrder[end]]);
+        assertContents(subSet, start, end);
     }
     
     @Test
     public void testHeadSet() {
         int end = sortedOrder.length / 3;
-        try {
-            SortedSet<byte[]> subSet = set.headSet(data[sortedOrder[end]]);
-            fail("Expected the headSet operation to fail with underlying persisted FileSortedSets");
-        } catch (Exception e) {
-            // expected
-        }
+        SortedSet<byte[]> subSet = set.headSet(data[sortedOrder[end]]);
+        assertContents(subSet, 0, end);
     }
     
     @Test
     public void testTailSet() {
         int start = sortedOrder.length / 3;
+        SortedSet<byte[]> subSet = set.tailSet(data[sortedOrder[start]]);
+        assertContents(subSet, start, sortedOrder.length);
+        assertTrue(Arrays.equals(data[sortedOrder[start]], subSet.first()));
+    }
+    
+    private void assertContents(SortedSet<byte[]> subSet, int start, int end) {
+        assertEquals(end - start, subSet.size());
+        int index = start;
+        for (byte[] value : subSet) {
+            assertTrue(Arrays.equals(data[sortedOrder[index++]], value));
+        }
+        assertEquals(end, index);
         try {
-            SortedSet<byte[]> subSet = set.tailSet(data[sortedOrder[start]]);
-            fail("Expected the tailSet operation to fail with underlying persisted FileSortedSets");
+            subSet.add(data[sortedOrder[start]]);
+            fail("Expected the add operation to fail with underlying persisted FileSortedSets");
         } catch (Exception e) {
             // expected
         }
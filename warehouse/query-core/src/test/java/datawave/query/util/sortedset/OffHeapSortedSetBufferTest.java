@@ -0,0 +1,171 @@
+package datawave.query.util.sortedset;
+
+import org.apache.accumulo.core.data.Key;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class OffHeapSortedSetBufferTest {
+    
+    private final Random random = new Random(1234);
+    
+    private byte[] randomBytes(int maxLength) {
+        byte[] bytes = new byte[random.nextInt(maxLength)];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+    
+    private static List<byte[]> toList(Iterable<byte[]> values) {
+        List<byte[]> list = new ArrayList<>();
+        for (byte[] value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+    
+    private static void assertSameBytes(Iterable<byte[]> expected, Iterable<byte[]> actual) {
+        List<byte[]> e = toList(expected);
+        List<byte[]> a = toList(actual);
+        assertEquals(e.size(), a.size());
+        for (int i = 0; i < e.size(); i++) {
+            assertTrue("mismatch at " + i, Arrays.equals(e.get(i), a.get(i)));
+        }
+    }
+    
+    @Test
+    public void testByteArrayOrdering() {
+        OffHeapBufferBudget budget = new OffHeapBufferBudget(1 << 24, 0);
+        OffHeapSortedSetBuffer<byte[]> buffer = new OffHeapSortedSetBuffer<>(new OffHeapSortedSetBuffer.ByteArrayEncoding(), budget, 128);
+        SortedSet<byte[]> expected = new TreeSet<>(new ByteArrayComparator());
+        for (int i = 0; i < 2000; i++) {
+            byte[] value = randomBytes(8);
+            assertEquals(expected.add(value), buffer.add(value));
+        }
+        assertEquals(expected.size(), buffer.size());
+        assertSameBytes(expected, buffer);
+        assertTrue(Arrays.equals(expected.first(), buffer.first()));
+        assertTrue(Arrays.equals(expected.last(), buffer.last()));
+        
+        byte[] from = randomBytes(4);
+        byte[] to = randomBytes(4);
+        if (new ByteArrayComparator().compare(from, to) > 0) {
+            byte[] tmp = from;
+            from = to;
+            to = tmp;
+        }
+        assertSameBytes(expected.subSet(from, to), buffer.subSet(from, to));
+        assertSameBytes(expected.headSet(to), buffer.headSet(to));
+        assertSameBytes(expected.tailSet(from), buffer.tailSet(from));
+        
+        // remove every other entry
+        int index = 0;
+        for (Iterator<byte[]> it = expected.iterator(); it.hasNext();) {
+            byte[] value = it.next();
+            if (index++ % 2 == 0) {
+                it.remove();
+                assertTrue(buffer.remove(value));
+                assertFalse(buffer.contains(value));
+            } else {
+                assertTrue(buffer.contains(value));
+            }
+        }
+        assertSameBytes(expected, buffer);
+        
+        buffer.clear();
+        assertTrue(buffer.isEmpty());
+        assertEquals(0, budget.getReserved());
+    }
+    
+    @Test
+    public void testKeyValueOrdering() {
+        OffHeapBufferBudget budget = new OffHeapBufferBudget(1 << 24, 0);
+        OffHeapSortedSetBuffer<KeyValueSerializable> buffer = new OffHeapSortedSetBuffer<>(new OffHeapSortedSetBuffer.KeyValueEncoding(), budget);
+        SortedSet<KeyValueSerializable> expected = new TreeSet<>();
+        for (int i = 0; i < 2000; i++) {
+            // use short random components so that there are many shared prefixes, embedded zeros, and equal fields
+            Key key = new Key(randomBytes(3), randomBytes(3), randomBytes(3), randomBytes(2), random.nextLong() % 3, random.nextBoolean());
+            KeyValueSerializable kv = new KeyValueSerializable(key, randomBytes(3));
+            assertEquals(expected.add(kv), buffer.add(kv));
+        }
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(buffer));
+        
+        KeyValueSerializable from = expected.first();
+        for (KeyValueSerializable kv : expected) {
+            if (random.nextInt(10) == 0) {
+                from = kv;
+                break;
+            }
+        }
+        assertEquals(new ArrayList<>(expected.tailSet(from)), new ArrayList<>(buffer.tailSet(from)));
+    }
+    
+    @Test
+    public void testBudgetExhausted() {
+        OffHeapBufferBudget budget = new OffHeapBufferBudget(256, 0);
+        OffHeapSortedSetBuffer<byte[]> buffer = new OffHeapSortedSetBuffer<>(new OffHeapSortedSetBuffer.ByteArrayEncoding(), budget, 128);
+        int added = 0;
+        try {
+            for (int i = 0; i < 1000; i++) {
+                buffer.add(new byte[] {(byte) (i >> 8), (byte) i, 0, 0});
+                added++;
+            }
+            fail("Expected the budget to be exhausted");
+        } catch (OffHeapBufferBudget.BudgetExhaustedException e) {
+            // expected
+        }
+        assertEquals(added, buffer.size());
+        assertEquals(1, budget.getExhaustedCount());
+        assertTrue(budget.getReserved() <= budget.getCapacity());
+        
+        // releasing memory allows a waiting reservation to proceed
+        buffer.clear();
+        assertEquals(0, budget.getReserved());
+        assertTrue(budget.reserve(256, 0));
+    }
+    
+    @Test
+    public void testBackPressurePersistsBuffer() throws IOException {
+        OffHeapBufferBudget budget = new OffHeapBufferBudget(1024, 0);
+        BufferedFileBackedSortedSet<byte[]> set = new BufferedFileBackedSortedSet<>(new ByteArrayComparator(), 100000, 100, 2,
+                        Collections.singletonList(new BufferedFileBackedSortedSet.SortedSetFileHandlerFactory() {
+                            @Override
+                            public FileSortedSet.SortedSetFileHandler createHandler() throws IOException {
+                                return new SortedSetTempFileHandler();
+                            }
+            
+                            @Override
+                            public boolean isValid() {
+                                return true;
+                            }
+                        }));
+        set.setBufferFactory(comparator -> new OffHeapSortedSetBuffer<>(new OffHeapSortedSetBuffer.ByteArrayEncoding(), budget, 512));
+        
+        SortedSet<byte[]> expected = new TreeSet<>(new ByteArrayComparator());
+        for (int i = 0; i < 1000; i++) {
+            byte[] value = randomBytes(16);
+            expected.add(value);
+            set.add(value);
+        }
+        
+        // the buffer threshold was never reached, so the budget must have forced the buffer to disk
+        assertTrue(set.hasPersistedData());
+        assertTrue(budget.getReserved() <= budget.getCapacity());
+        assertSameBytes(expected, set);
+        
+        set.clear();
+        assertEquals(0, budget.getReserved());
+    }
+}
@@ -0,0 +1,135 @@
+package datawave.query.util.sortedset;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SpillingHashPairSetTest {
+    
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    
+    private final Random random = new Random(1234);
+    
+    @Test
+    public void testHashPairSet() {
+        HashPairSet set = new HashPairSet();
+        assertTrue(set.add(0, 0));
+        assertFalse(set.add(0, 0));
+        long[] pairs = new long[20000];
+        for (int i = 0; i < pairs.length; i++) {
+            pairs[i] = random.nextLong();
+        }
+        for (int i = 0; i < pairs.length; i += 2) {
+            assertTrue(set.add(pairs[i], pairs[i + 1]));
+        }
+        for (int i = 0; i < pairs.length; i += 2) {
+            assertTrue(set.contains(pairs[i], pairs[i + 1]));
+            assertFalse(set.add(pairs[i], pairs[i + 1]));
+        }
+        assertFalse(set.contains(1, 2));
+        assertEquals(pairs.length / 2 + 1, set.size());
+        
+        long[] sorted = set.toSortedArray();
+        assertEquals(set.size() * 2, sorted.length);
+        assertEquals(0, sorted[0]);
+        assertEquals(0, sorted[1]);
+        for (int i = 2; i < sorted.length; i += 2) {
+            assertTrue(HashPairSet.compare(sorted[i - 2], sorted[i - 1], sorted[i], sorted[i + 1]) < 0);
+        }
+        
+        set.clear();
+        assertTrue(set.isEmpty());
+        assertFalse(set.contains(pairs[0], pairs[1]));
+    }
+    
+    @Test
+    public void testUnsignedOrder() {
+        assertTrue(HashPairSet.compare(1, 0, -1, 0) < 0);
+        assertTrue(HashPairSet.compare(Long.MAX_VALUE, 0, Long.MIN_VALUE, 0) < 0);
+        assertTrue(HashPairSet.compare(5, 1, 5, -1) < 0);
+        assertEquals(0, HashPairSet.compare(5, -1, 5, -1));
+    }
+    
+    @Test
+    public void testSortedHashPairFile() throws IOException {
+        HashPairSet set = new HashPairSet();
+        for (int i = 0; i < 1000; i++) {
+            set.add(random.nextLong(), random.nextLong());
+        }
+        long[] sorted = set.toSortedArray();
+        SortedHashPairFile file = SortedHashPairFile.write(temporaryFolder.newFile(), sorted);
+        assertEquals(1000, file.size());
+        for (int i = 0; i < sorted.length; i += 2) {
+            assertTrue(file.contains(sorted[i], sorted[i + 1]));
+            assertFalse(file.contains(sorted[i], sorted[i + 1] + 1));
+        }
+        
+        SortedHashPairFile other = SortedHashPairFile.write(temporaryFolder.newFile(), Arrays.copyOfRange(sorted, 500, 1500));
+        SortedHashPairFile merged = SortedHashPairFile.merge(temporaryFolder.newFile(), Arrays.asList(file, other));
+        assertEquals(1000, merged.size());
+        for (int i = 0; i < sorted.length; i += 2) {
+            assertTrue(merged.contains(sorted[i], sorted[i + 1]));
+        }
+        
+        assertTrue(file.delete());
+        assertTrue(other.delete());
+        assertTrue(merged.delete());
+    }
+    
+    @Test
+    public void testSpill() throws IOException {
+        File spillDir = temporaryFolder.newFolder();
+        // small enough to spill every few thousand hashes and merge the runs
+        SpillingHashPairSet set = new SpillingHashPairSet(64 * 1024, spillDir, 3);
+        List<long[]> added = new ArrayList<>();
+        for (int i = 0; i < 50000; i++) {
+            long[] pair = new long[] {random.nextLong(), random.nextLong()};
+            assertTrue(set.add(pair[0], pair[1]));
+            added.add(pair);
+        }
+        assertEquals(50000, set.size());
+        assertTrue(set.getRunCount() > 0);
+        assertTrue(set.getRunCount() <= 3);
+        assertFalse(set.isSaturated());
+        for (long[] pair : added) {
+            assertFalse(set.add(pair[0], pair[1]));
+        }
+        assertEquals(50000, set.size());
+        
+        set.close();
+        assertEquals(0, spillDir.list().length);
+    }
+    
+    @Test
+    public void testSaturatedWithoutSpillDir() throws IOException {
+        SpillingHashPairSet set = new SpillingHashPairSet(64 * 1024, null);
+        List<long[]> added = new ArrayList<>();
+        for (int i = 0; i < 50000; i++) {
+            long[] pair = new long[] {random.nextLong(), random.nextLong()};
+            assertTrue(set.add(pair[0], pair[1]));
+            added.add(pair);
+        }
+        assertTrue(set.isSaturated());
+        assertEquals(0, set.getRunCount());
+        long recorded = set.size();
+        assertTrue(recorded < 50000);
+        
+        // the hashes recorded before the memory was used are still detected
+        for (int i = 0; i < recorded; i++) {
+            long[] pair = added.get(i);
+            assertFalse(set.add(pair[0], pair[1]));
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package datawave.webservice.query.database;
 
+import java.io.File;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -7,6 +8,7 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
@@ -26,11 +28,15 @@ import javax.sql.rowset.RowSetFactory;
 import javax.sql.rowset.RowSetProvider;
 
 import datawave.configuration.spring.SpringBean;
+import datawave.webservice.results.cached.CachedResultsConfiguration;
 import datawave.webservice.results.cached.CachedResultsParameters;
+import datawave.webservice.results.cached.columnar.ColumnarResultsFile;
+import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 
 /**
- * Removes tables and views from the MySQL database that have been there for 24 hours so that we don't have to purge data from them.
+ * Removes tables and views from the MySQL database that have been there for 24 hours so that we don't have to purge data from them. Cached results stored by
+ * column in local files are removed after the same time.
  */
 @RunAs("InternalUser")
 @RolesAllowed({"AuthorizedUser", "AuthorizedQueryServer", "InternalUser", "Administrator"})
@@ -62,6 +68,11 @@ public class CachedResultsCleanupBean {
     @SpringBean(refreshable = true)
     protected CachedResultsCleanupConfiguration cachedResultsCleanupConfiguration;
     
+    // reference "datawave/query/CachedResults.xml"
+    @Inject
+    @SpringBean(required = false, refreshable = true)
+    protected CachedResultsConfiguration cachedResultsConfiguration;
+    
     private RowSetFactory rowSetProvider;
     
     @PostConstruct
@@ -107,6 +118,28 @@ public class CachedResultsCleanupBean {
         } catch (SQLException e) {
             log.error("Error cleaning up cached result objects: " + e.getMessage());
         }
+        cleanupColumnarFiles();
+    }
+    
+    private void cleanupColumnarFiles() {
+        if (cachedResultsConfiguration == null || StringUtils.isBlank(cachedResultsConfiguration.getColumnarDirectory())) {
+            return;
+        }
+        File[] files = new File(cachedResultsConfiguration.getColumnarDirectory()).listFiles((dir, name) -> name.endsWith(ColumnarResultsFile.SUFFIX));
+        if (files == null) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(cachedResultsCleanupConfiguration.getDaysToLive());
+        for (File file : files) {
+            if (file.lastModified() < cutoff) {
+                String viewName = file.getName().substring(0, file.getName().length() - ColumnarResultsFile.SUFFIX.length());
+                if (file.delete()) {
+                    removeCrqRow(viewName);
+                } else {
+                    log.error("Unable to delete cached results file " + file);
+                }
+            }
+        }
     }
     
     private void removeCrqRow(String id) {
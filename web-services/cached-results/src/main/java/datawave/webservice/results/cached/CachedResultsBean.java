@@ -124,6 +124,8 @@ import datawave.webservice.result.CachedResultsResponse;
 import datawave.webservice.result.GenericResponse;
 import datawave.webservice.result.TotalResultsAware;
 import datawave.webservice.result.VoidResponse;
+import datawave.webservice.results.cached.columnar.ColumnarResultsFile;
+import datawave.webservice.results.cached.columnar.ColumnarResultsWriter;
 
 import org.apache.accumulo.core.client.Connector;
 import org.apache.accumulo.core.trace.Span;
@@ -266,6 +268,7 @@ public class CachedResultsBean {
         }
         
         CachedRunningQuery.setDatasource(ds);
+        CachedRunningQuery.setColumnarDirectory(getColumnarDirectory());
         CachedRunningQuery.setQueryFactory(queryFactory);
         CachedRunningQuery.setResponseObjectFactory(responseObjectFactory);
         
@@ -365,6 +368,8 @@ public class CachedResultsBean {
         PreparedStatement ps = null;
         boolean tableCreated = false;
         boolean viewCreated = false;
+        File columnarDirectory = getColumnarDirectory();
+        ColumnarResultsWriter columnarWriter = null;
         CachedRunningQuery crq = null;
         Span span = null;
         boolean queryLockedException = false;
@@ -499,21 +504,31 @@ public class CachedResultsBean {
                 throw new IllegalArgumentException(logic.getLogicName() + " does not support CachedResults calls");
             }
             
-            try {
-                con = ds.getConnection();
-                // Create the result table for this query
-                Statement s = con.createStatement();
-                String createTable = cachedResultsConfiguration.getParameters().get("CREATE_TABLE");
-                createTable = createTable.replace(TABLE, tableName);
-                s.execute(createTable);
-                s.close();
-                tableCreated = true;
-                // Parse the PreparedStatement
-                String insert = cachedResultsConfiguration.getParameters().get("INSERT");
-                insert = insert.replace(TABLE, tableName);
-                ps = con.prepareStatement(insert);
-            } catch (SQLException sqle) {
-                throw new QueryException(DatawaveErrorCode.CACHED_RESULTS_TABLE_CREATE_ERROR, sqle);
+            if (columnarDirectory != null) {
+                // Write the results by column to a local file named for the view instead of a table
+                try {
+                    columnarWriter = new ColumnarResultsWriter(ColumnarResultsFile.getFile(columnarDirectory, viewName),
+                                    cachedResultsConfiguration.getColumnarRowsPerChunk());
+                } catch (IOException e) {
+                    throw new QueryException(DatawaveErrorCode.CACHED_RESULTS_TABLE_CREATE_ERROR, e);
+                }
+            } else {
+                try {
+                    con = ds.getConnection();
+                    // Create the result table for this query
+                    Statement s = con.createStatement();
+                    String createTable = cachedResultsConfiguration.getParameters().get("CREATE_TABLE");
+                    createTable = createTable.replace(TABLE, tableName);
+                    s.execute(createTable);
+                    s.close();
+                    tableCreated = true;
+                    // Parse the PreparedStatement
+                    String insert = cachedResultsConfiguration.getParameters().get("INSERT");
+                    insert = insert.replace(TABLE, tableName);
+                    ps = con.prepareStatement(insert);
+                } catch (SQLException sqle) {
+                    throw new QueryException(DatawaveErrorCode.CACHED_RESULTS_TABLE_CREATE_ERROR, sqle);
+                }
             }
             
             // Object for keeping track of which fields are placed in which
@@ -559,6 +574,11 @@ public class CachedResultsBean {
                     
                     for (CacheableQueryRow cacheableQueryObject : cacheableQueryRowList) {
                         
+                        if (columnarWriter != null) {
+                            columnarWriter.add(owner, queryId, logic.getLogicName(), cacheableQueryObject, fieldMap);
+                            continue;
+                        }
+                        
                         Collection<String> values = ((CacheableQueryRow) cacheableQueryObject).getColumnValues().values();
                         int maxValueLength = 0;
                         for (String s : values) {
@@ -623,8 +643,16 @@ public class CachedResultsBean {
                 }
             }
             
-            // Create the view of the table
-            viewCreated = createView(tableName, viewName, con, viewCreated, fieldMap);
+            if (columnarWriter != null) {
+                // write the footer, after which the results can be read
+                columnarWriter.close();
+                if (log.isDebugEnabled()) {
+                    log.debug("Wrote " + columnarWriter.getRowCount() + " rows to " + columnarWriter.getFile());
+                }
+            } else {
+                // Create the view of the table
+                viewCreated = createView(tableName, viewName, con, viewCreated, fieldMap);
+            }
             
             // create the CachedRunningQuery and store it under the originalQueryName, but do not activate it
             crq = new CachedRunningQuery(q, logic, viewName, alias, owner, viewName, cachedResultsConfiguration.getDefaultPageSize(), queryId,
@@ -691,6 +719,9 @@ public class CachedResultsBean {
             } else {
                 log.error(t.getMessage(), t);
             }
+            if (columnarWriter != null && !columnarWriter.delete()) {
+                log.error("Unable to delete " + columnarWriter.getFile());
+            }
             if (con != null) {
                 Statement s = null;
                 try {
@@ -1173,27 +1204,42 @@ public class CachedResultsBean {
             
             List<String> columns = new ArrayList<>();
             Integer numRows = null;
-            try (Connection con = ds.getConnection(); Statement s = con.createStatement()) {
-                try (ResultSet rs = s.executeQuery("select count(*) from " + view)) {
-                    if (rs.next()) {
-                        numRows = rs.getInt(1);
-                    }
-                }
-                
-                try (ResultSet rs = s.executeQuery("show columns from " + view)) {
+            if (crq.isColumnar()) {
+                // the footer of the file has the row count and the columns
+                try (ColumnarResultsFile file = new ColumnarResultsFile(ColumnarResultsFile.getFile(CachedRunningQuery.getColumnarDirectory(), view))) {
+                    numRows = (int) file.getRowCount();
                     Set<String> fixedColumns = CacheableQueryRow.getFixedColumnSet();
-                    while (rs.next()) {
-                        String column = rs.getString(1);
+                    for (String column : file.getColumns()) {
                         if (!fixedColumns.contains(column)) {
                             columns.add(column);
                         }
                     }
+                } catch (IOException e) {
+                    throw new QueryException(DatawaveErrorCode.CACHED_QUERY_SQL_ERROR, e);
+                }
+            } else {
+                try (Connection con = ds.getConnection(); Statement s = con.createStatement()) {
+                    try (ResultSet rs = s.executeQuery("select count(*) from " + view)) {
+                        if (rs.next()) {
+                            numRows = rs.getInt(1);
+                        }
+                    }
+                    
+                    try (ResultSet rs = s.executeQuery("show columns from " + view)) {
+                        Set<String> fixedColumns = CacheableQueryRow.getFixedColumnSet();
+                        while (rs.next()) {
+                            String column = rs.getString(1);
+                            if (!fixedColumns.contains(column)) {
+                                columns.add(column);
+                            }
+                        }
+                    }
+                    
+                } catch (SQLSyntaxErrorException e) {
+                    throw new NotFoundQueryException(DatawaveErrorCode.VIEW_NOT_FOUND);
+                } catch (SQLException e) {
+                    throw new QueryException(DatawaveErrorCode.CACHED_QUERY_SQL_ERROR);
                 }
-                
-            } catch (SQLSyntaxErrorException e) {
-                throw new NotFoundQueryException(DatawaveErrorCode.VIEW_NOT_FOUND);
-            } catch (SQLException e) {
-                throw new QueryException(DatawaveErrorCode.CACHED_QUERY_SQL_ERROR);
             }
             
             response.setColumns(columns);
@@ -2476,6 +2522,21 @@ public class CachedResultsBean {
         }
     }
     
+    /**
+     * @return the directory in which to store cached results by column, or null if they are stored in the database
+     */
+    protected File getColumnarDirectory() {
+        String directory = cachedResultsConfiguration.getColumnarDirectory();
+        if (StringUtils.isBlank(directory)) {
+            return null;
+        }
+        File columnarDirectory = new File(directory);
+        if (!columnarDirectory.isDirectory() && !columnarDirectory.mkdirs()) {
+            throw new EJBException("Unable to create the columnar cached results directory " + columnarDirectory);
+        }
+        return columnarDirectory;
+    }
+    
     protected boolean createView(String tableName, String viewName, Connection con, boolean viewCreated, Map<String,Integer> fieldMap) throws SQLException {
         CachedResultsParameters.validate(tableName);
         CachedResultsParameters.validate(viewName);
@@ -13,6 +13,8 @@ import datawave.webservice.query.logic.QueryLogicFactory;
 import datawave.webservice.query.logic.QueryLogicTransformer;
 import datawave.webservice.query.metric.BaseQueryMetric;
 import datawave.webservice.query.result.event.ResponseObjectFactory;
+import datawave.webservice.results.cached.columnar.ColumnarResultsFile;
+import datawave.webservice.results.cached.columnar.ColumnarResultsView;
 import org.apache.commons.dbutils.DbUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
@@ -21,6 +23,7 @@ import org.jboss.resteasy.specimpl.MultivaluedMapImpl;
 import javax.sql.DataSource;
 import javax.sql.rowset.CachedRowSet;
 import javax.sql.rowset.RowSetProvider;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
@@ -39,6 +42,7 @@ import java.util.Date;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.UUID;
@@ -50,12 +54,19 @@ public class CachedRunningQuery extends AbstractRunningQuery {
     
     private static DataSource datasource = null;
     
+    // the directory of cached results stored by column, or null if they are stored in the database
+    private static File columnarDirectory = null;
+    
     private static final long serialVersionUID = 1L;
     
     private static ResponseObjectFactory responseObjectFactory;
     private transient Connection connection = null;
     private transient CachedRowSet crs = null;
     private transient Statement statement = null;
+    private transient ColumnarResultsFile columnarFile = null;
+    private transient ColumnarResultsView columnarView = null;
+    // the index of the first row of the current page of the columnar view
+    private transient int columnarPageStart = 0;
     
     private transient CacheableLogic cacheableLogic = null;
     private transient QueryLogic<?> queryLogic = null;
@@ -401,8 +412,13 @@ public class CachedRunningQuery extends AbstractRunningQuery {
         if (StringUtils.isEmpty(StringUtils.trimToNull(grouping)))
             grouping = null;
         
-        if (null == this.viewColumnNames)
-            this.viewColumnNames = this.getViewColumnNames(connection, view);
+        if (null == this.viewColumnNames) {
+            if (isColumnar()) {
+                this.viewColumnNames = this.getColumnarColumnNames(view);
+            } else {
+                this.viewColumnNames = this.getViewColumnNames(connection, view);
+            }
+        }
         
         if (!fields.equals("*")) {
             LinkedHashSet<String> fieldSet = new LinkedHashSet<>();
@@ -544,6 +560,8 @@ public class CachedRunningQuery extends AbstractRunningQuery {
     public boolean isActivated() {
         if (this.connection != null && this.statement != null && this.crs != null) {
             return true;
+        } else if (this.connection != null && this.columnarView != null) {
+            return true;
         } else {
             return false;
         }
@@ -566,6 +584,29 @@ public class CachedRunningQuery extends AbstractRunningQuery {
         return columns;
     }
     
+    private List<String> getColumnarColumnNames(String view) throws SQLException {
+        CachedResultsParameters.validate(view);
+        List<String> columns = new ArrayList<>();
+        try (ColumnarResultsFile file = new ColumnarResultsFile(ColumnarResultsFile.getFile(columnarDirectory, view))) {
+            Set<String> fixedColumns = CacheableQueryRow.getFixedColumnSet();
+            for (String column : file.getColumns()) {
+                if (fixedColumns.contains(column) == false) {
+                    columns.add(column);
+                }
+            }
+        } catch (IOException e) {
+            throw new SQLException("Unable to read the columns of " + view, e);
+        }
+        return columns;
+    }
+    
+    /**
+     * @return true if the results of this query are stored by column in a local file rather than in a database table
+     */
+    public boolean isColumnar() {
+        return ColumnarResultsFile.exists(columnarDirectory, this.view);
+    }
+    
     public void activate(Connection connection, QueryLogic<?> queryLogic) throws SQLException {
         
         this.connection = connection;
@@ -586,8 +627,12 @@ public class CachedRunningQuery extends AbstractRunningQuery {
                 log.trace("activating CRS on host:" + host + ", " + this);
             }
             
-            this.statement = this.connection.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
-            initialize();
+            if (isColumnar()) {
+                initializeColumnar();
+            } else {
+                this.statement = this.connection.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+                initialize();
+            }
         } catch (SQLException e) {
             log.error(e.getMessage(), e);
             throw e;
@@ -633,6 +678,42 @@ public class CachedRunningQuery extends AbstractRunningQuery {
         this.currentRow = position.BEFORE_FIRST;
     }
     
+    private void initializeColumnar() throws SQLException {
+        
+        // generate the sql to validate the request in the same way as for a database view
+        this.sqlQuery = this.generateSql(this.view, this.fields, this.conditions, this.grouping, this.order, this.user, this.connection);
+        this.getMetric().setQuery(sqlQuery);
+        
+        closeColumnarView();
+        try {
+            this.columnarFile = new ColumnarResultsFile(ColumnarResultsFile.getFile(columnarDirectory, this.view));
+            this.columnarView = new ColumnarResultsView(this.columnarFile, this.user, this.fields, this.conditions, this.grouping, this.order);
+        } catch (IOException e) {
+            closeColumnarView();
+            throw new SQLException("Unable to read cached results for " + this.view, e);
+        }
+        this.totalRows = this.columnarView.getRowCount();
+        
+        if (log.isTraceEnabled()) {
+            log.trace("Setting totalRows to " + this.totalRows + " from " + this.columnarFile.getFile());
+        }
+        
+        this.columnarPageStart = 0;
+        this.currentRow = position.BEFORE_FIRST;
+    }
+    
+    private void closeColumnarView() {
+        if (this.columnarFile != null) {
+            try {
+                this.columnarFile.close();
+            } catch (IOException e) {
+                log.warn("Unable to close " + this.columnarFile.getFile(), e);
+            }
+        }
+        this.columnarFile = null;
+        this.columnarView = null;
+    }
+    
     public String getUser() {
         return this.user;
     }
@@ -650,6 +731,20 @@ public class CachedRunningQuery extends AbstractRunningQuery {
         updateTimestamp();
         long pageStartTime = System.currentTimeMillis();
         
+        if (this.columnarView != null) {
+            // the columnar view is already ordered, by _eventId_ if no order was requested
+            ResultsPage resultList;
+            try {
+                resultList = convert(this.columnarView.getRows(rowBegin - 1, rowEnd), pageByteTrigger);
+            } catch (IOException e) {
+                throw new SQLException("Unable to read cached results for " + this.view, e);
+            }
+            long now = System.currentTimeMillis();
+            this.getMetric().addPageTime(resultList.getResults().size(), (now - pageStartTime), pageStartTime, now);
+            updateTimestamp();
+            return resultList;
+        }
+        
         // We need to apply a default ORDER BY clause if one does not EXIST in the query
         StringBuilder query = new StringBuilder(this.sqlQuery);
         if (!this.sqlQuery.toUpperCase().contains(" ORDER BY ")) {
@@ -735,7 +830,9 @@ public class CachedRunningQuery extends AbstractRunningQuery {
         }
         
         ResultsPage resultList = new ResultsPage();
-        if (nextPageOfResults()) {
+        if (this.columnarView != null) {
+            resultList = nextColumnarPage(pageByteTrigger);
+        } else if (nextPageOfResults()) {
             resultList = convert(this.crs, pageByteTrigger);
         }
         
@@ -773,7 +870,9 @@ public class CachedRunningQuery extends AbstractRunningQuery {
         }
         
         ResultsPage resultList = new ResultsPage();
-        if (previousPageOfResults()) {
+        if (this.columnarView != null) {
+            resultList = previousColumnarPage(pageByteTrigger);
+        } else if (previousPageOfResults()) {
             resultList = convert(this.crs, pageByteTrigger);
         }
         
@@ -793,6 +892,35 @@ public class CachedRunningQuery extends AbstractRunningQuery {
         return resultList;
     }
     
+    private ResultsPage nextColumnarPage(long pageByteTrigger) throws SQLException {
+        if (currentRow == position.BEFORE_FIRST) {
+            this.columnarPageStart = 0;
+        } else if (this.columnarPageStart < this.totalRows) {
+            this.columnarPageStart += this.pagesize;
+        }
+        return columnarPage(pageByteTrigger);
+    }
+    
+    private ResultsPage previousColumnarPage(long pageByteTrigger) throws SQLException {
+        if (currentRow == position.AFTER_LAST) {
+            // back to the start of the last page
+            this.columnarPageStart = ((this.totalRows - 1) / this.pagesize + 1) * this.pagesize;
+        }
+        this.columnarPageStart -= this.pagesize;
+        return columnarPage(pageByteTrigger);
+    }
+    
+    private ResultsPage columnarPage(long pageByteTrigger) throws SQLException {
+        if (this.columnarPageStart < 0 || this.columnarPageStart >= this.totalRows) {
+            return new ResultsPage();
+        }
+        try {
+            return convert(this.columnarView.getRows(this.columnarPageStart, this.columnarPageStart + this.pagesize), pageByteTrigger);
+        } catch (IOException e) {
+            throw new SQLException("Unable to read cached results for " + this.view, e);
+        }
+    }
+    
     @Override
     public long getLastPageNumber() {
         return this.lastPageNumber;
@@ -863,10 +991,48 @@ public class CachedRunningQuery extends AbstractRunningQuery {
         }
     }
     
+    /**
+     * Convert rows of the columnar view into a result list.
+     *
+     * @param rows
+     * @param pageByteTrigger
+     * @return
+     */
+    private ResultsPage convert(List<Map<String,String>> rows, long pageByteTrigger) {
+        boolean hitPageByteTrigger = false;
+        List<CacheableQueryRow> cacheableQueryRowList = new ArrayList<>();
+        try {
+            long resultBytes = 0;
+            for (Map<String,String> columnValues : rows) {
+                if (hitPageByteTrigger) {
+                    break;
+                }
+                CacheableQueryRow row = CacheableQueryRowReader.createRow(columnValues, this.columnarView.getColumnNumbers(), this.fixedFieldsInEvent);
+                cacheableQueryRowList.add(row);
+                if (pageByteTrigger != 0) {
+                    resultBytes += ObjectSizeOf.Sizer.getObjectSize(row);
+                    if (resultBytes >= pageByteTrigger) {
+                        hitPageByteTrigger = true;
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error(e.getMessage(), e);
+        }
+        
+        if (this.cacheableLogic == null) {
+            return new ResultsPage();
+        } else {
+            return new ResultsPage(this.cacheableLogic.readFromCache(cacheableQueryRowList), (hitPageByteTrigger ? ResultsPage.Status.PARTIAL
+                            : ResultsPage.Status.COMPLETE));
+        }
+    }
+    
     public void resetConnection() {
         this.connection = null;
         this.statement = null;
         this.crs = null;
+        closeColumnarView();
     }
     
     public Connection getConnection() {
@@ -1216,6 +1382,14 @@ public class CachedRunningQuery extends AbstractRunningQuery {
         return crq;
     }
     
+    public static void setColumnarDirectory(File columnarDirectory) {
+        CachedRunningQuery.columnarDirectory = columnarDirectory;
+    }
+    
+    public static File getColumnarDirectory() {
+        return columnarDirectory;
+    }
+    
     public static void setDatasource(DataSource datasource) {
         CachedRunningQuery.datasource = datasource;
     }
@@ -0,0 +1,562 @@
+package datawave.webservice.results.cached.columnar;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * The conditions of a cached results query, evaluated against the columns of a {@link ColumnarResultsFile}. This accepts the subset of the SQL WHERE clause
+ * that applies to a table of string columns: comparisons of a column with a quoted string or a number ({@code = != <> < <= > >=}), {@code [NOT] LIKE},
+ * {@code [NOT] IN}, {@code IS [NOT] NULL}, combined with {@code AND}, {@code OR}, {@code NOT} and parentheses. Anything else, functions in particular, is
+ * rejected with an IllegalArgumentException.
+ * <p>
+ * Rows are evaluated with SQL's three valued logic, so a comparison with a null column is unknown rather than false. Comparisons are case sensitive, and a
+ * number is compared numerically with values that parse as numbers. Each condition can also be checked against the statistics of a chunk, so that chunks that
+ * cannot contain a match are skipped without being read.
+ */
+public abstract class ColumnarFilter {
+    
+    /**
+     * Parse a SQL style condition
+     *
+     * @param conditions
+     * @return the filter
+     * @throws IllegalArgumentException
+     *             if the conditions use syntax that is not supported
+     */
+    public static ColumnarFilter parse(String conditions) {
+        Parser parser = new Parser(conditions);
+        ColumnarFilter filter = parser.parseOr();
+        if (parser.peek() != null) {
+            throw new IllegalArgumentException("Unexpected '" + parser.peek() + "' in conditions: " + conditions);
+        }
+        return filter;
+    }
+    
+    /**
+     * @return a filter that matches rows where the column equals the value
+     */
+    public static ColumnarFilter equalTo(String column, String value) {
+        return new Comparison(column, "=", value, false);
+    }
+    
+    /**
+     * @return a filter that matches rows matching both filters
+     */
+    public static ColumnarFilter and(ColumnarFilter left, ColumnarFilter right) {
+        return new And(left, right);
+    }
+    
+    /**
+     * @param row
+     *            the column values of the row, with null or missing columns treated as NULL
+     * @return TRUE or FALSE, or null if the result is unknown
+     */
+    public abstract Boolean evaluate(Map<String,String> row);
+    
+    /**
+     * @param stats
+     *            the statistics of the columns of a chunk
+     * @return false if no row in the chunk can match
+     */
+    public abstract boolean mayMatch(ChunkStats stats);
+    
+    /**
+     * @return the columns that this filter reads
+     */
+    public Set<String> getColumns() {
+        Set<String> columns = new LinkedHashSet<>();
+        addColumns(columns);
+        return columns;
+    }
+    
+    protected abstract void addColumns(Set<String> columns);
+    
+    public boolean matches(Map<String,String> row) {
+        return Boolean.TRUE.equals(evaluate(row));
+    }
+    
+    /**
+     * Statistics of the columns of one chunk
+     */
+    public interface ChunkStats {
+        int getRows();
+        
+        /**
+         * @return the number of null values in the column, which is every row if the column is not in the chunk
+         */
+        int getNullCount(String column);
+        
+        /**
+         * @return the smallest value in the column, or null if unknown
+         */
+        String getMin(String column);
+        
+        /**
+         * @return the largest value in the column, or null if unknown
+         */
+        String getMax(String column);
+    }
+    
+    private static class And extends ColumnarFilter {
+        private final ColumnarFilter left;
+        private final ColumnarFilter right;
+        
+        And(ColumnarFilter left, ColumnarFilter right) {
+            this.left = left;
+            this.right = right;
+        }
+        
+        @Override
+        public Boolean evaluate(Map<String,String> row) {
+            Boolean l = left.evaluate(row);
+            if (Boolean.FALSE.equals(l)) {
+                return Boolean.FALSE;
+            }
+            Boolean r = right.evaluate(row);
+            if (Boolean.FALSE.equals(r)) {
+                return Boolean.FALSE;
+            }
+            return (l == null || r == null) ? null : Boolean.TRUE;
+        }
+        
+        @Override
+        public boolean mayMatch(ChunkStats stats) {
+            return left.mayMatch(stats) && right.mayMatch(stats);
+        }
+        
+        @Override
+        protected void addColumns(Set<String> columns) {
+            left.addColumns(columns);
+            right.addColumns(columns);
+        }
+    }
+    
+    private static class Or extends ColumnarFilter {
+        private final ColumnarFilter left;
+        private final ColumnarFilter right;
+        
+        Or(ColumnarFilter left, ColumnarFilter right) {
+            this.left = left;
+            this.right = right;
+        }
+        
+        @Override
+        public Boolean evaluate(Map<String,String> row) {
+            Boolean l = left.evaluate(row);
+            if (Boolean.TRUE.equals(l)) {
+                return Boolean.TRUE;
+            }
+            Boolean r = right.evaluate(row);
+            if (Boolean.TRUE.equals(r)) {
+                return Boolean.TRUE;
+            }
+            return (l == null || r == null) ? null : Boolean.FALSE;
+        }
+        
+        @Override
+        public boolean mayMatch(ChunkStats stats) {
+            return left.mayMatch(stats) || right.mayMatch(stats);
+        }
+        
+        @Override
+        protected void addColumns(Set<String> columns) {
+            left.addColumns(columns);
+            right.addColumns(columns);
+        }
+    }
+    
+    private static class Not extends ColumnarFilter {
+        private final ColumnarFilter filter;
+        
+        Not(ColumnarFilter filter) {
+            this.filter = filter;
+        }
+        
+        @Override
+        public Boolean evaluate(Map<String,String> row) {
+            Boolean b = filter.evaluate(row);
+            return b == null ? null : !b;
+        }
+        
+        @Override
+        public boolean mayMatch(ChunkStats stats) {
+            // the statistics only tell us where a condition cannot be true
+            return true;
+        }
+        
+        @Override
+        protected void addColumns(Set<String> columns) {
+            filter.addColumns(columns);
+        }
+    }
+    
+    private static class IsNull extends ColumnarFilter {
+        private final String column;
+        private final boolean negated;
+        
+        IsNull(String column, boolean negated) {
+            this.column = column;
+            this.negated = negated;
+        }
+        
+        @Override
+        public Boolean evaluate(Map<String,String> row) {
+            return (row.get(column) == null) != negated;
+        }
+        
+        @Override
+        public boolean mayMatch(ChunkStats stats) {
+            int nulls = stats.getNullCount(column);
+            return negated ? nulls < stats.getRows() : nulls > 0;
+        }
+        
+        @Override
+        protected void addColumns(Set<String> columns) {
+            columns.add(column);
+        }
+    }
+    
+    private static class Comparison extends ColumnarFilter {
+        private final String column;
+        private final String operator;
+        private final String value;
+        private final boolean numeric;
+        private final Double number;
+        
+        Comparison(String column, String operator, String value, boolean numeric) {
+            this.column = column;
+            this.operator = operator;
+            this.value = value;
+            this.numeric = numeric;
+            this.number = numeric ? Double.valueOf(value) : null;
+        }
+        
+        @Override
+        public Boolean evaluate(Map<String,String> row) {
+            String v = row.get(column);
+            if (v == null) {
+                return null;
+            }
+            int comparison;
+            if (numeric) {
+                Double d = toNumber(v);
+                comparison = (d == null ? v.compareTo(value) : Double.compare(d, number));
+            } else {
+                comparison = v.compareTo(value);
+            }
+            switch (operator) {
+                case "=":
+                    return comparison == 0;
+                case "!=":
+                    return comparison != 0;
+                case "<":
+                    return comparison < 0;
+                case "<=":
+                    return comparison <= 0;
+                case ">":
+                    return comparison > 0;
+                default:
+                    return comparison >= 0;
+            }
+        }
+        
+        @Override
+        public boolean mayMatch(ChunkStats stats) {
+            if (stats.getNullCount(column) == stats.getRows()) {
+                return false;
+            }
+            String min = stats.getMin(column);
+            String max = stats.getMax(column);
+            if (numeric || min == null || max == null) {
+                return true;
+            }
+            switch (operator) {
+                case "=":
+                    return value.compareTo(min) >= 0 && value.compareTo(max) <= 0;
+                case "!=":
+                    return !(min.equals(value) && max.equals(value));
+                case "<":
+                    return min.compareTo(value) < 0;
+                case "<=":
+                    return min.compareTo(value) <= 0;
+                case ">":
+                    return max.compareTo(value) > 0;
+                default:
+                    return max.compareTo(value) >= 0;
+            }
+        }
+        
+        @Override
+        protected void addColumns(Set<String> columns) {
+            columns.add(column);
+        }
+        
+        private static Double toNumber(String v) {
+            try {
+                return Double.valueOf(v.trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+    
+    private static class Like extends ColumnarFilter {
+        private final String column;
+        private final Pattern pattern;
+        private final String prefix;
+        
+        Like(String column, String like) {
+            this.column = column;
+            StringBuilder regex = new StringBuilder();
+            StringBuilder literal = new StringBuilder();
+            boolean inPrefix = true;
+            for (int i = 0; i < like.length(); i++) {
+                char c = like.charAt(i);
+                if (c == '\\' && i + 1 < like.length()) {
+                    c = like.charAt(++i);
+                    regex.append(Pattern.quote(String.valueOf(c)));
+                    if (inPrefix) {
+                        literal.append(c);
+                    }
+                } else if (c == '%') {
+                    regex.append(".*");
+                    inPrefix = false;
+                } else if (c == '_') {
+                    regex.append('.');
+                    inPrefix = false;
+                } else {
+                    regex.append(Pattern.quote(String.valueOf(c)));
+                    if (inPrefix) {
+                        literal.append(c);
+                    }
+                }
+            }
+            this.pattern = Pattern.compile(regex.toString(), Pattern.DOTALL);
+            this.prefix = literal.toString();
+        }
+        
+        @Override
+        public Boolean evaluate(Map<String,String> row) {
+            String v = row.get(column);
+            return v == null ? null : pattern.matcher(v).matches();
+        }
+        
+        @Override
+        public boolean mayMatch(ChunkStats stats) {
+            if (stats.getNullCount(column) == stats.getRows()) {
+                return false;
+            }
+            String min = stats.getMin(column);
+            String max = stats.getMax(column);
+            if (prefix.isEmpty() || min == null || max == null) {
+                return true;
+            }
+            // every match starts with the prefix, so it sorts at or after the prefix and before any larger value that does not start with it
+            return max.compareTo(prefix) >= 0 && (min.startsWith(prefix) || min.compareTo(prefix) < 0);
+        }
+        
+        @Override
+        protected void addColumns(Set<String> columns) {
+            columns.add(column);
+        }
+    }
+    
+    /**
+     * A recursive descent parser for the supported conditions
+     */
+    private static class Parser {
+        private final String input;
+        private final List<String> tokens;
+        private int position = 0;
+        
+        Parser(String input) {
+            this.input = input;
+            this.tokens = tokenize(input);
+        }
+        
+        String peek() {
+            return position < tokens.size() ? tokens.get(position) : null;
+        }
+        
+        String next() {
+            String token = peek();
+            if (token == null) {
+                throw new IllegalArgumentException("Unexpected end of conditions: " + input);
+            }
+            position++;
+            return token;
+        }
+        
+        boolean accept(String keyword) {
+            String token = peek();
+            if (token != null && token.equalsIgnoreCase(keyword)) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+        
+        void expect(String keyword) {
+            if (!accept(keyword)) {
+                throw new IllegalArgumentException("Expected '" + keyword + "' but found '" + peek() + "' in conditions: " + input);
+            }
+        }
+        
+        ColumnarFilter parseOr() {
+            ColumnarFilter filter = parseAnd();
+            while (accept("OR")) {
+                filter = new Or(filter, parseAnd());
+            }
+            return filter;
+        }
+        
+        ColumnarFilter parseAnd() {
+            ColumnarFilter filter = parseNot();
+            while (accept("AND")) {
+                filter = new And(filter, parseNot());
+            }
+            return filter;
+        }
+        
+        ColumnarFilter parseNot() {
+            if (accept("NOT")) {
+                return new Not(parseNot());
+            }
+            if (accept("(")) {
+                ColumnarFilter filter = parseOr();
+                expect(")");
+                return filter;
+            }
+            return parseComparison();
+        }
+        
+        ColumnarFilter parseComparison() {
+            String column = parseColumn(next());
+            if (accept("(")) {
+                throw new IllegalArgumentException("Functions are not supported by the columnar cached results store: " + input);
+            }
+            if (accept("IS")) {
+                boolean negated = accept("NOT");
+                expect("NULL");
+                return new IsNull(column, negated);
+            }
+            boolean negated = accept("NOT");
+            if (accept("LIKE")) {
+                ColumnarFilter like = new Like(column, parseString(next()));
+                return negated ? new Not(like) : like;
+            }
+            if (accept("IN")) {
+                expect("(");
+                List<ColumnarFilter> values = new ArrayList<>();
+                do {
+                    values.add(parseValue(column, "="));
+                } while (accept(","));
+                expect(")");
+                ColumnarFilter in = values.get(0);
+                for (ColumnarFilter value : values.subList(1, values.size())) {
+                    in = new Or(in, value);
+                }
+                return negated ? new Not(in) : in;
+            }
+            if (negated) {
+                throw new IllegalArgumentException("Expected LIKE or IN after NOT in conditions: " + input);
+            }
+            String operator = next();
+            if (operator.equals("<>")) {
+                operator = "!=";
+            }
+            if (!(operator.equals("=") || operator.equals("!=") || operator.equals("<") || operator.equals("<=") || operator.equals(">") || operator
+                            .equals(">="))) {
+                throw new IllegalArgumentException("Unsupported operator '" + operator + "' in conditions: " + input);
+            }
+            return parseValue(column, operator);
+        }
+        
+        ColumnarFilter parseValue(String column, String operator) {
+            String token = next();
+            if (token.startsWith("'") || token.startsWith("\"")) {
+                return new Comparison(column, operator, parseString(token), false);
+            }
+            try {
+                Double.valueOf(token);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Expected a quoted string or a number but found '" + token + "' in conditions: " + input);
+            }
+            return new Comparison(column, operator, token, true);
+        }
+        
+        String parseColumn(String token) {
+            if (token.startsWith("`")) {
+                return token.substring(1, token.length() - 1);
+            }
+            if (token.startsWith("'") || token.startsWith("\"") || !Character.isLetter(token.charAt(0)) && token.charAt(0) != '_') {
+                throw new IllegalArgumentException("Expected a column but found '" + token + "' in conditions: " + input);
+            }
+            return token;
+        }
+        
+        String parseString(String token) {
+            if (!(token.startsWith("'") || token.startsWith("\""))) {
+                throw new IllegalArgumentException("Expected a quoted string but found '" + token + "' in conditions: " + input);
+            }
+            char quote = token.charAt(0);
+            return token.substring(1, token.length() - 1).replace(String.valueOf(quote) + quote, String.valueOf(quote));
+        }
+        
+        private static List<String> tokenize(String input) {
+            List<String> tokens = new ArrayList<>();
+            int i = 0;
+            while (i < input.length()) {
+                char c = input.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i++;
+                } else if (c == '\'' || c == '"' || c == '`') {
+                    int end = i + 1;
+                    while (true) {
+                        if (end >= input.length()) {
+                            throw new IllegalArgumentException("Unterminated " + c + " in conditions: " + input);
+                        }
+                        if (input.charAt(end) == c) {
+                            // a doubled quote is an escaped quote
+                            if (c != '`' && end + 1 < input.length() && input.charAt(end + 1) == c) {
+                                end += 2;
+                                continue;
+                            }
+                            break;
+                        }
+                        end++;
+                    }
+                    tokens.add(input.substring(i, end + 1));
+                    i = end + 1;
+                } else if (c == '(' || c == ')' || c == ',') {
+                    tokens.add(String.valueOf(c));
+                    i++;
+                } else if (c == '<' || c == '>' || c == '=' || c == '!') {
+                    int end = i + 1;
+                    if (end < input.length() && (input.charAt(end) == '=' || (c == '<' && input.charAt(end) == '>'))) {
+                        end++;
+                    }
+                    tokens.add(input.substring(i, end));
+                    i = end;
+                } else {
+                    int end = i;
+                    while (end < input.length()) {
+                        char e = input.charAt(end);
+                        if (Character.isWhitespace(e) || "()<>=!,'\"`".indexOf(e) >= 0) {
+                            break;
+                        }
+                        end++;
+                    }
+                    tokens.add(input.substring(i, end));
+                    i = end;
+                }
+            }
+            return Collections.unmodifiableList(tokens);
+        }
+    }
+}
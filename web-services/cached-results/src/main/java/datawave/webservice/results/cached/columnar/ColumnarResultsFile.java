@@ -0,0 +1,261 @@
+package datawave.webservice.results.cached.columnar;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cached results stored by column in a local file, as written by a {@link ColumnarResultsWriter}. The file is a header, a sequence of chunks of rows where each
+ * column is a separate block, and a footer holding the column names and numbers and the location and statistics of every block. Opening the file only reads
+ * the footer; a chunk is read one column at a time, so a query only reads the columns it projects, filters or sorts on, and chunks whose statistics rule out
+ * a match are not read at all.
+ */
+public class ColumnarResultsFile implements Closeable {
+    
+    public static final String SUFFIX = ".crc";
+    
+    static final int MAGIC = 0x44574352;
+    static final int VERSION = 1;
+    static final byte PLAIN = 0;
+    static final byte DICTIONARY = 1;
+    static final int MAX_STATS_LENGTH = 256;
+    
+    private final File file;
+    private final RandomAccessFile input;
+    private final Map<String,Integer> columnNumbers = new LinkedHashMap<>();
+    private final List<Chunk> chunks = new ArrayList<>();
+    private final long rowCount;
+    
+    /**
+     * @param directory
+     *            the directory of cached results files
+     * @param name
+     *            the name of the cached results, which is the view name
+     * @return the file holding the named cached results
+     */
+    public static File getFile(File directory, String name) {
+        return new File(directory, name + SUFFIX);
+    }
+    
+    public static boolean exists(File directory, String name) {
+        return directory != null && name != null && getFile(directory, name).isFile();
+    }
+    
+    public ColumnarResultsFile(File file) throws IOException {
+        this.file = file;
+        this.input = new RandomAccessFile(file, "r");
+        try {
+            long length = input.length();
+            if (length < 28) {
+                throw new IOException(file + " is not a cached results file");
+            }
+            input.seek(0);
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException(file + " is not a version " + VERSION + " cached results file");
+            }
+            input.seek(length - 20);
+            this.rowCount = input.readLong();
+            long footerOffset = input.readLong();
+            if (input.readInt() != MAGIC) {
+                throw new IOException(file + " is incomplete");
+            }
+            
+            byte[] footer = new byte[(int) (length - 20 - footerOffset)];
+            input.seek(footerOffset);
+            input.readFully(footer);
+            ByteBuffer buffer = ByteBuffer.wrap(footer);
+            
+            int columnCount = readVarInt(buffer);
+            List<String> columns = new ArrayList<>(columnCount);
+            for (int i = 0; i < columnCount; i++) {
+                String column = readString(buffer);
+                columns.add(column);
+                columnNumbers.put(column, readVarInt(buffer));
+            }
+            
+            int chunkCount = readVarInt(buffer);
+            for (int i = 0; i < chunkCount; i++) {
+                Chunk chunk = new Chunk(readVarInt(buffer));
+                int blocks = readVarInt(buffer);
+                for (int j = 0; j < blocks; j++) {
+                    Block block = new Block();
+                    String column = columns.get(readVarInt(buffer));
+                    block.offset = buffer.getLong();
+                    block.length = buffer.getLong();
+                    block.encoding = buffer.get();
+                    block.nullCount = readVarInt(buffer);
+                    if (buffer.get() != 0) {
+                        block.min = readString(buffer);
+                        block.max = readString(buffer);
+                    }
+                    chunk.blocks.put(column, block);
+                }
+                chunks.add(chunk);
+            }
+        } catch (IOException | RuntimeException e) {
+            input.close();
+            throw e;
+        }
+    }
+    
+    public File getFile() {
+        return file;
+    }
+    
+    public long getRowCount() {
+        return rowCount;
+    }
+    
+    /**
+     * @return the column names, fixed columns first, in the order they were added
+     */
+    public List<String> getColumns() {
+        return new ArrayList<>(columnNumbers.keySet());
+    }
+    
+    /**
+     * @return the column numbers by name, which the column markings and timestamps of each row refer to
+     */
+    public Map<String,Integer> getColumnNumbers() {
+        return Collections.unmodifiableMap(columnNumbers);
+    }
+    
+    public int getChunkCount() {
+        return chunks.size();
+    }
+    
+    public int getChunkRows(int chunk) {
+        return chunks.get(chunk).rows;
+    }
+    
+    /**
+     * @return the statistics of a chunk
+     */
+    public ColumnarFilter.ChunkStats getChunkStats(int chunk) {
+        return chunks.get(chunk);
+    }
+    
+    /**
+     * Read some of the columns of a chunk
+     *
+     * @param chunk
+     *            the chunk number
+     * @param columns
+     *            the columns to read
+     * @return the values of each requested column, indexed by row within the chunk, with null for a column that is not in the chunk
+     * @throws IOException
+     */
+    public synchronized Map<String,String[]> readChunk(int chunk, Collection<String> columns) throws IOException {
+        Chunk c = chunks.get(chunk);
+        Map<String,String[]> values = new HashMap<>();
+        for (String column : columns) {
+            Block block = c.blocks.get(column);
+            if (block == null || values.containsKey(column)) {
+                continue;
+            }
+            byte[] bytes = new byte[(int) block.length];
+            input.seek(block.offset);
+            input.readFully(bytes);
+            values.put(column, decode(ByteBuffer.wrap(bytes), block.encoding, c.rows));
+        }
+        return values;
+    }
+    
+    private static String[] decode(ByteBuffer buffer, byte encoding, int rows) {
+        String[] values = new String[rows];
+        if (encoding == DICTIONARY) {
+            String[] dictionary = new String[readVarInt(buffer)];
+            for (int i = 0; i < dictionary.length; i++) {
+                dictionary[i] = readString(buffer);
+            }
+            for (int i = 0; i < rows; i++) {
+                int index = readVarInt(buffer);
+                values[i] = (index == 0 ? null : dictionary[index - 1]);
+            }
+        } else {
+            for (int i = 0; i < rows; i++) {
+                int length = readVarInt(buffer);
+                if (length > 0) {
+                    values[i] = new String(buffer.array(), buffer.position(), length - 1, StandardCharsets.UTF_8);
+                    buffer.position(buffer.position() + length - 1);
+                }
+            }
+        }
+        return values;
+    }
+    
+    private static int readVarInt(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+    
+    private static String readString(ByteBuffer buffer) {
+        int length = readVarInt(buffer);
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        input.close();
+    }
+    
+    private static class Chunk implements ColumnarFilter.ChunkStats {
+        private final int rows;
+        private final Map<String,Block> blocks = new HashMap<>();
+        
+        Chunk(int rows) {
+            this.rows = rows;
+        }
+        
+        @Override
+        public int getRows() {
+            return rows;
+        }
+        
+        @Override
+        public int getNullCount(String column) {
+            Block block = blocks.get(column);
+            return block == null ? rows : block.nullCount;
+        }
+        
+        @Override
+        public String getMin(String column) {
+            Block block = blocks.get(column);
+            return block == null ? null : block.min;
+        }
+        
+        @Override
+        public String getMax(String column) {
+            Block block = blocks.get(column);
+            return block == null ? null : block.max;
+        }
+    }
+    
+    private static class Block {
+        private long offset;
+        private long length;
+        private byte encoding;
+        private int nullCount;
+        private String min;
+        private String max;
+    }
+}
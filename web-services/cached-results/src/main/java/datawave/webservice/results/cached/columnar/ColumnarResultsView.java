@@ -0,0 +1,256 @@
+package datawave.webservice.results.cached.columnar;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import datawave.webservice.query.cachedresults.CacheableQueryRow;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * The rows of a {@link ColumnarResultsFile} selected by the fields, conditions and order of a cached results query, paged by position in the same way as the
+ * rows of a database view. Creating the view scans only the columns used by the conditions and the order, skipping chunks that cannot match, and keeps the
+ * position of each selected row in sorted order. A page then reads only the projected columns of the chunks holding its rows.
+ * <p>
+ * Grouping and functions are not supported. Without an order the rows are ordered by event id, which is the order that the database view uses when paging by
+ * row number.
+ */
+public class ColumnarResultsView {
+    
+    public static final String DEFAULT_ORDER = "_eventId_";
+    
+    private final ColumnarResultsFile file;
+    private final List<String> columns;
+    // the chunk and the row within the chunk of each selected row, in order
+    private final long[] positions;
+    
+    // the last chunk read for a page
+    private int cachedChunk = -1;
+    private Map<String,String[]> cachedValues = null;
+    
+    /**
+     * @param file
+     *            the cached results
+     * @param user
+     *            the owner of the rows to select
+     * @param fields
+     *            the comma separated fields to return, or null or * for all
+     * @param conditions
+     *            the SQL style conditions that rows must match, see {@link ColumnarFilter}
+     * @param grouping
+     *            must be empty
+     * @param order
+     *            the comma separated fields to order by, each optionally followed by ASC or DESC
+     * @throws IOException
+     */
+    public ColumnarResultsView(ColumnarResultsFile file, String user, String fields, String conditions, String grouping, String order) throws IOException {
+        if (StringUtils.isNotBlank(grouping)) {
+            throw new IllegalArgumentException("Grouping is not supported by the columnar cached results store");
+        }
+        this.file = file;
+        this.columns = getProjection(file, fields);
+        
+        ColumnarFilter filter = ColumnarFilter.equalTo("_user_", user);
+        if (StringUtils.isNotBlank(conditions)) {
+            filter = ColumnarFilter.and(filter, ColumnarFilter.parse(conditions));
+        }
+        List<SortColumn> sortColumns = parseOrder(StringUtils.isBlank(order) ? DEFAULT_ORDER : order);
+        
+        Set<String> scanColumns = new LinkedHashSet<>(filter.getColumns());
+        for (SortColumn sortColumn : sortColumns) {
+            scanColumns.add(sortColumn.column);
+        }
+        
+        List<Selected> selected = new ArrayList<>();
+        for (int chunk = 0; chunk < file.getChunkCount(); chunk++) {
+            if (!filter.mayMatch(file.getChunkStats(chunk))) {
+                continue;
+            }
+            Map<String,String[]> values = file.readChunk(chunk, scanColumns);
+            ChunkRow row = new ChunkRow(values);
+            for (int i = 0; i < file.getChunkRows(chunk); i++) {
+                row.index = i;
+                if (filter.matches(row)) {
+                    String[] key = new String[sortColumns.size()];
+                    for (int k = 0; k < key.length; k++) {
+                        key[k] = row.get(sortColumns.get(k).column);
+                    }
+                    selected.add(new Selected(((long) chunk << 32) | i, key));
+                }
+            }
+        }
+        
+        // a stable sort, so that equal rows stay in the order they were loaded
+        selected.sort(comparator(sortColumns));
+        this.positions = new long[selected.size()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = selected.get(i).position;
+        }
+    }
+    
+    private static List<String> getProjection(ColumnarResultsFile file, String fields) {
+        List<String> all = file.getColumns();
+        if (StringUtils.isBlank(fields)) {
+            return all;
+        }
+        Set<String> projection = new LinkedHashSet<>();
+        Set<String> requested = new LinkedHashSet<>();
+        for (String field : StringUtils.split(fields, ',')) {
+            field = field.replace("`", "").trim();
+            if (field.contains("(")) {
+                throw new IllegalArgumentException("Functions are not supported by the columnar cached results store: " + field);
+            }
+            requested.add(field);
+        }
+        if (requested.remove("*")) {
+            projection.addAll(all);
+        } else {
+            // the fixed columns are always returned, as they are by the database view
+            projection.addAll(CacheableQueryRow.getFixedColumnSet());
+        }
+        projection.addAll(requested);
+        return new ArrayList<>(projection);
+    }
+    
+    private static List<SortColumn> parseOrder(String order) {
+        List<SortColumn> sortColumns = new ArrayList<>();
+        for (String term : StringUtils.split(order, ',')) {
+            String[] parts = StringUtils.split(term.trim(), ' ');
+            if (parts.length == 0) {
+                continue;
+            }
+            boolean descending = false;
+            if (parts.length == 2 && (parts[1].equalsIgnoreCase("ASC") || parts[1].equalsIgnoreCase("DESC"))) {
+                descending = parts[1].equalsIgnoreCase("DESC");
+            } else if (parts.length != 1) {
+                throw new IllegalArgumentException("Unsupported order: " + term);
+            }
+            String column = parts[0].replace("`", "");
+            if (column.contains("(")) {
+                throw new IllegalArgumentException("Functions are not supported by the columnar cached results store: " + column);
+            }
+            sortColumns.add(new SortColumn(column, descending));
+        }
+        return sortColumns;
+    }
+    
+    private static Comparator<Selected> comparator(List<SortColumn> sortColumns) {
+        return (a, b) -> {
+            for (int k = 0; k < sortColumns.size(); k++) {
+                String x = a.key[k];
+                String y = b.key[k];
+                int comparison;
+                if (x == null || y == null) {
+                    // nulls sort first, as they do in the database
+                    comparison = (x == null ? (y == null ? 0 : -1) : 1);
+                } else {
+                    comparison = x.compareTo(y);
+                }
+                if (comparison != 0) {
+                    return sortColumns.get(k).descending ? -comparison : comparison;
+                }
+            }
+            return 0;
+        };
+    }
+    
+    /**
+     * @return the columns of each row, in order
+     */
+    public List<String> getColumns() {
+        return columns;
+    }
+    
+    /**
+     * @return the column numbers of the cached results, which the column markings and timestamps refer to
+     */
+    public Map<String,Integer> getColumnNumbers() {
+        return file.getColumnNumbers();
+    }
+    
+    public int getRowCount() {
+        return positions.length;
+    }
+    
+    /**
+     * Read the projected columns of a range of rows
+     *
+     * @param begin
+     *            the first row, counting from 0
+     * @param end
+     *            the row after the last one to return
+     * @return the rows as maps of column to value, with the columns in order and null for missing values
+     * @throws IOException
+     */
+    public List<Map<String,String>> getRows(int begin, int end) throws IOException {
+        begin = Math.max(0, begin);
+        end = Math.min(end, positions.length);
+        List<Map<String,String>> rows = new ArrayList<>(Math.max(0, end - begin));
+        for (int i = begin; i < end; i++) {
+            int chunk = (int) (positions[i] >>> 32);
+            int index = (int) positions[i];
+            if (chunk != cachedChunk) {
+                cachedValues = file.readChunk(chunk, columns);
+                cachedChunk = chunk;
+            }
+            Map<String,String> row = new LinkedHashMap<>();
+            for (String column : columns) {
+                String[] values = cachedValues.get(column);
+                row.put(column, values == null ? null : values[index]);
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+    
+    /**
+     * A row of a chunk that has been read, as a map for evaluating a filter
+     */
+    private static class ChunkRow extends HashMap<String,String> {
+        private final Map<String,String[]> values;
+        private int index;
+        
+        ChunkRow(Map<String,String[]> values) {
+            this.values = values;
+        }
+        
+        @Override
+        public String get(Object column) {
+            String[] columnValues = values.get(column);
+            return columnValues == null ? null : columnValues[index];
+        }
+    }
+    
+    private static class SortColumn {
+        private final String column;
+        private final boolean descending;
+        
+        SortColumn(String column, boolean descending) {
+            this.column = column;
+            this.descending = descending;
+        }
+    }
+    
+    private static class Selected {
+        private final long position;
+        private final String[] key;
+        
+        Selected(long position, String[] key) {
+            this.position = position;
+            this.key = key;
+        }
+        
+        @Override
+        public String toString() {
+            return position + Arrays.toString(key);
+        }
+    }
+}
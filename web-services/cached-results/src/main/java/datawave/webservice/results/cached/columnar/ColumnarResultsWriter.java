@@ -0,0 +1,325 @@
+package datawave.webservice.results.cached.columnar;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import datawave.marking.MarkingFunctions;
+import datawave.webservice.query.cachedresults.CacheableQueryRow;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Writes cached results to a {@link ColumnarResultsFile}. Rows are buffered as one array of values per column and written as a chunk once the chunk is full,
+ * so a load is a sequence of large sequential writes rather than a database round trip per batch of rows. Each column of a chunk is written as a separate
+ * block, dictionary encoded when the column has few distinct values, along with the minimum and maximum values used to skip the chunk when filtering.
+ */
+public class ColumnarResultsWriter implements Closeable {
+    
+    private static Logger log = Logger.getLogger(ColumnarResultsWriter.class);
+    
+    public static final int DEFAULT_ROWS_PER_CHUNK = 4096;
+    
+    private final File file;
+    private final int rowsPerChunk;
+    private final DataOutputStream output;
+    private long position = 0;
+    
+    // the column numbers, in the order the columns were first seen
+    private final Map<String,Integer> columnNumbers = new LinkedHashMap<>();
+    private final List<ChunkMetadata> chunks = new ArrayList<>();
+    private long rowCount = 0;
+    
+    // the values of the current chunk by column
+    private final Map<String,String[]> chunk = new LinkedHashMap<>();
+    private int chunkRows = 0;
+    private boolean closed = false;
+    
+    public ColumnarResultsWriter(File file) throws IOException {
+        this(file, DEFAULT_ROWS_PER_CHUNK);
+    }
+    
+    public ColumnarResultsWriter(File file, int rowsPerChunk) throws IOException {
+        this.file = file;
+        this.rowsPerChunk = Math.max(1, rowsPerChunk);
+        this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+        this.output.writeInt(ColumnarResultsFile.MAGIC);
+        this.output.writeInt(ColumnarResultsFile.VERSION);
+        this.position = 8;
+        // the fixed columns are always present and numbered first, as they are in the database tables
+        for (String column : CacheableQueryRow.getFixedColumnSet()) {
+            columnNumbers.put(column, columnNumbers.size() + 1);
+        }
+    }
+    
+    public File getFile() {
+        return file;
+    }
+    
+    public long getRowCount() {
+        return rowCount;
+    }
+    
+    /**
+     * Add a row of cached results. Fields that have not been seen before are assigned the next column number in the field map, in the same way as they are
+     * when loading into a database table, and the column markings and timestamps refer to those numbers.
+     *
+     * @param user
+     * @param queryId
+     * @param logicName
+     * @param cqo
+     *            the row
+     * @param fieldMap
+     *            the column numbers of the variable fields, updated with any new fields
+     * @throws IOException
+     */
+    public void add(String user, String queryId, String logicName, CacheableQueryRow cqo, Map<String,Integer> fieldMap) throws IOException {
+        Map<String,String> row = new HashMap<>();
+        row.put("_user_", user);
+        row.put("_queryId_", queryId);
+        row.put("_logicName_", logicName);
+        row.put("_datatype_", cqo.getDataType());
+        row.put("_eventId_", cqo.getEventId());
+        row.put("_row_", cqo.getRow());
+        row.put("_colf_", cqo.getColFam());
+        row.put("_markings_", MarkingFunctions.Encoding.toString(new TreeMap<>(cqo.getMarkings())));
+        for (Entry<String,String> e : cqo.getColumnValues().entrySet()) {
+            Integer columnNumber = fieldMap.get(e.getKey());
+            if (columnNumber == null) {
+                columnNumber = CacheableQueryRow.getFixedColumnSet().size() + fieldMap.size() + 1;
+                fieldMap.put(e.getKey(), columnNumber);
+            }
+            if (!columnNumbers.containsKey(e.getKey())) {
+                columnNumbers.put(e.getKey(), columnNumber);
+            }
+            row.put(e.getKey(), e.getValue());
+        }
+        row.put("_column_markings_", cqo.getColumnSecurityMarkingString(fieldMap));
+        row.put("_column_timestamps_", cqo.getColumnTimestampString(fieldMap));
+        add(row);
+    }
+    
+    /**
+     * Add a row
+     *
+     * @param row
+     *            the values by column, where a missing column is null
+     * @throws IOException
+     */
+    public void add(Map<String,String> row) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Writer for " + file + " has been closed");
+        }
+        for (Entry<String,String> e : row.entrySet()) {
+            if (e.getValue() == null) {
+                continue;
+            }
+            String[] values = chunk.get(e.getKey());
+            if (values == null) {
+                if (!columnNumbers.containsKey(e.getKey())) {
+                    columnNumbers.put(e.getKey(), columnNumbers.size() + 1);
+                }
+                values = new String[rowsPerChunk];
+                chunk.put(e.getKey(), values);
+            }
+            values[chunkRows] = e.getValue();
+        }
+        chunkRows++;
+        rowCount++;
+        if (chunkRows == rowsPerChunk) {
+            flushChunk();
+        }
+    }
+    
+    private void flushChunk() throws IOException {
+        if (chunkRows == 0) {
+            return;
+        }
+        ChunkMetadata metadata = new ChunkMetadata(chunkRows);
+        for (Entry<String,String[]> e : chunk.entrySet()) {
+            ColumnMetadata column = writeColumn(e.getKey(), e.getValue(), chunkRows);
+            metadata.columns.add(column);
+        }
+        chunks.add(metadata);
+        if (log.isTraceEnabled()) {
+            log.trace("Wrote chunk " + chunks.size() + " of " + chunkRows + " rows and " + chunk.size() + " columns to " + file);
+        }
+        chunk.clear();
+        chunkRows = 0;
+    }
+    
+    private ColumnMetadata writeColumn(String name, String[] values, int rows) throws IOException {
+        ColumnMetadata column = new ColumnMetadata(name);
+        column.offset = position;
+        
+        Map<String,Integer> dictionary = new LinkedHashMap<>();
+        for (int i = 0; i < rows; i++) {
+            String value = values[i];
+            if (value == null) {
+                column.nullCount++;
+                continue;
+            }
+            if (column.min == null || value.compareTo(column.min) < 0) {
+                column.min = value;
+            }
+            if (column.max == null || value.compareTo(column.max) > 0) {
+                column.max = value;
+            }
+            if (dictionary.size() <= rows / 2 && !dictionary.containsKey(value)) {
+                dictionary.put(value, dictionary.size());
+            }
+        }
+        
+        column.encoding = (dictionary.size() <= rows / 2 ? ColumnarResultsFile.DICTIONARY : ColumnarResultsFile.PLAIN);
+        if (column.encoding == ColumnarResultsFile.DICTIONARY) {
+            writeVarInt(dictionary.size());
+            for (String value : dictionary.keySet()) {
+                writeString(value);
+            }
+            for (int i = 0; i < rows; i++) {
+                writeVarInt(values[i] == null ? 0 : dictionary.get(values[i]) + 1);
+            }
+        } else {
+            for (int i = 0; i < rows; i++) {
+                if (values[i] == null) {
+                    writeVarInt(0);
+                } else {
+                    byte[] bytes = values[i].getBytes(StandardCharsets.UTF_8);
+                    writeVarInt(bytes.length + 1);
+                    writeBytes(bytes);
+                }
+            }
+        }
+        column.length = position - column.offset;
+        
+        // the statistics are only kept for short values, to keep the footer small
+        if ((column.min != null && column.min.length() > ColumnarResultsFile.MAX_STATS_LENGTH)
+                        || (column.max != null && column.max.length() > ColumnarResultsFile.MAX_STATS_LENGTH)) {
+            column.min = null;
+            column.max = null;
+        }
+        return column;
+    }
+    
+    private void writeVarInt(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            output.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+            position++;
+        }
+        output.writeByte(value);
+        position++;
+    }
+    
+    private void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length);
+        writeBytes(bytes);
+    }
+    
+    private void writeBytes(byte[] bytes) throws IOException {
+        output.write(bytes);
+        position += bytes.length;
+    }
+    
+    /**
+     * Write the last chunk and the footer
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flushChunk();
+            
+            long footerOffset = position;
+            writeVarInt(columnNumbers.size());
+            List<String> columns = new ArrayList<>(columnNumbers.keySet());
+            for (String column : columns) {
+                writeString(column);
+                writeVarInt(columnNumbers.get(column));
+            }
+            Map<String,Integer> columnIds = new HashMap<>();
+            for (int i = 0; i < columns.size(); i++) {
+                columnIds.put(columns.get(i), i);
+            }
+            
+            writeVarInt(chunks.size());
+            for (ChunkMetadata metadata : chunks) {
+                writeVarInt(metadata.rows);
+                writeVarInt(metadata.columns.size());
+                for (ColumnMetadata column : metadata.columns) {
+                    writeVarInt(columnIds.get(column.name));
+                    output.writeLong(column.offset);
+                    output.writeLong(column.length);
+                    position += 16;
+                    output.writeByte(column.encoding);
+                    position++;
+                    writeVarInt(column.nullCount);
+                    output.writeBoolean(column.min != null);
+                    position++;
+                    if (column.min != null) {
+                        writeString(column.min);
+                        writeString(column.max);
+                    }
+                }
+            }
+            output.writeLong(rowCount);
+            output.writeLong(footerOffset);
+            output.writeInt(ColumnarResultsFile.MAGIC);
+        } finally {
+            output.close();
+        }
+    }
+    
+    /**
+     * Close the writer and delete the file
+     *
+     * @return true if the file was deleted
+     */
+    public boolean delete() {
+        try {
+            closed = true;
+            output.close();
+        } catch (IOException e) {
+            log.warn("Unable to close " + file, e);
+        }
+        return file.delete();
+    }
+    
+    private static class ChunkMetadata {
+        private final int rows;
+        private final List<ColumnMetadata> columns = new ArrayList<>();
+        
+        ChunkMetadata(int rows) {
+            this.rows = rows;
+        }
+    }
+    
+    private static class ColumnMetadata {
+        private final String name;
+        private long offset;
+        private long length;
+        private byte encoding;
+        private int nullCount;
+        private String min;
+        private String max;
+        
+        ColumnMetadata(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package datawave.webservice.results.cached.columnar;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ColumnarResultsViewTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private ColumnarResultsFile file = null;
+    
+    @Before
+    public void setup() throws IOException {
+        File f = ColumnarResultsFile.getFile(folder.getRoot(), "v123");
+        try (ColumnarResultsWriter writer = new ColumnarResultsWriter(f, 10)) {
+            for (int i = 0; i < 95; i++) {
+                Map<String,String> row = new HashMap<>();
+                row.put("_user_", (i % 5 == 0) ? "other" : "me");
+                row.put("_eventId_", String.format("event%03d", 94 - i));
+                row.put("_datatype_", "csv");
+                row.put("NUMBER", Integer.toString(i));
+                row.put("COLOR", (i % 2 == 0) ? "red" : "blue");
+                if (i % 3 == 0) {
+                    row.put("SHAPE", "circle" + i);
+                }
+                writer.add(row);
+            }
+        }
+        Assert.assertTrue(ColumnarResultsFile.exists(folder.getRoot(), "v123"));
+        file = new ColumnarResultsFile(f);
+    }
+    
+    @After
+    public void teardown() throws IOException {
+        file.close();
+    }
+    
+    @Test
+    public void testFooter() {
+        Assert.assertEquals(95, file.getRowCount());
+        Assert.assertEquals(10, file.getChunkCount());
+        Assert.assertEquals(5, file.getChunkRows(9));
+        List<String> columns = file.getColumns();
+        Assert.assertTrue(columns.containsAll(Arrays.asList("NUMBER", "COLOR", "SHAPE")));
+        // the fixed columns are numbered first
+        Assert.assertEquals(Integer.valueOf(1), file.getColumnNumbers().get(columns.get(0)));
+        Assert.assertTrue(file.getColumnNumbers().get("NUMBER") > 10);
+    }
+    
+    @Test
+    public void testReadChunk() throws IOException {
+        Map<String,String[]> values = file.readChunk(3, Arrays.asList("NUMBER", "SHAPE", "MISSING"));
+        Assert.assertEquals(2, values.size());
+        Assert.assertEquals("30", values.get("NUMBER")[0]);
+        Assert.assertEquals("circle30", values.get("SHAPE")[0]);
+        Assert.assertNull(values.get("SHAPE")[1]);
+        Assert.assertFalse(values.containsKey("MISSING"));
+    }
+    
+    @Test
+    public void testDefaultOrder() throws IOException {
+        ColumnarResultsView view = new ColumnarResultsView(file, "me", null, null, null, null);
+        Assert.assertEquals(76, view.getRowCount());
+        List<Map<String,String>> rows = view.getRows(0, 200);
+        Assert.assertEquals(76, rows.size());
+        String last = null;
+        for (Map<String,String> row : rows) {
+            Assert.assertEquals("me", row.get("_user_"));
+            if (last != null) {
+                Assert.assertTrue(last.compareTo(row.get("_eventId_")) < 0);
+            }
+            last = row.get("_eventId_");
+        }
+    }
+    
+    @Test
+    public void testProjection() throws IOException {
+        ColumnarResultsView view = new ColumnarResultsView(file, "me", "`COLOR`", null, null, null);
+        Assert.assertTrue(view.getColumns().contains("COLOR"));
+        Assert.assertTrue(view.getColumns().contains("_eventId_"));
+        Assert.assertFalse(view.getColumns().contains("NUMBER"));
+        Map<String,String> row = view.getRows(0, 1).get(0);
+        Assert.assertFalse(row.containsKey("NUMBER"));
+        Assert.assertNotNull(row.get("COLOR"));
+    }
+    
+    @Test
+    public void testConditionsAndOrder() throws IOException {
+        ColumnarResultsView view = new ColumnarResultsView(file, "me", "*", "COLOR = 'red' AND SHAPE IS NOT NULL", null, "NUMBER DESC");
+        List<String> numbers = new ArrayList<>();
+        for (Map<String,String> row : view.getRows(0, view.getRowCount())) {
+            numbers.add(row.get("NUMBER"));
+        }
+        // even multiples of 3 that are not multiples of 5, compared as strings in descending order
+        Assert.assertEquals(Arrays.asList("84", "78", "72", "66", "6", "54", "48", "42", "36", "24", "18", "12"), numbers);
+    }
+    
+    @Test
+    public void testPaging() throws IOException {
+        ColumnarResultsView view = new ColumnarResultsView(file, "me", null, "NUMBER LIKE '1%'", null, "`_eventId_` ASC");
+        // 1, 11, 12, 13, 14, 16, 17, 18, 19
+        Assert.assertEquals(9, view.getRowCount());
+        Assert.assertEquals(4, view.getRows(5, 10).size());
+        Assert.assertEquals("11", view.getRows(7, 8).get(0).get("NUMBER"));
+        Assert.assertTrue(view.getRows(9, 12).isEmpty());
+    }
+    
+    @Test
+    public void testChunkPruning() throws IOException {
+        // only the first chunk can match
+        ColumnarFilter filter = ColumnarFilter.parse("_eventId_ >= 'event090'");
+        int candidates = 0;
+        for (int chunk = 0; chunk < file.getChunkCount(); chunk++) {
+            if (filter.mayMatch(file.getChunkStats(chunk))) {
+                candidates++;
+            }
+        }
+        Assert.assertEquals(1, candidates);
+        Assert.assertEquals(4, new ColumnarResultsView(file, "me", null, "_eventId_ >= 'event090'", null, null).getRowCount());
+    }
+    
+    @Test
+    public void testFilterParsing() {
+        Map<String,String> row = new HashMap<>();
+        row.put("A", "5");
+        row.put("B", "it's");
+        Assert.assertTrue(ColumnarFilter.parse("A > 3 AND A < 10").matches(row));
+        Assert.assertTrue(ColumnarFilter.parse("A IN (1, 5) OR B = 'x'").matches(row));
+        Assert.assertTrue(ColumnarFilter.parse("NOT (A <> 5) AND B = 'it''s'").matches(row));
+        Assert.assertTrue(ColumnarFilter.parse("C IS NULL AND `B` LIKE 'it_s'").matches(row));
+        Assert.assertFalse(ColumnarFilter.parse("C = 'x' OR A NOT IN ('5')").matches(row));
+        // comparisons with null are unknown, so neither the comparison nor its negation match
+        Assert.assertFalse(ColumnarFilter.parse("NOT (C = 'x')").matches(row));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testFunctionsRejected() {
+        ColumnarFilter.parse("UPPER(B) = 'X'");
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testGroupingRejected() throws IOException {
+        new ColumnarResultsView(file, "me", null, null, "COLOR", null);
+    }
+}
@@ -8,6 +8,8 @@ public class CachedResultsConfiguration {
     private int defaultPageSize = 20;
     private int maxPageSize = 0;
     private long pageByteTrigger = 0;
+    private String columnarDirectory = null;
+    private int columnarRowsPerChunk = 4096;
     private Map<String,String> parameters = new HashMap<>();
     
     public int getDefaultPageSize() {
@@ -34,6 +36,25 @@ public class CachedResultsConfiguration {
         this.pageByteTrigger = pageByteTrigger;
     }
     
+    /**
+     * @return the local directory in which to store cached results by column, or null or empty to store them in the database
+     */
+    public String getColumnarDirectory() {
+        return columnarDirectory;
+    }
+    
+    public void setColumnarDirectory(String columnarDirectory) {
+        this.columnarDirectory = columnarDirectory;
+    }
+    
+    public int getColumnarRowsPerChunk() {
+        return columnarRowsPerChunk;
+    }
+    
+    public void setColumnarRowsPerChunk(int columnarRowsPerChunk) {
+        this.columnarRowsPerChunk = columnarRowsPerChunk;
+    }
+    
     public Map<String,String> getParameters() {
         return parameters;
     }
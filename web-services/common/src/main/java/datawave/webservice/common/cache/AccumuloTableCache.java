@@ -93,6 +93,9 @@ public class AccumuloTableCache {
     public static final String MOCK_USERNAME = "";
     public static final PasswordToken MOCK_PASSWORD = new PasswordToken(new byte[0]);
     
+    // counter signalling a reload that must see deletes, so the rest of the cluster reloads the whole table rather than refreshing it incrementally
+    private static final String FULL_RELOAD_SUFFIX = ":fullReload";
+    
     private InMemoryInstance instance;
     private Map<String,TableCache> details;
     private List<SharedCacheCoordinator> cacheCoordinators;
@@ -156,7 +159,20 @@ public class AccumuloTableCache {
                     @Override
                     public void countHasChanged(SharedCountReader sharedCount, int newCount) throws Exception {
                         if (!cacheCoordinator.checkCounter(tableName, newCount)) {
-                            handleReload(tableName);
+                            handleReload(tableName, false);
+                        }
+                    }
+                });
+                cacheCoordinator.registerCounter(tableName + FULL_RELOAD_SUFFIX, new SharedCountListener() {
+                    @Override
+                    public void stateChanged(CuratorFramework client, ConnectionState newState) {
+                        // TODO Auto-generated method stub
+                    }
+                    
+                    @Override
+                    public void countHasChanged(SharedCountReader sharedCount, int newCount) throws Exception {
+                        if (!cacheCoordinator.checkCounter(tableName + FULL_RELOAD_SUFFIX, newCount)) {
+                            handleReload(tableName, true);
                         }
                     }
                 });
@@ -251,13 +267,28 @@ public class AccumuloTableCache {
     @GZIP
     @Interceptors(RequiredInterceptor.class)
     public VoidResponse reloadCache(@Required("tableName") @PathParam("tableName") String tableName) {
+        // an explicit reload may follow deletes, which an incremental refresh cannot see
+        return reloadCache(tableName, true);
+    }
+    
+    /**
+     * Reload the cached version of a table, here and across the cluster.
+     *
+     * @param tableName
+     *            the name of the table for which the cached version is to be reloaded
+     * @param fullReload
+     *            true if entries may have been deleted, or written with an old timestamp, so the whole table must be reloaded; false if the changes can be
+     *            picked up by an incremental refresh
+     * @return datawave.webservice.result.VoidResponse
+     */
+    public VoidResponse reloadCache(String tableName, boolean fullReload) {
         VoidResponse response = new VoidResponse();
         if (null == details.get(tableName)) {
             return response;
         }
         // send an eviction notice to the cluster
         try {
-            details.get(tableName).getWatcher().incrementCounter(tableName);
+            details.get(tableName).getWatcher().incrementCounter(fullReload ? tableName + FULL_RELOAD_SUFFIX : tableName);
         } catch (Exception e) {
             response.addException(new QueryException(e).getBottomQueryException());
             throw new DatawaveWebApplicationException(e, response);
@@ -267,7 +298,7 @@ public class AccumuloTableCache {
         } catch (Exception e) {
             log.error("Unable to send message about cache reload");
         }
-        handleReload(tableName);
+        handleReload(tableName, fullReload);
         handleReloadTypeMetadata(tableName);
         return response;
     }
@@ -285,8 +316,19 @@ public class AccumuloTableCache {
         }
     }
     
-    private void handleReload(String tableName) {
-        details.get(tableName).setLastRefresh(new Date(0));
+    private void handleReload(String tableName, boolean fullReload) {
+        handleReload(details.get(tableName), fullReload);
+    }
+    
+    /**
+     * Schedule the cache for reload on the next run of {@link #submitReloadTasks()}. Unless a full reload is asked for, the reload is incremental when
+     * incremental refresh is enabled.
+     */
+    static void handleReload(TableCache cache, boolean fullReload) {
+        if (fullReload) {
+            cache.requestFullReload();
+        }
+        cache.setLastRefresh(new Date(0));
     }
     
     /**
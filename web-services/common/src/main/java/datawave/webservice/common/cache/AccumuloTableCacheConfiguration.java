@@ -24,6 +24,13 @@ public class AccumuloTableCacheConfiguration {
     @Inject
     @ConfigProperty(name = "dw.cache.reloadInterval", defaultValue = "86400000")
     private long reloadInterval;
+    @Inject
+    @ConfigProperty(name = "dw.cache.incrementalRefresh", defaultValue = "false")
+    private boolean incrementalRefresh;
+    // how often a timed refresh reloads the whole table rather than refreshing it incrementally, independent of and longer than the reload interval
+    @Inject
+    @ConfigProperty(name = "dw.cache.fullReloadInterval", defaultValue = "604800000")
+    private long fullReloadInterval;
     
     private Map<String,TableCache> caches = new HashMap<>();
     
@@ -34,6 +41,8 @@ public class AccumuloTableCacheConfiguration {
             cache.setTableName(tableName);
             cache.setConnectionPoolName(poolName);
             cache.setReloadInterval(reloadInterval);
+            cache.setIncrementalRefresh(incrementalRefresh);
+            cache.setFullReloadInterval(fullReloadInterval);
             caches.put(tableName, cache);
         }
     }
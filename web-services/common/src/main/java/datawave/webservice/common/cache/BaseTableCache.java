@@ -20,7 +20,9 @@ import org.apache.accumulo.core.client.BatchScanner;
 import org.apache.accumulo.core.client.BatchWriter;
 import org.apache.accumulo.core.client.Connector;
 import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.client.MutationsRejectedException;
 import org.apache.accumulo.core.client.NamespaceExistsException;
+import org.apache.accumulo.core.client.Scanner;
 import org.apache.accumulo.core.client.TableNotFoundException;
 import datawave.accumulo.inmemory.InMemoryInstance;
 import org.apache.accumulo.core.client.admin.NamespaceOperations;
@@ -29,6 +31,7 @@ import org.apache.accumulo.core.data.Mutation;
 import org.apache.accumulo.core.data.Range;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.iterators.user.RegExFilter;
+import org.apache.accumulo.core.iterators.user.TimestampFilter;
 import org.apache.accumulo.core.security.Authorizations;
 import org.apache.accumulo.core.security.ColumnVisibility;
 import org.apache.log4j.Logger;
@@ -39,6 +42,9 @@ public class BaseTableCache implements Serializable, TableCache {
     
     private static final long serialVersionUID = 1L;
     
+    // an incremental refresh rescans this much before the high water mark, to allow for clock skew and for writes that land while a scan is running
+    private static final long INCREMENTAL_OVERLAP_MS = 60 * 1000L;
+    
     private final Logger log = Logger.getLogger(this.getClass());
     
     /** should be set by configuration **/
@@ -47,9 +53,14 @@ public class BaseTableCache implements Serializable, TableCache {
     private String auths = null;
     private long reloadInterval = 0;
     private long maxRows = Long.MAX_VALUE;
+    private boolean incrementalRefresh = false;
+    private long fullReloadInterval = 86400000L;
     
     /** set programatically **/
     private Date lastRefresh = new Date(0);
+    private Date lastFullRefresh = new Date(0);
+    private long highWaterMark = 0;
+    private volatile boolean fullReloadRequested = false;
     private AccumuloConnectionFactory connectionFactory = null;
     private InMemoryInstance instance = null;
     private SharedCacheCoordinator watcher = null;
@@ -157,6 +168,48 @@ public class BaseTableCache implements Serializable, TableCache {
         this.maxRows = maxRows;
     }
     
+    @Override
+    public boolean isIncrementalRefresh() {
+        return incrementalRefresh;
+    }
+    
+    @Override
+    public void setIncrementalRefresh(boolean incrementalRefresh) {
+        this.incrementalRefresh = incrementalRefresh;
+    }
+    
+    @Override
+    public long getFullReloadInterval() {
+        return fullReloadInterval;
+    }
+    
+    @Override
+    public void setFullReloadInterval(long fullReloadInterval) {
+        this.fullReloadInterval = fullReloadInterval;
+    }
+    
+    public Date getLastFullRefresh() {
+        return lastFullRefresh;
+    }
+    
+    public long getHighWaterMark() {
+        return highWaterMark;
+    }
+    
+    @Override
+    public void requestFullReload() {
+        this.fullReloadRequested = true;
+    }
+    
+    /**
+     * Reload the cached table. The table is copied into a temporary table in the in memory instance, which then replaces the cached table, so readers see
+     * either the previous copy or the new one.
+     * <p>
+     * With incremental refresh enabled, a timed refresh scans only the entries written since the last refresh from Accumulo and applies them to a copy of the
+     * cached table. A scan does not return deleted entries, nor entries written with a timestamp older than the last refresh (e.g. bulk imports), so a reload
+     * that was explicitly requested, such as after a model mapping is deleted, always reloads the whole table, as does the first refresh after the full reload
+     * interval has passed.
+     */
     @Override
     public Boolean call() throws Exception {
         if (!lock.tryLock(0, TimeUnit.SECONDS))
@@ -167,6 +220,9 @@ public class BaseTableCache implements Serializable, TableCache {
         Connector accumuloConn = null;
         
         String tempTableName = tableName + "Temp";
+        // a request made while this reload runs is kept for the next one
+        boolean fullReload = fullReloadRequested;
+        fullReloadRequested = false;
         try {
             Map<String,String> map = connectionFactory.getTrackingMap(Thread.currentThread().getStackTrace());
             accumuloConn = connectionFactory.getConnection(connectionPoolName, Priority.ADMIN, map);
@@ -196,31 +252,46 @@ public class BaseTableCache implements Serializable, TableCache {
             
             setupScanner(scanner);
             
-            Iterator<Entry<Key,Value>> iter = scanner.iterator();
+            long start = System.currentTimeMillis();
+            boolean incremental = incrementalRefresh && !fullReload && highWaterMark > 0 && (start - lastFullRefresh.getTime()) < fullReloadInterval
+                            && instanceConnector.tableOperations().exists(tableName);
+            
+            long since = highWaterMark - INCREMENTAL_OVERLAP_MS;
             long count = 0;
-            while (iter.hasNext()) {
-                
-                if (count > maxRows)
-                    break;
-                Entry<Key,Value> value = iter.next();
+            if (incremental) {
+                // start with the cached copy, and scan only what has been written since it was loaded
+                Scanner cached = instanceConnector.createScanner(tableName, authorizations);
+                count = copy(cached.iterator(), writer, count);
                 
-                Key valueKey = value.getKey();
-                
-                Mutation m = new Mutation(value.getKey().getRow());
-                m.put(valueKey.getColumnFamily(), valueKey.getColumnQualifier(), new ColumnVisibility(valueKey.getColumnVisibility()), valueKey.getTimestamp(),
-                                value.getValue());
-                writer.addMutation(m);
-                count++;
+                IteratorSetting sinceLastRefresh = new IteratorSetting(101, "sinceLastRefresh", TimestampFilter.class);
+                TimestampFilter.setStart(sinceLastRefresh, since, true);
+                scanner.addScanIterator(sinceLastRefresh);
             }
+            long cachedCount = count;
+            count = copy(scanner.iterator(), writer, count);
+            writer.flush();
+            
             this.lastRefresh = new Date();
+            if (!incremental) {
+                this.lastFullRefresh = this.lastRefresh;
+            }
+            this.highWaterMark = start;
             try {
                 instanceConnector.tableOperations().delete(tableName);
             } catch (TableNotFoundException e) {
                 // the table will not exist the first time this is run
             }
             instanceConnector.tableOperations().rename(tempTableName, tableName);
-            log.info("Cached " + count + " k,v for table: " + tableName);
+            if (incremental) {
+                log.info("Refreshed " + (count - cachedCount) + " k,v written since " + new Date(since) + " into " + cachedCount + " cached k,v for table: "
+                                + tableName);
+            } else {
+                log.info("Cached " + count + " k,v for table: " + tableName);
+            }
         } catch (Exception e) {
+            if (fullReload) {
+                fullReloadRequested = true;
+            }
             log.error(e.getMessage(), e);
             throw e;
         } finally {
@@ -243,6 +314,24 @@ public class BaseTableCache implements Serializable, TableCache {
         return true;
     }
     
+    private long copy(Iterator<Entry<Key,Value>> iter, BatchWriter writer, long count) throws MutationsRejectedException {
+        while (iter.hasNext()) {
+            
+            if (count > maxRows)
+                break;
+            Entry<Key,Value> value = iter.next();
+            
+            Key valueKey = value.getKey();
+            
+            Mutation m = new Mutation(value.getKey().getRow());
+            m.put(valueKey.getColumnFamily(), valueKey.getColumnQualifier(), new ColumnVisibility(valueKey.getColumnVisibility()), valueKey.getTimestamp(),
+                            value.getValue());
+            writer.addMutation(m);
+            count++;
+        }
+        return count;
+    }
+    
     public void setupScanner(BatchScanner scanner) {
         scanner.setRanges(Lists.newArrayList(new Range()));
         Map<String,String> options = new HashMap<>();
@@ -31,6 +31,10 @@ public interface TableCache extends Callable<Boolean>, Serializable {
     
     long getMaxRows();
     
+    boolean isIncrementalRefresh();
+    
+    long getFullReloadInterval();
+    
     void setTableName(String tableName);
     
     void setConnectionPoolName(String connectionPoolName);
@@ -51,6 +55,15 @@ public interface TableCache extends Callable<Boolean>, Serializable {
     
     void setMaxRows(long maxRows);
     
+    void setIncrementalRefresh(boolean incrementalRefresh);
+    
+    void setFullReloadInterval(long fullReloadInterval);
+    
+    /**
+     * Have the next reload reload the whole table, rather than only what has been written since the last one
+     */
+    void requestFullReload();
+    
     Boolean call() throws Exception;
     
 }
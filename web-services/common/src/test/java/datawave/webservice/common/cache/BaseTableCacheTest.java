@@ -0,0 +1,154 @@
+package datawave.webservice.common.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import datawave.accumulo.inmemory.InMemoryInstance;
+import datawave.webservice.common.connection.AccumuloConnectionFactory;
+
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.BatchWriterConfig;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.security.tokens.PasswordToken;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import org.easymock.EasyMock;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BaseTableCacheTest {
+    
+    private static final String TABLE_NAME = "DatawaveMetadata";
+    
+    private Connector connector;
+    private InMemoryInstance cacheInstance;
+    private BaseTableCache cache;
+    
+    @Before
+    public void setup() throws Exception {
+        InMemoryInstance instance = new InMemoryInstance("BaseTableCacheTest source");
+        connector = instance.getConnector("root", new PasswordToken(""));
+        if (connector.tableOperations().exists(TABLE_NAME)) {
+            connector.tableOperations().delete(TABLE_NAME);
+        }
+        connector.tableOperations().create(TABLE_NAME);
+        
+        AccumuloConnectionFactory connectionFactory = EasyMock.createMock(AccumuloConnectionFactory.class);
+        EasyMock.expect(connectionFactory.getTrackingMap(EasyMock.anyObject())).andReturn(Collections.emptyMap()).anyTimes();
+        EasyMock.expect(connectionFactory.getConnection(EasyMock.anyString(), EasyMock.anyObject(), EasyMock.anyObject())).andReturn(connector).anyTimes();
+        connectionFactory.returnConnection(connector);
+        EasyMock.expectLastCall().anyTimes();
+        EasyMock.replay(connectionFactory);
+        
+        cacheInstance = new InMemoryInstance("BaseTableCacheTest cache");
+        cache = new BaseTableCache();
+        cache.setTableName(TABLE_NAME);
+        cache.setConnectionPoolName("WAREHOUSE");
+        cache.setConnectionFactory(connectionFactory);
+        cache.setInstance(cacheInstance);
+        cache.setIncrementalRefresh(true);
+    }
+    
+    @Test
+    public void testTimedRefreshIsIncremental() throws Exception {
+        write("FIELD1", System.currentTimeMillis());
+        cache.call();
+        long lastFullRefresh = cache.getLastFullRefresh().getTime();
+        
+        write("FIELD2", System.currentTimeMillis());
+        cache.call();
+        
+        assertEquals(lastFullRefresh, cache.getLastFullRefresh().getTime());
+        assertEquals(2, cached().size());
+    }
+    
+    @Test
+    public void testCounterTriggeredReloadIsIncremental() throws Exception {
+        write("FIELD1", System.currentTimeMillis());
+        cache.call();
+        long lastFullRefresh = cache.getLastFullRefresh().getTime();
+        
+        // e.g. another server inserted model mappings
+        write("FIELD2", System.currentTimeMillis());
+        AccumuloTableCache.handleReload(cache, false);
+        assertEquals(0, cache.getLastRefresh().getTime());
+        cache.call();
+        
+        assertEquals(lastFullRefresh, cache.getLastFullRefresh().getTime());
+        assertEquals(2, cached().size());
+    }
+    
+    @Test
+    public void testFullReloadSignalIsFull() throws Exception {
+        write("FIELD1", System.currentTimeMillis());
+        cache.call();
+        long lastFullRefresh = cache.getLastFullRefresh().getTime();
+        
+        Thread.sleep(2);
+        AccumuloTableCache.handleReload(cache, true);
+        cache.call();
+        
+        assertTrue(cache.getLastFullRefresh().getTime() > lastFullRefresh);
+    }
+    
+    @Test
+    public void testRequestedReloadSeesDeletes() throws Exception {
+        long timestamp = System.currentTimeMillis();
+        write("FIELD1", timestamp);
+        write("FIELD2", timestamp);
+        cache.call();
+        assertEquals(2, cached().size());
+        
+        BatchWriter writer = connector.createBatchWriter(TABLE_NAME, new BatchWriterConfig());
+        Mutation m = new Mutation("FIELD2");
+        m.putDelete("e", "datatype", timestamp);
+        writer.addMutation(m);
+        writer.close();
+        
+        cache.requestFullReload();
+        cache.call();
+        
+        Map<String,String> cached = cached();
+        assertEquals(1, cached.size());
+        assertEquals("FIELD1", cached.keySet().iterator().next());
+    }
+    
+    @Test
+    public void testRequestedReloadSeesOldTimestamps() throws Exception {
+        write("FIELD1", System.currentTimeMillis());
+        cache.call();
+        
+        // e.g. bulk imported with the event date
+        write("FIELD2", 1000L);
+        cache.requestFullReload();
+        cache.call();
+        
+        assertEquals(2, cached().size());
+    }
+    
+    private void write(String row, long timestamp) throws Exception {
+        BatchWriter writer = connector.createBatchWriter(TABLE_NAME, new BatchWriterConfig());
+        Mutation m = new Mutation(row);
+        m.put("e", "datatype", timestamp, new Value(new byte[0]));
+        writer.addMutation(m);
+        writer.close();
+    }
+    
+    private Map<String,String> cached() throws Exception {
+        Connector cacheConnector = cacheInstance.getConnector(AccumuloTableCache.MOCK_USERNAME, AccumuloTableCache.MOCK_PASSWORD);
+        Scanner scanner = cacheConnector.createScanner(TABLE_NAME, Authorizations.EMPTY);
+        Map<String,String> cached = new TreeMap<>();
+        for (Entry<Key,Value> entry : scanner) {
+            cached.put(entry.getKey().getRow().toString(), entry.getKey().getColumnFamily().toString());
+        }
+        return cached;
+    }
+}
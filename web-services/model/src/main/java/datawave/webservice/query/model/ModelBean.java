@@ -449,7 +449,8 @@ public class ModelBean {
                 }
             }
         }
-        cache.reloadCache(tableName);
+        // new mappings are picked up by an incremental refresh
+        cache.reloadCache(tableName, false);
         return response;
     }
     
@@ -141,7 +141,7 @@ public class ModelBeanTest {
         connectionFactory.returnConnection(connector);
         EasyMock.expect(System.currentTimeMillis()).andReturn(TIMESTAMP);
         EasyMock.expect(System.currentTimeMillis()).andReturn(TIMESTAMP);
-        EasyMock.expect(cache.reloadCache(ModelBean.DEFAULT_MODEL_TABLE_NAME)).andReturn(null);
+        EasyMock.expect(cache.reloadCache(ModelBean.DEFAULT_MODEL_TABLE_NAME, false)).andReturn(null);
         PowerMock.replayAll();
         
         bean.importModel(MODEL_ONE, (String) null);
@@ -159,7 +159,7 @@ public class ModelBeanTest {
         EasyMock.expect(System.currentTimeMillis()).andReturn(TIMESTAMP);
         EasyMock.expect(System.currentTimeMillis()).andReturn(TIMESTAMP);
         EasyMock.expect(System.currentTimeMillis()).andReturn(TIMESTAMP);
-        EasyMock.expect(cache.reloadCache(ModelBean.DEFAULT_MODEL_TABLE_NAME)).andReturn(null);
+        EasyMock.expect(cache.reloadCache(ModelBean.DEFAULT_MODEL_TABLE_NAME, false)).andReturn(null);
         PowerMock.replayAll();
         
         bean.importModel(MODEL_TWO, (String) null);
@@ -295,7 +295,7 @@ public class ModelBeanTest {
         EasyMock.expect(ctx.getCallerPrincipal()).andReturn(principal);
         EasyMock.expect(connectionFactory.getTrackingMap((StackTraceElement[]) EasyMock.anyObject())).andReturn(trackingMap);
         EasyMock.expect(connectionFactory.getConnection(EasyMock.eq(AccumuloConnectionFactory.Priority.LOW), EasyMock.eq(trackingMap))).andReturn(connector);
-        EasyMock.expect(cache.reloadCache(ModelBean.DEFAULT_MODEL_TABLE_NAME)).andReturn(null);
+        EasyMock.expect(cache.reloadCache(ModelBean.DEFAULT_MODEL_TABLE_NAME, false)).andReturn(null);
         EasyMock.expect(System.currentTimeMillis()).andReturn(TIMESTAMP);
         connectionFactory.returnConnection(connector);
         EasyMock.expect(System.currentTimeMillis()).andReturn(TIMESTAMP);
@@ -3,6 +3,7 @@ package datawave.webservice.query.cachedresults;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
@@ -20,97 +21,120 @@ public class CacheableQueryRowReader {
     
     public static CacheableQueryRow createRow(CachedRowSet cachedRowSet, Set<String> fixedFieldsInEvent) {
         
-        CacheableQueryRowImpl cqfc = new CacheableQueryRowImpl();
+        Map<String,Integer> columnToIndexMap = new HashMap<>();
+        Map<String,String> row = new LinkedHashMap<>();
         
         ResultSetMetaData metadata;
         try {
             metadata = cachedRowSet.getMetaData();
             
             int numColumns = metadata.getColumnCount();
-            Map<String,Integer> columnToIndexMap = new HashMap<>();
-            Map<String,Set<String>> columnValues = new HashMap<>();
-            Set<String> variableColumnNames = new TreeSet<>();
-            Set<String> fixedColumnNames = CacheableQueryRowImpl.getFixedColumnSet();
-            // lets do a quick size estimate
-            long characters = 0;
             for (int x = 1; x <= numColumns; x++) {
                 String columnLabel = metadata.getColumnLabel(x);
                 columnToIndexMap.put(columnLabel, x);
-                String s = cachedRowSet.getString(x);
-                if (s != null) {
-                    characters += s.length();
-                }
-                if (fixedColumnNames.contains(columnLabel) == false || fixedFieldsInEvent.contains(columnLabel)) {
-                    characters += columnLabel.length();
-                    variableColumnNames.add(columnLabel);
-                    if (s == null) {
-                        columnValues.put(columnLabel, new LinkedHashSet<>());
-                    } else {
-                        Set<String> columnValuesSet = new LinkedHashSet<>();
-                        columnValuesSet.add(s);
-                        columnValues.put(columnLabel, columnValuesSet);
-                    }
-                }
+                row.put(columnLabel, cachedRowSet.getString(x));
             }
             
-            // set the the size of the values in characters...internally converted to approximate bytes
-            cqfc.setSizeInStoredCharacters(characters);
-            
-            cqfc.setVariableColumnNames(variableColumnNames);
-            cqfc.setColumnValues(columnValues);
-            
-            if (columnToIndexMap.get("_user_") != null) {
-                cqfc.setUser(cachedRowSet.getString(columnToIndexMap.get("_user_")));
-            }
-            if (columnToIndexMap.get("_queryId_") != null) {
-                cqfc.setQueryId(cachedRowSet.getString(columnToIndexMap.get("_queryId_")));
-            }
-            if (columnToIndexMap.get("_logicName_") != null) {
-                cqfc.setLogicName(cachedRowSet.getString(columnToIndexMap.get("_logicName_")));
-            }
-            if (columnToIndexMap.get("_datatype_") != null) {
-                cqfc.setDataType(cachedRowSet.getString(columnToIndexMap.get("_datatype_")));
-            }
-            if (columnToIndexMap.get("_eventId_") != null) {
-                cqfc.setEventId(cachedRowSet.getString(columnToIndexMap.get("_eventId_")));
-            }
-            if (columnToIndexMap.get("_row_") != null) {
-                cqfc.setRow(cachedRowSet.getString(columnToIndexMap.get("_row_")));
-            }
-            if (columnToIndexMap.get("_colf_") != null) {
-                cqfc.setColFam(cachedRowSet.getString(columnToIndexMap.get("_colf_")));
-            }
-            if (columnToIndexMap.get("_markings_") != null) {
-                String mStr = cachedRowSet.getString(columnToIndexMap.get("_markings_"));
-                cqfc.setMarkings(MarkingFunctions.Encoding.fromString(mStr));
+        } catch (SQLException e) {
+            log.error(e.getMessage(), e);
+        }
+        
+        // as before, a row that could not be read completely holds the columns read so far
+        return createRow(row, columnToIndexMap, fixedFieldsInEvent);
+    }
+    
+    /**
+     * Create a row from the values of its columns, as read from a store other than a database
+     *
+     * @param row
+     *            the value of each column, null if the column has no value
+     * @param columnToIndexMap
+     *            the column numbers that the column markings and timestamps refer to
+     * @param fixedFieldsInEvent
+     *            the fixed columns that are also fields of the event
+     * @return the row
+     */
+    public static CacheableQueryRow createRow(Map<String,String> row, Map<String,Integer> columnToIndexMap, Set<String> fixedFieldsInEvent) {
+        
+        CacheableQueryRowImpl cqfc = new CacheableQueryRowImpl();
+        
+        Map<String,Set<String>> columnValues = new HashMap<>();
+        Set<String> variableColumnNames = new TreeSet<>();
+        Set<String> fixedColumnNames = CacheableQueryRowImpl.getFixedColumnSet();
+        // lets do a quick size estimate
+        long characters = 0;
+        for (Map.Entry<String,String> entry : row.entrySet()) {
+            String columnLabel = entry.getKey();
+            String s = entry.getValue();
+            if (s != null) {
+                characters += s.length();
             }
-            if (columnToIndexMap.get("_column_markings_") != null) {
-                String columnMarkings = cachedRowSet.getString(columnToIndexMap.get("_column_markings_"));
-                Map<String,String> combinedColumnMarkings = parseColumnMarkings(columnMarkings, columnToIndexMap);
-                Map<String,Map<String,String>> columnMarkingsMap = new HashMap<>();
-                Map<String,String> columnVisibilityMap = new HashMap<>();
-                for (Map.Entry<String,String> entry : combinedColumnMarkings.entrySet()) {
-                    String columnName = entry.getKey();
-                    String combinedString = entry.getValue();
-                    int x = combinedString.lastIndexOf(":");
-                    if (x >= 0) {
-                        columnMarkingsMap.put(columnName, MarkingFunctions.Encoding.fromString(combinedString.substring(0, x)));
-                        columnVisibilityMap.put(columnName, combinedString.substring(x + 1));
-                    } else {
-                        columnMarkingsMap.put(columnName, MarkingFunctions.Encoding.fromString(combinedString));
-                        columnVisibilityMap.put(columnName, "");
-                    }
+            if (fixedColumnNames.contains(columnLabel) == false || fixedFieldsInEvent.contains(columnLabel)) {
+                characters += columnLabel.length();
+                variableColumnNames.add(columnLabel);
+                if (s == null) {
+                    columnValues.put(columnLabel, new LinkedHashSet<>());
+                } else {
+                    Set<String> columnValuesSet = new LinkedHashSet<>();
+                    columnValuesSet.add(s);
+                    columnValues.put(columnLabel, columnValuesSet);
                 }
-                cqfc.setColumnMarkingsMap(columnMarkingsMap);
-                cqfc.setColumnColumnVisibilityMap(columnVisibilityMap);
             }
-            if (columnToIndexMap.get("_column_timestamps_") != null) {
-                String columnTimestamps = cachedRowSet.getString(columnToIndexMap.get("_column_timestamps_"));
-                cqfc.setColumnTimestampMap(parseColumnTimestamps(columnTimestamps, columnToIndexMap));
+        }
+        
+        // set the the size of the values in characters...internally converted to approximate bytes
+        cqfc.setSizeInStoredCharacters(characters);
+        
+        cqfc.setVariableColumnNames(variableColumnNames);
+        cqfc.setColumnValues(columnValues);
+        
+        if (row.get("_user_") != null) {
+            cqfc.setUser(row.get("_user_"));
+        }
+        if (row.get("_queryId_") != null) {
+            cqfc.setQueryId(row.get("_queryId_"));
+        }
+        if (row.get("_logicName_") != null) {
+            cqfc.setLogicName(row.get("_logicName_"));
+        }
+        if (row.get("_datatype_") != null) {
+            cqfc.setDataType(row.get("_datatype_"));
+        }
+        if (row.get("_eventId_") != null) {
+            cqfc.setEventId(row.get("_eventId_"));
+        }
+        if (row.get("_row_") != null) {
+            cqfc.setRow(row.get("_row_"));
+        }
+        if (row.get("_colf_") != null) {
+            cqfc.setColFam(row.get("_colf_"));
+        }
+        if (row.containsKey("_markings_")) {
+            cqfc.setMarkings(MarkingFunctions.Encoding.fromString(row.get("_markings_")));
+        }
+        if (row.containsKey("_column_markings_")) {
+            String columnMarkings = row.get("_column_markings_");
+            Map<String,String> combinedColumnMarkings = parseColumnMarkings(columnMarkings, columnToIndexMap);
+            Map<String,Map<String,String>> columnMarkingsMap = new HashMap<>();
+            Map<String,String> columnVisibilityMap = new HashMap<>();
+            for (Map.Entry<String,String> entry : combinedColumnMarkings.entrySet()) {
+                String columnName = entry.getKey();
+                String combinedString = entry.getValue();
+                int x = combinedString.lastIndexOf(":");
+                if (x >= 0) {
+                    columnMarkingsMap.put(columnName, MarkingFunctions.Encoding.fromString(combinedString.substring(0, x)));
+                    columnVisibilityMap.put(columnName, combinedString.substring(x + 1));
+                } else {
+                    columnMarkingsMap.put(columnName, MarkingFunctions.Encoding.fromString(combinedString));
+                    columnVisibilityMap.put(columnName, "");
+                }
             }
-            
-        } catch (SQLException e) {
-            log.error(e.getMessage(), e);
+            cqfc.setColumnMarkingsMap(columnMarkingsMap);
+            cqfc.setColumnColumnVisibilityMap(columnVisibilityMap);
+        }
+        if (row.containsKey("_column_timestamps_")) {
+            String columnTimestamps = row.get("_column_timestamps_");
+            cqfc.setColumnTimestampMap(parseColumnTimestamps(columnTimestamps, columnToIndexMap));
         }
         
         return cqfc;
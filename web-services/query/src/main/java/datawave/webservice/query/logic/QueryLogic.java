@@ -141,6 +141,11 @@ public interface QueryLogic<T> extends Iterable<T>, Cloneable, ParameterValidato
      */
     long getPageByteTrigger();
     
+    /**
+     * @return the number of bytes of results to read ahead for the next page while the current page is returned, or 0 to read each page on request
+     */
+    long getPagePrefetchBytes();
+    
     /**
      * Returns the base iterator priority.
      * 
@@ -185,6 +190,12 @@ public interface QueryLogic<T> extends Iterable<T>, Cloneable, ParameterValidato
      */
     void setPageByteTrigger(long pageByteTrigger);
     
+    /**
+     * @param pagePrefetchBytes
+     *            the number of bytes of results to read ahead for the next page while the current page is returned, or 0 to read each page on request
+     */
+    void setPagePrefetchBytes(long pagePrefetchBytes);
+    
     /**
      * Sets the base iterator priority
      * 
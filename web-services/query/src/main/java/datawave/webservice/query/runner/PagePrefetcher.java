@@ -0,0 +1,208 @@
+package datawave.webservice.query.runner;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import datawave.webservice.query.data.ObjectSizeOf;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Reads the results of a query on an executor ahead of the caller, so that the next page is being filled while the current page is returned. At most one
+ * page of results is buffered, bounded by both a number of results and a number of bytes, and the producer waits for the caller to take results before it
+ * reads any more.
+ * <p>
+ * Once started, the prefetcher is the only thread that may use the underlying iterator.
+ */
+class PagePrefetcher implements Runnable {
+    
+    private static Logger log = Logger.getLogger(PagePrefetcher.class);
+    
+    /**
+     * Returned by {@link #poll(long, TimeUnit)} when there are no more results
+     */
+    static final Prefetched END = new Prefetched(null, 0);
+    
+    private final Iterator<?> iter;
+    private final int maxBufferedResults;
+    private final long maxBufferedBytes;
+    private long remainingResults;
+    
+    private final ArrayDeque<Prefetched> buffer = new ArrayDeque<>();
+    private long bufferedBytes = 0;
+    private boolean finished = false;
+    private boolean closed = false;
+    private Throwable failure = null;
+    private Future<?> future = null;
+    
+    /**
+     * @param iter
+     *            the query results
+     * @param maxBufferedResults
+     *            the maximum number of results to buffer, normally the page size
+     * @param maxBufferedBytes
+     *            the number of bytes at which to stop buffering results
+     * @param remainingResults
+     *            the number of results the query may still return, or a negative number if unlimited
+     */
+    PagePrefetcher(Iterator<?> iter, int maxBufferedResults, long maxBufferedBytes, long remainingResults) {
+        this.iter = iter;
+        this.maxBufferedResults = Math.max(1, maxBufferedResults);
+        this.maxBufferedBytes = maxBufferedBytes;
+        this.remainingResults = remainingResults;
+    }
+    
+    synchronized void start(ExecutorService executor) {
+        if (!closed && future == null) {
+            future = executor.submit(this);
+        }
+    }
+    
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                synchronized (this) {
+                    while (!closed && isBufferFull()) {
+                        wait();
+                    }
+                    if (closed) {
+                        return;
+                    }
+                    if (remainingResults == 0) {
+                        finished = true;
+                        notifyAll();
+                        return;
+                    }
+                }
+                
+                Object result = (iter.hasNext() ? iter.next() : null);
+                long bytes = (result == null ? 0 : ObjectSizeOf.Sizer.getObjectSize(result));
+                
+                synchronized (this) {
+                    if (closed) {
+                        return;
+                    }
+                    if (result == null) {
+                        finished = true;
+                        notifyAll();
+                        return;
+                    }
+                    buffer.add(new Prefetched(result, bytes));
+                    bufferedBytes += bytes;
+                    if (remainingResults > 0) {
+                        remainingResults--;
+                    }
+                    notifyAll();
+                }
+            }
+        } catch (InterruptedException e) {
+            // closed while waiting for the caller
+            Thread.currentThread().interrupt();
+        } catch (Throwable t) {
+            synchronized (this) {
+                if (!closed) {
+                    log.error("Failed to prefetch query results", t);
+                }
+                failure = t;
+                notifyAll();
+            }
+        }
+    }
+    
+    private boolean isBufferFull() {
+        return buffer.size() >= maxBufferedResults || (maxBufferedBytes > 0 && bufferedBytes >= maxBufferedBytes);
+    }
+    
+    /**
+     * Take the next result, waiting up to the timeout for one to be read. Buffered results are returned before any failure is reported.
+     *
+     * @param timeout
+     * @param unit
+     * @return the next result, {@link #END} if there are no more results, or null if the timeout elapsed or the prefetcher was closed
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     * @throws ExecutionException
+     *             if reading the results failed
+     */
+    synchronized Prefetched poll(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (buffer.isEmpty()) {
+            if (failure != null) {
+                throw new ExecutionException(failure);
+            }
+            if (closed) {
+                return null;
+            }
+            if (finished) {
+                return END;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return null;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        Prefetched prefetched = buffer.poll();
+        bufferedBytes -= prefetched.getBytes();
+        notifyAll();
+        return prefetched;
+    }
+    
+    /**
+     * Stop reading results and drop any that are buffered. The producer is interrupted if it is waiting on the iterator.
+     */
+    void close() {
+        Future<?> future;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            buffer.clear();
+            bufferedBytes = 0;
+            notifyAll();
+            future = this.future;
+        }
+        if (future != null) {
+            future.cancel(true);
+        }
+    }
+    
+    synchronized boolean isClosed() {
+        return closed;
+    }
+    
+    synchronized int getBufferedResults() {
+        return buffer.size();
+    }
+    
+    synchronized long getBufferedBytes() {
+        return bufferedBytes;
+    }
+    
+    /**
+     * A result along with its size in bytes
+     */
+    static class Prefetched {
+        private final Object result;
+        private final long bytes;
+        
+        Prefetched(Object result, long bytes) {
+            this.result = result;
+            this.bytes = bytes;
+        }
+        
+        Object getResult() {
+            return result;
+        }
+        
+        long getBytes() {
+            return bytes;
+        }
+    }
+}
@@ -65,6 +65,7 @@ public class RunningQuery extends AbstractRunningQuery implements Runnable {
     private ExecutorService executor = null;
     private volatile Future<Object> future = null;
     private QueryPredictor predictor = null;
+    private transient volatile PagePrefetcher prefetcher = null;
     
     public RunningQuery() {
         super(new QueryMetricFactoryImpl());
@@ -199,7 +200,12 @@ public class RunningQuery extends AbstractRunningQuery implements Runnable {
             // test for any exceptions prior to loop as hasNext() would likely be false;
             testForUncaughtException(resultList.size());
             
-            while (!this.finished && ((future != null) || this.iter.hasNext())) {
+            // once started, the prefetcher keeps the next page filling in the background between calls
+            if (this.prefetcher == null && !this.finished && !this.canceled && isPrefetchEnabled()) {
+                startPrefetch();
+            }
+            
+            while (!this.finished && ((prefetcher != null) || (future != null) || this.iter.hasNext())) {
                 // if we are canceled, then break out
                 if (this.canceled) {
                     log.info("Query has been cancelled, aborting query.next call");
@@ -254,7 +260,33 @@ public class RunningQuery extends AbstractRunningQuery implements Runnable {
                 }
                 
                 Object o = null;
-                if (executor != null) {
+                long resultBytes = -1;
+                boolean waiting = false;
+                if (prefetcher != null) {
+                    try {
+                        PagePrefetcher.Prefetched prefetched = prefetcher.poll(1, TimeUnit.MINUTES);
+                        if (prefetched == null) {
+                            // in this case we are still waiting on the prefetcher, or it was closed
+                            waiting = true;
+                        } else {
+                            o = prefetched.getResult();
+                            resultBytes = prefetched.getBytes();
+                        }
+                    } catch (InterruptedException ie) {
+                        // in this case we were most likely cancelled
+                        waiting = true;
+                    }
+                    // a prefetcher closed by a cancel or by closing the connection will not return any more results
+                    if (waiting && prefetcher.isClosed()) {
+                        log.info("Query results prefetcher has been closed, aborting query.next call");
+                        if (this.canceled) {
+                            this.getMetric().setLifecycle(QueryMetric.Lifecycle.CANCELLED);
+                        } else {
+                            this.finished = true;
+                        }
+                        break;
+                    }
+                } else if (executor != null) {
                     if (future == null) {
                         future = executor.submit(() -> iter.next());
                     }
@@ -270,6 +302,7 @@ public class RunningQuery extends AbstractRunningQuery implements Runnable {
                         throw ee;
                     } catch (TimeoutException te) {
                         // in this case we are still waiting on our future....simply continue
+                        waiting = true;
                     }
                 } else {
                     o = iter.next();
@@ -280,8 +313,8 @@ public class RunningQuery extends AbstractRunningQuery implements Runnable {
                     ((WritesQueryMetrics) iter.getTransformer()).writeQueryMetrics(this.getMetric());
                 }
                 
-                // if not still waiting on a future, then process the result (or lack thereof)
-                if (future == null) {
+                // if not still waiting on a future or the prefetcher, then process the result (or lack thereof)
+                if (!waiting) {
                     if (null == o) {
                         log.debug("Null result encountered, no more results");
                         this.finished = true;
@@ -289,7 +322,7 @@ public class RunningQuery extends AbstractRunningQuery implements Runnable {
                     }
                     resultList.add(o);
                     if (this.logic.getPageByteTrigger() > 0) {
-                        currentPageBytes += ObjectSizeOf.Sizer.getObjectSize(o);
+                        currentPageBytes += (resultBytes >= 0 ? resultBytes : ObjectSizeOf.Sizer.getObjectSize(o));
                     }
                     currentPageCount++;
                     numResults++;
@@ -340,11 +373,45 @@ public class RunningQuery extends AbstractRunningQuery implements Runnable {
         if (future != null) {
             future.cancel(true);
         }
+        // stop any prefetching
+        PagePrefetcher prefetcher = this.prefetcher;
+        if (prefetcher != null) {
+            prefetcher.close();
+        }
         
         // change status to cancelled
         this.getMetric().setLifecycle(QueryMetric.Lifecycle.CANCELLED);
     }
     
+    /**
+     * Prefetching is enabled when the query logic has a prefetch byte limit and there is an executor to run it on
+     *
+     * @return true if the next page should be read in the background
+     */
+    protected boolean isPrefetchEnabled() {
+        return this.executor != null && this.logic.getPagePrefetchBytes() > 0;
+    }
+    
+    private void startPrefetch() {
+        if (this.future != null) {
+            // let the outstanding next() call finish before handing the iterator to the prefetcher
+            return;
+        }
+        int pageSize = this.settings.getPagesize();
+        if (this.logic.getMaxPageSize() > 0) {
+            pageSize = Math.min(pageSize, this.logic.getMaxPageSize());
+        }
+        long maxResults = (this.settings.isMaxResultsOverridden() ? this.settings.getMaxResultsOverride() : this.logic.getMaxResults());
+        long remainingResults = (maxResults >= 0 ? Math.max(0, maxResults - this.numResults) : -1);
+        
+        PagePrefetcher prefetcher = new PagePrefetcher(this.iter, pageSize, this.logic.getPagePrefetchBytes(), remainingResults);
+        prefetcher.start(this.executor);
+        this.prefetcher = prefetcher;
+        if (this.canceled) {
+            prefetcher.close();
+        }
+    }
+    
     public boolean isFinished() {
         return finished;
     }
@@ -407,6 +474,10 @@ public class RunningQuery extends AbstractRunningQuery implements Runnable {
     public void closeConnection(AccumuloConnectionFactory factory) throws Exception {
         this.getMetric().setLifecycle(BaseQueryMetric.Lifecycle.CLOSED);
         
+        if (prefetcher != null) {
+            prefetcher.close();
+        }
+        
         if (iter != null && iter.getTransformer() instanceof WritesResultCardinalities) {
             ((WritesResultCardinalities) iter.getTransformer()).writeResultCardinalities();
         }
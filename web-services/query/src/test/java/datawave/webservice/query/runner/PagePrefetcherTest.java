@@ -0,0 +1,163 @@
+package datawave.webservice.query.runner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PagePrefetcherTest {
+    
+    private ExecutorService executor;
+    
+    @Before
+    public void setup() {
+        executor = Executors.newSingleThreadExecutor();
+    }
+    
+    @After
+    public void teardown() {
+        executor.shutdownNow();
+    }
+    
+    private static List<Object> results(int count) {
+        List<Object> results = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            results.add("result" + i);
+        }
+        return results;
+    }
+    
+    private static void waitForBuffer(PagePrefetcher prefetcher, int results) throws InterruptedException {
+        long end = System.currentTimeMillis() + 10000;
+        while (prefetcher.getBufferedResults() < results && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+    }
+    
+    @Test
+    public void testReadsAheadOnePage() throws Exception {
+        List<Object> expected = results(25);
+        PagePrefetcher prefetcher = new PagePrefetcher(expected.iterator(), 10, Long.MAX_VALUE, -1);
+        prefetcher.start(executor);
+        
+        // the producer stops once a page is buffered
+        waitForBuffer(prefetcher, 10);
+        Thread.sleep(50);
+        assertEquals(10, prefetcher.getBufferedResults());
+        assertTrue(prefetcher.getBufferedBytes() > 0);
+        
+        for (Object result : expected) {
+            PagePrefetcher.Prefetched prefetched = prefetcher.poll(10, TimeUnit.SECONDS);
+            assertSame(result, prefetched.getResult());
+        }
+        assertSame(PagePrefetcher.END, prefetcher.poll(10, TimeUnit.SECONDS));
+        assertEquals(0, prefetcher.getBufferedBytes());
+    }
+    
+    @Test
+    public void testBufferBoundedByBytes() throws Exception {
+        PagePrefetcher prefetcher = new PagePrefetcher(results(25).iterator(), 10, 1, -1);
+        prefetcher.start(executor);
+        
+        // a single result exceeds the byte limit
+        waitForBuffer(prefetcher, 1);
+        Thread.sleep(50);
+        assertEquals(1, prefetcher.getBufferedResults());
+        
+        int count = 0;
+        while (prefetcher.poll(10, TimeUnit.SECONDS) != PagePrefetcher.END) {
+            count++;
+        }
+        assertEquals(25, count);
+    }
+    
+    @Test
+    public void testRemainingResults() throws Exception {
+        Iterator<Object> iter = results(25).iterator();
+        PagePrefetcher prefetcher = new PagePrefetcher(iter, 10, Long.MAX_VALUE, 5);
+        prefetcher.start(executor);
+        
+        for (int i = 0; i < 5; i++) {
+            assertEquals("result" + i, prefetcher.poll(10, TimeUnit.SECONDS).getResult());
+        }
+        assertSame(PagePrefetcher.END, prefetcher.poll(10, TimeUnit.SECONDS));
+        assertEquals("result5", iter.next());
+    }
+    
+    @Test
+    public void testFailureAfterBufferedResults() throws Exception {
+        Iterator<Object> iter = new Iterator<Object>() {
+            int count = 0;
+            
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+            
+            @Override
+            public Object next() {
+                if (count == 3) {
+                    throw new IllegalStateException("INTENTIONALLY THROWN TEST EXCEPTION");
+                }
+                return "result" + count++;
+            }
+        };
+        PagePrefetcher prefetcher = new PagePrefetcher(iter, 10, Long.MAX_VALUE, -1);
+        prefetcher.start(executor);
+        
+        for (int i = 0; i < 3; i++) {
+            assertEquals("result" + i, prefetcher.poll(10, TimeUnit.SECONDS).getResult());
+        }
+        try {
+            prefetcher.poll(10, TimeUnit.SECONDS);
+            fail("Expected the iterator failure to be reported");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+    
+    @Test
+    public void testClose() throws Exception {
+        Iterator<Object> iter = new Iterator<Object>() {
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+            
+            @Override
+            public Object next() {
+                try {
+                    Thread.sleep(60000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "late";
+            }
+        };
+        PagePrefetcher prefetcher = new PagePrefetcher(iter, 10, Long.MAX_VALUE, -1);
+        prefetcher.start(executor);
+        
+        assertNull(prefetcher.poll(10, TimeUnit.MILLISECONDS));
+        prefetcher.close();
+        assertTrue(prefetcher.isClosed());
+        assertNull(prefetcher.poll(10, TimeUnit.SECONDS));
+        
+        // the producer was interrupted and exits without buffering its result
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(0, prefetcher.getBufferedResults());
+    }
+}